@@ -0,0 +1,131 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented tests for the {@link ContentCompactor} class and the compressed storage of long content.
+ * <br>
+ * Long entries written to an in-memory database are compressed, checking that their content reads back
+ * unchanged, that they keep their change sequence, and that they are still found by search, including by words
+ * past their plain beginning, and when checking for identical entries.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ContentCompactorTest {
+    // Number of long entries, more than a compaction batch
+    private static final int LONG_ENTRY_COUNT = 50;
+
+    private AppDatabase database;
+    private JournalEntryDao dao;
+    private File stateFile;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        dao = database.journalEntryDao();
+        stateFile = new File(context.getCacheDir(), ContentCompactor.STATE_FILE);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+        stateFile.delete();
+    }
+
+    private static String longContent(int index) {
+        StringBuilder content = new StringBuilder("Beginning of entry " + index + ". ");
+        while (content.length() <= ContentCompression.THRESHOLD * 2) {
+            content.append("Today I wrote a long page in my journal. ");
+        }
+        // A word only found far past the plain beginning
+        return content.append("The last page is about a lighthouse.").toString();
+    }
+
+    private void insertEntry(String title, String content) {
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setTitle(title);
+        entry.setContent(content);
+        entry.setDate(System.currentTimeMillis());
+        dao.insertEntryWithImages(entry, database.isContentCompressionEnabled());
+    }
+
+    private List<JournalEntryEntity> getEntries() {
+        return dao.getChangedEntriesPage(-1, Integer.MAX_VALUE, Long.MAX_VALUE, Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testCompressExistingEntries() {
+        Map<String, String> contents = new HashMap<>();
+        for (int i = 0; i < LONG_ENTRY_COUNT; i++) {
+            contents.put("Long " + i, longContent(i));
+            insertEntry("Long " + i, contents.get("Long " + i));
+            contents.put("Short " + i, "Beginning of a short entry");
+            insertEntry("Short " + i, contents.get("Short " + i));
+        }
+        long lastChangeSeq = dao.getLastChangeSeq();
+
+        ContentCompactor.Result result = new ContentCompactor(database, stateFile).compact();
+
+        assertTrue(result.isComplete());
+        assertEquals(LONG_ENTRY_COUNT, result.getCompressedEntryCount());
+        assertTrue(result.getSavedBytes() > (long) LONG_ENTRY_COUNT * ContentCompression.THRESHOLD);
+        // Compressed entries are not backed up or synced again
+        assertEquals(lastChangeSeq, dao.getLastChangeSeq());
+        for (JournalEntryEntity entry : getEntries()) {
+            assertEquals(entry.getTitle().startsWith("Long"), entry.getCompressedContent() != null);
+            assertEquals(contents.get(entry.getTitle()), entry.getContent());
+        }
+
+        // The plain beginning and the rest of compressed entries are still searched, ranked in SQL
+        assertEquals(LONG_ENTRY_COUNT * 2, dao.getBestSearchMatches("\"beginning*\"", Integer.MAX_VALUE).size());
+        assertEquals(LONG_ENTRY_COUNT, dao.getBestSearchMatches("lighthouse", Integer.MAX_VALUE).size());
+        JournalEntryEntity compressed = getEntries().get(0);
+        assertEquals(1, dao.countIdenticalEntries(compressed.getDate(), compressed.getTitle(),
+                compressed.getContent()));
+
+        assertEquals(0, new ContentCompactor(database, stateFile).compact().getCompressedEntryCount());
+    }
+
+    @Test
+    public void testCompressWrittenEntries() {
+        database.setContentCompressionEnabled(true);
+        String content = longContent(0);
+        insertEntry("Long", content);
+
+        JournalEntryEntity loaded = getEntries().get(0);
+        assertNotNull(loaded.getCompressedContent());
+        assertEquals(ContentCompression.getPreview(content), loaded.getStoredContent());
+        assertEquals(content, loaded.getContent());
+        assertEquals(1, dao.getBestSearchMatches("lighthouse", Integer.MAX_VALUE).size());
+
+        // Writing the loaded entry keeps its compressed content, replacing the content stores it again
+        dao.updateEntryWithImages(loaded, true);
+        assertEquals(content, getEntries().get(0).getContent());
+        assertEquals(1, dao.getBestSearchMatches("lighthouse", Integer.MAX_VALUE).size());
+        loaded.setContent("Short content");
+        dao.updateEntryWithImages(loaded, true);
+        loaded = getEntries().get(0);
+        assertNull(loaded.getCompressedContent());
+        assertEquals("Short content", loaded.getContent());
+        assertEquals(0, dao.getBestSearchMatches("lighthouse", Integer.MAX_VALUE).size());
+    }
+}
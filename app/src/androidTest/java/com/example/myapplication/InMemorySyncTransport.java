@@ -0,0 +1,194 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An in-process stand-in for the sync remote, holding the latest version of each entry and the blobs in memory.
+ * <br>
+ * It follows the contract of {@link SyncTransport}: changes are accepted only if based on the current revision,
+ * pulls skip the changes pushed by the pulling device, and content-addressed blobs are checked once complete.
+ * Transfers can be interrupted after a number of bytes to test resuming them.
+ */
+class InMemorySyncTransport implements SyncTransport {
+    // Latest version of each entry, by UUID
+    private final Map<String, SyncChange> entries = new HashMap<>();
+    // ID of the device that pushed the latest version of each entry
+    private final Map<String, String> origins = new HashMap<>();
+    private final Map<String, byte[]> blobs = new HashMap<>();
+    private final Map<String, ByteArrayOutputStream> partialUploads = new HashMap<>();
+    private long lastRevision;
+    // Number of blob bytes transferred before a transfer fails, or -1 to never fail
+    private long failTransfersAfter = -1;
+
+    /**
+     * Makes blob transfers fail after the given number of bytes, until reset with -1.
+     */
+    synchronized void failTransfersAfter(long bytes) {
+        failTransfersAfter = bytes;
+    }
+
+    /**
+     * Flips the first byte of a complete blob, so that its content no longer matches its name.
+     */
+    synchronized void corruptBlob(String name) {
+        blobs.get(name)[0] ^= 0xff;
+    }
+
+    /**
+     * Returns whether the remote holds a complete blob.
+     */
+    synchronized boolean hasBlob(String name) {
+        return blobs.containsKey(name);
+    }
+
+    @Override
+    public synchronized byte[] push(String deviceId, byte[] changes) throws IOException {
+        List<SyncChange> results = new ArrayList<>();
+        for (SyncChange change : SyncCodec.decode(changes).getChanges()) {
+            SyncChange current = entries.get(change.getUuid());
+            long currentRevision = current != null ? current.getRevision() : 0;
+            SyncChange result = new SyncChange();
+            result.setUuid(change.getUuid());
+            if (change.getRevision() == currentRevision) {
+                change.setRevision(++lastRevision);
+                entries.put(change.getUuid(), change);
+                origins.put(change.getUuid(), deviceId);
+                result.setStatus(SyncChange.Status.ACCEPTED);
+                result.setRevision(lastRevision);
+            } else {
+                result = copy(current);
+                result.setStatus(SyncChange.Status.CONFLICT);
+            }
+            results.add(result);
+        }
+        return SyncCodec.encode(new SyncCodec.Batch(results, 0, false));
+    }
+
+    @Override
+    public synchronized byte[] pull(String deviceId, long cursor, int limit) {
+        List<SyncChange> changes = new ArrayList<>(entries.values());
+        changes.sort((first, second) -> Long.compare(first.getRevision(), second.getRevision()));
+        List<SyncChange> pulled = new ArrayList<>();
+        long nextCursor = cursor;
+        boolean hasMore = false;
+        for (SyncChange change : changes) {
+            if (change.getRevision() <= cursor) {
+                continue;
+            }
+            if (pulled.size() == limit) {
+                hasMore = true;
+                break;
+            }
+            nextCursor = change.getRevision();
+            if (!deviceId.equals(origins.get(change.getUuid()))) {
+                pulled.add(copy(change));
+            }
+        }
+        return SyncCodec.encode(new SyncCodec.Batch(pulled, nextCursor, hasMore));
+    }
+
+    @Override
+    public synchronized List<String> getMissingBlobs(List<String> names) {
+        List<String> missing = new ArrayList<>();
+        for (String name : names) {
+            if (!blobs.containsKey(name)) {
+                missing.add(name);
+            }
+        }
+        return missing;
+    }
+
+    @Override
+    public synchronized long getUploadOffset(String name) {
+        ByteArrayOutputStream partialUpload = partialUploads.get(name);
+        return partialUpload != null ? partialUpload.size() : 0;
+    }
+
+    @Override
+    public synchronized void uploadBlob(String name, long offset, long length, InputStream data)
+            throws IOException {
+        ByteArrayOutputStream partialUpload = partialUploads.computeIfAbsent(name, key -> new ByteArrayOutputStream());
+        if (offset != partialUpload.size()) {
+            throw new IOException("Unexpected upload offset: " + offset);
+        }
+        InputStream inputStream = interruptible(data);
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0) {
+            partialUpload.write(buffer, 0, read);
+        }
+        if (partialUpload.size() != length) {
+            throw new IOException("Incomplete upload: " + name);
+        }
+        byte[] content = partialUpload.toByteArray();
+        partialUploads.remove(name);
+        String expectedHash = ImageHandler.getStoredImageHash(new File(name));
+        if (expectedHash != null && !expectedHash.equals(ContentHasher.toHex(ContentHasher.newDigest().digest(content)))) {
+            throw new IOException("Corrupted upload: " + name);
+        }
+        blobs.put(name, content);
+    }
+
+    @Override
+    public synchronized InputStream downloadBlob(String name, long offset) throws IOException {
+        byte[] blob = blobs.get(name);
+        if (blob == null) {
+            throw new FileNotFoundException(name);
+        }
+        return interruptible(new ByteArrayInputStream(blob, (int) offset, blob.length - (int) offset));
+    }
+
+    /**
+     * Wraps a blob stream so that it fails after the configured number of bytes.
+     */
+    private InputStream interruptible(InputStream inputStream) {
+        long limit = failTransfersAfter;
+        if (limit < 0) {
+            return inputStream;
+        }
+        return new FilterInputStream(inputStream) {
+            private long transferred;
+
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (transferred >= limit) {
+                    throw new IOException("Transfer interrupted");
+                }
+                int read = super.read(buffer, offset, (int) Math.min(length, limit - transferred));
+                if (read > 0) {
+                    transferred += read;
+                }
+                return read;
+            }
+        };
+    }
+
+    private static SyncChange copy(SyncChange change) {
+        SyncChange copy = new SyncChange();
+        copy.setUuid(change.getUuid());
+        copy.setRevision(change.getRevision());
+        copy.setDeleted(change.isDeleted());
+        copy.setUpdatedAt(change.getUpdatedAt());
+        copy.setTitle(change.getTitle());
+        copy.setContent(change.getContent());
+        copy.setDate(change.getDate());
+        copy.setImageNames(new ArrayList<>(change.getImageNames()));
+        return copy;
+    }
+}
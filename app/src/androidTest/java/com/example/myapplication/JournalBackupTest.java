@@ -0,0 +1,314 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Instrumented tests for the {@link JournalBackup} class.
+ * <br>
+ * A journal is backed up from one in-memory database and restored into another, checking that entries and
+ * images are restored, that an interrupted restore resumes without restoring entries twice, that entries already
+ * in the journal are not restored again, that a chain of incremental backups restores the latest version of
+ * the journal, that incremental backups only hold newly attached images, and that corrupted images are dropped.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JournalBackupTest {
+    // Number of entries in the backed up journal, more than a restore batch
+    private static final int ENTRY_COUNT = 450;
+
+    private AppDatabase sourceDatabase;
+    private AppDatabase targetDatabase;
+    private File sourceDir;
+    private File targetDir;
+    private File sourceStateDir;
+    private File targetStateDir;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        sourceDatabase = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        targetDatabase = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        sourceDir = new File(context.getCacheDir(), "backup_source");
+        targetDir = new File(context.getCacheDir(), "backup_target");
+        assertTrue(sourceDir.mkdirs() || sourceDir.isDirectory());
+        assertTrue(targetDir.mkdirs() || targetDir.isDirectory());
+        sourceStateDir = new File(context.getCacheDir(), "backup_source_state");
+        targetStateDir = new File(context.getCacheDir(), "backup_target_state");
+        assertTrue(sourceStateDir.mkdirs() || sourceStateDir.isDirectory());
+        assertTrue(targetStateDir.mkdirs() || targetStateDir.isDirectory());
+    }
+
+    @After
+    public void tearDown() {
+        sourceDatabase.close();
+        targetDatabase.close();
+        deleteDirectory(sourceDir);
+        deleteDirectory(targetDir);
+        deleteDirectory(sourceStateDir);
+        deleteDirectory(targetStateDir);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Creates a journal with an image shared by all entries and an image for every tenth entry.
+     */
+    private void createJournal() throws IOException {
+        File sharedImage = createImage("shared");
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            JournalEntryEntity entry = new JournalEntryEntity();
+            entry.setTitle("Entry " + i);
+            entry.setContent("Content of entry " + i);
+            entry.setDate(i);
+            List<String> imagePaths = new ArrayList<>();
+            imagePaths.add(sharedImage.getAbsolutePath());
+            if (i % 10 == 0) {
+                imagePaths.add(createImage("image " + i).getAbsolutePath());
+            }
+            entry.setImagePaths(imagePaths);
+            sourceDatabase.journalEntryDao().insertEntryWithImages(entry);
+        }
+    }
+
+    /**
+     * Creates a content-addressed image file with the given content.
+     */
+    private File createImage(String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String hash = ContentHasher.toHex(ContentHasher.newDigest().digest(bytes));
+        File imageFile = new File(sourceDir, ImageHandler.STORED_IMAGE_PREFIX + hash + ".jpg");
+        try (OutputStream outputStream = new FileOutputStream(imageFile)) {
+            outputStream.write(bytes);
+        }
+        return imageFile;
+    }
+
+    private JournalBackup sourceBackup() {
+        return new JournalBackup(sourceDatabase, sourceDatabase.journalEntryDao(), sourceDir, sourceStateDir);
+    }
+
+    private JournalBackup targetBackup() {
+        return new JournalBackup(targetDatabase, targetDatabase.journalEntryDao(), targetDir, targetStateDir);
+    }
+
+    private byte[] backup() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        sourceBackup().backup(archive, null);
+        return archive.toByteArray();
+    }
+
+    private byte[] backupIncremental() throws IOException {
+        ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        assertTrue(sourceBackup().backupIncremental(archive, null));
+        return archive.toByteArray();
+    }
+
+    @Test
+    public void testBackupAndRestore() throws IOException {
+        createJournal();
+        byte[] archive = backup();
+
+        List<Long> progress = new ArrayList<>();
+        targetBackup().restore(new ByteArrayInputStream(archive), (completed, total) -> progress.add(total - completed));
+
+        JournalEntryDao targetDao = targetDatabase.journalEntryDao();
+        assertEquals(ENTRY_COUNT, targetDao.countEntries());
+        assertEquals(sourceDatabase.journalEntryDao().countImages(), targetDao.countImages());
+        // Every restored image path points to a restored file
+        for (String imagePath : targetDao.getImagePathsPageAfter("", ENTRY_COUNT)) {
+            assertTrue(imagePath.startsWith(targetDir.getAbsolutePath()));
+            assertTrue(new File(imagePath).exists());
+        }
+        assertEquals(0L, (long) progress.get(progress.size() - 1));
+    }
+
+    @Test
+    public void testResumeInterruptedRestore() throws IOException {
+        createJournal();
+        byte[] archive = backup();
+
+        // Interrupt the restore once the first batches of entries are committed
+        JournalBackup restore = targetBackup();
+        long imageCount = sourceDatabase.journalEntryDao().countImagePaths();
+        try {
+            restore.restore(new ByteArrayInputStream(archive), (completed, total) -> {
+                if (completed > imageCount + 250) {
+                    throw new IllegalStateException("Interrupted");
+                }
+            });
+            fail("Restore should have been interrupted");
+        } catch (IllegalStateException e) {
+            assertTrue(targetDatabase.journalEntryDao().countEntries() < ENTRY_COUNT);
+        }
+
+        restore.restore(new ByteArrayInputStream(archive), null);
+        assertEquals(ENTRY_COUNT, targetDatabase.journalEntryDao().countEntries());
+        assertEquals(sourceDatabase.journalEntryDao().countImages(), targetDatabase.journalEntryDao().countImages());
+    }
+
+    @Test
+    public void testRestoreSkipsEntriesAlreadyInJournal() throws IOException {
+        createJournal();
+        JournalEntryDao sourceDao = sourceDatabase.journalEntryDao();
+        byte[] archive = backup();
+
+        // Entries keep their UUID when restored
+        targetBackup().restore(new ByteArrayInputStream(archive), null);
+        JournalEntryDao targetDao = targetDatabase.journalEntryDao();
+        List<JournalEntryEntity> sourceEntries = sourceDao.getChangedEntriesPage(-1, Integer.MAX_VALUE,
+                sourceDao.getLastChangeSeq(), 10);
+        List<String> uuids = new ArrayList<>();
+        for (JournalEntryEntity entry : sourceEntries) {
+            uuids.add(entry.getUuid());
+        }
+        assertEquals(uuids.size(), targetDao.getEntriesByUuid(uuids).size());
+
+        // Restoring the archive again, or into the journal it was made from, does not duplicate entries
+        targetBackup().restore(new ByteArrayInputStream(archive), null);
+        assertEquals(ENTRY_COUNT, targetDao.countEntries());
+        assertEquals(sourceDao.countImages(), targetDao.countImages());
+        sourceBackup().restore(new ByteArrayInputStream(archive), null);
+        assertEquals(ENTRY_COUNT, sourceDao.countEntries());
+    }
+
+    @Test
+    public void testRestoreIncrementalChain() throws IOException {
+        createJournal();
+        JournalEntryDao sourceDao = sourceDatabase.journalEntryDao();
+        byte[] full = backup();
+
+        // Update the first entry and delete the second one
+        List<JournalEntryEntity> entries = sourceDao.getChangedEntriesPage(-1, Integer.MAX_VALUE,
+                sourceDao.getLastChangeSeq(), 2);
+        JournalEntryEntity updated = entries.get(0);
+        updated.setContent("Updated content");
+        sourceDao.updateEntry(updated);
+        sourceDao.deleteEntry(entries.get(1));
+        byte[] firstChanges = backupIncremental();
+
+        // Add an entry with a new image
+        JournalEntryEntity added = new JournalEntryEntity();
+        added.setTitle("Added entry");
+        added.setContent("Added content");
+        added.setDate(ENTRY_COUNT);
+        added.setImagePaths(Collections.singletonList(createImage("added").getAbsolutePath()));
+        sourceDao.insertEntryWithImages(added);
+        byte[] secondChanges = backupIncremental();
+        assertTrue(secondChanges.length < full.length);
+
+        // The archives are given out of order
+        List<JournalBackup.ArchiveSource> archives = new ArrayList<>();
+        archives.add(() -> new ByteArrayInputStream(secondChanges));
+        archives.add(() -> new ByteArrayInputStream(full));
+        archives.add(() -> new ByteArrayInputStream(firstChanges));
+        targetBackup().restore(archives, null);
+
+        JournalEntryDao targetDao = targetDatabase.journalEntryDao();
+        assertEquals(ENTRY_COUNT, targetDao.countEntries());
+        assertEquals(sourceDao.countImages(), targetDao.countImages());
+        assertEquals(1, targetDao.countIdenticalEntries(updated.getDate(), updated.getTitle(), "Updated content"));
+        assertEquals(0, targetDao.countIdenticalEntries(entries.get(1).getDate(), entries.get(1).getTitle(),
+                entries.get(1).getContent()));
+        assertEquals(1, targetDao.countIdenticalEntries(ENTRY_COUNT, "Added entry", "Added content"));
+    }
+
+    @Test
+    public void testIncrementalBackupHoldsOnlyNewlyAttachedImages() throws IOException {
+        JournalEntryDao sourceDao = sourceDatabase.journalEntryDao();
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setTitle("Entry");
+        entry.setContent("Content");
+        List<String> imagePaths = new ArrayList<>();
+        imagePaths.add(createImage("first").getAbsolutePath());
+        entry.setImagePaths(imagePaths);
+        entry.setId((int) sourceDao.insertEntryWithImages(entry));
+
+        // Editing the title keeps the images of the entry out of the next backup
+        entry.setTitle("Edited entry");
+        sourceDao.updateEntryWithImages(entry);
+        long lastSeq = sourceDao.getLastChangeSeq();
+        assertEquals(0, sourceDao.countChangedImagePaths(lastSeq - 1, lastSeq));
+
+        // Only the image added to the entry is in the next backup
+        String addedImagePath = createImage("second").getAbsolutePath();
+        imagePaths.add(addedImagePath);
+        entry.setImagePaths(imagePaths);
+        sourceDao.updateEntryWithImages(entry);
+        lastSeq = sourceDao.getLastChangeSeq();
+        assertEquals(Collections.singletonList(addedImagePath),
+                sourceDao.getChangedImagePathsPage(lastSeq - 1, lastSeq, "", 10));
+    }
+
+    @Test
+    public void testDropCorruptedImage() throws IOException {
+        File validImage = createImage("valid");
+        File corruptedImage = createImage("corrupted");
+        try (OutputStream outputStream = new FileOutputStream(corruptedImage)) {
+            outputStream.write("changed".getBytes(StandardCharsets.UTF_8));
+        }
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setTitle("Entry");
+        entry.setContent("Content");
+        List<String> imagePaths = new ArrayList<>();
+        imagePaths.add(corruptedImage.getAbsolutePath());
+        imagePaths.add(validImage.getAbsolutePath());
+        entry.setImagePaths(imagePaths);
+        sourceDatabase.journalEntryDao().insertEntryWithImages(entry);
+
+        targetBackup().restore(new ByteArrayInputStream(backup()), null);
+
+        // The entry is restored without the image whose content does not match its name
+        JournalEntryDao targetDao = targetDatabase.journalEntryDao();
+        assertEquals(1, targetDao.countEntries());
+        List<String> restoredPaths = targetDao.getImagePathsPageAfter("", 10);
+        assertEquals(Collections.singletonList(new File(targetDir, validImage.getName()).getAbsolutePath()),
+                restoredPaths);
+        assertFalse(new File(targetDir, corruptedImage.getName()).exists());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectIncompleteChain() throws IOException {
+        createJournal();
+        backup();
+        JournalEntryEntity added = new JournalEntryEntity();
+        added.setTitle("Added entry");
+        added.setContent("Added content");
+        sourceDatabase.journalEntryDao().insertEntryWithImages(added);
+        byte[] changes = backupIncremental();
+
+        // An incremental backup cannot be restored without the full backup it follows
+        targetBackup().restore(Collections.singletonList(() -> new ByteArrayInputStream(changes)), null);
+    }
+}
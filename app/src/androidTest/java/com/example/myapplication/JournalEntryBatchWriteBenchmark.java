@@ -0,0 +1,104 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumented benchmark comparing inserting entries one transaction at a time with batched inserts.
+ * <br>
+ * The database is stored on disk, so that each transaction pays for its commit as it would in the app.
+ * The measured times are written to the log rather than compared, as they depend on the device and its load.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JournalEntryBatchWriteBenchmark {
+    // Number of entries inserted by each measurement
+    private static final int ENTRY_COUNT = 10_000;
+    private static final String DATABASE_NAME = "batch_write_benchmark";
+
+    private Context context;
+    private AppDatabase database;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE_NAME);
+        database = Room.databaseBuilder(context, AppDatabase.class, DATABASE_NAME).build();
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+        database.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * Creates entries with one image each.
+     */
+    private static List<JournalEntryEntity> createEntries() {
+        List<JournalEntryEntity> entries = new ArrayList<>(ENTRY_COUNT);
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            JournalEntryEntity entry = new JournalEntryEntity();
+            entry.setTitle("Entry " + i);
+            entry.setContent("Content of entry " + i);
+            entry.setDate(i);
+            List<String> imagePaths = new ArrayList<>();
+            imagePaths.add("/data/image_" + i + ".jpg");
+            entry.setImagePaths(imagePaths);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    @Test
+    public void insertSeparatelyAndInBatch() throws Exception {
+        JournalEntryDao journalEntryDao = database.journalEntryDao();
+
+        // Insert every entry in its own transaction, as the repository did before batching
+        long start = SystemClock.elapsedRealtime();
+        for (JournalEntryEntity entry : createEntries()) {
+            journalEntryDao.insertEntryWithImages(entry);
+        }
+        long separateTime = SystemClock.elapsedRealtime() - start;
+        assertEquals(ENTRY_COUNT, journalEntryDao.countImages());
+
+        // Insert the same number of entries through the batch writer
+        JournalEntryBatchWriter batchWriter = new JournalEntryBatchWriter(database, executor);
+        start = SystemClock.elapsedRealtime();
+        List<JournalEntryBatchWriter.Outcome> outcomes =
+                batchWriter.insertAll(createEntries()).get(5, TimeUnit.MINUTES);
+        long batchTime = SystemClock.elapsedRealtime() - start;
+
+        int insertedCount = 0;
+        for (JournalEntryBatchWriter.Outcome outcome : outcomes) {
+            if (outcome.getStatus() == JournalEntryBatchWriter.Status.INSERTED) {
+                insertedCount++;
+            }
+        }
+        assertEquals(ENTRY_COUNT, insertedCount);
+        assertEquals(2 * ENTRY_COUNT, journalEntryDao.countImages());
+
+        Log.i("JournalEntryBatchWrite", "Inserted " + ENTRY_COUNT + " entries separately in " + separateTime
+                + " ms and in a batch in " + batchTime + " ms");
+    }
+}
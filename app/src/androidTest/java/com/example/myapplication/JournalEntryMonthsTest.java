@@ -0,0 +1,86 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Calendar;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented tests for browsing the months containing journal entries.
+ * <br>
+ * Entries written to an in-memory database are grouped by month in the local time zone, checking that months
+ * are listed from newest to oldest with their entry counts, and that entries on the edges of a month are counted
+ * in that month.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JournalEntryMonthsTest {
+
+    private AppDatabase database;
+    private JournalEntryDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        dao = database.journalEntryDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    private void insertEntry(long date) {
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setTitle("Title");
+        entry.setContent("Content");
+        entry.setDate(date);
+        dao.insertEntryWithImages(entry);
+    }
+
+    private static long date(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar.getTimeInMillis();
+    }
+
+    private static void assertMonth(JournalEntryMonth month, int year, int monthOfYear, int entryCount) {
+        assertEquals(year, month.getYear());
+        assertEquals(monthOfYear, month.getMonth());
+        assertEquals(entryCount, month.getEntryCount());
+    }
+
+    @Test
+    public void testEntryMonths() {
+        // The first and last moments of March, and a day of January in two years
+        insertEntry(date(2024, Calendar.MARCH, 1));
+        insertEntry(date(2024, Calendar.APRIL, 1) - 1);
+        insertEntry(date(2024, Calendar.MARCH, 15));
+        insertEntry(date(2024, Calendar.JANUARY, 10));
+        insertEntry(date(2023, Calendar.JANUARY, 10));
+
+        List<JournalEntryMonth> months = dao.getEntryMonths();
+        assertEquals(3, months.size());
+        assertMonth(months.get(0), 2024, 3, 3);
+        assertMonth(months.get(1), 2024, 1, 1);
+        assertMonth(months.get(2), 2023, 1, 1);
+    }
+
+    @Test
+    public void testNoEntries() {
+        assertTrue(dao.getEntryMonths().isEmpty());
+    }
+}
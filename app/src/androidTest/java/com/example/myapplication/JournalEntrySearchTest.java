@@ -0,0 +1,141 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Instrumented tests for the ranking of full-text search matches in the database.
+ * <br>
+ * Entries written to an in-memory database are searched, checking that title hits rank above content hits,
+ * that hits of rare words rank above hits of common words, that the score read from the match info in SQL
+ * matches the match info decoded on the device, and that only the best matches are returned.
+ */
+@RunWith(AndroidJUnit4.class)
+public class JournalEntrySearchTest {
+
+    private AppDatabase database;
+    private JournalEntryDao dao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        database = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        dao = database.journalEntryDao();
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    private int insertEntry(String title, String content) {
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setTitle(title);
+        entry.setContent(content);
+        entry.setDate(System.currentTimeMillis());
+        return (int) dao.insertEntryWithImages(entry);
+    }
+
+    private List<Integer> search(String text, int limit) {
+        List<Integer> ids = new ArrayList<>();
+        for (JournalEntrySearchMatch match : dao.getBestSearchMatches(JournalEntryRepository.buildMatchQuery(text), limit)) {
+            ids.add(match.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testTitleHitsRankFirst() {
+        int contentHit = insertEntry("Monday", "We spent the afternoon at the beach");
+        int titleHit = insertEntry("Beach", "We spent the afternoon outside");
+        insertEntry("Tuesday", "Nothing to report");
+
+        List<Integer> ids = search("beach", 10);
+        assertEquals(2, ids.size());
+        assertEquals(titleHit, (int) ids.get(0));
+        assertEquals(contentHit, (int) ids.get(1));
+    }
+
+    @Test
+    public void testRareWordsRankFirst() {
+        int rareHit = insertEntry("Walk", "A walk by the lighthouse");
+        int commonHit = insertEntry("Walk", "A walk in the park");
+        for (int i = 0; i < 5; i++) {
+            insertEntry("Day " + i, "Another day in the park");
+        }
+
+        // The lighthouse is mentioned in a single entry, so its hit is worth more than a hit of the park
+        List<JournalEntrySearchMatch> matches = dao.getBestSearchMatches("\"lighthouse*\" OR \"park*\"", 10);
+        assertEquals(7, matches.size());
+        assertEquals(rareHit, matches.get(0).getId());
+        assertTrue(matches.get(0).getScore() > matches.get(1).getScore());
+
+        // Entries matching all words are found, whatever the order of the words
+        assertEquals(Collections.singletonList(commonHit), search("park walk", 10));
+    }
+
+    @Test
+    public void testScoreMatchesMatchInfo() {
+        insertEntry("Walk in the park", "A walk by the lighthouse, then back to the park");
+        insertEntry("Park", "Another day in the park");
+        insertEntry("Walk", "A walk to the beach");
+        String query = "\"walk*\" OR \"park*\" OR \"lighthouse*\"";
+
+        // Decode the match info in the byte order of the device, as documented for matchinfo
+        Map<Integer, Double> expectedScores = new HashMap<>();
+        try (Cursor cursor = database.query("SELECT rowid, matchinfo(journal_entries_fts, 'x') " +
+                "FROM journal_entries_fts WHERE journal_entries_fts MATCH ?", new Object[]{query})) {
+            while (cursor.moveToNext()) {
+                ByteBuffer matchInfo = ByteBuffer.wrap(cursor.getBlob(1)).order(ByteOrder.nativeOrder());
+                double score = 0;
+                for (int index = 0; index + 1 < matchInfo.capacity() / 4; index += 3) {
+                    double weight = JournalEntrySearchMatch.COLUMN_WEIGHTS[index / 3 % JournalEntrySearchMatch.COLUMN_WEIGHTS.length];
+                    score += weight * matchInfo.getInt(4 * index) / Math.max(matchInfo.getInt(4 * (index + 1)), 1);
+                }
+                expectedScores.put(cursor.getInt(0), score);
+            }
+        }
+
+        // The score computed in SQL from the hexadecimal match info is the same
+        List<JournalEntrySearchMatch> matches = dao.getBestSearchMatches(query, 10);
+        assertEquals(3, matches.size());
+        for (JournalEntrySearchMatch match : matches) {
+            assertTrue(match.getScore() > 0);
+            assertEquals(expectedScores.get(match.getId()), match.getScore(), 1e-9);
+        }
+    }
+
+    @Test
+    public void testBestMatchesAreLimited() {
+        for (int i = 0; i < 10; i++) {
+            insertEntry("Entry " + i, "Some text about the garden");
+        }
+        int best = insertEntry("Garden", "The garden in spring");
+
+        List<JournalEntrySearchMatch> matches = dao.getBestSearchMatches("\"garden*\"", 3);
+        assertEquals(3, matches.size());
+        assertEquals(best, matches.get(0).getId());
+        assertTrue(matches.get(0).getScore() >= matches.get(1).getScore());
+        assertTrue(matches.get(1).getScore() >= matches.get(2).getScore());
+    }
+}
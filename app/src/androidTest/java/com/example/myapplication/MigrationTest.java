@@ -0,0 +1,225 @@
+package com.example.myapplication;
+
+import android.database.Cursor;
+
+import androidx.room.testing.MigrationTestHelper;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Instrumented tests for the migrations of the {@link AppDatabase} schema.
+ * <br>
+ * Each migration is run on a database created from the exported schema of the previous version and
+ * validated against the exported schema of the next version, checking that the existing rows are kept.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MigrationTest {
+    // Name of the database migrated by the tests
+    private static final String TEST_DATABASE = "migration-test";
+
+    @Rule
+    public MigrationTestHelper helper = new MigrationTestHelper(InstrumentationRegistry.getInstrumentation(),
+            AppDatabase.class);
+
+    /**
+     * Counts the rows returned by a query.
+     */
+    private static int count(SupportSQLiteDatabase database, String query) {
+        try (Cursor cursor = database.query(query)) {
+            return cursor.getCount();
+        }
+    }
+
+    @Test
+    public void testMigrate3To4() throws IOException {
+        try (SupportSQLiteDatabase database = helper.createDatabase(TEST_DATABASE, 3)) {
+            database.execSQL("INSERT INTO journal_entries (id, title, content, date, imagePaths) " +
+                    "VALUES (1, 'Beach', 'A day at the sea', 1000, '[]')");
+        }
+
+        SupportSQLiteDatabase database = helper.runMigrationsAndValidate(TEST_DATABASE, 4, true,
+                AppDatabase.MIGRATION_3_4);
+
+        // Existing entries are indexed, and new entries are indexed by the triggers
+        assertEquals(1, count(database, "SELECT rowid FROM journal_entries_fts WHERE journal_entries_fts MATCH 'sea'"));
+        database.execSQL("INSERT INTO journal_entries (id, title, content, date, imagePaths) " +
+                "VALUES (2, 'Mountains', 'A walk by the sea', 2000, '[]')");
+        assertEquals(2, count(database, "SELECT rowid FROM journal_entries_fts WHERE journal_entries_fts MATCH 'sea'"));
+        assertEquals(1, count(database, "SELECT rowid FROM journal_entries_fts WHERE journal_entries_fts MATCH 'beach'"));
+    }
+
+    @Test
+    public void testMigrate4To5() throws IOException {
+        try (SupportSQLiteDatabase database = helper.createDatabase(TEST_DATABASE, 4)) {
+            database.execSQL("INSERT INTO journal_entries (id, title, content, date, imagePaths) " +
+                    "VALUES (1, 'First', 'Content', 1000, NULL)");
+            database.execSQL("INSERT INTO journal_entries (id, title, content, date, imagePaths) " +
+                    "VALUES (2, 'Second', 'Content', 2000, NULL)");
+        }
+
+        SupportSQLiteDatabase database = helper.runMigrationsAndValidate(TEST_DATABASE, 5, true,
+                AppDatabase.MIGRATION_4_5);
+
+        // Entries are kept and listed by date through the new index
+        try (Cursor cursor = database.query("SELECT id FROM journal_entries INDEXED BY index_journal_entries_date " +
+                "WHERE date >= 0 ORDER BY date DESC")) {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(2, cursor.getInt(0));
+        }
+    }
+
+    @Test
+    public void testMigrate5To6() throws IOException {
+        try (SupportSQLiteDatabase database = helper.createDatabase(TEST_DATABASE, 5)) {
+            String insert = "INSERT INTO journal_entries (id, title, content, date, imagePaths) VALUES (?, ?, 'Content', 1000, ?)";
+            database.execSQL(insert, new Object[]{1, "Two images", "[\"/files/image_1.jpg\",\"/files/image_2.jpg\"]"});
+            database.execSQL(insert, new Object[]{2, "Empty list", "[]"});
+            database.execSQL(insert, new Object[]{3, "JSON null", "null"});
+            database.execSQL(insert, new Object[]{4, "No list", null});
+            database.execSQL(insert, new Object[]{5, "Escaped path", "[\"/files/quote\\\"s.jpg\",null,\"/files/caf\\u00e9.jpg\"]"});
+            // A deleted entry whose ID must not be reused
+            database.execSQL(insert, new Object[]{6, "Deleted", "[\"/files/image_6.jpg\"]"});
+            database.execSQL("DELETE FROM journal_entries WHERE id = 6");
+        }
+
+        SupportSQLiteDatabase database = helper.runMigrationsAndValidate(TEST_DATABASE, 6, true,
+                AppDatabase.MIGRATION_5_6);
+
+        // Entries are kept, and their image paths are moved to the images table in order
+        assertEquals(5, count(database, "SELECT id FROM journal_entries"));
+        try (Cursor cursor = database.query("SELECT entryId, position, path FROM journal_images ORDER BY entryId, position")) {
+            assertEquals(4, cursor.getCount());
+            cursor.moveToNext();
+            assertImage(cursor, 1, 0, "/files/image_1.jpg");
+            cursor.moveToNext();
+            assertImage(cursor, 1, 1, "/files/image_2.jpg");
+            // Null paths are skipped without leaving a gap in the positions
+            cursor.moveToNext();
+            assertImage(cursor, 5, 0, "/files/quote\"s.jpg");
+            cursor.moveToNext();
+            assertImage(cursor, 5, 1, "/files/caf\u00e9.jpg");
+        }
+
+        // The search triggers and the ID sequence are kept on the new entries table
+        database.execSQL("INSERT INTO journal_entries (title, content, date) VALUES ('New', 'Searchable', 2000)");
+        try (Cursor cursor = database.query("SELECT rowid FROM journal_entries_fts WHERE journal_entries_fts MATCH 'searchable'")) {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(7, cursor.getInt(0));
+        }
+        // Deleting an entry deletes its images
+        database.execSQL("PRAGMA foreign_keys = ON");
+        database.execSQL("DELETE FROM journal_entries WHERE id = 1");
+        assertEquals(2, count(database, "SELECT id FROM journal_images"));
+    }
+
+    @Test
+    public void testMigrate6To7() throws IOException {
+        try (SupportSQLiteDatabase database = helper.createDatabase(TEST_DATABASE, 6)) {
+            database.execSQL("INSERT INTO journal_entries (id, title, content, date) " +
+                    "VALUES (1, 'First', 'Content', 1000)");
+        }
+
+        SupportSQLiteDatabase database = helper.runMigrationsAndValidate(TEST_DATABASE, 7, true,
+                AppDatabase.MIGRATION_6_7);
+
+        // Existing entries start at change sequence 0
+        try (Cursor cursor = database.query("SELECT updatedAt, changeSeq FROM journal_entries WHERE id = 1")) {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(0, cursor.getLong(0));
+            assertEquals(0, cursor.getLong(1));
+        }
+        // Deleted entries are recorded in the tombstones table
+        database.execSQL("INSERT INTO journal_tombstones (entryId, changeSeq, deletedAt) VALUES (1, 1, 2000)");
+        assertEquals(1, count(database, "SELECT entryId FROM journal_tombstones WHERE changeSeq > 0"));
+    }
+
+    @Test
+    public void testMigrate7To8() throws IOException {
+        try (SupportSQLiteDatabase database = helper.createDatabase(TEST_DATABASE, 7)) {
+            String insert = "INSERT INTO journal_entries (id, title, content, date) VALUES (?, ?, 'Content', 1000)";
+            database.execSQL(insert, new Object[]{1, "First"});
+            database.execSQL(insert, new Object[]{2, "Second"});
+            database.execSQL("INSERT INTO journal_tombstones (entryId, changeSeq, deletedAt) VALUES (3, 1, 2000)");
+        }
+
+        SupportSQLiteDatabase database = helper.runMigrationsAndValidate(TEST_DATABASE, 8, true,
+                AppDatabase.MIGRATION_7_8);
+
+        // Each existing entry gets its own canonical version 4 UUID, and earlier tombstones keep an empty one
+        assertEquals(2, count(database, "SELECT DISTINCT uuid FROM journal_entries " +
+                "WHERE uuid GLOB '????????-????-4???-[89ab]???-????????????' AND uuid = lower(uuid)"));
+        try (Cursor cursor = database.query("SELECT uuid FROM journal_entries")) {
+            while (cursor.moveToNext()) {
+                String uuid = cursor.getString(0);
+                assertEquals(uuid, UUID.fromString(uuid).toString());
+            }
+        }
+        assertEquals(1, count(database, "SELECT entryId FROM journal_tombstones WHERE uuid = ''"));
+        // The sync state table is created empty
+        database.execSQL("INSERT INTO journal_sync_state (uuid, revision, syncedSeq) VALUES ('uuid', 1, 0)");
+        assertEquals(1, count(database, "SELECT uuid FROM journal_sync_state"));
+    }
+
+    @Test
+    public void testMigrate8To9() throws IOException {
+        try (SupportSQLiteDatabase database = helper.createDatabase(TEST_DATABASE, 8)) {
+            database.execSQL("INSERT INTO journal_entries (id, title, content, date, uuid) " +
+                    "VALUES (1, 'Beach', 'A day at the sea', 1000, 'uuid')");
+        }
+
+        SupportSQLiteDatabase database = helper.runMigrationsAndValidate(TEST_DATABASE, 9, true,
+                AppDatabase.MIGRATION_8_9);
+
+        // Existing entries are stored in plain text and still indexed
+        assertEquals(1, count(database, "SELECT id FROM journal_entries " +
+                "WHERE compressedContent IS NULL AND searchTerms IS NULL"));
+        assertEquals(1, count(database, "SELECT rowid FROM journal_entries_fts WHERE journal_entries_fts MATCH 'sea'"));
+        // The search terms of new entries are indexed by the triggers
+        database.execSQL("INSERT INTO journal_entries (id, title, content, date, uuid, searchTerms) " +
+                "VALUES (2, 'Mountains', 'A walk', 2000, 'uuid2', 'lighthouse')");
+        assertEquals(1, count(database, "SELECT rowid FROM journal_entries_fts WHERE journal_entries_fts MATCH 'lighthouse'"));
+        database.execSQL("UPDATE journal_entries SET searchTerms = NULL WHERE id = 2");
+        assertEquals(0, count(database, "SELECT rowid FROM journal_entries_fts WHERE journal_entries_fts MATCH 'lighthouse'"));
+    }
+
+    @Test
+    public void testMigrate9To10() throws IOException {
+        try (SupportSQLiteDatabase database = helper.createDatabase(TEST_DATABASE, 9)) {
+            database.execSQL("INSERT INTO journal_entries (id, title, content, date, uuid, changeSeq) " +
+                    "VALUES (1, 'Beach', 'A day at the sea', 1000, 'uuid1', 3)");
+            database.execSQL("INSERT INTO journal_entries (id, title, content, date, uuid, changeSeq) " +
+                    "VALUES (2, 'Mountains', 'A walk', 2000, 'uuid2', 0)");
+            database.execSQL("INSERT INTO journal_images (entryId, position, path) VALUES (1, 0, '/a.jpg')");
+            database.execSQL("INSERT INTO journal_images (entryId, position, path) VALUES (2, 0, '/b.jpg')");
+        }
+
+        SupportSQLiteDatabase database = helper.runMigrationsAndValidate(TEST_DATABASE, 10, true,
+                AppDatabase.MIGRATION_9_10);
+
+        // Existing images take the change sequence of their entry
+        assertEquals(1, count(database, "SELECT id FROM journal_images WHERE path = '/a.jpg' AND changeSeq = 3"));
+        assertEquals(1, count(database, "SELECT id FROM journal_images WHERE path = '/b.jpg' AND changeSeq = 0"));
+    }
+
+    /**
+     * Checks the image row at the cursor position.
+     */
+    private static void assertImage(Cursor cursor, int entryId, int position, String path) {
+        assertEquals(entryId, cursor.getInt(0));
+        assertEquals(position, cursor.getInt(1));
+        assertEquals(path, cursor.getString(2));
+    }
+}
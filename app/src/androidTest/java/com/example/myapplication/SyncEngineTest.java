@@ -0,0 +1,275 @@
+package com.example.myapplication;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Instrumented tests for the {@link SyncEngine} class.
+ * <br>
+ * Two devices with in-memory databases sync through an {@link InMemorySyncTransport}, checking that entries,
+ * images and deletions reach the other device, that later syncs only transfer what changed, that images removed
+ * by remote changes are released, that conflicting changes keep the last write, that an interrupted image
+ * download resumes, and that a corrupted image is skipped.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SyncEngineTest {
+    // Number of entries on the first device, more than a push batch
+    private static final int ENTRY_COUNT = 150;
+
+    private final InMemorySyncTransport transport = new InMemorySyncTransport();
+    private AppDatabase firstDatabase;
+    private AppDatabase secondDatabase;
+    private File firstDir;
+    private File secondDir;
+    private SyncEngine firstEngine;
+    private SyncEngine secondEngine;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        firstDatabase = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        secondDatabase = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        firstDir = new File(context.getCacheDir(), "sync_first");
+        secondDir = new File(context.getCacheDir(), "sync_second");
+        assertTrue(firstDir.mkdirs() || firstDir.isDirectory());
+        assertTrue(secondDir.mkdirs() || secondDir.isDirectory());
+        // Images and the sync state of each device share its directory
+        firstEngine = new SyncEngine(firstDatabase, firstDatabase.journalEntryDao(), firstDir, firstDir);
+        secondEngine = new SyncEngine(secondDatabase, secondDatabase.journalEntryDao(), secondDir, secondDir);
+    }
+
+    @After
+    public void tearDown() {
+        firstDatabase.close();
+        secondDatabase.close();
+        deleteDirectory(firstDir);
+        deleteDirectory(secondDir);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Creates a content-addressed image file with the given content.
+     */
+    private static File createImage(File directory, byte[] content) throws IOException {
+        String hash = ContentHasher.toHex(ContentHasher.newDigest().digest(content));
+        File imageFile = new File(directory, ImageHandler.STORED_IMAGE_PREFIX + hash + ".jpg");
+        try (OutputStream outputStream = new FileOutputStream(imageFile)) {
+            outputStream.write(content);
+        }
+        return imageFile;
+    }
+
+    private static JournalEntryEntity insertEntry(AppDatabase database, String title, List<String> imagePaths) {
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setTitle(title);
+        entry.setContent("Content of " + title);
+        entry.setDate(System.currentTimeMillis());
+        entry.setImagePaths(imagePaths);
+        database.journalEntryDao().insertEntryWithImages(entry);
+        return entry;
+    }
+
+    /**
+     * Gets all entries of a database with their image paths.
+     */
+    private static List<JournalEntryEntity> getEntries(AppDatabase database) {
+        JournalEntryDao dao = database.journalEntryDao();
+        List<JournalEntryEntity> entries = dao.getChangedEntriesPage(-1, Integer.MAX_VALUE, Long.MAX_VALUE,
+                Integer.MAX_VALUE);
+        for (JournalEntryEntity entry : entries) {
+            entry.setImagePaths(dao.getImagePathsForEntry(entry.getId()));
+        }
+        return entries;
+    }
+
+    private static JournalEntryEntity findEntry(AppDatabase database, String uuid) {
+        for (JournalEntryEntity entry : getEntries(database)) {
+            if (entry.getUuid().equals(uuid)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testSyncChangesBetweenDevices() throws IOException {
+        File sharedImage = createImage(firstDir, "shared".getBytes());
+        for (int i = 0; i < ENTRY_COUNT; i++) {
+            List<String> imagePaths = new ArrayList<>();
+            imagePaths.add(sharedImage.getAbsolutePath());
+            if (i % 10 == 0) {
+                imagePaths.add(createImage(firstDir, ("image " + i).getBytes()).getAbsolutePath());
+            }
+            insertEntry(firstDatabase, "Entry " + i, imagePaths);
+        }
+        SyncEngine.Result firstPush = firstEngine.sync(transport);
+        assertEquals(ENTRY_COUNT, firstPush.getPushedCount());
+        assertTrue(transport.hasBlob(sharedImage.getName()));
+
+        SyncEngine.Result firstPull = secondEngine.sync(transport);
+        assertEquals(ENTRY_COUNT, firstPull.getPulledCount());
+        assertEquals(0, firstPull.getPushedCount());
+        assertEquals(ENTRY_COUNT, secondDatabase.journalEntryDao().countEntries());
+        assertEquals(firstDatabase.journalEntryDao().countImages(), secondDatabase.journalEntryDao().countImages());
+        for (JournalEntryEntity entry : getEntries(secondDatabase)) {
+            for (String imagePath : entry.getImagePaths()) {
+                assertTrue(imagePath.startsWith(secondDir.getAbsolutePath()));
+                assertTrue(new File(imagePath).exists());
+            }
+        }
+
+        // Update one entry, only that entry is transferred
+        JournalEntryEntity updated = getEntries(firstDatabase).get(0);
+        updated.setContent("Updated content");
+        firstDatabase.journalEntryDao().updateEntryWithImages(updated);
+        SyncEngine.Result updatePush = firstEngine.sync(transport);
+        assertEquals(1, updatePush.getPushedCount());
+        assertTrue(updatePush.getBytesSent() * 10 < firstPush.getBytesSent());
+        SyncEngine.Result updatePull = secondEngine.sync(transport);
+        assertEquals(1, updatePull.getPulledCount());
+        assertTrue(updatePull.getBytesReceived() * 10 < firstPull.getBytesReceived());
+        assertEquals("Updated content", findEntry(secondDatabase, updated.getUuid()).getContent());
+
+        // Delete an entry on the second device
+        secondDatabase.journalEntryDao().deleteEntry(findEntry(secondDatabase, updated.getUuid()));
+        assertEquals(1, secondEngine.sync(transport).getPushedCount());
+        assertEquals(1, firstEngine.sync(transport).getPulledCount());
+        assertEquals(ENTRY_COUNT - 1, firstDatabase.journalEntryDao().countEntries());
+
+        // Nothing changed, so nothing is applied
+        SyncEngine.Result idle = firstEngine.sync(transport);
+        assertEquals(0, idle.getPulledCount());
+        assertEquals(0, idle.getPushedCount());
+    }
+
+    @Test
+    public void testReleaseImagesRemovedByRemoteChanges() throws IOException {
+        File sharedImage = createImage(firstDir, "shared".getBytes());
+        File updatedImage = createImage(firstDir, "updated".getBytes());
+        File deletedImage = createImage(firstDir, "deleted".getBytes());
+        JournalEntryEntity updated = insertEntry(firstDatabase, "Updated",
+                Arrays.asList(sharedImage.getAbsolutePath(), updatedImage.getAbsolutePath()));
+        JournalEntryEntity deleted = insertEntry(firstDatabase, "Deleted",
+                Arrays.asList(sharedImage.getAbsolutePath(), deletedImage.getAbsolutePath()));
+        firstEngine.sync(transport);
+        secondEngine.sync(transport);
+        assertTrue(new File(secondDir, updatedImage.getName()).exists());
+        assertTrue(new File(secondDir, deletedImage.getName()).exists());
+        // Images are only released once they have not been stored for the grace period
+        long storedTime = System.currentTimeMillis() - ImageHandler.RELEASE_GRACE_PERIOD_MS - 1000;
+        for (File image : new File[] {sharedImage, updatedImage, deletedImage}) {
+            assertTrue(new File(secondDir, image.getName()).setLastModified(storedTime));
+        }
+
+        // Remove an image from one entry and delete the other entry on the first device
+        updated = findEntry(firstDatabase, updated.getUuid());
+        updated.setImagePaths(Collections.singletonList(sharedImage.getAbsolutePath()));
+        firstDatabase.journalEntryDao().updateEntryWithImages(updated);
+        firstDatabase.journalEntryDao().deleteEntry(findEntry(firstDatabase, deleted.getUuid()));
+        firstEngine.sync(transport);
+        assertEquals(2, secondEngine.sync(transport).getPulledCount());
+
+        // The images no longer referenced on the second device are deleted, the shared image is kept
+        assertFalse(new File(secondDir, updatedImage.getName()).exists());
+        assertFalse(new File(secondDir, deletedImage.getName()).exists());
+        assertTrue(new File(secondDir, sharedImage.getName()).exists());
+    }
+
+    @Test
+    public void testResolveConflictByLastWrite() throws Exception {
+        JournalEntryEntity entry = insertEntry(firstDatabase, "Shared entry", Collections.emptyList());
+        firstEngine.sync(transport);
+        secondEngine.sync(transport);
+
+        // Both devices update the entry, the second device writes last
+        JournalEntryEntity first = findEntry(firstDatabase, entry.getUuid());
+        first.setContent("First device");
+        firstDatabase.journalEntryDao().updateEntryWithImages(first);
+        Thread.sleep(5);
+        JournalEntryEntity second = findEntry(secondDatabase, entry.getUuid());
+        second.setContent("Second device");
+        secondDatabase.journalEntryDao().updateEntryWithImages(second);
+
+        firstEngine.sync(transport);
+        SyncEngine.Result conflict = secondEngine.sync(transport);
+        assertEquals(1, conflict.getConflictCount());
+        assertEquals(1, conflict.getPushedCount());
+        firstEngine.sync(transport);
+
+        assertEquals("Second device", findEntry(firstDatabase, entry.getUuid()).getContent());
+        assertEquals("Second device", findEntry(secondDatabase, entry.getUuid()).getContent());
+    }
+
+    @Test
+    public void testResumeInterruptedDownload() throws IOException {
+        byte[] content = new byte[300 * 1024];
+        new Random(1).nextBytes(content);
+        File image = createImage(firstDir, content);
+        insertEntry(firstDatabase, "Entry with image", Collections.singletonList(image.getAbsolutePath()));
+        firstEngine.sync(transport);
+
+        transport.failTransfersAfter(100 * 1024);
+        try {
+            secondEngine.sync(transport);
+            fail("Sync should have been interrupted");
+        } catch (IOException e) {
+            assertEquals(0, secondDatabase.journalEntryDao().countEntries());
+        }
+
+        transport.failTransfersAfter(-1);
+        SyncEngine.Result resumed = secondEngine.sync(transport);
+        assertEquals(1, resumed.getPulledCount());
+        // Only the rest of the image is downloaded again
+        assertTrue(resumed.getBytesReceived() < content.length);
+        assertEquals(image.length(), new File(secondDir, image.getName()).length());
+    }
+
+    @Test
+    public void testSkipCorruptedImage() throws IOException {
+        File image = createImage(firstDir, "Corrupted image".getBytes(StandardCharsets.UTF_8));
+        JournalEntryEntity entry = insertEntry(firstDatabase, "Entry with image",
+                Collections.singletonList(image.getAbsolutePath()));
+        firstEngine.sync(transport);
+        transport.corruptBlob(image.getName());
+
+        SyncEngine.Result result = secondEngine.sync(transport);
+        assertEquals(1, result.getPulledCount());
+        // The entry is synced without the image, and no partial download is left behind
+        assertTrue(findEntry(secondDatabase, entry.getUuid()).getImagePaths().isEmpty());
+        assertFalse(new File(secondDir, image.getName()).exists());
+        assertFalse(new File(secondDir, image.getName() + ".partial").exists());
+    }
+}
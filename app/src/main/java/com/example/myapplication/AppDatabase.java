@@ -1,6 +1,7 @@
 package com.example.myapplication;
 
 import android.content.Context;
+import android.database.Cursor;
 
 import androidx.room.Database;
 import androidx.room.Room;
@@ -8,6 +9,9 @@ import androidx.room.RoomDatabase;
 import androidx.room.TypeConverters;
 import androidx.room.migration.Migration;
 import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import java.util.List;
 
 /**
  * Database class for the journal app.
@@ -15,13 +19,18 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
  * This class initializes a single database instance to be used and synchronized throughout the application life cycle.
  * It is implemented as a singleton to ensure that only one instance of the database exists at any given time.
  *
- * @version 3
+ * @version 10
  */
-@Database(entities = {JournalEntryEntity.class}, version = 3)
+@Database(entities = {JournalEntryEntity.class, JournalEntryFts.class, JournalImageEntity.class,
+        JournalTombstoneEntity.class, JournalSyncStateEntity.class}, version = 10)
 @TypeConverters(StringListConverter.class)
 public abstract class AppDatabase extends RoomDatabase {
+    // Number of entries whose image paths are converted per batch when migrating to version 6
+    private static final int IMAGE_MIGRATION_BATCH_SIZE = 500;
     // Define singleton database instance
     private static volatile AppDatabase INSTANCE;
+    // Whether long content is compressed when written, see ContentCompression
+    private volatile boolean contentCompressionEnabled;
 
     // Abstract method to access the JournalEntryDao
     public abstract JournalEntryDao journalEntryDao();
@@ -36,16 +45,38 @@ public abstract class AppDatabase extends RoomDatabase {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
                 if (INSTANCE == null) {
-                    INSTANCE = Room.databaseBuilder(context.getApplicationContext(),
+                    AppDatabase database = Room.databaseBuilder(context.getApplicationContext(),
                                     AppDatabase.class, "journal_database")
-                            .addMigrations(MIGRATION_2_3)
+                            .addMigrations(MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7,
+                                    MIGRATION_7_8, MIGRATION_8_9, MIGRATION_9_10)
                             .build();
+                    // Apply the storage mode of entry content before the instance is shared
+                    database.setContentCompressionEnabled(ContentCompactor.isCompressionEnabled(context));
+                    INSTANCE = database;
                 }
             }
         }
         return INSTANCE;
     }
 
+    /**
+     * Returns whether long content is compressed when entries are written to this database.
+     * <br>
+     * Writers pass it to the write methods of {@link JournalEntryDao}.
+     */
+    public boolean isContentCompressionEnabled() {
+        return contentCompressionEnabled;
+    }
+
+    /**
+     * Enables or disables the compression of long content in the following writes to this database.
+     *
+     * @param enabled Whether to compress long content.
+     */
+    public void setContentCompressionEnabled(boolean enabled) {
+        contentCompressionEnabled = enabled;
+    }
+
     // Migration object to handle the schema change from version 2 to 3
     static final Migration MIGRATION_2_3 = new Migration(2, 3) {
         @Override
@@ -54,5 +85,203 @@ public abstract class AppDatabase extends RoomDatabase {
             database.execSQL("ALTER TABLE journal_entries RENAME COLUMN imageUris to imagePaths");
         }
     };
-}
 
+    // Migration object to handle the schema change from version 3 to 4
+    static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Create the full-text search table over the titles and content of the entries
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `journal_entries_fts` " +
+                    "USING FTS4(`title` TEXT, `content` TEXT, content=`journal_entries`)");
+            // Create the triggers keeping the search index in sync with the entries table
+            createFtsSyncTriggers(database, "title", "content");
+            // Index all existing entries
+            database.execSQL("INSERT INTO `journal_entries_fts`(`journal_entries_fts`) VALUES('rebuild')");
+        }
+    };
+
+    // Migration object to handle the schema change from version 4 to 5
+    static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Index entry dates for ordered listing and date range lookups
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_entries_date` ON `journal_entries` (`date`)");
+        }
+    };
+
+    // Migration object to handle the schema change from version 5 to 6
+    static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Keep the old entries table aside while the new one without the imagePaths column is created
+            database.execSQL("ALTER TABLE `journal_entries` RENAME TO `journal_entries_legacy`");
+            database.execSQL("CREATE TABLE IF NOT EXISTS `journal_entries` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`title` TEXT, `content` TEXT, `date` INTEGER NOT NULL)");
+            database.execSQL("INSERT INTO `journal_entries` (`id`, `title`, `content`, `date`) " +
+                    "SELECT `id`, `title`, `content`, `date` FROM `journal_entries_legacy`");
+            // Preserve the ID sequence, so that IDs of deleted entries are not reused
+            database.execSQL("UPDATE sqlite_sequence SET seq = (SELECT seq FROM sqlite_sequence " +
+                    "WHERE name = 'journal_entries_legacy') WHERE name = 'journal_entries'");
+
+            // Create the images table
+            database.execSQL("CREATE TABLE IF NOT EXISTS `journal_images` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, " +
+                    "`entryId` INTEGER NOT NULL, `position` INTEGER NOT NULL, `path` TEXT NOT NULL, " +
+                    "FOREIGN KEY(`entryId`) REFERENCES `journal_entries`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_images_entryId_position` " +
+                    "ON `journal_images` (`entryId`, `position`)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_images_path` ON `journal_images` (`path`)");
+
+            // Move the image paths stored as JSON into the images table
+            migrateImagePaths(database);
+
+            // Dropping the old table also drops its index and search triggers, which are recreated on the new table
+            database.execSQL("DROP TABLE `journal_entries_legacy`");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_entries_date` ON `journal_entries` (`date`)");
+            createFtsSyncTriggers(database, "title", "content");
+        }
+    };
+
+    // Migration object to handle the schema change from version 6 to 7
+    static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Track the time and change sequence of entry writes, existing entries start at sequence 0
+            database.execSQL("ALTER TABLE `journal_entries` ADD COLUMN `updatedAt` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("ALTER TABLE `journal_entries` ADD COLUMN `changeSeq` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_entries_changeSeq` " +
+                    "ON `journal_entries` (`changeSeq`)");
+
+            // Create the tombstones table recording deleted entries
+            database.execSQL("CREATE TABLE IF NOT EXISTS `journal_tombstones` (`entryId` INTEGER NOT NULL, " +
+                    "`changeSeq` INTEGER NOT NULL, `deletedAt` INTEGER NOT NULL, PRIMARY KEY(`entryId`))");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_tombstones_changeSeq` " +
+                    "ON `journal_tombstones` (`changeSeq`)");
+        }
+    };
+
+    // Migration object to handle the schema change from version 7 to 8
+    static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Give every existing entry a random UUID identifying it across devices, in the same canonical
+            // version 4 form as UUID.randomUUID(), with the version nibble set to 4 and the variant nibble to 8-b
+            database.execSQL("ALTER TABLE `journal_entries` ADD COLUMN `uuid` TEXT NOT NULL DEFAULT ''");
+            database.execSQL("UPDATE `journal_entries` SET `uuid` = lower(hex(randomblob(4))) || '-' || " +
+                    "lower(hex(randomblob(2))) || '-4' || substr(lower(hex(randomblob(2))), 2) || '-' || " +
+                    "substr('89ab', 1 + (random() & 3), 1) || substr(lower(hex(randomblob(2))), 2) || '-' || " +
+                    "lower(hex(randomblob(6)))");
+            database.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_journal_entries_uuid` " +
+                    "ON `journal_entries` (`uuid`)");
+
+            // Earlier tombstones keep an empty UUID, their entries were never synced
+            database.execSQL("ALTER TABLE `journal_tombstones` ADD COLUMN `uuid` TEXT NOT NULL DEFAULT ''");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_tombstones_uuid` " +
+                    "ON `journal_tombstones` (`uuid`)");
+
+            // Create the table recording the synced version of each entry
+            database.execSQL("CREATE TABLE IF NOT EXISTS `journal_sync_state` (`uuid` TEXT NOT NULL, " +
+                    "`revision` INTEGER NOT NULL, `syncedSeq` INTEGER NOT NULL, PRIMARY KEY(`uuid`))");
+        }
+    };
+
+    // Migration object to handle the schema change from version 8 to 9
+    static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Existing content stays in plain text, long content is compressed by the content compactor
+            database.execSQL("ALTER TABLE `journal_entries` ADD COLUMN `compressedContent` BLOB");
+            database.execSQL("ALTER TABLE `journal_entries` ADD COLUMN `searchTerms` TEXT");
+
+            // Recreate the search index with the search terms of compressed content
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_journal_entries_fts_BEFORE_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_journal_entries_fts_BEFORE_DELETE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_journal_entries_fts_AFTER_UPDATE");
+            database.execSQL("DROP TRIGGER IF EXISTS room_fts_content_sync_journal_entries_fts_AFTER_INSERT");
+            database.execSQL("DROP TABLE IF EXISTS `journal_entries_fts`");
+            database.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `journal_entries_fts` " +
+                    "USING FTS4(`title` TEXT, `content` TEXT, `searchTerms` TEXT, content=`journal_entries`)");
+            createFtsSyncTriggers(database, "title", "content", "searchTerms");
+            database.execSQL("INSERT INTO `journal_entries_fts`(`journal_entries_fts`) VALUES('rebuild')");
+        }
+    };
+
+    // Migration object to handle the schema change from version 9 to 10
+    static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            // Record the write that attached each image, taking the last write of the entry for existing images
+            database.execSQL("ALTER TABLE `journal_images` ADD COLUMN `changeSeq` INTEGER NOT NULL DEFAULT 0");
+            database.execSQL("UPDATE `journal_images` SET `changeSeq` = IFNULL(" +
+                    "(SELECT `changeSeq` FROM `journal_entries` WHERE `id` = `journal_images`.`entryId`), 0)");
+            database.execSQL("CREATE INDEX IF NOT EXISTS `index_journal_images_changeSeq` " +
+                    "ON `journal_images` (`changeSeq`)");
+        }
+    };
+
+    /**
+     * Converts the JSON image paths of the old entries table into rows of the images table.
+     * <br>
+     * Entries are read in batches ordered by ID, so that only one batch of rows is held in memory at a time.
+     *
+     * @param database The database being migrated.
+     */
+    private static void migrateImagePaths(SupportSQLiteDatabase database) {
+        SupportSQLiteStatement insertImage = database.compileStatement(
+                "INSERT INTO `journal_images` (`entryId`, `position`, `path`) VALUES (?, ?, ?)");
+        long lastId = -1;
+        boolean batchFull = true;
+        while (batchFull) {
+            try (Cursor cursor = database.query("SELECT `id`, `imagePaths` FROM `journal_entries_legacy` " +
+                    "WHERE `id` > ? AND `imagePaths` IS NOT NULL ORDER BY `id` LIMIT " + IMAGE_MIGRATION_BATCH_SIZE,
+                    new Object[]{lastId})) {
+                batchFull = cursor.getCount() == IMAGE_MIGRATION_BATCH_SIZE;
+                while (cursor.moveToNext()) {
+                    lastId = cursor.getLong(0);
+                    List<String> imagePaths = StringListConverter.toStringList(cursor.getString(1));
+                    if (imagePaths == null) {
+                        continue;
+                    }
+                    int position = 0;
+                    for (String imagePath : imagePaths) {
+                        if (imagePath == null) {
+                            continue;
+                        }
+                        insertImage.bindLong(1, lastId);
+                        insertImage.bindLong(2, position++);
+                        insertImage.bindString(3, imagePath);
+                        insertImage.executeInsert();
+                        insertImage.clearBindings();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates the triggers that keep the full-text search index in sync with the journal entries table.
+     * <br>
+     * The triggers match the ones Room creates for the {@link JournalEntryFts} entity.
+     *
+     * @param database The database to create the triggers in.
+     * @param columns The indexed columns of the entries table, in the order of the search index.
+     */
+    static void createFtsSyncTriggers(SupportSQLiteDatabase database, String... columns) {
+        StringBuilder names = new StringBuilder("`docid`");
+        StringBuilder values = new StringBuilder("NEW.`rowid`");
+        for (String column : columns) {
+            names.append(", `").append(column).append('`');
+            values.append(", NEW.`").append(column).append('`');
+        }
+        String insert = "BEGIN INSERT INTO `journal_entries_fts`(" + names + ") VALUES (" + values + "); END";
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_journal_entries_fts_BEFORE_UPDATE " +
+                "BEFORE UPDATE ON `journal_entries` BEGIN DELETE FROM `journal_entries_fts` " +
+                "WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_journal_entries_fts_BEFORE_DELETE " +
+                "BEFORE DELETE ON `journal_entries` BEGIN DELETE FROM `journal_entries_fts` " +
+                "WHERE `docid`=OLD.`rowid`; END");
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_journal_entries_fts_AFTER_UPDATE " +
+                "AFTER UPDATE ON `journal_entries` " + insert);
+        database.execSQL("CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_journal_entries_fts_AFTER_INSERT " +
+                "AFTER INSERT ON `journal_entries` " + insert);
+    }
+}
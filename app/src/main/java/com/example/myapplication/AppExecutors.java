@@ -0,0 +1,274 @@
+package com.example.myapplication;
+
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The AppExecutors class provides the thread pools shared by the whole application.
+ * <br>
+ * Work is split by the resource it uses: database operations run on a single thread, so that writes are
+ * applied in the order they are submitted, file operations run on a small pool bounding concurrent disk access,
+ * and image decoding runs on a pool sized to the number of processors.
+ * <br>
+ * Queued tasks run in order of priority, so work the user is waiting for runs ahead of background maintenance,
+ * and in submission order within a priority. Each pool records its queue depth and task latencies.
+ * */
+public final class AppExecutors {
+    // Number of threads performing file operations, bounded to limit concurrent reads from content providers
+    private static final int DISK_THREAD_COUNT =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    // Number of threads decoding images, leaving a processor for the main thread
+    private static final int CPU_THREAD_COUNT =
+            Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    // Define singleton executors instance
+    private static volatile AppExecutors INSTANCE;
+
+    private final TaskPool database;
+    private final TaskPool disk;
+    private final TaskPool cpu;
+    // Timer delaying tasks before they are submitted to a pool
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * The priorities of tasks, from highest to lowest.
+     */
+    public enum Priority {
+        // Work whose result the user is waiting for
+        USER_VISIBLE,
+        // Work started by the app that the user does not wait for
+        DEFAULT,
+        // Maintenance that can wait for all other work
+        BACKGROUND
+    }
+
+    /**
+     * Gets the singleton executors instance.
+     *
+     * @return The singleton AppExecutors instance.
+     */
+    public static AppExecutors getInstance() {
+        if (INSTANCE == null) {
+            synchronized (AppExecutors.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new AppExecutors();
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private AppExecutors() {
+        database = new TaskPool("database", 1, threadFactory("database", Process.THREAD_PRIORITY_BACKGROUND));
+        disk = new TaskPool("disk", DISK_THREAD_COUNT, threadFactory("disk", Process.THREAD_PRIORITY_BACKGROUND));
+        cpu = new TaskPool("cpu", CPU_THREAD_COUNT, threadFactory("cpu",
+                Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_MORE_FAVORABLE));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a factory of threads running with the given Linux thread priority.
+     *
+     * @param name The name of the threads, followed by their number.
+     * @param threadPriority The Linux thread priority of the threads.
+     * @return The thread factory.
+     */
+    private static ThreadFactory threadFactory(String name, int threadPriority) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return runnable -> new Thread(() -> {
+            Process.setThreadPriority(threadPriority);
+            runnable.run();
+        }, name + "-" + threadNumber.incrementAndGet());
+    }
+
+    /** Returns the pool running database operations, one at a time in order of submission. */
+    public TaskPool database() {
+        return database;
+    }
+
+    /** Returns the pool running file operations. */
+    public TaskPool disk() {
+        return disk;
+    }
+
+    /** Returns the pool running CPU-bound work such as image decoding. */
+    public TaskPool cpu() {
+        return cpu;
+    }
+
+    /**
+     * Runs a task on an executor after a delay.
+     *
+     * @param executor The executor to run the task on.
+     * @param task The task to run.
+     * @param delayMs The delay in milliseconds.
+     */
+    public void schedule(Executor executor, Runnable task, long delayMs) {
+        scheduler.schedule(() -> executor.execute(task), delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * A pool of threads running tasks in order of priority.
+     * <br>
+     * Tasks executed through the pool itself have the {@link Priority#USER_VISIBLE} priority.
+     */
+    public static final class TaskPool implements Executor {
+        private final String name;
+        private final PriorityBlockingQueue<Runnable> queue = new PriorityBlockingQueue<>();
+        private final ThreadPoolExecutor executor;
+        // Sequence number of the next task, keeping tasks of the same priority in submission order
+        private final AtomicLong sequence = new AtomicLong();
+        // Metrics of the tasks that started running
+        private final AtomicLong startedCount = new AtomicLong();
+        private final AtomicLong totalWaitNanos = new AtomicLong();
+        private final AtomicLong maxWaitNanos = new AtomicLong();
+        private final AtomicLong totalRunNanos = new AtomicLong();
+
+        /**
+         * Creates a pool with a fixed number of threads.
+         *
+         * @param name The name of the pool.
+         * @param threadCount The number of threads.
+         * @param threadFactory The factory creating the threads.
+         */
+        TaskPool(String name, int threadCount, ThreadFactory threadFactory) {
+            this.name = name;
+            // The queue is unbounded, so the pool always runs its core threads
+            executor = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.MILLISECONDS, queue,
+                    threadFactory);
+        }
+
+        @Override
+        public void execute(@NonNull Runnable task) {
+            execute(task, Priority.USER_VISIBLE);
+        }
+
+        /**
+         * Runs a task with the given priority.
+         *
+         * @param task The task to run.
+         * @param priority The priority of the task.
+         */
+        public void execute(Runnable task, Priority priority) {
+            executor.execute(new PrioritizedTask(task, priority, sequence.getAndIncrement()));
+        }
+
+        /**
+         * Runs a task with the given priority, returning a future that can cancel it.
+         * <br>
+         * A cancelled task that has not started does not run.
+         *
+         * @param task The task to run.
+         * @param priority The priority of the task.
+         * @return The future of the task.
+         */
+        public Future<?> submit(Runnable task, Priority priority) {
+            FutureTask<Void> future = new FutureTask<>(task, null);
+            execute(future, priority);
+            return future;
+        }
+
+        /**
+         * Returns an executor running its tasks on this pool with the given priority.
+         *
+         * @param priority The priority of the tasks.
+         * @return The executor.
+         */
+        public Executor withPriority(Priority priority) {
+            return task -> execute(task, priority);
+        }
+
+        /** Returns the number of tasks waiting for a thread. */
+        public int getQueueDepth() {
+            return queue.size();
+        }
+
+        /** Returns the number of tasks currently running. */
+        public int getActiveCount() {
+            return executor.getActiveCount();
+        }
+
+        /** Returns the number of tasks that started running. */
+        public long getStartedCount() {
+            return startedCount.get();
+        }
+
+        /** Returns the average time tasks waited in the queue before running, in milliseconds. */
+        public double getAverageWaitMs() {
+            long count = startedCount.get();
+            return count == 0 ? 0 : totalWaitNanos.get() / (count * 1_000_000.0);
+        }
+
+        /** Returns the longest time a task waited in the queue before running, in milliseconds. */
+        public double getMaxWaitMs() {
+            return maxWaitNanos.get() / 1_000_000.0;
+        }
+
+        /** Returns the average running time of the tasks that completed, in milliseconds. */
+        public double getAverageRunMs() {
+            long count = executor.getCompletedTaskCount();
+            return count == 0 ? 0 : totalRunNanos.get() / (count * 1_000_000.0);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: queued=%d active=%d started=%d wait=%.1fms (max %.1fms) run=%.1fms",
+                    name, getQueueDepth(), getActiveCount(), getStartedCount(),
+                    getAverageWaitMs(), getMaxWaitMs(), getAverageRunMs());
+        }
+
+        /**
+         * A task queued with its priority and the time it was queued.
+         */
+        private final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+            private final Runnable task;
+            private final Priority priority;
+            private final long sequenceNumber;
+            private final long queuedNanos = System.nanoTime();
+
+            PrioritizedTask(Runnable task, Priority priority, long sequenceNumber) {
+                this.task = task;
+                this.priority = priority;
+                this.sequenceNumber = sequenceNumber;
+            }
+
+            @Override
+            public void run() {
+                long startNanos = System.nanoTime();
+                long waitNanos = startNanos - queuedNanos;
+                startedCount.incrementAndGet();
+                totalWaitNanos.addAndGet(waitNanos);
+                maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+                try {
+                    task.run();
+                } finally {
+                    totalRunNanos.addAndGet(System.nanoTime() - startNanos);
+                }
+            }
+
+            @Override
+            public int compareTo(PrioritizedTask other) {
+                int order = priority.compareTo(other.priority);
+                return order != 0 ? order : Long.compare(sequenceNumber, other.sequenceNumber);
+            }
+        }
+    }
+}
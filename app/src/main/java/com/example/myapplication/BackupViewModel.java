@@ -0,0 +1,144 @@
+package com.example.myapplication;
+
+import android.app.Application;
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.util.Log;
+
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ViewModel class running the backup or restore of the journal.
+ * <br>
+ * The task only holds the application context, so it keeps running when the main screen is recreated after
+ * a configuration change, such as a rotation, and the recreated screen shows its progress and its outcome.
+ */
+public class BackupViewModel extends AndroidViewModel {
+    // Percentage of the running backup or restore that is completed, or null if none is running
+    private final MutableLiveData<Integer> progress = new MutableLiveData<>();
+    // Message describing the outcome of the last backup or restore, or null once it is shown
+    private final MutableLiveData<Integer> resultMessage = new MutableLiveData<>();
+    // Whether the backup whose document is being selected only holds the changes since the previous backup
+    private boolean incrementalBackup;
+
+    /**
+     * Constructor for BackupViewModel.
+     *
+     * @param application The application context.
+     */
+    public BackupViewModel(Application application) {
+        super(application);
+    }
+
+    /** Returns the percentage of the running backup or restore that is completed, or null if none is running. */
+    public LiveData<Integer> getProgress() {
+        return progress;
+    }
+
+    /** Returns the string resource describing the outcome of the last backup or restore, or null once shown. */
+    public LiveData<Integer> getResultMessage() {
+        return resultMessage;
+    }
+
+    /** Records that the outcome of the last backup or restore was shown. */
+    public void clearResultMessage() {
+        resultMessage.setValue(null);
+    }
+
+    /**
+     * Sets the kind of the backup whose document is being selected.
+     *
+     * @param incrementalBackup Whether the backup only holds the changes since the previous backup.
+     */
+    public void setIncrementalBackup(boolean incrementalBackup) {
+        this.incrementalBackup = incrementalBackup;
+    }
+
+    /** Returns whether a backup or restore is running. */
+    public boolean isRunning() {
+        return progress.getValue() != null;
+    }
+
+    /**
+     * Backs up the journal to a document or restores it from documents, off the main thread.
+     * <br>
+     * A restore takes a full backup and the backups of changes made after it, and a failed restore
+     * can be resumed by restoring the same documents again. Nothing is started while a task is running.
+     *
+     * @param uris The selected documents, empty if the selection was cancelled.
+     * @param restore Whether to restore the journal from the documents instead of backing it up.
+     */
+    public void run(List<Uri> uris, boolean restore) {
+        if (uris.isEmpty() || isRunning()) {
+            return;
+        }
+        progress.setValue(0);
+
+        Application application = getApplication();
+        JournalBackup journalBackup = new JournalBackup(application);
+        ContentResolver contentResolver = application.getContentResolver();
+        boolean incremental = incrementalBackup;
+        JournalBackup.ProgressListener listener = new JournalBackup.ProgressListener() {
+            private int shownPercent;
+
+            @Override
+            public void onProgress(long completed, long total) {
+                // Only update the progress when the displayed percentage changes
+                int percent = (int) (completed * 100 / total);
+                if (percent != shownPercent) {
+                    shownPercent = percent;
+                    progress.postValue(percent);
+                }
+            }
+        };
+        AppExecutors.getInstance().disk().execute(() -> {
+            boolean success;
+            try {
+                if (restore) {
+                    List<JournalBackup.ArchiveSource> archives = new ArrayList<>(uris.size());
+                    for (Uri uri : uris) {
+                        archives.add(() -> {
+                            InputStream inputStream = contentResolver.openInputStream(uri);
+                            if (inputStream == null) {
+                                throw new FileNotFoundException("Cannot open " + uri);
+                            }
+                            return inputStream;
+                        });
+                    }
+                    journalBackup.restore(archives, listener);
+                } else {
+                    OutputStream outputStream = contentResolver.openOutputStream(uris.get(0));
+                    if (outputStream == null) {
+                        throw new FileNotFoundException("Cannot open " + uris.get(0));
+                    }
+                    if (incremental) {
+                        journalBackup.backupIncremental(outputStream, listener);
+                    } else {
+                        journalBackup.backup(outputStream, listener);
+                    }
+                }
+                success = true;
+            } catch (IOException | RuntimeException e) {
+                Log.e("BackupViewModel", restore ? "Failed to restore journal" : "Failed to back up journal", e);
+                success = false;
+            }
+            if (restore) {
+                // Restored entries are written without going through the repository
+                JournalEntryCache.getInstance(application).clear();
+            }
+            resultMessage.postValue(restore
+                    ? (success ? R.string.restore_info_message : R.string.restore_error_message)
+                    : (success ? R.string.backup_info_message : R.string.backup_error_message));
+            progress.postValue(null);
+        }, AppExecutors.Priority.DEFAULT);
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.myapplication;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.LruCache;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The BitmapCache class keeps decoded images in memory for the whole application.
+ * <br>
+ * Bitmaps are evicted in least recently used order once the cache exceeds a fraction of the memory class
+ * of the application. Views displaying a bitmap hold a reference to it, and evicted bitmaps that are no longer
+ * displayed are kept in a pool so that their memory can be reused to decode other images.
+ * */
+public class BitmapCache {
+    // Fraction of the memory class of the application used for the cache
+    private static final int MEMORY_CLASS_FRACTION = 8;
+    // Define singleton cache instance
+    private static volatile BitmapCache INSTANCE;
+
+    private final LruCache<String, Bitmap> cache;
+    // Number of views displaying each bitmap, weakly held so that views that are never released do not leak
+    private final Map<Bitmap, Integer> displayCounts = new WeakHashMap<>();
+    // Bitmaps evicted from the cache while still displayed, reused once they are released
+    private final Set<Bitmap> evictedBitmaps = Collections.newSetFromMap(new WeakHashMap<>());
+    // Bitmaps whose memory can be reused, softly held so that they are collected when memory is low
+    private final List<SoftReference<Bitmap>> reusableBitmaps = new ArrayList<>();
+
+    /**
+     * Gets the singleton cache instance.
+     *
+     * @param context The application context.
+     * @return The singleton BitmapCache instance.
+     */
+    public static BitmapCache getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (BitmapCache.class) {
+                if (INSTANCE == null) {
+                    ActivityManager activityManager = (ActivityManager) context.getApplicationContext()
+                            .getSystemService(Context.ACTIVITY_SERVICE);
+                    INSTANCE = new BitmapCache(activityManager.getMemoryClass() * 1024 / MEMORY_CLASS_FRACTION);
+                    // Free the cached bitmaps when the application is in the background and memory is needed
+                    BitmapCache bitmapCache = INSTANCE;
+                    context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+                        @Override
+                        public void onTrimMemory(int level) {
+                            if (level >= TRIM_MEMORY_BACKGROUND) {
+                                bitmapCache.clear();
+                            }
+                        }
+
+                        @Override
+                        public void onConfigurationChanged(Configuration newConfig) {
+                        }
+
+                        @Override
+                        public void onLowMemory() {
+                            bitmapCache.clear();
+                        }
+                    });
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a cache with the given maximum size.
+     *
+     * @param maxSizeKb The maximum total size of the cached bitmaps in kilobytes.
+     */
+    BitmapCache(int maxSizeKb) {
+        cache = new LruCache<String, Bitmap>(maxSizeKb) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return Math.max(1, bitmap.getAllocationByteCount() / 1024);
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                onBitmapRemoved(oldValue);
+            }
+        };
+    }
+
+    /**
+     * Gets a cached bitmap and acquires it for display.
+     * <br>
+     * The bitmap must be released with {@link #release(Bitmap)} once it is no longer displayed.
+     *
+     * @param key The key of the bitmap.
+     * @return The cached bitmap, or null if it is not cached.
+     */
+    public synchronized Bitmap getAndAcquire(String key) {
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null) {
+            acquire(bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Adds a decoded bitmap to the cache and acquires it for display.
+     * <br>
+     * The bitmap is acquired before it is cached, so it cannot be reused if it is evicted before it is displayed.
+     *
+     * @param key The key of the bitmap.
+     * @param bitmap The decoded bitmap.
+     */
+    public synchronized void putAndAcquire(String key, Bitmap bitmap) {
+        acquire(bitmap);
+        cache.put(key, bitmap);
+    }
+
+    /**
+     * Releases a bitmap that is no longer displayed by a view.
+     *
+     * @param bitmap The bitmap previously acquired.
+     */
+    public synchronized void release(Bitmap bitmap) {
+        Integer count = displayCounts.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            displayCounts.put(bitmap, count - 1);
+            return;
+        }
+        displayCounts.remove(bitmap);
+        // A bitmap evicted while it was displayed can be reused now
+        if (evictedBitmaps.remove(bitmap)) {
+            addReusableBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Takes a bitmap from the pool whose memory can be reused to decode an image.
+     * <br>
+     * The options must contain the bounds of the image and the sample size it will be decoded with.
+     *
+     * @param options The options the image will be decoded with.
+     * @return A mutable bitmap large enough for the decoded image, or null if none is available.
+     */
+    public synchronized Bitmap getReusableBitmap(BitmapFactory.Options options) {
+        Iterator<SoftReference<Bitmap>> iterator = reusableBitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap candidate = iterator.next().get();
+            if (candidate == null || candidate.isRecycled() || !candidate.isMutable()) {
+                iterator.remove();
+            } else if (canReuse(candidate, options)) {
+                iterator.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /** Removes all bitmaps from the cache and the pool, to free memory when the system is low on memory. */
+    public void clear() {
+        cache.evictAll();
+        synchronized (this) {
+            reusableBitmaps.clear();
+        }
+    }
+
+    /**
+     * Acquires a bitmap for display.
+     *
+     * @param bitmap The bitmap to acquire.
+     */
+    private void acquire(Bitmap bitmap) {
+        Integer count = displayCounts.get(bitmap);
+        displayCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * Handles a bitmap removed from the cache, adding it to the pool unless it is still displayed.
+     *
+     * @param bitmap The removed bitmap.
+     */
+    private synchronized void onBitmapRemoved(Bitmap bitmap) {
+        if (displayCounts.containsKey(bitmap)) {
+            evictedBitmaps.add(bitmap);
+        } else {
+            addReusableBitmap(bitmap);
+        }
+    }
+
+    /**
+     * Adds a bitmap to the pool if its memory can be reused.
+     *
+     * @param bitmap The bitmap to add.
+     */
+    private void addReusableBitmap(Bitmap bitmap) {
+        if (bitmap.isMutable() && !bitmap.isRecycled()) {
+            reusableBitmaps.add(new SoftReference<>(bitmap));
+        }
+    }
+
+    /**
+     * Checks whether the memory of a bitmap is large enough to decode an image into.
+     *
+     * @param candidate The bitmap to reuse.
+     * @param options The options the image will be decoded with.
+     * @return True if the image fits in the memory of the bitmap.
+     */
+    private static boolean canReuse(Bitmap candidate, BitmapFactory.Options options) {
+        int sampleSize = Math.max(1, options.inSampleSize);
+        long width = (options.outWidth + sampleSize - 1) / sampleSize;
+        long height = (options.outHeight + sampleSize - 1) / sampleSize;
+        long byteCount = width * height * getBytesPerPixel(candidate.getConfig());
+        return byteCount <= candidate.getAllocationByteCount();
+    }
+
+    /**
+     * Returns the number of bytes used by a pixel of a bitmap configuration.
+     *
+     * @param config The bitmap configuration.
+     * @return The number of bytes per pixel.
+     */
+    private static int getBytesPerPixel(Bitmap.Config config) {
+        if (config == Bitmap.Config.ARGB_8888) {
+            return 4;
+        } else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+            return 2;
+        } else if (config == Bitmap.Config.ALPHA_8) {
+            return 1;
+        }
+        // Assume the largest size for other configurations, such as hardware or half-float bitmaps
+        return 8;
+    }
+}
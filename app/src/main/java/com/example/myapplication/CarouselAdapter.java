@@ -1,7 +1,6 @@
 package com.example.myapplication;
 
-import android.net.Uri;
-import android.util.Log;
+import android.content.res.Resources;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -12,7 +11,6 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -22,28 +20,36 @@ public class CarouselAdapter extends RecyclerView.Adapter<CarouselAdapter.Carous
 
     // List of image paths to be loaded in the carousel
     private final List<String> imagePaths;
+    // Listener notified of images removed from the carousel, or null if images are not removed
+    private final OnImageRemovedListener onImageRemovedListener;
+    // Loader decoding the images off the main thread
+    private ImageLoader imageLoader;
 
     @NonNull
     @Override
     public CarouselViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.recycler_carousel_item, parent, false);
-        return new CarouselViewHolder(view);
+        if (imageLoader == null) {
+            imageLoader = ImageLoader.getInstance(parent.getContext());
+        }
+        CarouselViewHolder holder = new CarouselViewHolder(view);
+        // Items have a fixed width and fill the height of the carousel, which are declared sizes known
+        // before the carousel is laid out
+        Resources resources = parent.getResources();
+        holder.targetSize = Math.max(resources.getDimensionPixelSize(R.dimen.carousel_item_width),
+                resources.getDimensionPixelSize(R.dimen.carousel_height));
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull CarouselViewHolder holder, int position) {
 
         String imagePath = imagePaths.get(position);
-        File imgFile = new File(imagePath);
-
-        // Load each image with the corresponding URI
-        if (imgFile.exists()) {
-            holder.carouselImageView.setImageURI(Uri.fromFile(imgFile));
-        } else {
-            // If image file is not found, replace with placeholder image
-            holder.carouselImageView.setImageResource(R.drawable.placeholder_image);
-        }
+
+        // Load each image in the background with the smallest stored variant that fits the item,
+        // replaced with a placeholder image if the file is not found
+        imageLoader.load(holder.carouselImageView, imagePath, holder.targetSize, R.drawable.placeholder_image);
 
         // Set click listener to allow image removal from carousel
         holder.itemView.setOnClickListener(v -> {
@@ -60,13 +66,22 @@ public class CarouselAdapter extends RecyclerView.Adapter<CarouselAdapter.Carous
                         String imageRemoved = imagePaths.remove(position);
                         notifyItemRemoved(position);
                         notifyItemRangeChanged(position, imagePaths.size());
-                        // Remove image file from temporary storage
-                        deleteImageFile(imageRemoved);
+                        // Let the owner of the images decide whether the file is deleted
+                        if (onImageRemovedListener != null) {
+                            onImageRemovedListener.onImageRemoved(imageRemoved);
+                        }
                     })
                     .show();
         });
     }
 
+    @Override
+    public void onViewRecycled(@NonNull CarouselViewHolder holder) {
+        super.onViewRecycled(holder);
+        // Cancel loading for items that are no longer displayed and release their images
+        imageLoader.cancel(holder.carouselImageView);
+    }
+
     @Override
     public int getItemCount() { return imagePaths.size(); }
 
@@ -76,23 +91,30 @@ public class CarouselAdapter extends RecyclerView.Adapter<CarouselAdapter.Carous
      * @param imagePaths List of image paths.
      */
     public CarouselAdapter(List<String> imagePaths) {
-        this.imagePaths = imagePaths;
+        this(imagePaths, null);
     }
 
     /**
-     * Deletes the temporary image file when it is removed from the carousel.
+     * Initializes the adapter with a list of image paths to load and a listener for removed images.
      *
-     * @param imagePath Path of the image file to be deleted.
+     * @param imagePaths List of image paths.
+     * @param onImageRemovedListener Listener notified after an image is removed from the list.
      */
-    private void deleteImageFile(String imagePath) {
-        File file = new File(imagePath);
-        if (file.exists()) {
-            boolean deleted = file.delete();
-            Log.d("ImageRemoved", imagePath);
-            if (!deleted) {
-                Log.e("ImageDeletion", "Failed to delete image: " + imagePath);
-            }
-        }
+    public CarouselAdapter(List<String> imagePaths, OnImageRemovedListener onImageRemovedListener) {
+        this.imagePaths = imagePaths;
+        this.onImageRemovedListener = onImageRemovedListener;
+    }
+
+    /**
+     * Listener for images removed from the carousel by the user.
+     */
+    public interface OnImageRemovedListener {
+        /**
+         * Called after an image is removed from the list of image paths.
+         *
+         * @param imagePath Path of the removed image.
+         */
+        void onImageRemoved(String imagePath);
     }
 
     /**
@@ -100,6 +122,8 @@ public class CarouselAdapter extends RecyclerView.Adapter<CarouselAdapter.Carous
      */
     public static class CarouselViewHolder extends RecyclerView.ViewHolder {
         ImageView carouselImageView;
+        // Longer edge of the item bounds in pixels, used to select the image variant to load
+        int targetSize;
 
         public CarouselViewHolder(@NonNull View view) {
             super(view);
@@ -0,0 +1,79 @@
+package com.example.myapplication;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.widget.AppCompatTextView;
+import androidx.core.text.PrecomputedTextCompat;
+import androidx.core.widget.TextViewCompat;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Adapter class for displaying the content of a journal entry in chunks within a RecyclerView.
+ * <br>
+ * Only the chunks on screen or about to be scrolled to are bound, and the text layout of each bound chunk
+ * is precomputed on a background thread, so the time to display an entry does not grow with its length.
+ * */
+public class ContentChunkAdapter extends ListAdapter<String, ContentChunkAdapter.ContentChunkViewHolder> {
+
+    // Executor precomputing the text layout of the chunks
+    private final Executor textExecutor;
+
+    // Callback for computing the differences between two lists of chunks
+    private static final DiffUtil.ItemCallback<String> DIFF_CALLBACK = new DiffUtil.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull String oldItem, @NonNull String newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull String oldItem, @NonNull String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    /**
+     * Initializes the adapter with the executor precomputing the text layout.
+     *
+     * @param textExecutor The background executor precomputing the text layout of the chunks.
+     */
+    public ContentChunkAdapter(Executor textExecutor) {
+        super(DIFF_CALLBACK);
+        this.textExecutor = textExecutor;
+    }
+
+    @NonNull
+    @Override
+    public ContentChunkViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext())
+                .inflate(R.layout.recycler_content_chunk_item, parent, false);
+        return new ContentChunkViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ContentChunkViewHolder holder, int position) {
+        // The text is set once its layout is precomputed, which the view waits for only if it is
+        // measured before, as when it is bound for display instead of being prefetched
+        AppCompatTextView chunkView = holder.chunkView;
+        chunkView.setTextFuture(PrecomputedTextCompat.getTextFuture(getItem(position),
+                TextViewCompat.getTextMetricsParams(chunkView), textExecutor));
+    }
+
+    /**
+     * ViewHolder class for the chunks of content.
+     */
+    public static class ContentChunkViewHolder extends RecyclerView.ViewHolder {
+        AppCompatTextView chunkView;
+
+        public ContentChunkViewHolder(@NonNull View view) {
+            super(view);
+            chunkView = view.findViewById(R.id.contentChunkTextView);
+        }
+    }
+}
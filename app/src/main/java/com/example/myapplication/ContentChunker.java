@@ -0,0 +1,76 @@
+package com.example.myapplication;
+
+import java.text.BreakIterator;
+import java.text.StringCharacterIterator;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ContentChunker class splits the content of a journal entry into chunks that are laid out separately.
+ * <br>
+ * Chunks preferably end at a line break, which is dropped as each chunk starts on a new line, so that no break
+ * is shown inside a paragraph. A chunk holds as many whole lines as fit in the chunk length. A line longer than
+ * the chunk length is split at the last sentence boundary that fits, or else at the last whitespace, keeping
+ * the trailing whitespace in the chunk, so that a single long paragraph is still laid out in parts.
+ * A word longer than the chunk length is cut at the chunk length.
+ * */
+public final class ContentChunker {
+    // Default maximum number of characters in a chunk
+    public static final int CHUNK_LENGTH = 2000;
+
+    private ContentChunker() {
+    }
+
+    /**
+     * Splits content into chunks.
+     *
+     * @param content The content to split, which may be null.
+     * @param chunkLength The maximum number of characters in a chunk.
+     * @return List of chunks in order, empty if the content is null or empty.
+     */
+    public static List<String> split(String content, int chunkLength) {
+        List<String> chunks = new ArrayList<>();
+        if (content == null) {
+            return chunks;
+        }
+        // Created when a line longer than a chunk is first found
+        BreakIterator sentences = null;
+        BreakIterator words = null;
+        int start = 0;
+        while (content.length() - start > chunkLength) {
+            // Break at the last line break that fits, dropping it
+            int end = content.lastIndexOf('\n', start + chunkLength);
+            if (end >= start) {
+                chunks.add(content.substring(start, end));
+                start = end + 1;
+                continue;
+            }
+
+            // Break inside the line at the last sentence boundary or whitespace that fits. The text is limited
+            // to the chunk, so a paragraph without boundaries is not scanned from its beginning for each chunk.
+            if (sentences == null) {
+                sentences = BreakIterator.getSentenceInstance();
+                words = BreakIterator.getLineInstance();
+            }
+            int limit = start + chunkLength + 1;
+            sentences.setText(new StringCharacterIterator(content, start, limit, start));
+            end = sentences.preceding(limit);
+            if (end <= start) {
+                words.setText(new StringCharacterIterator(content, start, limit, start));
+                end = words.preceding(limit);
+            }
+            if (end <= start) {
+                end = start + chunkLength;
+                if (end - 1 > start && Character.isHighSurrogate(content.charAt(end - 1))) {
+                    end--;
+                }
+            }
+            chunks.add(content.substring(start, end));
+            start = end;
+        }
+        if (start < content.length()) {
+            chunks.add(content.substring(start));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,246 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * The ContentCompactor class compresses the long content of existing journal entries.
+ * <br>
+ * Content written while compression is enabled is compressed as it is written, see
+ * {@link AppDatabase#isContentCompressionEnabled()}. Entries written before are compressed by this class in
+ * bounded batches, each committed on its own, so entries saved by the user are not held back until all entries
+ * are compressed.
+ * An entry written while its batch is compressed is left as written. The change sequence of compressed
+ * entries is kept, so they are neither backed up nor synced again.
+ * <br>
+ * The storage mode is saved with the progress of the compaction, so a compaction stopped before it completed
+ * is run again.
+ * */
+public class ContentCompactor {
+    // Number of entries compressed per batch, kept small as each entry holds long content
+    static final int BATCH_SIZE = 20;
+    // Name of the file holding the storage mode and the progress of the compaction
+    static final String STATE_FILE = "content_compression.properties";
+    // Keys of the state file
+    private static final String COMPRESS_CONTENT = "compressContent";
+    private static final String COMPACTED = "compacted";
+
+    private final AppDatabase database;
+    private final JournalEntryDao journalEntryDao;
+    private final File stateFile;
+    private volatile boolean stopped;
+
+    /**
+     * The result of a compaction.
+     */
+    public static final class Result {
+        private int compressedEntryCount;
+        private long savedBytes;
+        private boolean complete;
+
+        /** Returns the number of entries compressed. */
+        public int getCompressedEntryCount() {
+            return compressedEntryCount;
+        }
+
+        /** Returns the number of bytes of content saved by compressing it. */
+        public long getSavedBytes() {
+            return savedBytes;
+        }
+
+        /** Returns whether all long content was compressed, or false if the compaction was stopped. */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * Creates a compactor for the journal database.
+     *
+     * @param context The application context.
+     */
+    public ContentCompactor(Context context) {
+        this(AppDatabase.getDatabase(context), getStateFile(context));
+    }
+
+    /**
+     * Creates a compactor for the given database.
+     *
+     * @param database The database of the journal.
+     * @param stateFile The file in which the storage mode and the progress of the compaction are saved.
+     */
+    ContentCompactor(AppDatabase database, File stateFile) {
+        this.database = database;
+        this.journalEntryDao = database.journalEntryDao();
+        this.stateFile = stateFile;
+    }
+
+    /**
+     * Returns whether the user enabled the compression of long content.
+     *
+     * @param context The application context.
+     */
+    public static boolean isCompressionEnabled(Context context) {
+        return Boolean.parseBoolean(readState(getStateFile(context)).getProperty(COMPRESS_CONTENT));
+    }
+
+    /**
+     * Returns whether compression is enabled and existing entries are not all compressed yet.
+     *
+     * @param context The application context.
+     */
+    public static boolean isCompactionPending(Context context) {
+        Properties state = readState(getStateFile(context));
+        return Boolean.parseBoolean(state.getProperty(COMPRESS_CONTENT))
+                && !Boolean.parseBoolean(state.getProperty(COMPACTED));
+    }
+
+    /**
+     * Enables or disables the compression of long content, applying to the following writes.
+     * <br>
+     * Enabling it marks the existing entries for compaction. Entries already compressed stay compressed
+     * when it is disabled.
+     *
+     * @param context The application context.
+     * @param enabled Whether to compress long content.
+     */
+    public static void setCompressionEnabled(Context context, boolean enabled) {
+        File stateFile = getStateFile(context);
+        Properties state = readState(stateFile);
+        state.setProperty(COMPRESS_CONTENT, Boolean.toString(enabled));
+        state.setProperty(COMPACTED, Boolean.toString(false));
+        writeState(stateFile, state);
+        AppDatabase.getDatabase(context).setContentCompressionEnabled(enabled);
+    }
+
+    private static File getStateFile(Context context) {
+        return new File(context.getNoBackupFilesDir(), STATE_FILE);
+    }
+
+    /**
+     * Compresses the long content of all entries stored in plain text.
+     * <br>
+     * This performs database operations and must not be called on the main thread.
+     *
+     * @return The result of the compaction.
+     */
+    public Result compact() {
+        stopped = false;
+        Result result = new Result();
+        int afterId = 0;
+        List<JournalEntryEntity> entries;
+        while (!(entries = journalEntryDao.getPlainContentPage(ContentCompression.THRESHOLD, afterId, BATCH_SIZE))
+                .isEmpty()) {
+            if (stopped) {
+                return result;
+            }
+            afterId = entries.get(entries.size() - 1).getId();
+            compactBatch(entries, result);
+        }
+        result.complete = true;
+
+        Properties state = readState(stateFile);
+        state.setProperty(COMPACTED, Boolean.toString(true));
+        writeState(stateFile, state);
+        return result;
+    }
+
+    /**
+     * Stops a running compaction after its current batch.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Compresses the content of a batch of entries and writes it in a single transaction.
+     * <br>
+     * Content is compressed before the transaction starts, so that writes of other entries only wait
+     * for the updates.
+     *
+     * @param entries The entries to compress.
+     * @param result The result to add compressed entries to.
+     */
+    private void compactBatch(List<JournalEntryEntity> entries, Result result) {
+        List<JournalEntryEntity> compressedEntries = new ArrayList<>(entries.size());
+        List<byte[]> compressedContents = new ArrayList<>(entries.size());
+        for (JournalEntryEntity entry : entries) {
+            byte[] compressedContent = ContentCompression.compress(entry.getContent());
+            if (compressedContent != null) {
+                compressedEntries.add(entry);
+                compressedContents.add(compressedContent);
+            }
+        }
+        if (compressedEntries.isEmpty()) {
+            return;
+        }
+
+        database.runInTransaction(() -> {
+            for (int i = 0; i < compressedEntries.size(); i++) {
+                JournalEntryEntity entry = compressedEntries.get(i);
+                String content = entry.getContent();
+                String preview = ContentCompression.getPreview(content);
+                String searchTerms = ContentCompression.getSearchTerms(content);
+                byte[] compressedContent = compressedContents.get(i);
+                if (journalEntryDao.compressEntryContent(entry.getId(), entry.getChangeSeq(), preview,
+                        compressedContent, searchTerms) > 0) {
+                    result.compressedEntryCount++;
+                    result.savedBytes += content.getBytes(StandardCharsets.UTF_8).length
+                            - preview.getBytes(StandardCharsets.UTF_8).length
+                            - searchTerms.getBytes(StandardCharsets.UTF_8).length - compressedContent.length;
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the state of the compaction.
+     *
+     * @param stateFile The state file.
+     * @return The saved state, or an empty state if it cannot be read.
+     */
+    private static Properties readState(File stateFile) {
+        Properties state = new Properties();
+        if (stateFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(stateFile)) {
+                state.load(inputStream);
+            } catch (IOException e) {
+                Log.w("ContentCompactor", "Failed to read compaction state", e);
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Saves the state of the compaction.
+     * <br>
+     * The state is written to a temporary file first, so an interrupted write keeps the previous state.
+     *
+     * @param stateFile The state file.
+     * @param state The state to save.
+     */
+    private static void writeState(File stateFile, Properties state) {
+        File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            state.store(outputStream, null);
+        } catch (IOException e) {
+            Log.e("ContentCompactor", "Failed to write compaction state", e);
+            return;
+        }
+        if (!tempFile.renameTo(stateFile)) {
+            Log.e("ContentCompactor", "Failed to replace compaction state: " + stateFile);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The ContentCompression class compresses the content of long journal entries for storage.
+ * <br>
+ * When the storage mode of the database is enabled, see {@link AppDatabase#isContentCompressionEnabled()}, content
+ * longer than {@link #THRESHOLD} characters is stored deflated, together with its first {@link #PREVIEW_LENGTH}
+ * characters in plain text, which search snippets are made of.
+ * The distinct words of the rest of the content are stored as search terms, so that the full-text search index
+ * still finds compressed entries by any of their words. Phrases spanning the end of the beginning are not found.
+ * The storage mode only applies to new writes. Entries compressed earlier stay readable when it is disabled.
+ * */
+public final class ContentCompression {
+    // Minimum number of characters of compressed content
+    public static final int THRESHOLD = 8 * 1024;
+    // Number of characters of compressed content kept in plain text
+    public static final int PREVIEW_LENGTH = 1024;
+    // Buffer size for inflating content
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private ContentCompression() {
+    }
+
+    /**
+     * Compresses content if it is long enough and the compressed form is smaller.
+     *
+     * @param content The content to compress, which may be null.
+     * @return The deflated UTF-8 bytes of the whole content, or null if the content is stored as is.
+     */
+    public static byte[] compress(String content) {
+        if (content == null || content.length() <= THRESHOLD) {
+            return null;
+        }
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try (DeflaterOutputStream outputStream = new DeflaterOutputStream(compressed, deflater)) {
+            outputStream.write(bytes);
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        } finally {
+            deflater.end();
+        }
+        // The plain beginning and the search terms are stored as well, so compression must save more than their size
+        int plainSize = getPreview(content).getBytes(StandardCharsets.UTF_8).length
+                + getSearchTerms(content).getBytes(StandardCharsets.UTF_8).length;
+        return compressed.size() + plainSize < bytes.length ? compressed.toByteArray() : null;
+    }
+
+    /**
+     * Decompresses content compressed by {@link #compress(String)}.
+     *
+     * @param compressed The compressed content.
+     * @return The content.
+     * @throws IOException If the compressed content is corrupted.
+     */
+    public static String decompress(byte[] compressed) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream(compressed.length * 4);
+        try (InputStream inputStream = new InflaterInputStream(new ByteArrayInputStream(compressed))) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = inputStream.read(buffer)) > 0) {
+                content.write(buffer, 0, length);
+            }
+        }
+        return new String(content.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets the beginning of content kept in plain text when it is compressed.
+     * <br>
+     * The beginning never ends with half of a surrogate pair.
+     *
+     * @param content The content.
+     * @return The first {@link #PREVIEW_LENGTH} characters of the content, or the content if it is shorter.
+     */
+    public static String getPreview(String content) {
+        if (content.length() <= PREVIEW_LENGTH) {
+            return content;
+        }
+        int end = Character.isHighSurrogate(content.charAt(PREVIEW_LENGTH - 1)) ? PREVIEW_LENGTH - 1 : PREVIEW_LENGTH;
+        return content.substring(0, end);
+    }
+
+    /**
+     * Gets the search terms of content stored compressed, indexed in place of the content past its beginning.
+     * <br>
+     * Terms are split and folded to lower case as by the simple tokenizer of the full-text search index:
+     * ASCII letters and digits and all non-ASCII characters form words. The word cut by the end of the beginning
+     * is included whole.
+     *
+     * @param content The content.
+     * @return The distinct words of the content past its plain beginning, in order of first occurrence and
+     *         separated by spaces.
+     */
+    public static String getSearchTerms(String content) {
+        int start = getPreview(content).length();
+        if (start == content.length()) {
+            return "";
+        }
+        while (start > 0 && isTokenChar(content.charAt(start - 1))) {
+            start--;
+        }
+        Set<String> terms = new LinkedHashSet<>();
+        StringBuilder term = new StringBuilder();
+        for (int i = start; i <= content.length(); i++) {
+            char c = i < content.length() ? content.charAt(i) : ' ';
+            if (isTokenChar(c)) {
+                term.append(c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            } else if (term.length() > 0) {
+                terms.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        return String.join(" ", terms);
+    }
+
+    /**
+     * Checks whether a character is part of a word for the simple tokenizer.
+     */
+    private static boolean isTokenChar(char c) {
+        return c >= 0x80 || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9');
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.myapplication;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * The ContentHasher class computes the SHA-256 hashes that identify the content of stored files.
+ * */
+public final class ContentHasher {
+    // Buffer size for reading files
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Number of hexadecimal characters in a hash
+    public static final int HASH_LENGTH = 64;
+
+    private ContentHasher() {
+    }
+
+    /**
+     * Creates a digest for computing a SHA-256 hash incrementally.
+     *
+     * @return The digest.
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * Computes the SHA-256 hash of the content of a file.
+     *
+     * @param file The file to hash.
+     * @return The hash as a lowercase hexadecimal string.
+     * @throws IOException If the file cannot be read.
+     */
+    public static String hash(File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream inputStream = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int length;
+            while ((length = inputStream.read(buffer)) > 0) {
+                digest.update(buffer, 0, length);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Converts a hash to a lowercase hexadecimal string.
+     *
+     * @param hash The bytes of the hash.
+     * @return The hexadecimal string.
+     */
+    public static String toHex(byte[] hash) {
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    /**
+     * Checks whether a string is a hash produced by this class.
+     *
+     * @param value The string to check.
+     * @return True if the string consists of 64 lowercase hexadecimal characters.
+     */
+    public static boolean isHash(String value) {
+        if (value.length() != HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.myapplication;
+
+import android.app.Application;
+import android.net.Uri;
+
+import androidx.lifecycle.AndroidViewModel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ViewModel class holding the images of the entry being created or edited.
+ * <br>
+ * The images and their import are kept when the entry screen is recreated after a configuration change,
+ * such as a rotation, so that an import keeps running and the imported images stay attached. The import is
+ * cancelled and the temporary images are deleted once the screen is gone for good without saving the entry.
+ * Images stored by a save that failed are released through the repository, which keeps those an entry references.
+ */
+public class EntryImagesViewModel extends AndroidViewModel {
+    // List of image paths of the entry, shown in the carousel
+    private final List<String> tempImagePaths = new ArrayList<>();
+    // All image handling operations are delegated to the imageHandler object
+    private final ImageHandler imageHandler;
+    // Import of selected images that is currently running, if any
+    private ImageHandler.ImportTask importTask;
+    // Fraction of each image of the current import that has been copied
+    private float[] importProgress;
+    // Callback of the screen currently shown, or null while the screen is being recreated
+    private ImageHandler.ImportCallback importCallback;
+    // Whether the images of the edited entry were added to the list
+    private boolean editSessionStarted;
+    // Whether the entry was saved with its images
+    private boolean entrySaved;
+
+    /**
+     * Constructor for EntryImagesViewModel.
+     *
+     * @param application The application context.
+     */
+    public EntryImagesViewModel(Application application) {
+        super(application);
+        imageHandler = new ImageHandler(application.getContentResolver(), application.getCacheDir(),
+                application.getFilesDir(), tempImagePaths);
+    }
+
+    /** Returns the list of image paths of the entry, updated on the main thread. */
+    public List<String> getImagePaths() {
+        return tempImagePaths;
+    }
+
+    /** Returns the handler of the image files of the entry. */
+    public ImageHandler getImageHandler() {
+        return imageHandler;
+    }
+
+    /**
+     * Starts editing the images of a saved entry, unless they were added before the screen was recreated.
+     *
+     * @param imagePaths The list of image paths of the entry.
+     */
+    public void startEditSession(List<String> imagePaths) {
+        if (editSessionStarted) {
+            return;
+        }
+        editSessionStarted = true;
+        tempImagePaths.clear();
+        imageHandler.startEditSession(imagePaths);
+    }
+
+    /**
+     * Imports selected images to temporary storage in the background.
+     * <br>
+     * The progress of the import is passed to the callback of the screen currently shown.
+     *
+     * @param uris The list of selected media URIs.
+     */
+    public void importImages(List<Uri> uris) {
+        importProgress = new float[uris.size()];
+        importTask = imageHandler.importImages(uris, new ImageHandler.ImportCallback() {
+            @Override
+            public void onImageProgress(int index, long bytesCopied, long totalBytes) {
+                if (totalBytes > 0) {
+                    importProgress[index] = Math.min(1f, (float) bytesCopied / totalBytes);
+                }
+                if (importCallback != null) {
+                    importCallback.onImageProgress(index, bytesCopied, totalBytes);
+                }
+            }
+
+            @Override
+            public void onImageImported(int index, String imagePath) {
+                importProgress[index] = 1f;
+                if (importCallback != null) {
+                    importCallback.onImageImported(index, imagePath);
+                }
+            }
+
+            @Override
+            public void onImageFailed(int index, Uri uri, IOException error) {
+                importProgress[index] = 1f;
+                if (importCallback != null) {
+                    importCallback.onImageFailed(index, uri, error);
+                }
+            }
+
+            @Override
+            public void onImportFinished(int importedCount, int failedCount) {
+                if (importCallback != null) {
+                    importCallback.onImportFinished(importedCount, failedCount);
+                }
+            }
+        });
+    }
+
+    /**
+     * Sets the callback of the screen currently shown, notified of the progress of the import on the main thread.
+     *
+     * @param importCallback The callback, or null once the screen is destroyed.
+     */
+    public void setImportCallback(ImageHandler.ImportCallback importCallback) {
+        this.importCallback = importCallback;
+    }
+
+    /** Returns whether selected images are still being imported. */
+    public boolean isImportRunning() {
+        return importTask != null && importTask.isRunning();
+    }
+
+    /** Returns the percentage of the current import that has been copied. */
+    public int getImportPercent() {
+        if (importProgress == null || importProgress.length == 0) {
+            return 0;
+        }
+        float total = 0;
+        for (float progress : importProgress) {
+            total += progress;
+        }
+        return Math.round(total * 100 / importProgress.length);
+    }
+
+    /**
+     * Shows the images of an entry whose save failed again, so that saving can be retried with them.
+     *
+     * @param imagePaths The list of image paths of the entry.
+     */
+    public void restoreStoredImages(List<String> imagePaths) {
+        imageHandler.restoreStoredImages(imagePaths);
+    }
+
+    /** Records that the entry was saved, so that its images are kept. */
+    public void setEntrySaved() {
+        entrySaved = true;
+    }
+
+    /* Clean up code for images if the entry is not saved or updated */
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        // Stop importing images, the images still being copied are deleted by the import
+        if (importTask != null) {
+            importTask.cancel();
+        }
+        // Delete temporary images from storage if the entry was not saved
+        if (!entrySaved) {
+            imageHandler.deleteTemporaryImages();
+        }
+        // Release the images stored by a save that failed, the repository keeps those saved by a later attempt
+        List<String> unsavedStoredImagePaths = imageHandler.getUnsavedStoredImagePaths();
+        if (!unsavedStoredImagePaths.isEmpty()) {
+            new JournalEntryRepository(getApplication()).releaseImages(unsavedStoredImagePaths);
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.myapplication;
 
 import android.content.ContentResolver;
+import android.database.Cursor;
 import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.OpenableColumns;
 import android.util.Log;
 
 import java.io.File;
@@ -10,150 +14,407 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.util.Iterator;
+import java.nio.channels.FileChannel;
+import java.io.InterruptedIOException;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongConsumer;
 
 /**
  * The ImageHandler class provides utility methods for managing image files within the application.
  * <br>
  * It handles copying images from external sources to temporary storage, moving images to internal storage,
  * and cleaning up temporary images to maintain storage efficiency.
+ * <br>
+ * Selected images can be imported asynchronously with {@link #importImages(List, ImportCallback)}, which copies
+ * them in parallel on the disk pool of {@link AppExecutors} and reports the progress of each image on the callback
+ * executor. Images are stored and deleted on the same pool, so no file operation runs on the main thread.
+ * <br>
+ * Downsampled variants of each image are created when it is imported and are stored, moved and deleted
+ * together with the image, see {@link ImageVariants}.
+ * <br>
+ * Images in internal storage are content-addressed: each file is named by the SHA-256 hash of its content
+ * and written once. Attaching an image that is already stored reuses the stored file, so the same photo
+ * attached to several entries is stored a single time. The repository deletes a stored image once
+ * no entry references it.
+ * <br>
+ * When an entry is edited, its stored images are referenced in place rather than copied. Only newly added
+ * images are staged in temporary storage, and removed stored images are left untouched
+ * until the entry is updated, so an edit that does not change the attachments performs no image I/O.
  * */
 public class ImageHandler {
+    // Buffer size for copying image streams
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Maximum number of bytes transferred between file channels in a single call
+    private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+    // Minimum number of bytes copied between progress reports of an imported image
+    private static final long PROGRESS_INTERVAL = 256 * 1024;
+    // Prefix and extension of the content-addressed images in internal storage
+    static final String STORED_IMAGE_PREFIX = "image_";
+    private static final String STORED_IMAGE_EXTENSION = ".jpg";
+    // Prefix of the temporary images in cache storage
+    static final String TEMP_IMAGE_PREFIX = "temp_image_";
+    // Lock held while a stored image is reused or written, and while a released image is deleted
+    static final Object STORED_IMAGES_LOCK = new Object();
+    // Time after an image is stored or reused during which it is kept when released, as it may be saved again
+    static final long RELEASE_GRACE_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
     private final ContentResolver contentResolver;
     private final File cacheDir;
     private final File filesDir;
     private final List<String> tempImagePaths;
+    // Content hashes of temporary images computed while they were copied, by temporary path
+    private final Map<String, String> tempImageHashes = new ConcurrentHashMap<>();
+    // Stored images of the edited entry, which are referenced in place in the temporary list
+    private final Set<String> originalImagePaths = new HashSet<>();
+    // Images stored for the entry by a save that failed, which no entry may reference yet
+    private final Set<String> unsavedStoredImagePaths = new HashSet<>();
+    private final ImageVariants imageVariants;
+    private final Executor diskExecutor;
+    // Executor on which import callbacks are delivered, the main thread unless given explicitly
+    private Executor callbackExecutor;
 
     public ImageHandler(ContentResolver contentResolver, File cacheDir, File filesDir, List<String> tempImagePaths) {
+        this(contentResolver, cacheDir, filesDir, tempImagePaths, new ImageVariants(),
+                AppExecutors.getInstance().disk(), null);
+    }
+
+    /**
+     * Creates an image handler with the variant generator and the executors used for file operations.
+     *
+     * @param imageVariants The generator of the variants of imported images.
+     * @param diskExecutor The executor on which images are copied, stored and deleted.
+     * @param callbackExecutor The executor on which callbacks are delivered and the temporary list is
+     *                         updated, or null to use the main thread.
+     */
+    public ImageHandler(ContentResolver contentResolver, File cacheDir, File filesDir, List<String> tempImagePaths,
+                        ImageVariants imageVariants, Executor diskExecutor, Executor callbackExecutor) {
         this.contentResolver = contentResolver;
         this.cacheDir = cacheDir;
         this.filesDir = filesDir;
         this.tempImagePaths = tempImagePaths;
+        this.imageVariants = imageVariants;
+        this.diskExecutor = diskExecutor;
+        this.callbackExecutor = callbackExecutor;
     }
 
     /**
-     * Copies selected images to temporary cache storage.
+     * Callback interface for the progress of an image import.
      * <br>
-     * The images are stored temporarily until the entry is saved.
-     *
-     * @param uris The list of image URIs to be copied to cache storage.
-     * @return Boolean result indicating operation success
-     * */
-    public boolean copyImagesToTemporaryStorage(List<Uri> uris) {
-        boolean result = false;
+     * All methods are called on the callback executor of the handler. Each selected image is identified
+     * by its index in the list of URIs passed to the import.
+     */
+    public interface ImportCallback {
+        /**
+         * Called as the content of an image is copied.
+         *
+         * @param index The index of the image.
+         * @param bytesCopied The number of bytes copied so far.
+         * @param totalBytes The size of the image, or -1 if it is unknown.
+         */
+        void onImageProgress(int index, long bytesCopied, long totalBytes);
 
-        for (Uri uri : uris) {
-            try {
-                InputStream inputStream = contentResolver.openInputStream(uri);
-                String fileName = "temp_image_" + System.currentTimeMillis() + ".jpg";
-                File imageFile = new File(cacheDir, fileName);
+        /**
+         * Called when an image is copied and its path has been added to the temporary list.
+         *
+         * @param index The index of the image.
+         * @param imagePath The path of the copied image.
+         */
+        void onImageImported(int index, String imagePath);
 
-                OutputStream outputStream = new FileOutputStream(imageFile);
+        /**
+         * Called when an image could not be copied.
+         *
+         * @param index The index of the image.
+         * @param uri The URI of the image.
+         * @param error The error that occurred.
+         */
+        void onImageFailed(int index, Uri uri, IOException error);
 
-                byte[] buffer = new byte[1024];
-                assert inputStream != null;
-                int length;
-                while ((length = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, length);
-                }
+        /**
+         * Called once every image has been imported or has failed.
+         *
+         * @param importedCount The number of images imported.
+         * @param failedCount The number of images that failed.
+         */
+        void onImportFinished(int importedCount, int failedCount);
+    }
 
-                outputStream.close();
-                inputStream.close();
+    /**
+     * A running image import, which can be cancelled.
+     * <br>
+     * Once cancelled, no further callbacks are delivered and images that are still being copied or
+     * have not been delivered yet are deleted.
+     */
+    public static final class ImportTask {
+        private final ImportCallback callback;
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+        private final AtomicInteger pendingCount;
+        // Counts are only updated on the callback executor
+        private int importedCount;
+        private int failedCount;
 
-                // Save the file path to a temporary list to track images during the session
-                tempImagePaths.add(imageFile.getAbsolutePath());
+        private ImportTask(int imageCount, ImportCallback callback) {
+            this.callback = callback;
+            this.pendingCount = new AtomicInteger(imageCount);
+        }
 
-                result = true;
+        /** Cancels the import. */
+        public void cancel() {
+            cancelled.set(true);
+        }
 
-            } catch (IOException e) {
-                Log.e("ImageHandler", "File operation error occurred", e);
-                result = false;
+        /** Returns whether the import was cancelled. */
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        /** Returns whether the import is still running, that is, neither finished nor cancelled. */
+        public boolean isRunning() {
+            return !isCancelled() && pendingCount.get() > 0;
+        }
+
+        /** Returns the number of images that have not been imported or failed yet. */
+        public int getPendingCount() {
+            return pendingCount.get();
+        }
+    }
+
+    /**
+     * Imports selected images to temporary cache storage asynchronously.
+     * <br>
+     * Each image is copied from its own stream on the import executor, so several images are copied in parallel.
+     * The path of each copied image is added to the temporary list on the callback executor as soon as
+     * the image is copied, and failures are reported for each image.
+     *
+     * @param uris The list of image URIs to be copied to cache storage.
+     * @param callback The callback notified of the progress of the import.
+     * @return The running import, which can be cancelled.
+     */
+    public ImportTask importImages(List<Uri> uris, ImportCallback callback) {
+        ImportTask task = new ImportTask(uris.size(), callback);
+        // Resolve the callback executor before the workers start using it
+        Executor callbacks = getCallbackExecutor();
+        if (uris.isEmpty()) {
+            callbacks.execute(() -> callback.onImportFinished(0, 0));
+        }
+        for (int i = 0; i < uris.size(); i++) {
+            int index = i;
+            Uri uri = uris.get(i);
+            diskExecutor.execute(() -> importImage(task, index, uri));
+        }
+        return task;
+    }
+
+    /**
+     * Starts editing the images of a saved entry.
+     * <br>
+     * The stored images are added to the temporary list as they are, without copying them. They are kept
+     * in place when the entry is saved, and are never deleted with the temporary images.
+     *
+     * @param existingImagePaths The list of image paths of the entry.
+     * */
+    public void startEditSession(List<String> existingImagePaths) {
+        originalImagePaths.addAll(existingImagePaths);
+        tempImagePaths.addAll(existingImagePaths);
+    }
+
+    /**
+     * Shows the images of an entry whose save failed again, so that saving can be retried with them.
+     * <br>
+     * The images were already moved to internal storage. Those that are not stored images of the edited
+     * entry are kept as images of the session: they are stored in place when the entry is saved, are never
+     * deleted with the temporary images, and are listed by {@link #getUnsavedStoredImagePaths()} so that
+     * they can be released if the entry is not saved.
+     *
+     * @param imagePaths The list of image paths of the entry that failed to save.
+     * */
+    public void restoreStoredImages(List<String> imagePaths) {
+        for (String imagePath : imagePaths) {
+            if (!originalImagePaths.contains(imagePath)) {
+                unsavedStoredImagePaths.add(imagePath);
             }
         }
-        return result;
+        tempImagePaths.addAll(imagePaths);
     }
 
     /**
-     * Copies image paths retrieved from a saved entry to temporary cache storage.
+     * Returns the images stored by a save that failed, see {@link #restoreStoredImages(List)}.
      * <br>
-     * The images are stored and used in a temporary list to prevent permanent modifications
-     * to existing data before the entry is updated.
+     * These images must be released through the repository once the session ends, which deletes those
+     * that no entry references.
      *
-     * @param existingImagePaths The list of existing image paths to copy.
+     * @return The list of the paths of the images.
      * */
-    public void copyExistingImagesToTemporaryStorage(List<String> existingImagePaths) {
-        try {
-            for (String originalPath : existingImagePaths) {
-                File originalFile = new File(originalPath);
-                if (originalFile.exists()) {
-                    String fileName = "temp_image_" + System.currentTimeMillis() + ".jpg";
-                    File tempFile = new File(cacheDir, fileName);
-
-                    try (InputStream in = new FileInputStream(originalFile);
-                         OutputStream out = new FileOutputStream(tempFile)) {
-
-                        byte[] buffer = new byte[1024];
-                        int length;
-                        while ((length = in.read(buffer)) > 0) {
-                            out.write(buffer, 0, length);
-                        }
+    public List<String> getUnsavedStoredImagePaths() {
+        return new ArrayList<>(unsavedStoredImagePaths);
+    }
 
-                        tempImagePaths.add(tempFile.getAbsolutePath());
-                    }
+    /**
+     * Discards an image that was removed from the temporary list.
+     * <br>
+     * A newly added image is deleted from temporary storage. A stored image of the edited entry is left untouched,
+     * as the edit may still be abandoned, and is released by the repository when the entry is updated without it.
+     * An image stored by a save that failed is also left untouched, and is released once the session ends.
+     *
+     * @param imagePath The path of the removed image.
+     * */
+    public void discardImage(String imagePath) {
+        if (isStoredImage(imagePath)) {
+            return;
+        }
+        tempImageHashes.remove(imagePath);
+        if (!tempImagePaths.contains(imagePath)) {
+            diskExecutor.execute(() -> {
+                if (!ImageVariants.deleteImage(imagePath)) {
+                    Log.e("ImageHandler", "Failed to delete temp image: " + imagePath);
                 }
-            }
-        } catch (IOException e) {
-            Log.e("ImageHandler", "File operation error occurred", e);
+            });
         }
     }
 
     /**
-     * Moves images from temporary storage to internal storage.
+     * Moves images from temporary storage to internal storage on the disk executor.
      * <br>
      * This ensures persistent storage of selected images for the entry.
+     * Each image is stored under the hash of its content. If an image with the same content is already stored,
+     * the stored image is used and the temporary image is deleted, without writing the content again.
+     * Otherwise, the image is renamed into internal storage when both directories are on the same volume,
+     * which moves it without copying its content, or copied between file channels.
+     * Stored images of the edited entry are referenced as they are.
+     * <br>
+     * The temporary list is read when the method is called and updated on the callback executor once the images
+     * are stored. Images removed from the temporary list in the meantime are not added to the result.
      *
-     * @param imagePaths The list of image paths to store for the entry.
+     * @return Future completed on the callback executor with the list of image paths to store for the entry,
+     * or exceptionally with the error that stopped the images from being stored, such as an image that could not
+     * be stored. Images stored before the error are then kept in the temporary list as images of the session,
+     * see {@link #restoreStoredImages(List)}.
      * */
-    public void moveImagesToInternalStorage(List<String> imagePaths) {
-        Iterator<String> iterator = tempImagePaths.iterator();
-        while (iterator.hasNext()) {
-            String tempImagePath = iterator.next();
-            File tempFile = new File(tempImagePath);
-            if (tempFile.exists()) {
-                String fileName = "image_" + System.currentTimeMillis() + ".jpg";
-                File imageFile = new File(filesDir, fileName);
-
-                boolean success = false;
-
-                try (FileInputStream in = new FileInputStream(tempFile);
-                     FileOutputStream out = new FileOutputStream(imageFile)) {
-
-                    byte[] buffer = new byte[1024];
-                    int length;
-                    while ((length = in.read(buffer)) > 0) {
-                        out.write(buffer, 0, length);
+    public CompletableFuture<List<String>> storeImages() {
+        List<String> pendingPaths = new ArrayList<>(tempImagePaths);
+        Set<String> storedPaths = new HashSet<>(originalImagePaths);
+        storedPaths.addAll(unsavedStoredImagePaths);
+        Executor callbacks = getCallbackExecutor();
+        CompletableFuture<List<String>> future = new CompletableFuture<>();
+        try {
+            diskExecutor.execute(() -> {
+                List<String> results = new ArrayList<>(pendingPaths.size());
+                Exception error = null;
+                try {
+                    for (String tempImagePath : pendingPaths) {
+                        results.add(storedPaths.contains(tempImagePath) ? tempImagePath : storeImage(tempImagePath));
+                    }
+                } catch (RuntimeException e) {
+                    error = e;
+                }
+                Exception storeError = error;
+                callbacks.execute(() -> {
+                    Exception failure = storeError;
+                    for (int i = 0; failure == null && i < results.size(); i++) {
+                        // An image that could not be stored fails the save, unless it was discarded in the meantime
+                        if (results.get(i) == null && tempImagePaths.contains(pendingPaths.get(i))) {
+                            failure = new IOException("Failed to store image: " + pendingPaths.get(i));
+                        }
+                    }
+                    if (failure != null) {
+                        keepStoredImages(pendingPaths, results);
+                        future.completeExceptionally(failure);
+                        return;
+                    }
+                    List<String> imagePaths = new ArrayList<>();
+                    for (int i = 0; i < pendingPaths.size(); i++) {
+                        String tempImagePath = pendingPaths.get(i);
+                        String storedImagePath = results.get(i);
+                        if (storedImagePath != null && tempImagePaths.remove(tempImagePath)) {
+                            imagePaths.add(storedImagePath);
+                            tempImageHashes.remove(tempImagePath);
+                        }
                     }
+                    future.complete(imagePaths);
+                });
+            });
+        } catch (RejectedExecutionException e) {
+            callbacks.execute(() -> future.completeExceptionally(e));
+        }
+        return future;
+    }
+
+    /**
+     * Replaces the temporary images that were stored before a failed store with their stored images.
+     * <br>
+     * The stored images are kept as images of the session, so that they are released if the entry is not saved.
+     *
+     * @param pendingPaths The temporary image paths that were being stored.
+     * @param results The stored image paths of the images stored before the failure, null for failed images.
+     * */
+    private void keepStoredImages(List<String> pendingPaths, List<String> results) {
+        for (int i = 0; i < results.size(); i++) {
+            String storedImagePath = results.get(i);
+            int index = tempImagePaths.indexOf(pendingPaths.get(i));
+            if (storedImagePath != null && index >= 0 && !storedImagePath.equals(pendingPaths.get(i))) {
+                tempImagePaths.set(index, storedImagePath);
+                tempImageHashes.remove(pendingPaths.get(i));
+                unsavedStoredImagePaths.add(storedImagePath);
+            }
+        }
+    }
 
-                    // Indicate that copying was successful
-                    success = true;
+    /**
+     * Stores a temporary image in internal storage under the hash of its content.
+     * <br>
+     * What remains of the temporary image is deleted once the image is stored.
+     *
+     * @param tempImagePath The path of the temporary image.
+     * @return The path of the stored image, or null if the image could not be stored.
+     * */
+    private String storeImage(String tempImagePath) {
+        File tempFile = new File(tempImagePath);
+        if (!tempFile.exists()) {
+            return null;
+        }
+        String hash = tempImageHashes.get(tempImagePath);
+        if (hash == null) {
+            try {
+                hash = ContentHasher.hash(tempFile);
+            } catch (IOException e) {
+                Log.e("ImageHandler", "Error moving file: " + tempImagePath, e);
+                return null;
+            }
+        }
+        File imageFile = new File(filesDir, STORED_IMAGE_PREFIX + hash + STORED_IMAGE_EXTENSION);
 
-                } catch (IOException e) {
-                    Log.e("ImageHandler", "Error moving file: " + tempImagePath, e);
-                }
+        synchronized (STORED_IMAGES_LOCK) {
+            // If the content is already stored, only the reference to it is added
+            if (!reuseStoredImage(imageFile) && !moveFile(tempFile, imageFile)) {
+                return null;
+            }
+        }
 
-                // After successfully copying, delete the original file
-                if (success) {
-                    // After streams are closed, attempt to delete the original file
-                    if (tempFile.delete()) {
-                        imagePaths.add(imageFile.getAbsolutePath());
-                        iterator.remove(); // Remove the path from tempImagePaths to keep it updated
-                    } else {
-                        Log.e("ImageHandler", "Failed to delete temp file: " + tempImagePath);
-                    }
-                }
+        // Move the variants of the image along with it, an image without variants is loaded from the original
+        for (ImageVariants.Variant variant : ImageVariants.Variant.values()) {
+            File tempVariantFile = ImageVariants.getVariantFile(tempFile, variant);
+            File variantFile = ImageVariants.getVariantFile(imageFile, variant);
+            if (tempVariantFile.exists() && !variantFile.exists()) {
+                moveFile(tempVariantFile, variantFile);
             }
         }
+        // Delete what remains of the temporary image, such as the copy of an image already stored
+        if (!ImageVariants.deleteImage(tempImagePath)) {
+            Log.e("ImageHandler", "Failed to delete temp file: " + tempImagePath);
+        }
+        return imageFile.getAbsolutePath();
     }
 
     /**
@@ -163,33 +424,325 @@ public class ImageHandler {
      * to clear cache storage.
      * */
     public void deleteTemporaryImages() {
+        List<String> deletedPaths = new ArrayList<>();
         for (String tempImagePath : tempImagePaths) {
-            File tempFile = new File(tempImagePath);
-            if (tempFile.exists() && !tempFile.delete()) {
-                Log.e("ImageHandler", "Failed to delete temp image: " + tempImagePath);
+            // Stored images are referenced in place and are kept, they are released by the repository
+            if (!isStoredImage(tempImagePath)) {
+                deletedPaths.add(tempImagePath);
             }
         }
+        if (!deletedPaths.isEmpty()) {
+            diskExecutor.execute(() -> {
+                for (String tempImagePath : deletedPaths) {
+                    if (!ImageVariants.deleteImage(tempImagePath)) {
+                        Log.e("ImageHandler", "Failed to delete temp image: " + tempImagePath);
+                    }
+                }
+            });
+        }
         tempImagePaths.clear();
+        tempImageHashes.clear();
     }
 
     /**
-     * Deletes previously saved images that were removed in an update.
+     * Returns whether an image of the temporary list is already in internal storage.
+     *
+     * @param imagePath The path of the image.
+     * @return True for the stored images of the edited entry and the images stored by a save that failed.
+     */
+    private boolean isStoredImage(String imagePath) {
+        return originalImagePaths.contains(imagePath) || unsavedStoredImagePaths.contains(imagePath);
+    }
+
+    /**
+     * Copies a single image of an import and delivers the result on the callback executor.
+     *
+     * @param task The import the image belongs to.
+     * @param index The index of the image in the import.
+     * @param uri The URI of the image.
+     */
+    private void importImage(ImportTask task, int index, Uri uri) {
+        File imageFile = null;
+        String hash = null;
+        IOException error = null;
+        try {
+            if (task.isCancelled()) {
+                throw new InterruptedIOException("Image import cancelled");
+            }
+            imageFile = createUniqueFile(cacheDir, TEMP_IMAGE_PREFIX);
+            long totalBytes = queryImageSize(uri);
+            hash = copyImage(uri, imageFile, task, bytesCopied -> getCallbackExecutor().execute(() -> {
+                if (!task.isCancelled()) {
+                    task.callback.onImageProgress(index, bytesCopied, totalBytes);
+                }
+            }));
+            createVariants(imageFile);
+        } catch (IOException e) {
+            if (!task.isCancelled()) {
+                Log.e("ImageHandler", "Failed to import image: " + uri, e);
+            }
+            deletePartialImage(imageFile);
+            imageFile = null;
+            error = e;
+        }
+
+        File importedFile = imageFile;
+        String importedHash = hash;
+        IOException importError = error;
+        getCallbackExecutor().execute(() -> {
+            if (task.isCancelled()) {
+                // The import was cancelled while the image was copied, so nothing tracks the copy
+                deletePartialImage(importedFile);
+                return;
+            }
+            if (importedFile != null) {
+                // Save the file path to a temporary list to track images during the session
+                String imagePath = importedFile.getAbsolutePath();
+                tempImagePaths.add(imagePath);
+                tempImageHashes.put(imagePath, importedHash);
+                task.importedCount++;
+                task.pendingCount.decrementAndGet();
+                task.callback.onImageImported(index, imagePath);
+            } else {
+                task.failedCount++;
+                task.pendingCount.decrementAndGet();
+                task.callback.onImageFailed(index, uri, importError);
+            }
+            if (task.pendingCount.get() == 0) {
+                task.callback.onImportFinished(task.importedCount, task.failedCount);
+            }
+        });
+    }
+
+    /**
+     * Copies the content of an image to a file.
+     *
+     * @param uri The URI of the image.
+     * @param target The file to copy the image to.
+     * @param task The import the image belongs to, checked for cancellation, or null.
+     * @param progressListener The listener notified of the number of bytes copied, or null.
+     * @return The content hash of the image, computed while it is copied.
+     * @throws IOException If the image cannot be read or written, or the import is cancelled.
+     */
+    private String copyImage(Uri uri, File target, ImportTask task, LongConsumer progressListener) throws IOException {
+        MessageDigest digest = ContentHasher.newDigest();
+        try (InputStream inputStream = contentResolver.openInputStream(uri)) {
+            if (inputStream == null) {
+                throw new IOException("Failed to open image: " + uri);
+            }
+            try (OutputStream outputStream = new DigestOutputStream(new FileOutputStream(target), digest)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long bytesCopied = 0;
+                long bytesReported = 0;
+                int length;
+                while ((length = inputStream.read(buffer)) > 0) {
+                    if (task != null && task.isCancelled()) {
+                        throw new InterruptedIOException("Image import cancelled");
+                    }
+                    outputStream.write(buffer, 0, length);
+                    bytesCopied += length;
+                    // Report progress in steps to avoid flooding the callback executor
+                    if (progressListener != null && bytesCopied - bytesReported >= PROGRESS_INTERVAL) {
+                        progressListener.accept(bytesCopied);
+                        bytesReported = bytesCopied;
+                    }
+                }
+                if (progressListener != null && bytesCopied != bytesReported) {
+                    progressListener.accept(bytesCopied);
+                }
+            }
+        }
+        return ContentHasher.toHex(digest.digest());
+    }
+
+    /**
+     * Returns the content hash of an image in internal storage from its name.
+     *
+     * @param imageFile The image file.
+     * @return The hash, or null if the file is not a content-addressed image.
+     */
+    static String getStoredImageHash(File imageFile) {
+        String name = imageFile.getName();
+        if (!name.startsWith(STORED_IMAGE_PREFIX) || !name.endsWith(STORED_IMAGE_EXTENSION)) {
+            return null;
+        }
+        String hash = name.substring(STORED_IMAGE_PREFIX.length(), name.length() - STORED_IMAGE_EXTENSION.length());
+        return ContentHasher.isHash(hash) ? hash : null;
+    }
+
+    /**
+     * Queries the size of an image from its content provider.
+     *
+     * @param uri The URI of the image.
+     * @return The size of the image in bytes, or -1 if it is unknown.
+     */
+    private long queryImageSize(Uri uri) {
+        try (Cursor cursor = contentResolver.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        } catch (RuntimeException e) {
+            Log.w("ImageHandler", "Failed to query image size: " + uri, e);
+        }
+        return -1;
+    }
+
+    /**
+     * Deletes a partially copied image file.
+     *
+     * @param imageFile The file to delete, or null.
+     */
+    private static void deletePartialImage(File imageFile) {
+        if (imageFile != null && !ImageVariants.deleteImage(imageFile.getAbsolutePath())) {
+            Log.e("ImageHandler", "Failed to delete partial image: " + imageFile);
+        }
+    }
+
+    /**
+     * Creates the variants of an imported image.
      * <br>
-     * The method compares the original image paths with the image paths set after an update.
-     * Image files that are not found in the new path list are removed from storage.
+     * A failure is logged without failing the import, as the original image can still be loaded.
      *
-     * @param originalImagePaths The list of original image paths of an entry prior to editing.
-     * @param savedImagePaths The list of image paths saved temporarily after editing.
-     * */
-    public void deleteImagesRemovedFromOriginal(List<String> originalImagePaths, List<String> savedImagePaths) {
-        for (String originalPath : originalImagePaths) {
-            if (!savedImagePaths.contains(originalPath)) {
-                File originalFile = new File(originalPath);
-                if (originalFile.exists() && !originalFile.delete()) {
-                    Log.e("ImageHandler", "Failed to delete image: " + originalPath);
+     * @param imageFile The imported image file.
+     */
+    private void createVariants(File imageFile) {
+        try {
+            imageVariants.createVariants(imageFile);
+        } catch (IOException e) {
+            Log.w("ImageHandler", "Failed to create image variants: " + imageFile, e);
+        }
+    }
+
+    /**
+     * Moves a file, replacing the target file.
+     * <br>
+     * The file is renamed when both files are on the same volume, which moves it without copying its content.
+     * Otherwise, the file is copied between file channels and the source file is deleted.
+     *
+     * @param source The file to move.
+     * @param target The file to move to.
+     * @return True if the file was moved.
+     */
+    private static boolean moveFile(File source, File target) {
+        if (source.renameTo(target)) {
+            // A renamed file keeps the modification time of the temporary file, which marks new files for collection
+            touchFile(target);
+            return true;
+        }
+        // Copy to a partial file first, so that the target never exists with incomplete content
+        File partialFile = new File(target.getParentFile(), target.getName() + ".partial");
+        try {
+            transferFile(source, partialFile);
+            if (!partialFile.renameTo(target)) {
+                throw new IOException("Failed to rename file: " + partialFile);
+            }
+            if (!source.delete()) {
+                Log.e("ImageHandler", "Failed to delete temp file: " + source);
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e("ImageHandler", "Error moving file: " + source, e);
+            if (partialFile.exists() && !partialFile.delete()) {
+                Log.e("ImageHandler", "Failed to delete partial file: " + partialFile);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Reuses a stored image, touching it so that it is neither released nor collected as an orphan
+     * before the reference to it is saved.
+     * <br>
+     * The check runs under {@link #STORED_IMAGES_LOCK}, so an image that is being released is either deleted
+     * before it is reused, in which case it is stored again, or kept for {@link #RELEASE_GRACE_PERIOD_MS}.
+     *
+     * @param imageFile The file of the stored image.
+     * @return True if the image is stored.
+     */
+    static boolean reuseStoredImage(File imageFile) {
+        synchronized (STORED_IMAGES_LOCK) {
+            if (!imageFile.exists()) {
+                return false;
+            }
+            touchFile(imageFile);
+            return true;
+        }
+    }
+
+    /**
+     * Sets the modification time of a file to the current time.
+     * <br>
+     * {@link OrphanImageCollector} only checks files modified since its previous sweep, and only once they are
+     * older than its grace period.
+     *
+     * @param file The file to touch.
+     */
+    private static void touchFile(File file) {
+        if (!file.setLastModified(System.currentTimeMillis())) {
+            Log.w("ImageHandler", "Failed to update modification time: " + file);
+        }
+    }
+
+    /**
+     * Returns the executor on which import callbacks are delivered.
+     * <br>
+     * The main thread executor is created on first use, so handlers that are not used for imports
+     * do not depend on the main looper.
+     */
+    private Executor getCallbackExecutor() {
+        if (callbackExecutor == null) {
+            Handler handler = new Handler(Looper.getMainLooper());
+            callbackExecutor = handler::post;
+        }
+        return callbackExecutor;
+    }
+
+    /**
+     * Creates a new empty image file with a unique name in a directory.
+     * <br>
+     * The name is based on the current time, with a counter added if a file with that name already exists.
+     * Creating the file reserves the name, so images stored at the same time do not overwrite each other.
+     *
+     * @param directory The directory in which to create the file.
+     * @param prefix The prefix of the file name.
+     * @return The created file.
+     * @throws IOException If the file cannot be created.
+     */
+    private static File createUniqueFile(File directory, String prefix) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        for (int attempt = 0; ; attempt++) {
+            String fileName = prefix + timestamp + (attempt == 0 ? "" : "_" + attempt) + ".jpg";
+            File file = new File(directory, fileName);
+            if (file.createNewFile()) {
+                return file;
+            }
+        }
+    }
+
+    /**
+     * Copies a file by transferring its content between file channels.
+     * <br>
+     * The transfer is performed by the kernel where supported, without copying the content through the Java heap.
+     *
+     * @param source The file to copy.
+     * @param target The file to copy to, replaced if it already exists.
+     * @throws IOException If an I/O error occurs while copying.
+     */
+    private static void transferFile(File source, File target) throws IOException {
+        try (FileInputStream in = new FileInputStream(source);
+             FileOutputStream out = new FileOutputStream(target)) {
+            FileChannel inChannel = in.getChannel();
+            FileChannel outChannel = out.getChannel();
+            long size = inChannel.size();
+            long position = 0;
+            while (position < size) {
+                long transferred = inChannel.transferTo(position,
+                        Math.min(size - position, TRANSFER_CHUNK_SIZE), outChannel);
+                if (transferred <= 0) {
+                    throw new IOException("Failed to copy file: " + source);
                 }
+                position += transferred;
             }
         }
     }
 }
-
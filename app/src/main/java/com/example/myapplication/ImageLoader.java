@@ -0,0 +1,226 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.ImageView;
+
+import androidx.annotation.DrawableRes;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+/**
+ * The ImageLoader class loads stored images into image views without blocking the main thread.
+ * <br>
+ * Images are decoded on a background pool at the size of the view, using the smallest variant of the image
+ * that fits, and kept in the application-wide {@link BitmapCache}. Images found in the cache are displayed immediately.
+ * Images are read from the {@link ThumbnailDiskCache} before they are decoded from the stored image,
+ * so that images decoded in an earlier session are not decoded from their full size again.
+ * <br>
+ * Each view has at most one load request. Loading another image into a view, or cancelling the view
+ * when it is recycled, cancels its pending request and releases the bitmap it displayed.
+ * All methods must be called on the main thread.
+ * */
+public class ImageLoader {
+    // Define singleton loader instance
+    private static volatile ImageLoader INSTANCE;
+
+    private final BitmapCache bitmapCache;
+    private final ThumbnailDiskCache thumbnailDiskCache;
+    private final AppExecutors.TaskPool decodeExecutor;
+    private final Handler mainHandler;
+
+    /**
+     * A request to load an image into a view.
+     */
+    private static final class Request {
+        private final String key;
+        private Future<?> future;
+        // Bitmap displayed for the request, released when the request is cancelled
+        private Bitmap bitmap;
+
+        private Request(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Gets the singleton loader instance.
+     *
+     * @param context The application context.
+     * @return The singleton ImageLoader instance.
+     */
+    public static ImageLoader getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (ImageLoader.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ImageLoader(BitmapCache.getInstance(context),
+                            ThumbnailDiskCache.getInstance(context));
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    private ImageLoader(BitmapCache bitmapCache, ThumbnailDiskCache thumbnailDiskCache) {
+        this.bitmapCache = bitmapCache;
+        this.thumbnailDiskCache = thumbnailDiskCache;
+        this.decodeExecutor = AppExecutors.getInstance().cpu();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+    }
+
+    /**
+     * Loads an image into a view.
+     *
+     * @param imageView The view to display the image in.
+     * @param imagePath The path of the original image.
+     * @param targetSize The longer edge of the view bounds in pixels.
+     * @param placeholder The drawable displayed if the image cannot be loaded.
+     */
+    public void load(ImageView imageView, String imagePath, int targetSize, @DrawableRes int placeholder) {
+        String path = ImageVariants.selectImagePath(imagePath, targetSize);
+        String key = path + "@" + targetSize;
+
+        Request current = (Request) imageView.getTag(R.id.image_load_request);
+        if (current != null && current.key.equals(key) && (current.bitmap != null || current.future != null)) {
+            // The image is already displayed or being loaded in the view
+            return;
+        }
+        cancel(imageView);
+
+        Request request = new Request(key);
+        imageView.setTag(R.id.image_load_request, request);
+
+        Bitmap cached = bitmapCache.getAndAcquire(key);
+        if (cached != null) {
+            request.bitmap = cached;
+            imageView.setImageBitmap(cached);
+            return;
+        }
+
+        imageView.setImageDrawable(null);
+        request.future = decodeExecutor.submit(() -> {
+            Bitmap bitmap = decode(path, targetSize);
+            if (bitmap != null) {
+                bitmapCache.putAndAcquire(key, bitmap);
+            }
+            mainHandler.post(() -> deliver(imageView, request, bitmap, placeholder));
+        }, AppExecutors.Priority.USER_VISIBLE);
+    }
+
+    /**
+     * Cancels the pending load of a view and releases the bitmap it displays.
+     * <br>
+     * This must be called when the view is recycled, so that the memory of its bitmap can be reused.
+     *
+     * @param imageView The view to cancel.
+     */
+    public void cancel(ImageView imageView) {
+        Request request = (Request) imageView.getTag(R.id.image_load_request);
+        if (request == null) {
+            return;
+        }
+        imageView.setTag(R.id.image_load_request, null);
+        if (request.future != null) {
+            // A decode that already started is released when it is delivered
+            request.future.cancel(false);
+        }
+        if (request.bitmap != null) {
+            // Stop displaying the bitmap before it can be reused for another image
+            imageView.setImageDrawable(null);
+            bitmapCache.release(request.bitmap);
+            request.bitmap = null;
+        }
+    }
+
+    /**
+     * Displays a decoded image if its request is still current.
+     *
+     * @param imageView The view of the request.
+     * @param request The request.
+     * @param bitmap The decoded bitmap, or null if the image could not be decoded.
+     * @param placeholder The drawable displayed if the image could not be decoded.
+     */
+    private void deliver(ImageView imageView, Request request, Bitmap bitmap, @DrawableRes int placeholder) {
+        if (imageView.getTag(R.id.image_load_request) != request) {
+            // The request was cancelled while decoding
+            if (bitmap != null) {
+                bitmapCache.release(bitmap);
+            }
+            return;
+        }
+        request.future = null;
+        if (bitmap != null) {
+            request.bitmap = bitmap;
+            imageView.setImageBitmap(bitmap);
+        } else {
+            imageView.setImageResource(placeholder);
+        }
+    }
+
+    /**
+     * Decodes an image for the target size, from its cached thumbnail if available.
+     * <br>
+     * If the decoded image is larger than the target size, a thumbnail scaled to the target size is stored
+     * in the disk cache for later decodes.
+     *
+     * @param path The path of the image to decode.
+     * @param targetSize The longer edge of the view bounds in pixels.
+     * @return The decoded bitmap, or null if the image could not be decoded.
+     */
+    private Bitmap decode(String path, int targetSize) {
+        File source = new File(path);
+        if (!source.exists()) {
+            return null;
+        }
+
+        File thumbnail = thumbnailDiskCache.get(source, targetSize);
+        if (thumbnail != null) {
+            Bitmap bitmap = decodeSampled(thumbnail.getPath(), targetSize);
+            if (bitmap != null) {
+                return bitmap;
+            }
+        }
+
+        Bitmap bitmap = decodeSampled(path, targetSize);
+        if (bitmap != null && targetSize > 0 && Math.max(bitmap.getWidth(), bitmap.getHeight()) > targetSize) {
+            thumbnailDiskCache.put(source, targetSize, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * Decodes an image subsampled to the target size, reusing the memory of a pooled bitmap if possible.
+     *
+     * @param path The path of the image to decode.
+     * @param targetSize The longer edge of the view bounds in pixels.
+     * @return The decoded bitmap, or null if the image could not be decoded.
+     */
+    private Bitmap decodeSampled(String path, int targetSize) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.e("ImageLoader", "Failed to decode image: " + path);
+            return null;
+        }
+
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = ImageVariants.calculateSampleSize(
+                Math.max(options.outWidth, options.outHeight), targetSize);
+        // Decode into mutable bitmaps so that their memory can be reused once they are evicted
+        options.inMutable = true;
+        options.inBitmap = bitmapCache.getReusableBitmap(options);
+        try {
+            return BitmapFactory.decodeFile(path, options);
+        } catch (IllegalArgumentException e) {
+            // The pooled bitmap cannot be reused for this image
+            options.inBitmap = null;
+            return BitmapFactory.decodeFile(path, options);
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.example.myapplication;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.util.Log;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The ImageVariants class creates and locates downsampled variants of stored images.
+ * <br>
+ * When an image is imported, a display variant sized for the screen and a thumbnail variant are stored
+ * next to the original image, with the orientation from the EXIF data of the original applied.
+ * Views then load the smallest variant that fits their bounds instead of decoding the full-resolution original.
+ * <br>
+ * A variant is only created if the original is larger than the variant, so images without variants
+ * are loaded from the original.
+ * */
+public class ImageVariants {
+
+    /**
+     * The variants created for an image, from largest to smallest.
+     */
+    public enum Variant {
+        DISPLAY("_display", 2048),
+        THUMBNAIL("_thumb", 720);
+
+        // Suffix added to the name of the original image
+        private final String suffix;
+        // Maximum length of the longer edge of the variant in pixels
+        private final int maxSize;
+
+        Variant(String suffix, int maxSize) {
+            this.suffix = suffix;
+            this.maxSize = maxSize;
+        }
+
+        /** Returns the maximum length of the longer edge of the variant in pixels. */
+        public int getMaxSize() {
+            return maxSize;
+        }
+    }
+
+    // Quality of the compressed variants
+    private static final int JPEG_QUALITY = 85;
+    // Extension of stored images
+    private static final String EXTENSION = ".jpg";
+
+    /**
+     * Creates the variants of an image.
+     * <br>
+     * The original is decoded once, subsampled to the size of the largest variant, and each smaller variant is
+     * scaled down from the previous one. Variants that would not be smaller than the original are not created.
+     *
+     * @param original The original image file.
+     * @throws IOException If the image cannot be decoded or a variant cannot be written.
+     */
+    public void createVariants(File original) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(original.getAbsolutePath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Failed to decode image: " + original);
+        }
+        int longEdge = Math.max(options.outWidth, options.outHeight);
+
+        Bitmap bitmap = null;
+        try {
+            for (Variant variant : Variant.values()) {
+                if (longEdge <= variant.maxSize) {
+                    continue;
+                }
+                if (bitmap == null) {
+                    // Decode the original at the lowest resolution that still covers the largest variant
+                    options.inJustDecodeBounds = false;
+                    options.inSampleSize = calculateSampleSize(longEdge, variant.maxSize);
+                    bitmap = BitmapFactory.decodeFile(original.getAbsolutePath(), options);
+                    if (bitmap == null) {
+                        throw new IOException("Failed to decode image: " + original);
+                    }
+                    bitmap = replace(bitmap, applyOrientation(bitmap, readOrientation(original)));
+                }
+                bitmap = replace(bitmap, scaleToFit(bitmap, variant.maxSize));
+                writeVariant(bitmap, getVariantFile(original, variant));
+            }
+        } finally {
+            if (bitmap != null) {
+                bitmap.recycle();
+            }
+        }
+    }
+
+    /**
+     * Returns the file in which a variant of an image is stored.
+     *
+     * @param original The original image file.
+     * @param variant The variant.
+     * @return The variant file, which may not exist.
+     */
+    public static File getVariantFile(File original, Variant variant) {
+        String name = original.getName();
+        String baseName = name.endsWith(EXTENSION) ? name.substring(0, name.length() - EXTENSION.length()) : name;
+        return new File(original.getParentFile(), baseName + variant.suffix + EXTENSION);
+    }
+
+    /**
+     * Returns the original image of a variant file.
+     *
+     * @param file An image or variant file.
+     * @return The original image file, or the given file if it is not a variant.
+     */
+    public static File getOriginalFile(File file) {
+        String name = file.getName();
+        for (Variant variant : Variant.values()) {
+            String variantEnding = variant.suffix + EXTENSION;
+            if (name.endsWith(variantEnding)) {
+                String originalName = name.substring(0, name.length() - variantEnding.length()) + EXTENSION;
+                return new File(file.getParentFile(), originalName);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Returns the variant files of an image that exist.
+     *
+     * @param original The original image file.
+     * @return The existing variant files.
+     */
+    public static List<File> getExistingVariantFiles(File original) {
+        List<File> variantFiles = new ArrayList<>();
+        for (Variant variant : Variant.values()) {
+            File variantFile = getVariantFile(original, variant);
+            if (variantFile.exists()) {
+                variantFiles.add(variantFile);
+            }
+        }
+        return variantFiles;
+    }
+
+    /**
+     * Selects the path of the smallest stored version of an image that fits the given size.
+     * <br>
+     * A variant fits if its longer edge is at least the given size. If no variant fits or none was created,
+     * the path of the original image is returned.
+     *
+     * @param originalPath The path of the original image.
+     * @param targetSize The longer edge of the bounds in which the image is displayed, in pixels.
+     * @return The path of the image to load.
+     */
+    public static String selectImagePath(String originalPath, int targetSize) {
+        File original = new File(originalPath);
+        Variant[] variants = Variant.values();
+        // Check the variants from smallest to largest
+        for (int i = variants.length - 1; i >= 0; i--) {
+            if (targetSize <= variants[i].maxSize) {
+                File variantFile = getVariantFile(original, variants[i]);
+                if (variantFile.exists()) {
+                    return variantFile.getAbsolutePath();
+                }
+            }
+        }
+        return originalPath;
+    }
+
+    /**
+     * Deletes an image and its variants from storage.
+     *
+     * @param imagePath The path of the original image.
+     * @return True if the original image no longer exists.
+     */
+    public static boolean deleteImage(String imagePath) {
+        File original = new File(imagePath);
+        for (File variantFile : getExistingVariantFiles(original)) {
+            if (!variantFile.delete()) {
+                Log.e("ImageVariants", "Failed to delete image variant: " + variantFile);
+            }
+        }
+        return !original.exists() || original.delete();
+    }
+
+    /**
+     * Calculates the largest power of two sample size that keeps the decoded image at least the target size.
+     *
+     * @param longEdge The longer edge of the original image.
+     * @param targetSize The longer edge of the decoded image to cover.
+     * @return The sample size to decode the image with.
+     */
+    static int calculateSampleSize(int longEdge, int targetSize) {
+        int sampleSize = 1;
+        if (targetSize <= 0) {
+            return sampleSize;
+        }
+        while (longEdge / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Reads the EXIF orientation of an image.
+     *
+     * @param original The image file.
+     * @return The orientation, or {@link ExifInterface#ORIENTATION_NORMAL} if it cannot be read.
+     */
+    private static int readOrientation(File original) {
+        try {
+            ExifInterface exif = new ExifInterface(original.getAbsolutePath());
+            return exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        } catch (IOException e) {
+            Log.w("ImageVariants", "Failed to read image orientation: " + original, e);
+            return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    /**
+     * Rotates and flips a bitmap so that it is displayed upright.
+     *
+     * @param bitmap The decoded bitmap.
+     * @param orientation The EXIF orientation of the image.
+     * @return The upright bitmap, which is the given bitmap if no transformation is needed.
+     */
+    private static Bitmap applyOrientation(Bitmap bitmap, int orientation) {
+        Matrix matrix = new Matrix();
+        switch (orientation) {
+            case ExifInterface.ORIENTATION_FLIP_HORIZONTAL:
+                matrix.setScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                matrix.setRotate(180);
+                break;
+            case ExifInterface.ORIENTATION_FLIP_VERTICAL:
+                matrix.setScale(1, -1);
+                break;
+            case ExifInterface.ORIENTATION_TRANSPOSE:
+                matrix.setRotate(90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                matrix.setRotate(90);
+                break;
+            case ExifInterface.ORIENTATION_TRANSVERSE:
+                matrix.setRotate(-90);
+                matrix.postScale(-1, 1);
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                matrix.setRotate(-90);
+                break;
+            default:
+                return bitmap;
+        }
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    /**
+     * Scales a bitmap down so that its longer edge is at most the given size.
+     *
+     * @param bitmap The bitmap to scale.
+     * @param maxSize The maximum length of the longer edge.
+     * @return The scaled bitmap, which is the given bitmap if it already fits.
+     */
+    private static Bitmap scaleToFit(Bitmap bitmap, int maxSize) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int longEdge = Math.max(width, height);
+        if (longEdge <= maxSize) {
+            return bitmap;
+        }
+        float scale = (float) maxSize / longEdge;
+        return Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)), true);
+    }
+
+    /**
+     * Recycles a bitmap that was replaced by a transformed copy.
+     *
+     * @param previous The previous bitmap.
+     * @param next The transformed bitmap.
+     * @return The transformed bitmap.
+     */
+    private static Bitmap replace(Bitmap previous, Bitmap next) {
+        if (next != previous) {
+            previous.recycle();
+        }
+        return next;
+    }
+
+    /**
+     * Writes a variant as a compressed JPEG file.
+     *
+     * @param bitmap The bitmap of the variant.
+     * @param variantFile The file to write to.
+     * @throws IOException If the file cannot be written.
+     */
+    private static void writeVariant(Bitmap bitmap, File variantFile) throws IOException {
+        boolean written = false;
+        try (OutputStream outputStream = new FileOutputStream(variantFile)) {
+            written = bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+        } finally {
+            // Remove incomplete variants, so that the original is loaded instead
+            if (!written && !variantFile.delete()) {
+                Log.e("ImageVariants", "Failed to delete image variant: " + variantFile);
+            }
+        }
+        if (!written) {
+            throw new IOException("Failed to write image variant: " + variantFile);
+        }
+    }
+}
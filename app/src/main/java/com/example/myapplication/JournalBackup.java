@@ -0,0 +1,877 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The JournalBackup class writes the journal to zip archives and restores it from them.
+ * <br>
+ * An archive holds, in this order, a manifest describing the backup, the attached image files and their variants
+ * under images/, the IDs of deleted entries, and the entries as a JSON array referencing their images by file name.
+ * Entries and image paths are read from the database in pages and written as they are read, so memory use does not
+ * depend on the size of the journal.
+ * <br>
+ * A full backup holds every entry. An incremental backup only holds the entries written since the previous backup,
+ * the images first attached to them, and the entries deleted since, found from the change sequence that
+ * {@link JournalEntryDao} sets on every write and from the tombstones of deleted entries. Each backup covers the
+ * changes up to the latest change sequence when it started, so changes written while it runs are included
+ * in the next backup.
+ * <br>
+ * A journal is restored from a full backup followed by the chain of incremental backups made after it. The archives
+ * are applied from the newest to the oldest, inserting only the latest version of each entry with a new ID, so
+ * a backup can be merged into an existing journal. Entries keep the UUID they were backed up with, and entries
+ * whose UUID is already in the journal are skipped, so restoring a backup into a journal that holds its entries
+ * does not duplicate them. Images are written to internal storage before the entries of each archive.
+ * The progress is saved after each batch of entries, and restoring the same archives again after
+ * an interruption skips the images already stored and the entries already restored.
+ * */
+public class JournalBackup {
+    // Version of the archive format written by this class, entries have a UUID since version 3
+    static final int FORMAT_VERSION = 3;
+    // Types of backups
+    static final String TYPE_FULL = "full";
+    static final String TYPE_INCREMENTAL = "incremental";
+    // Names of the archive entries
+    static final String MANIFEST_NAME = "manifest.json";
+    static final String DELETIONS_NAME = "deletions.json";
+    static final String ENTRIES_NAME = "entries.json";
+    static final String IMAGES_DIRECTORY = "images/";
+    // Number of entries, image paths or deleted IDs read from the database per query
+    private static final int PAGE_SIZE = 200;
+    // Number of entries inserted per transaction when restoring
+    private static final int RESTORE_BATCH_SIZE = 200;
+    // Buffer size for copying image streams
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Names of the files holding the checkpoint of the last backup and the progress of a restore
+    static final String BACKUP_STATE_FILE = "backup_state.properties";
+    static final String RESTORE_STATE_FILE = "restore_state.properties";
+    // Keys of the backup state file
+    private static final String LAST_BACKUP_ID = "lastBackupId";
+    private static final String LAST_CHANGE_SEQ = "lastChangeSeq";
+    // Keys of the restore state file
+    private static final String CHAIN_ID = "chainId";
+    private static final String ARCHIVE_INDEX = "archiveIndex";
+    private static final String RESTORED_ENTRY_COUNT = "restoredEntryCount";
+    // Suffix of the temporary files of restored images, which are renamed once complete. A file left by
+    // an interrupted restore keeps the prefix of stored images, so it is deleted as an orphan
+    private static final String RESTORING_IMAGE_SUFFIX = ".restoring";
+
+    private final AppDatabase database;
+    private final JournalEntryDao journalEntryDao;
+    private final File filesDir;
+    private final File backupStateFile;
+    private final File restoreStateFile;
+
+    /**
+     * Callback interface for the progress of a backup or restore.
+     * <br>
+     * The methods are called on the thread running the backup or restore.
+     */
+    public interface ProgressListener {
+        /**
+         * Called after each entry or image is written.
+         *
+         * @param completed The number of entries and images written so far.
+         * @param total The number of entries and images in the journal or archives.
+         */
+        void onProgress(long completed, long total);
+    }
+
+    /**
+     * A backup archive that can be read more than once.
+     */
+    public interface ArchiveSource {
+        /**
+         * Opens the archive.
+         *
+         * @return A new stream reading the archive from its start.
+         * @throws IOException If the archive cannot be opened.
+         */
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Creates a backup for the journal of the application.
+     *
+     * @param context The application context.
+     */
+    public JournalBackup(Context context) {
+        this(AppDatabase.getDatabase(context), AppDatabase.getDatabase(context).journalEntryDao(),
+                context.getFilesDir(), context.getNoBackupFilesDir());
+    }
+
+    /**
+     * Creates a backup for the given database and image directory.
+     *
+     * @param database The database in which entries are restored.
+     * @param journalEntryDao The DAO used to read and insert entries.
+     * @param filesDir The directory of the stored images.
+     * @param stateDir The directory in which the checkpoint of the last backup and the progress of a restore
+     *                 are saved.
+     */
+    JournalBackup(AppDatabase database, JournalEntryDao journalEntryDao, File filesDir, File stateDir) {
+        this.database = database;
+        this.journalEntryDao = journalEntryDao;
+        this.filesDir = filesDir;
+        this.backupStateFile = new File(stateDir, BACKUP_STATE_FILE);
+        this.restoreStateFile = new File(stateDir, RESTORE_STATE_FILE);
+    }
+
+    /**
+     * Writes a full backup of the journal to a zip archive.
+     * <br>
+     * This performs file and database operations and must not be called on the main thread.
+     *
+     * @param outputStream The stream the archive is written to, which is closed by this method.
+     * @param listener The listener notified of the progress, or null.
+     * @throws IOException If the archive cannot be written.
+     */
+    public void backup(OutputStream outputStream, ProgressListener listener) throws IOException {
+        writeArchive(outputStream, null, -1, listener);
+    }
+
+    /**
+     * Writes an incremental backup of the changes since the previous backup to a zip archive.
+     * <br>
+     * A full backup is written instead if no backup was made before.
+     * This performs file and database operations and must not be called on the main thread.
+     *
+     * @param outputStream The stream the archive is written to, which is closed by this method.
+     * @param listener The listener notified of the progress, or null.
+     * @return True if an incremental backup was written, false if a full backup was written.
+     * @throws IOException If the archive cannot be written.
+     */
+    public boolean backupIncremental(OutputStream outputStream, ProgressListener listener) throws IOException {
+        Properties state = readState(backupStateFile);
+        String previousId = state.getProperty(LAST_BACKUP_ID);
+        long sinceSeq = parseLong(state.getProperty(LAST_CHANGE_SEQ), -1);
+        if (previousId == null || sinceSeq < 0) {
+            backup(outputStream, listener);
+            return false;
+        }
+        writeArchive(outputStream, previousId, sinceSeq, listener);
+        return true;
+    }
+
+    /**
+     * Writes the entries changed within a range of change sequences to a zip archive, and saves the end of
+     * the range as the checkpoint of the next incremental backup once the archive is written.
+     *
+     * @param outputStream The stream the archive is written to, which is closed by this method.
+     * @param previousId The ID of the previous backup, or null for a full backup.
+     * @param sinceSeq The change sequence covered by the previous backup, or -1 for a full backup.
+     * @param listener The listener notified of the progress, or null.
+     * @throws IOException If the archive cannot be written.
+     */
+    private void writeArchive(OutputStream outputStream, String previousId, long sinceSeq,
+                              ProgressListener listener) throws IOException {
+        long untilSeq = journalEntryDao.getLastChangeSeq();
+        int entryCount = journalEntryDao.countChangedEntries(sinceSeq, untilSeq);
+        int imageCount = journalEntryDao.countChangedImagePaths(sinceSeq, untilSeq);
+        String backupId = UUID.randomUUID().toString();
+        long total = entryCount + (long) imageCount;
+        long completed = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(outputStream)) {
+            zip.putNextEntry(new ZipEntry(MANIFEST_NAME));
+            JsonWriter manifestWriter = newJsonWriter(zip);
+            manifestWriter.beginObject();
+            manifestWriter.name("formatVersion").value(FORMAT_VERSION);
+            manifestWriter.name("backupId").value(backupId);
+            manifestWriter.name("type").value(previousId == null ? TYPE_FULL : TYPE_INCREMENTAL);
+            if (previousId != null) {
+                manifestWriter.name("previousId").value(previousId);
+            }
+            manifestWriter.name("sinceSeq").value(sinceSeq);
+            manifestWriter.name("untilSeq").value(untilSeq);
+            manifestWriter.name("createdAt").value(System.currentTimeMillis());
+            manifestWriter.name("entryCount").value(entryCount);
+            manifestWriter.name("imageCount").value(imageCount);
+            manifestWriter.endObject();
+            manifestWriter.flush();
+            zip.closeEntry();
+
+            // Images are already compressed, so they are stored without deflating them again
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            String afterPath = "";
+            List<String> imagePaths;
+            while (!(imagePaths = journalEntryDao.getChangedImagePathsPage(sinceSeq, untilSeq, afterPath, PAGE_SIZE))
+                    .isEmpty()) {
+                for (String imagePath : imagePaths) {
+                    File original = new File(imagePath);
+                    if (original.exists()) {
+                        writeImage(zip, original);
+                        for (File variantFile : ImageVariants.getExistingVariantFiles(original)) {
+                            writeImage(zip, variantFile);
+                        }
+                    } else {
+                        Log.w("JournalBackup", "Missing image skipped: " + imagePath);
+                    }
+                    notifyProgress(listener, ++completed, total);
+                }
+                afterPath = imagePaths.get(imagePaths.size() - 1);
+            }
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+
+            if (previousId != null) {
+                zip.putNextEntry(new ZipEntry(DELETIONS_NAME));
+                JsonWriter deletionsWriter = newJsonWriter(zip);
+                deletionsWriter.beginArray();
+                int afterId = 0;
+                List<Integer> deletedIds;
+                while (!(deletedIds = journalEntryDao.getDeletedEntryIdsPage(sinceSeq, untilSeq, afterId, PAGE_SIZE))
+                        .isEmpty()) {
+                    for (int deletedId : deletedIds) {
+                        deletionsWriter.value(deletedId);
+                    }
+                    afterId = deletedIds.get(deletedIds.size() - 1);
+                }
+                deletionsWriter.endArray();
+                deletionsWriter.flush();
+                zip.closeEntry();
+            }
+
+            zip.putNextEntry(new ZipEntry(ENTRIES_NAME));
+            JsonWriter entriesWriter = newJsonWriter(zip);
+            entriesWriter.beginArray();
+            long afterSeq = sinceSeq;
+            int afterId = Integer.MAX_VALUE;
+            List<JournalEntryEntity> entries;
+            while (!(entries = journalEntryDao.getChangedEntriesPage(afterSeq, afterId, untilSeq, PAGE_SIZE))
+                    .isEmpty()) {
+                List<Integer> ids = new ArrayList<>(entries.size());
+                for (JournalEntryEntity entry : entries) {
+                    ids.add(entry.getId());
+                }
+                // Images are ordered by entry ID, so they are grouped by entry before the page is written
+                Map<Integer, List<String>> imageNames = new HashMap<>();
+                for (JournalImageEntity image : journalEntryDao.getImagesForEntries(ids)) {
+                    imageNames.computeIfAbsent(image.getEntryId(), id -> new ArrayList<>())
+                            .add(new File(image.getPath()).getName());
+                }
+                for (JournalEntryEntity entry : entries) {
+                    entriesWriter.beginObject();
+                    entriesWriter.name("id").value(entry.getId());
+                    entriesWriter.name("uuid").value(entry.getUuid());
+                    entriesWriter.name("title").value(entry.getTitle());
+                    entriesWriter.name("content").value(entry.getContent());
+                    entriesWriter.name("date").value(entry.getDate());
+                    entriesWriter.name("images").beginArray();
+                    List<String> names = imageNames.get(entry.getId());
+                    if (names != null) {
+                        for (String name : names) {
+                            entriesWriter.value(name);
+                        }
+                    }
+                    entriesWriter.endArray();
+                    entriesWriter.endObject();
+                    notifyProgress(listener, ++completed, total);
+                }
+                entriesWriter.flush();
+                JournalEntryEntity last = entries.get(entries.size() - 1);
+                afterSeq = last.getChangeSeq();
+                afterId = last.getId();
+            }
+            entriesWriter.endArray();
+            entriesWriter.flush();
+            zip.closeEntry();
+        }
+
+        // The archive is complete, so the next incremental backup starts from it
+        Properties state = new Properties();
+        state.setProperty(LAST_BACKUP_ID, backupId);
+        state.setProperty(LAST_CHANGE_SEQ, Long.toString(untilSeq));
+        writeState(backupStateFile, state);
+    }
+
+    /**
+     * Restores a journal from a full backup archive.
+     * <br>
+     * This performs file and database operations and must not be called on the main thread.
+     *
+     * @param inputStream The stream the archive is read from, which is closed by this method.
+     * @param listener The listener notified of the progress, or null.
+     * @throws IOException If the archive cannot be read, is not a journal backup or is an incremental backup.
+     */
+    public void restore(InputStream inputStream, ProgressListener listener) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(inputStream)) {
+            Manifest manifest = readManifest(zip);
+            if (manifest.previousId != null) {
+                throw new IOException("An incremental backup must be restored with the backups it follows");
+            }
+            Progress progress = new Progress(manifest.entryCount + manifest.imageCount, listener);
+            Properties state = readRestoreState(manifest.backupId);
+            restoreArchive(zip, 0, false, null, state, progress);
+        }
+        deleteFile(restoreStateFile);
+    }
+
+    /**
+     * Restores a journal from a full backup and the incremental backups made after it, given in any order.
+     * <br>
+     * Each archive is read twice, once for its manifest and once to restore it.
+     * This performs file and database operations and must not be called on the main thread.
+     *
+     * @param archives The archives to restore.
+     * @param listener The listener notified of the progress, or null.
+     * @throws IOException If an archive cannot be read, or the archives do not form a single chain of backups.
+     */
+    public void restore(List<ArchiveSource> archives, ProgressListener listener) throws IOException {
+        // Order the archives from the full backup to the newest incremental backup
+        Map<String, Integer> archivesByPreviousId = new HashMap<>();
+        List<Manifest> manifests = new ArrayList<>(archives.size());
+        int baseIndex = -1;
+        long total = 0;
+        for (int i = 0; i < archives.size(); i++) {
+            Manifest manifest;
+            try (ZipInputStream zip = new ZipInputStream(archives.get(i).open())) {
+                manifest = readManifest(zip);
+            }
+            manifests.add(manifest);
+            total += manifest.entryCount + manifest.imageCount;
+            if (manifest.previousId == null) {
+                if (baseIndex >= 0) {
+                    throw new IOException("More than one full backup selected");
+                }
+                baseIndex = i;
+            } else if (archivesByPreviousId.put(manifest.previousId, i) != null) {
+                throw new IOException("Backups from different chains selected");
+            }
+        }
+        if (baseIndex < 0) {
+            throw new IOException("No full backup selected");
+        }
+        List<Integer> chain = new ArrayList<>(archives.size());
+        for (Integer index = baseIndex; index != null; index = archivesByPreviousId.get(manifests.get(index).backupId)) {
+            chain.add(index);
+        }
+        if (chain.size() != archives.size()) {
+            throw new IOException("Incomplete chain of backups");
+        }
+        Collections.reverse(chain);
+
+        // Newer archives hold the latest version of the entries, so the IDs of their entries and deletions
+        // are tracked to skip the older versions in the following archives
+        Set<Integer> restoredIds = new HashSet<>();
+        Progress progress = new Progress(total, listener);
+        Properties state = readRestoreState(manifests.get(chain.get(0)).backupId);
+        for (int i = 0; i < chain.size(); i++) {
+            try (ZipInputStream zip = new ZipInputStream(archives.get(chain.get(i)).open())) {
+                readManifest(zip);
+                restoreArchive(zip, i, i < chain.size() - 1, restoredIds, state, progress);
+            }
+        }
+        deleteFile(restoreStateFile);
+    }
+
+    /**
+     * The manifest of a backup archive.
+     */
+    private static final class Manifest {
+        private String backupId;
+        // ID of the backup this incremental backup follows, or null for a full backup
+        private String previousId;
+        private long entryCount;
+        private long imageCount;
+    }
+
+    /**
+     * The progress of a restore across its archives.
+     */
+    private static final class Progress {
+        private final long total;
+        private final ProgressListener listener;
+        private long completed;
+
+        Progress(long total, ProgressListener listener) {
+            this.total = total;
+            this.listener = listener;
+        }
+
+        void advance() {
+            notifyProgress(listener, ++completed, total);
+        }
+    }
+
+    /**
+     * Reads the manifest of an archive.
+     *
+     * @param zip The archive, positioned at its start.
+     * @return The manifest.
+     * @throws IOException If the archive is not a journal backup or has an unsupported format.
+     */
+    private static Manifest readManifest(ZipInputStream zip) throws IOException {
+        ZipEntry zipEntry = zip.getNextEntry();
+        if (zipEntry == null || !MANIFEST_NAME.equals(zipEntry.getName())) {
+            throw new IOException("Not a journal backup");
+        }
+        Manifest manifest = new Manifest();
+        int formatVersion = 0;
+        String type = TYPE_FULL;
+        JsonReader reader = newJsonReader(zip);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "formatVersion":
+                    formatVersion = reader.nextInt();
+                    break;
+                case "backupId":
+                    manifest.backupId = reader.nextString();
+                    break;
+                case "type":
+                    type = reader.nextString();
+                    break;
+                case "previousId":
+                    manifest.previousId = reader.nextString();
+                    break;
+                case "entryCount":
+                    manifest.entryCount = reader.nextLong();
+                    break;
+                case "imageCount":
+                    manifest.imageCount = reader.nextLong();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        if (formatVersion < 1 || formatVersion > FORMAT_VERSION || manifest.backupId == null
+                || TYPE_INCREMENTAL.equals(type) != (manifest.previousId != null)) {
+            throw new IOException("Unsupported backup format: " + formatVersion);
+        }
+        return manifest;
+    }
+
+    /**
+     * Reads the progress of an interrupted restore of the given archives.
+     *
+     * @param chainId The ID of the newest archive restored.
+     * @return The saved state if it belongs to the same archives, or a new state otherwise.
+     */
+    private Properties readRestoreState(String chainId) {
+        Properties state = readState(restoreStateFile);
+        if (!chainId.equals(state.getProperty(CHAIN_ID))) {
+            state.clear();
+            state.setProperty(CHAIN_ID, chainId);
+        }
+        return state;
+    }
+
+    /**
+     * Restores the images and entries of an archive.
+     *
+     * @param zip The archive, positioned after its manifest.
+     * @param archiveIndex The position of the archive among the restored archives, from the newest.
+     * @param trackIds Whether to record the IDs of the entries and deletions of the archive in restoredIds.
+     * @param restoredIds The IDs of the entries restored or deleted by newer archives, or null if there are none.
+     * @param state The state of the restore, updated after each batch.
+     * @param progress The progress of the restore.
+     * @throws IOException If the archive cannot be read.
+     */
+    private void restoreArchive(ZipInputStream zip, int archiveIndex, boolean trackIds, Set<Integer> restoredIds,
+                                Properties state, Progress progress) throws IOException {
+        // Names of the images of the archive whose content does not match their name
+        Set<String> corruptedImageNames = new HashSet<>();
+        int completedArchives = (int) parseLong(state.getProperty(ARCHIVE_INDEX), 0);
+        // Entries of an archive completed before an interruption are only read to track their IDs
+        int restoredEntryCount = archiveIndex < completedArchives ? Integer.MAX_VALUE
+                : archiveIndex == completedArchives ? (int) parseLong(state.getProperty(RESTORED_ENTRY_COUNT), 0)
+                : 0;
+        ZipEntry zipEntry;
+        while ((zipEntry = zip.getNextEntry()) != null) {
+            String name = zipEntry.getName();
+            if (name.startsWith(IMAGES_DIRECTORY)) {
+                String fileName = name.substring(IMAGES_DIRECTORY.length());
+                if (!restoreImage(zip, fileName)) {
+                    corruptedImageNames.add(fileName);
+                }
+                if (ImageVariants.getOriginalFile(new File(fileName)).getName().equals(fileName)) {
+                    progress.advance();
+                }
+            } else if (DELETIONS_NAME.equals(name) && trackIds) {
+                JsonReader reader = newJsonReader(zip);
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    restoredIds.add(reader.nextInt());
+                }
+                reader.endArray();
+            } else if (ENTRIES_NAME.equals(name)) {
+                restoreEntries(zip, archiveIndex, restoredEntryCount, trackIds, restoredIds, corruptedImageNames,
+                        state, progress);
+            }
+        }
+        if (archiveIndex >= completedArchives) {
+            state.setProperty(ARCHIVE_INDEX, Integer.toString(archiveIndex + 1));
+            state.setProperty(RESTORED_ENTRY_COUNT, "0");
+            writeState(restoreStateFile, state);
+        }
+    }
+
+    /**
+     * Restores the entries of an archive in batched transactions, skipping the entries already restored
+     * and the entries whose newer version was restored from a newer archive.
+     *
+     * @param inputStream The stream of the entries.
+     * @param archiveIndex The position of the archive among the restored archives, from the newest.
+     * @param restoredEntryCount The number of entries of the archive restored before the restore was interrupted.
+     * @param trackIds Whether to record the IDs of the entries in restoredIds.
+     * @param restoredIds The IDs of the entries restored or deleted by newer archives, or null if there are none.
+     * @param corruptedImageNames The names of the images of the archive that failed verification, which are
+     *                            dropped from the entries.
+     * @param state The state of the restore, updated after each batch.
+     * @param progress The progress of the restore.
+     * @throws IOException If the entries cannot be read.
+     */
+    private void restoreEntries(InputStream inputStream, int archiveIndex, int restoredEntryCount, boolean trackIds,
+                                Set<Integer> restoredIds, Set<String> corruptedImageNames, Properties state,
+                                Progress progress) throws IOException {
+        JsonReader reader = newJsonReader(inputStream);
+        reader.beginArray();
+        int entryIndex = 0;
+        List<JournalEntryEntity> batch = new ArrayList<>(RESTORE_BATCH_SIZE);
+        // The first batch after an interruption may have been committed before its progress was saved,
+        // which is only detected from the content of entries of archives without UUIDs
+        boolean checkDuplicates = restoredEntryCount > 0;
+        while (reader.hasNext()) {
+            JournalEntryEntity entry = readEntry(reader, corruptedImageNames);
+            entryIndex++;
+            // Entries are inserted with new IDs, the ID in the archive only identifies versions of the entry
+            int archivedId = entry.getId();
+            entry.setId(0);
+            boolean superseded = archivedId > 0 && restoredIds != null && restoredIds.contains(archivedId);
+            if (trackIds && archivedId > 0) {
+                restoredIds.add(archivedId);
+            }
+            progress.advance();
+            if (entryIndex <= restoredEntryCount || superseded) {
+                continue;
+            }
+            batch.add(entry);
+            if (batch.size() == RESTORE_BATCH_SIZE) {
+                insertBatch(batch, checkDuplicates);
+                checkDuplicates = false;
+                batch.clear();
+                saveRestoredEntryCount(state, archiveIndex, entryIndex);
+            }
+        }
+        reader.endArray();
+        if (!batch.isEmpty()) {
+            insertBatch(batch, checkDuplicates);
+            saveRestoredEntryCount(state, archiveIndex, entryIndex);
+        }
+    }
+
+    /**
+     * Saves the number of entries of an archive that are restored.
+     */
+    private void saveRestoredEntryCount(Properties state, int archiveIndex, int restoredEntryCount) {
+        state.setProperty(ARCHIVE_INDEX, Integer.toString(archiveIndex));
+        state.setProperty(RESTORED_ENTRY_COUNT, Integer.toString(restoredEntryCount));
+        writeState(restoreStateFile, state);
+    }
+
+    /**
+     * Reads an entry of the archive.
+     *
+     * @param reader The reader positioned at the entry.
+     * @param corruptedImageNames The names of the images that failed verification, which are not referenced.
+     * @return The entry, with its ID in the archive, or 0 if the archive has no IDs, its UUID, or an empty UUID
+     *         if the archive has no UUIDs, and its image paths in internal storage.
+     * @throws IOException If the entry cannot be read.
+     */
+    private JournalEntryEntity readEntry(JsonReader reader, Set<String> corruptedImageNames) throws IOException {
+        JournalEntryEntity entry = new JournalEntryEntity();
+        List<String> imagePaths = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.skipValue();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    entry.setId(reader.nextInt());
+                    break;
+                case "uuid":
+                    entry.setUuid(reader.nextString());
+                    break;
+                case "title":
+                    entry.setTitle(reader.nextString());
+                    break;
+                case "content":
+                    entry.setContent(reader.nextString());
+                    break;
+                case "date":
+                    entry.setDate(reader.nextLong());
+                    break;
+                case "images":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        String fileName = reader.nextString();
+                        if (isPlainFileName(fileName) && !corruptedImageNames.contains(fileName)) {
+                            imagePaths.add(new File(filesDir, fileName).getAbsolutePath());
+                        }
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        entry.setImagePaths(imagePaths);
+        return entry;
+    }
+
+    /**
+     * Inserts a batch of entries with their images in a single transaction.
+     * <br>
+     * Entries whose UUID is already in the journal are skipped, so the journal keeps its own version of them.
+     *
+     * @param batch The entries to insert.
+     * @param checkDuplicates Whether to skip entries without a UUID that are identical to an existing entry.
+     */
+    private void insertBatch(List<JournalEntryEntity> batch, boolean checkDuplicates) {
+        database.runInTransaction(() -> {
+            List<String> uuids = new ArrayList<>(batch.size());
+            for (JournalEntryEntity entry : batch) {
+                if (!entry.getUuid().isEmpty()) {
+                    uuids.add(entry.getUuid());
+                }
+            }
+            Set<String> existingUuids = uuids.isEmpty() ? Collections.emptySet()
+                    : new HashSet<>(journalEntryDao.getExistingEntryUuids(uuids));
+            List<JournalEntryEntity> entries = new ArrayList<>(batch.size());
+            for (JournalEntryEntity entry : batch) {
+                boolean exists = entry.getUuid().isEmpty()
+                        ? checkDuplicates && journalEntryDao.countIdenticalEntries(
+                                entry.getDate(), entry.getTitle(), entry.getContent()) > 0
+                        : existingUuids.contains(entry.getUuid());
+                if (!exists) {
+                    entries.add(entry);
+                }
+            }
+            List<Long> ids = journalEntryDao.insertEntries(entries, database.isContentCompressionEnabled());
+            List<JournalImageEntity> images = new ArrayList<>();
+            for (int i = 0; i < entries.size(); i++) {
+                images.addAll(JournalEntryDao.toImageEntities(ids.get(i).intValue(), entries.get(i).getImagePaths(),
+                        entries.get(i).getChangeSeq()));
+            }
+            journalEntryDao.insertImages(images);
+        });
+    }
+
+    /**
+     * Writes an image file to the archive.
+     *
+     * @param zip The archive.
+     * @param file The image file.
+     * @throws IOException If the file cannot be read or the archive cannot be written.
+     */
+    private static void writeImage(ZipOutputStream zip, File file) throws IOException {
+        zip.putNextEntry(new ZipEntry(IMAGES_DIRECTORY + file.getName()));
+        try (InputStream inputStream = new FileInputStream(file)) {
+            copy(inputStream, zip);
+        }
+        zip.closeEntry();
+    }
+
+    /**
+     * Restores an image file to internal storage, unless it is already stored.
+     * <br>
+     * The image is written to a temporary file that is renamed once complete, so an interrupted restore never
+     * leaves a partial image under its final name. The content of a content-addressed image is checked against
+     * the hash in its name, and an image that fails the check is skipped so that its entries are restored without it.
+     *
+     * @param inputStream The stream of the image.
+     * @param fileName The name of the image file.
+     * @return False if the content of the image does not match its name, in which case the image is skipped.
+     * @throws IOException If the image cannot be written.
+     */
+    private boolean restoreImage(InputStream inputStream, String fileName) throws IOException {
+        if (!isPlainFileName(fileName)) {
+            Log.w("JournalBackup", "Invalid image name skipped: " + fileName);
+            return true;
+        }
+        File imageFile = new File(filesDir, fileName);
+        // A stored image is touched so that it is not deleted before its entry is restored
+        if (ImageHandler.reuseStoredImage(imageFile)) {
+            return true;
+        }
+
+        File tempFile = new File(filesDir, fileName + RESTORING_IMAGE_SUFFIX);
+        MessageDigest digest = ContentHasher.newDigest();
+        try (OutputStream outputStream = new DigestOutputStream(new FileOutputStream(tempFile), digest)) {
+            copy(inputStream, outputStream);
+        } catch (IOException e) {
+            deleteFile(tempFile);
+            throw e;
+        }
+
+        String expectedHash = ImageHandler.getStoredImageHash(imageFile);
+        if (expectedHash != null && !expectedHash.equals(ContentHasher.toHex(digest.digest()))) {
+            Log.e("JournalBackup", "Corrupted image skipped: " + fileName);
+            deleteFile(tempFile);
+            return false;
+        }
+        if (!tempFile.renameTo(imageFile)) {
+            deleteFile(tempFile);
+            throw new IOException("Failed to restore image: " + fileName);
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a name from an archive is a single file name, so it cannot point outside the image directory.
+     */
+    private static boolean isPlainFileName(String fileName) {
+        return !fileName.isEmpty() && !fileName.equals(".") && !fileName.equals("..")
+                && fileName.indexOf('/') < 0 && fileName.indexOf('\\') < 0;
+    }
+
+    /**
+     * Copies a stream to another without closing either of them.
+     */
+    private static void copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length;
+        while ((length = inputStream.read(buffer)) > 0) {
+            outputStream.write(buffer, 0, length);
+        }
+    }
+
+    /**
+     * Deletes a file, logging a failure.
+     */
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e("JournalBackup", "Failed to delete file: " + file);
+        }
+    }
+
+    /**
+     * Creates a JSON writer for an archive entry that does not close the archive.
+     */
+    private static JsonWriter newJsonWriter(OutputStream outputStream) {
+        return new JsonWriter(new OutputStreamWriter(new FilterOutputStream(outputStream) {
+            @Override
+            public void write(byte[] buffer, int offset, int length) throws IOException {
+                out.write(buffer, offset, length);
+            }
+
+            @Override
+            public void close() {
+                // The archive is closed by its owner
+            }
+        }, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a JSON reader for an archive entry that does not close the archive.
+     */
+    private static JsonReader newJsonReader(InputStream inputStream) {
+        return new JsonReader(new InputStreamReader(new FilterInputStream(inputStream) {
+            @Override
+            public void close() {
+                // The archive is closed by its owner
+            }
+        }, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Notifies the listener of the progress, if any.
+     */
+    private static void notifyProgress(ProgressListener listener, long completed, long total) {
+        if (listener != null) {
+            listener.onProgress(completed, Math.max(completed, total));
+        }
+    }
+
+    /**
+     * Reads a state file.
+     *
+     * @param stateFile The file to read.
+     * @return The saved state, or an empty state if it cannot be read.
+     */
+    private static Properties readState(File stateFile) {
+        Properties state = new Properties();
+        if (stateFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(stateFile)) {
+                state.load(inputStream);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.w("JournalBackup", "Failed to read state: " + stateFile, e);
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Saves a state file.
+     * <br>
+     * The state is written to a temporary file first, so an interrupted write keeps the previous state.
+     *
+     * @param stateFile The file to write.
+     * @param state The state to save.
+     */
+    private static void writeState(File stateFile, Properties state) {
+        File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            state.store(outputStream, null);
+        } catch (IOException e) {
+            Log.e("JournalBackup", "Failed to write state: " + stateFile, e);
+            return;
+        }
+        if (!tempFile.renameTo(stateFile)) {
+            Log.e("JournalBackup", "Failed to replace state: " + stateFile);
+        }
+    }
+
+    /**
+     * Parses a number from a state file.
+     *
+     * @param value The saved value, which may be null.
+     * @param defaultValue The value returned if no valid number is saved.
+     * @return The parsed number.
+     */
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
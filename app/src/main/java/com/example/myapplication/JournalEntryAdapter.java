@@ -1,63 +1,164 @@
 package com.example.myapplication;
 
 import android.content.Intent;
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.format.DateFormat;
+import android.text.style.StyleSpan;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.Date;
-import java.util.List;
+import java.util.Objects;
 
 /**
  * Adapter class for displaying journal entries in a summarized form within a RecyclerView.
+ * <br>
+ * The adapter is kept for the whole lifetime of the list. Each submitted list is compared with the
+ * displayed one on a background thread, and only the rows that changed are inserted, moved or rebound.
  * */
-public class JournalEntryAdapter extends RecyclerView.Adapter<JournalEntryAdapter.JournalEntryViewHolder> {
+public class JournalEntryAdapter extends ListAdapter<JournalEntrySummary, JournalEntryAdapter.JournalEntryViewHolder> {
 
-    // List of journal entries to be loaded in the RecyclerView
-    private final List<JournalEntryEntity> journalEntries;
+    // Number of remaining rows at which the next page of entries is requested
+    private static final int PREFETCH_DISTANCE = 10;
+    // Listener notified when the list is scrolled close to its last loaded entry
+    private final OnNearEndListener nearEndListener;
+
+    // Callback for computing the differences between two lists of entries
+    private static final DiffUtil.ItemCallback<JournalEntrySummary> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<JournalEntrySummary>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull JournalEntrySummary oldItem,
+                                               @NonNull JournalEntrySummary newItem) {
+                    return oldItem.getId() == newItem.getId();
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull JournalEntrySummary oldItem,
+                                                  @NonNull JournalEntrySummary newItem) {
+                    return oldItem.getDate() == newItem.getDate()
+                            && Objects.equals(oldItem.getTitle(), newItem.getTitle())
+                            && Objects.equals(getSnippet(oldItem), getSnippet(newItem));
+                }
+            };
 
     @NonNull
     @Override
     public JournalEntryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext())
                 .inflate(R.layout.recycler_journal_entry_item, parent, false);
-        return new JournalEntryViewHolder(view);
+        JournalEntryViewHolder holder = new JournalEntryViewHolder(view);
+
+        // Set click listener to display the full entry with all its details
+        view.setOnClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (position == RecyclerView.NO_POSITION) {
+                return;
+            }
+            Intent intent = new Intent(v.getContext(), ViewEntryActivity.class);
+            intent.putExtra("entryId", getItem(position).getId());
+            v.getContext().startActivity(intent);
+        });
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull JournalEntryViewHolder holder, int position) {
 
-        JournalEntryEntity journalEntry = journalEntries.get(position);
+        JournalEntrySummary journalEntry = getItem(position);
+
+        // Format the date once per entry and reuse it on later binds
+        CharSequence formattedDate = journalEntry.getFormattedDate();
+        if (formattedDate == null) {
+            formattedDate = DateFormat.format("dd-MM-yyyy", new Date(journalEntry.getDate()));
+            journalEntry.setFormattedDate(formattedDate);
+        }
 
         // For each entry in the list, set the corresponding title and date in the RecyclerView item
         holder.titleView.setText(journalEntry.getTitle());
-        holder.dateView.setText(DateFormat.format("dd-MM-yyyy", new Date(journalEntry.getDate())));
+        holder.dateView.setText(formattedDate);
 
-        // Set click listener to display the full entry with all its details
-        holder.itemView.setOnClickListener(v -> {
-            Intent intent = new Intent(v.getContext(), ViewEntryActivity.class);
-            intent.putExtra("entryId", journalEntry.getId());
-            v.getContext().startActivity(intent);
-        });
+        // Show the matching text for search results
+        String snippet = getSnippet(journalEntry);
+        if (snippet != null) {
+            holder.snippetView.setText(highlightMatches(snippet));
+            holder.snippetView.setVisibility(View.VISIBLE);
+        } else {
+            holder.snippetView.setVisibility(View.GONE);
+        }
+
+        // Request more entries before the user reaches the end of the loaded list
+        if (nearEndListener != null && position >= getItemCount() - PREFETCH_DISTANCE) {
+            nearEndListener.onNearEnd();
+        }
     }
 
     @Override
-    public int getItemCount(){
-        return journalEntries.size();
+    public long getItemId(int position) {
+        return getItem(position).getId();
     }
 
     /**
-     * Initializes the adapter with a list of journal entries to load.
+     * Initializes the adapter with a listener for loading more entries.
      *
-     * @param journalEntries List of journal entries.
+     * @param nearEndListener Listener notified when the end of the loaded entries is near, or null.
+     */
+    public JournalEntryAdapter(OnNearEndListener nearEndListener) {
+        super(DIFF_CALLBACK);
+        this.nearEndListener = nearEndListener;
+        // Entry IDs identify rows across lists, allowing RecyclerView to keep holders and animate moves
+        setHasStableIds(true);
+    }
+
+    /**
+     * Gets the search snippet of an entry.
+     *
+     * @param entry The displayed entry.
+     * @return The snippet if the entry is a search result, otherwise null.
+     */
+    private static String getSnippet(JournalEntrySummary entry) {
+        return entry instanceof JournalEntrySearchResult ? ((JournalEntrySearchResult) entry).getSnippet() : null;
+    }
+
+    /**
+     * Displays the matching terms of a search snippet in bold.
+     *
+     * @param snippet The snippet with matching terms enclosed in match markers.
+     * @return The snippet text without markers and with the matching terms in bold.
+     */
+    private static CharSequence highlightMatches(String snippet) {
+        SpannableStringBuilder builder = new SpannableStringBuilder();
+        int matchStart = -1;
+        for (int i = 0; i < snippet.length(); i++) {
+            char c = snippet.charAt(i);
+            if (c == JournalEntrySearchResult.MATCH_START) {
+                matchStart = builder.length();
+            } else if (c == JournalEntrySearchResult.MATCH_END) {
+                if (matchStart >= 0) {
+                    builder.setSpan(new StyleSpan(Typeface.BOLD), matchStart, builder.length(),
+                            Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+                }
+                matchStart = -1;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Listener interface for loading more entries as the list is scrolled.
      */
-    public JournalEntryAdapter(List<JournalEntryEntity> journalEntries) {
-        this.journalEntries = journalEntries;
+    public interface OnNearEndListener {
+        void onNearEnd();
     }
 
     /**
@@ -66,11 +167,13 @@ public class JournalEntryAdapter extends RecyclerView.Adapter<JournalEntryAdapte
     public static class JournalEntryViewHolder extends RecyclerView.ViewHolder {
         TextView titleView;
         TextView dateView;
+        TextView snippetView;
 
         public JournalEntryViewHolder(@NonNull View view){
             super(view);
             titleView = view.findViewById(R.id.titleView);
             dateView = view.findViewById(R.id.dateView);
+            snippetView = view.findViewById(R.id.snippetView);
         }
     }
 }
@@ -0,0 +1,581 @@
+package com.example.myapplication;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * The JournalEntryBatchWriter class applies writes to journal entries in batches.
+ * <br>
+ * Writes submitted within a short window are coalesced and applied in a single transaction, so that importing
+ * or editing many entries pays for one commit instead of one per entry. Consecutive writes of the same kind
+ * are applied with the list methods of the DAO.
+ * <br>
+ * Every write reports its own outcome through a future completed once the transaction is committed.
+ * If the transaction of a batch fails, its writes are applied again one at a time, so that a failing write
+ * does not prevent the other writes from being saved.
+ * */
+public class JournalEntryBatchWriter {
+    // Time during which writes are collected before they are applied
+    static final long COALESCE_WINDOW_MS = 10;
+    // Maximum number of IDs bound in a single query, below the SQLite limit of bound variables
+    private static final int QUERY_CHUNK_SIZE = 500;
+
+    /**
+     * The kinds of writes.
+     */
+    public enum Type { INSERT, UPDATE, DELETE }
+
+    /**
+     * The outcomes of a write.
+     */
+    public enum Status {
+        INSERTED,
+        UPDATED,
+        DELETED,
+        // The entry to update or delete does not exist
+        NOT_FOUND,
+        FAILED
+    }
+
+    /**
+     * The outcome of a single write.
+     */
+    public static final class Outcome {
+        private final JournalEntryEntity entry;
+        private final Status status;
+        private final long id;
+        private final Exception error;
+
+        Outcome(JournalEntryEntity entry, Status status, long id, @Nullable Exception error) {
+            this.entry = entry;
+            this.status = status;
+            this.id = id;
+            this.error = error;
+        }
+
+        /** Returns the written entry. */
+        public JournalEntryEntity getEntry() {
+            return entry;
+        }
+
+        /** Returns the outcome of the write. */
+        public Status getStatus() {
+            return status;
+        }
+
+        /** Returns the ID of the entry, which is the generated ID for an inserted entry. */
+        public long getId() {
+            return id;
+        }
+
+        /** Returns the error that made the write fail, or null if it did not fail. */
+        @Nullable
+        public Exception getError() {
+            return error;
+        }
+
+        /** Returns whether the write was applied. */
+        public boolean isSuccessful() {
+            return status == Status.INSERTED || status == Status.UPDATED || status == Status.DELETED;
+        }
+    }
+
+    /**
+     * A write waiting to be applied.
+     */
+    private static final class Write {
+        private final Type type;
+        private final JournalEntryEntity entry;
+        private Outcome outcome;
+
+        Write(Type type, JournalEntryEntity entry) {
+            this.type = type;
+            this.entry = entry;
+        }
+    }
+
+    /**
+     * Writes submitted together, whose outcomes complete a single future.
+     */
+    private static final class Submission {
+        private final List<Write> writes;
+        private final CompletableFuture<List<Outcome>> future = new CompletableFuture<>();
+
+        Submission(List<Write> writes) {
+            this.writes = writes;
+        }
+    }
+
+    private final AppDatabase database;
+    private final JournalEntryDao journalEntryDao;
+    private final Executor executor;
+    private final long coalesceWindowMs;
+    // Lock guarding the pending submissions
+    private final Object lock = new Object();
+    private List<Submission> pendingSubmissions = new ArrayList<>();
+
+    /**
+     * Creates a writer applying its batches on the given executor.
+     *
+     * @param database The database to write to.
+     * @param executor The executor on which the database operations run.
+     */
+    public JournalEntryBatchWriter(AppDatabase database, Executor executor) {
+        this(database, database.journalEntryDao(), executor, COALESCE_WINDOW_MS);
+    }
+
+    /**
+     * Creates a writer with the given coalescing window.
+     *
+     * @param database The database to write to.
+     * @param journalEntryDao The DAO of the database.
+     * @param executor The executor on which the database operations run.
+     * @param coalesceWindowMs The time during which writes are collected, or 0 to apply them as soon as possible.
+     */
+    JournalEntryBatchWriter(AppDatabase database, JournalEntryDao journalEntryDao, Executor executor,
+                            long coalesceWindowMs) {
+        this.database = database;
+        this.journalEntryDao = journalEntryDao;
+        this.executor = executor;
+        this.coalesceWindowMs = coalesceWindowMs;
+    }
+
+    /**
+     * Inserts a journal entry and its images.
+     *
+     * @param entry The journal entry to be inserted.
+     * @return Future completed with the outcome including the generated ID, or with the error of a failed write.
+     */
+    public CompletableFuture<Outcome> insert(JournalEntryEntity entry) {
+        return single(submit(Type.INSERT, Collections.singletonList(entry)));
+    }
+
+    /**
+     * Updates a journal entry and its images.
+     * <br>
+     * The images are only rewritten if they changed, and images removed from the entry are deleted from
+     * storage once no other entry references them.
+     *
+     * @param entry The journal entry to be updated.
+     * @return Future completed with the outcome, or with the error of a failed write.
+     */
+    public CompletableFuture<Outcome> update(JournalEntryEntity entry) {
+        return single(submit(Type.UPDATE, Collections.singletonList(entry)));
+    }
+
+    /**
+     * Deletes a journal entry and its images.
+     * <br>
+     * The images of the entry are deleted from storage once no other entry references them.
+     *
+     * @param entry The journal entry to be deleted.
+     * @return Future completed with the outcome, or with the error of a failed write.
+     */
+    public CompletableFuture<Outcome> delete(JournalEntryEntity entry) {
+        return single(submit(Type.DELETE, Collections.singletonList(entry)));
+    }
+
+    /**
+     * Inserts journal entries and their images in a single transaction.
+     *
+     * @param entries The journal entries to be inserted.
+     * @return Future completed with the outcomes in the order of the entries.
+     */
+    public CompletableFuture<List<Outcome>> insertAll(List<JournalEntryEntity> entries) {
+        return submit(Type.INSERT, entries);
+    }
+
+    /**
+     * Updates journal entries and their images in a single transaction.
+     *
+     * @param entries The journal entries to be updated.
+     * @return Future completed with the outcomes in the order of the entries.
+     */
+    public CompletableFuture<List<Outcome>> updateAll(List<JournalEntryEntity> entries) {
+        return submit(Type.UPDATE, entries);
+    }
+
+    /**
+     * Deletes journal entries and their images in a single transaction.
+     *
+     * @param entries The journal entries to be deleted.
+     * @return Future completed with the outcomes in the order of the entries.
+     */
+    public CompletableFuture<List<Outcome>> deleteAll(List<JournalEntryEntity> entries) {
+        return submit(Type.DELETE, entries);
+    }
+
+    /**
+     * Releases stored images that may not be referenced by any journal entry, such as the images stored
+     * for an entry whose save failed.
+     * <br>
+     * The release runs on the executor, and only the images that no entry references are deleted.
+     * Images stored within the grace period of {@link #releaseImages(JournalEntryDao, List)} are left to
+     * {@link OrphanImageCollector}.
+     *
+     * @param imagePaths The paths of the stored images.
+     */
+    public void release(List<String> imagePaths) {
+        if (!imagePaths.isEmpty()) {
+            List<String> releasedImagePaths = new ArrayList<>(imagePaths);
+            executor.execute(() -> releaseImages(journalEntryDao, releasedImagePaths));
+        }
+    }
+
+    /**
+     * Adds writes to the pending batch, scheduling the batch if it is the first submission.
+     *
+     * @param type The kind of the writes.
+     * @param entries The entries to write.
+     * @return Future completed with the outcomes of the writes.
+     */
+    private CompletableFuture<List<Outcome>> submit(Type type, List<JournalEntryEntity> entries) {
+        List<Write> writes = new ArrayList<>(entries.size());
+        for (JournalEntryEntity entry : entries) {
+            writes.add(new Write(type, entry));
+        }
+        Submission submission = new Submission(writes);
+        boolean firstSubmission;
+        synchronized (lock) {
+            firstSubmission = pendingSubmissions.isEmpty();
+            pendingSubmissions.add(submission);
+        }
+        if (firstSubmission) {
+            if (coalesceWindowMs > 0) {
+                AppExecutors.getInstance().schedule(executor, this::flush, coalesceWindowMs);
+            } else {
+                executor.execute(this::flush);
+            }
+        }
+        return submission.future;
+    }
+
+    /**
+     * Applies all pending writes in a single transaction and reports their outcomes.
+     */
+    private void flush() {
+        List<Submission> submissions;
+        synchronized (lock) {
+            submissions = pendingSubmissions;
+            pendingSubmissions = new ArrayList<>();
+        }
+        List<Write> writes = new ArrayList<>();
+        for (Submission submission : submissions) {
+            writes.addAll(submission.writes);
+        }
+
+        List<String> releasedImagePaths = new ArrayList<>();
+        try {
+            database.runInTransaction(() -> apply(writes, releasedImagePaths));
+        } catch (RuntimeException e) {
+            releasedImagePaths.clear();
+            if (writes.size() == 1) {
+                writes.get(0).outcome = new Outcome(writes.get(0).entry, Status.FAILED, 0, e);
+            } else {
+                // Isolate the failing writes by applying each write in its own transaction
+                for (Write write : writes) {
+                    List<String> writeReleasedImagePaths = new ArrayList<>();
+                    try {
+                        database.runInTransaction(() ->
+                                apply(Collections.singletonList(write), writeReleasedImagePaths));
+                        releasedImagePaths.addAll(writeReleasedImagePaths);
+                    } catch (RuntimeException writeError) {
+                        write.outcome = new Outcome(write.entry, Status.FAILED, 0, writeError);
+                    }
+                }
+            }
+        }
+
+        // Report the outcomes as soon as the writes are committed, before deleting released images
+        for (Submission submission : submissions) {
+            List<Outcome> outcomes = new ArrayList<>(submission.writes.size());
+            for (Write write : submission.writes) {
+                outcomes.add(write.outcome);
+            }
+            submission.future.complete(outcomes);
+        }
+        releaseImages(journalEntryDao, releasedImagePaths);
+    }
+
+    /**
+     * Applies writes in their order, grouping consecutive writes of the same kind.
+     *
+     * @param writes The writes to apply.
+     * @param releasedImagePaths The list receiving the paths of images whose references were removed.
+     */
+    private void apply(List<Write> writes, List<String> releasedImagePaths) {
+        int start = 0;
+        while (start < writes.size()) {
+            Type type = writes.get(start).type;
+            int end = start + 1;
+            while (end < writes.size() && writes.get(end).type == type) {
+                end++;
+            }
+            List<Write> group = writes.subList(start, end);
+            switch (type) {
+                case INSERT:
+                    applyInserts(group);
+                    break;
+                case UPDATE:
+                    applyUpdates(group, releasedImagePaths);
+                    break;
+                case DELETE:
+                    applyDeletes(group, releasedImagePaths);
+                    break;
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * Inserts entries and all of their images.
+     *
+     * @param writes The insertions to apply.
+     */
+    private void applyInserts(List<Write> writes) {
+        List<JournalEntryEntity> entries = new ArrayList<>(writes.size());
+        for (Write write : writes) {
+            entries.add(write.entry);
+        }
+        List<Long> ids = journalEntryDao.insertEntries(entries, database.isContentCompressionEnabled());
+
+        List<JournalImageEntity> images = new ArrayList<>();
+        for (int i = 0; i < writes.size(); i++) {
+            Write write = writes.get(i);
+            long id = ids.get(i);
+            images.addAll(JournalEntryDao.toImageEntities((int) id, write.entry.getImagePaths(),
+                    write.entry.getChangeSeq()));
+            write.outcome = new Outcome(write.entry, Status.INSERTED, id, null);
+        }
+        if (!images.isEmpty()) {
+            journalEntryDao.insertImages(images);
+        }
+    }
+
+    /**
+     * Updates existing entries, rewriting the images of the entries whose images changed.
+     *
+     * @param writes The updates to apply.
+     * @param releasedImagePaths The list receiving the paths of images removed from the entries.
+     */
+    private void applyUpdates(List<Write> writes, List<String> releasedImagePaths) {
+        List<Integer> ids = getIds(writes);
+        Set<Integer> existingIds = getExistingEntryIds(ids);
+        List<JournalImageEntity> previousImages = getImages(ids);
+        Map<Integer, List<String>> previousImagePaths = groupImagePaths(previousImages);
+
+        List<JournalEntryEntity> entries = new ArrayList<>();
+        // Images of the entries whose images changed, the last update of an entry taking precedence
+        Map<Integer, List<String>> changedImagePaths = new LinkedHashMap<>();
+        for (Write write : writes) {
+            int id = write.entry.getId();
+            if (!existingIds.contains(id)) {
+                write.outcome = new Outcome(write.entry, Status.NOT_FOUND, id, null);
+                continue;
+            }
+            entries.add(write.entry);
+            List<String> previous = previousImagePaths.getOrDefault(id, Collections.emptyList());
+            List<String> imagePaths = write.entry.getImagePaths();
+            if (!previous.equals(imagePaths)) {
+                changedImagePaths.put(id, imagePaths);
+                List<String> removedImagePaths = new ArrayList<>(previous);
+                removedImagePaths.removeAll(imagePaths);
+                releasedImagePaths.addAll(removedImagePaths);
+                // A later update of the entry in the batch is compared with the images of this update
+                previousImagePaths.put(id, imagePaths);
+            }
+            write.outcome = new Outcome(write.entry, Status.UPDATED, id, null);
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        journalEntryDao.updateEntries(entries, database.isContentCompressionEnabled());
+
+        if (!changedImagePaths.isEmpty()) {
+            // The entries of the group share the change sequence of the update
+            long changeSeq = entries.get(0).getChangeSeq();
+            List<JournalImageEntity> images = new ArrayList<>();
+            for (Map.Entry<Integer, List<String>> entry : changedImagePaths.entrySet()) {
+                images.addAll(JournalEntryDao.toImageEntities(entry.getKey(), entry.getValue(), changeSeq));
+            }
+            // Images that stay attached keep the change sequence of the write that attached them
+            JournalEntryDao.keepImageChangeSeqs(images, previousImages);
+            for (List<Integer> chunk : chunks(new ArrayList<>(changedImagePaths.keySet()))) {
+                journalEntryDao.deleteImagesForEntries(chunk);
+            }
+            if (!images.isEmpty()) {
+                journalEntryDao.insertImages(images);
+            }
+        }
+    }
+
+    /**
+     * Deletes existing entries, whose images are deleted with them.
+     *
+     * @param writes The deletions to apply.
+     * @param releasedImagePaths The list receiving the paths of the images of the deleted entries.
+     */
+    private void applyDeletes(List<Write> writes, List<String> releasedImagePaths) {
+        List<Integer> ids = getIds(writes);
+        Set<Integer> existingIds = getExistingEntryIds(ids);
+        Map<Integer, List<String>> previousImagePaths = getImagePaths(ids);
+
+        List<JournalEntryEntity> entries = new ArrayList<>();
+        for (Write write : writes) {
+            int id = write.entry.getId();
+            // An entry deleted twice in the same batch is only found the first time
+            if (!existingIds.remove(id)) {
+                write.outcome = new Outcome(write.entry, Status.NOT_FOUND, id, null);
+                continue;
+            }
+            entries.add(write.entry);
+            releasedImagePaths.addAll(previousImagePaths.getOrDefault(id, Collections.emptyList()));
+            write.outcome = new Outcome(write.entry, Status.DELETED, id, null);
+        }
+        if (!entries.isEmpty()) {
+            journalEntryDao.deleteEntries(entries);
+        }
+    }
+
+    /**
+     * Deletes stored images that are no longer referenced by any journal entry.
+     * <br>
+     * Stored images are shared between entries with the same attachments, so an image is only deleted
+     * once its reference count drops to zero. This runs after the transaction that removed the references.
+     * <br>
+     * An image being saved with another entry has no reference until that entry is written, so images stored
+     * or reused within {@link ImageHandler#RELEASE_GRACE_PERIOD_MS} are kept and left to
+     * {@link OrphanImageCollector}. The check and the deletion run under {@link ImageHandler#STORED_IMAGES_LOCK},
+     * so an image is not deleted while it is being reused.
+     *
+     * @param journalEntryDao The DAO counting the references to the images.
+     * @param imagePaths The paths of the images whose references were removed.
+     */
+    static void releaseImages(JournalEntryDao journalEntryDao, List<String> imagePaths) {
+        for (String imagePath : new HashSet<>(imagePaths)) {
+            if (journalEntryDao.countImageReferences(imagePath) != 0) {
+                continue;
+            }
+            synchronized (ImageHandler.STORED_IMAGES_LOCK) {
+                long storedTime = new File(imagePath).lastModified();
+                if (storedTime > System.currentTimeMillis() - ImageHandler.RELEASE_GRACE_PERIOD_MS) {
+                    continue;
+                }
+                if (!ImageVariants.deleteImage(imagePath)) {
+                    Log.e("JournalEntryBatchWriter", "Failed to delete image: " + imagePath);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the IDs of the entries among the given IDs that exist.
+     *
+     * @param ids The IDs of the entries.
+     * @return Set of the existing IDs.
+     */
+    private Set<Integer> getExistingEntryIds(List<Integer> ids) {
+        Set<Integer> existingIds = new HashSet<>();
+        for (List<Integer> chunk : chunks(ids)) {
+            existingIds.addAll(journalEntryDao.getExistingEntryIds(chunk));
+        }
+        return existingIds;
+    }
+
+    /**
+     * Gets the image paths of entries.
+     *
+     * @param ids The IDs of the entries.
+     * @return Map of the image paths of each entry with images, in their display order.
+     */
+    private Map<Integer, List<String>> getImagePaths(List<Integer> ids) {
+        return groupImagePaths(getImages(ids));
+    }
+
+    /**
+     * Gets the images of entries.
+     *
+     * @param ids The IDs of the entries.
+     * @return List of the images of the entries, ordered by entry and position.
+     */
+    private List<JournalImageEntity> getImages(List<Integer> ids) {
+        List<JournalImageEntity> images = new ArrayList<>();
+        for (List<Integer> chunk : chunks(ids)) {
+            images.addAll(journalEntryDao.getImagesForEntries(chunk));
+        }
+        return images;
+    }
+
+    /**
+     * Groups the paths of images by entry.
+     *
+     * @param images The images, ordered by entry and position.
+     * @return Map of the image paths of each entry with images, in their display order.
+     */
+    private static Map<Integer, List<String>> groupImagePaths(List<JournalImageEntity> images) {
+        Map<Integer, List<String>> imagePaths = new HashMap<>();
+        for (JournalImageEntity image : images) {
+            imagePaths.computeIfAbsent(image.getEntryId(), id -> new ArrayList<>()).add(image.getPath());
+        }
+        return imagePaths;
+    }
+
+    /**
+     * Gets the distinct IDs of the entries of writes.
+     *
+     * @param writes The writes.
+     * @return List of entry IDs, in the order of their first write.
+     */
+    private static List<Integer> getIds(List<Write> writes) {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (Write write : writes) {
+            ids.add(write.entry.getId());
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Splits a list of IDs into chunks that can be bound in a single query.
+     *
+     * @param ids The IDs to split.
+     * @return List of consecutive chunks of the IDs.
+     */
+    private static List<List<Integer>> chunks(List<Integer> ids) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int start = 0; start < ids.size(); start += QUERY_CHUNK_SIZE) {
+            chunks.add(ids.subList(start, Math.min(start + QUERY_CHUNK_SIZE, ids.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * Adapts the future of a submission with a single write to the outcome of that write.
+     *
+     * @param future The future of the submission.
+     * @return Future completed with the outcome, or exceptionally with the error of a failed write.
+     */
+    private static CompletableFuture<Outcome> single(CompletableFuture<List<Outcome>> future) {
+        return future.thenApply(outcomes -> {
+            Outcome outcome = outcomes.get(0);
+            if (outcome.getStatus() == Status.FAILED) {
+                throw new CompletionException(outcome.getError());
+            }
+            return outcome;
+        });
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.myapplication;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/**
+ * The JournalEntryCache class keeps recently viewed journal entries in memory for the whole application.
+ * <br>
+ * Entries are cached with their image paths and decompressed content, so that an entry opened again is shown
+ * before it is loaded from the database. The repository removes an entry whenever it is written, and the
+ * database remains the source of truth, the cached entry being replaced once the entry is loaded.
+ * <br>
+ * Entries are evicted in least recently used order once the total length of their text exceeds the maximum size.
+ * */
+public class JournalEntryCache {
+    // Maximum total number of characters of the cached entries
+    private static final int MAX_SIZE = 2 * 1024 * 1024;
+    // Size counted for each entry in addition to its text, so that empty entries are not free
+    private static final int ENTRY_OVERHEAD = 64;
+    // Define singleton cache instance
+    private static volatile JournalEntryCache INSTANCE;
+
+    private final int maxSize;
+    // Cached entries by ID, in order of access from least to most recently used
+    private final LinkedHashMap<Integer, JournalEntryEntity> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int size;
+    // Metrics of the cache
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Gets the singleton cache instance.
+     *
+     * @param context The application context.
+     * @return The singleton JournalEntryCache instance.
+     */
+    public static JournalEntryCache getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (JournalEntryCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new JournalEntryCache(MAX_SIZE);
+                    // Free the cached entries when the application is in the background and memory is needed
+                    JournalEntryCache entryCache = INSTANCE;
+                    context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+                        @Override
+                        public void onTrimMemory(int level) {
+                            if (level >= TRIM_MEMORY_BACKGROUND) {
+                                entryCache.clear();
+                            }
+                        }
+
+                        @Override
+                        public void onConfigurationChanged(@NonNull Configuration newConfig) {
+                        }
+
+                        @Override
+                        public void onLowMemory() {
+                            entryCache.clear();
+                        }
+                    });
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a cache with the given maximum size.
+     *
+     * @param maxSize The maximum total number of characters of the cached entries.
+     */
+    JournalEntryCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets a cached entry.
+     * <br>
+     * The entry is shared with the cache and must not be modified.
+     *
+     * @param id The ID of the entry.
+     * @return The cached entry, or null if it is not cached.
+     */
+    public synchronized JournalEntryEntity get(int id) {
+        JournalEntryEntity entry = entries.get(id);
+        if (entry != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return entry;
+    }
+
+    /**
+     * Adds a loaded entry to the cache, replacing the cached version of the entry.
+     * <br>
+     * The entry must include its image paths and be decompressed, and must not be modified once cached.
+     * An entry larger than the cache is not cached.
+     *
+     * @param entry The loaded entry.
+     */
+    public synchronized void put(JournalEntryEntity entry) {
+        remove(entry.getId());
+        int entrySize = sizeOf(entry);
+        if (entrySize > maxSize) {
+            return;
+        }
+        entries.put(entry.getId(), entry);
+        size += entrySize;
+        // Evict the least recently used entries
+        Iterator<JournalEntryEntity> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= sizeOf(iterator.next());
+            iterator.remove();
+            evictionCount++;
+        }
+    }
+
+    /**
+     * Removes an entry that was written from the cache.
+     *
+     * @param id The ID of the entry.
+     */
+    public synchronized void remove(int id) {
+        JournalEntryEntity entry = entries.remove(id);
+        if (entry != null) {
+            size -= sizeOf(entry);
+        }
+    }
+
+    /**
+     * Removes entries that were written from the cache.
+     *
+     * @param writtenEntries The written entries.
+     */
+    public synchronized void removeAll(Collection<JournalEntryEntity> writtenEntries) {
+        for (JournalEntryEntity entry : writtenEntries) {
+            remove(entry.getId());
+        }
+    }
+
+    /**
+     * Removes all entries from the cache, when entries were written without going through the repository.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Gets the size of an entry in the cache.
+     *
+     * @param entry The entry.
+     * @return The number of characters of its text, including its image paths.
+     */
+    private static int sizeOf(JournalEntryEntity entry) {
+        int entrySize = ENTRY_OVERHEAD;
+        entrySize += entry.getTitle() != null ? entry.getTitle().length() : 0;
+        entrySize += entry.getContent() != null ? entry.getContent().length() : 0;
+        for (String imagePath : entry.getImagePaths()) {
+            entrySize += imagePath.length();
+        }
+        return entrySize;
+    }
+
+    /** Returns the number of cached entries. */
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    /** Returns the total number of characters of the cached entries. */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /** Returns the number of lookups that found a cached entry. */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /** Returns the number of lookups that found no cached entry. */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /** Returns the number of entries evicted to keep the cache within its maximum size. */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /** Returns the fraction of lookups that found a cached entry, or 0 if there was no lookup. */
+    public synchronized double getHitRate() {
+        long lookupCount = hitCount + missCount;
+        return lookupCount == 0 ? 0 : (double) hitCount / lookupCount;
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "entries=%d size=%d hits=%d misses=%d hitRate=%.2f evictions=%d",
+                getEntryCount(), getSize(), getHitCount(), getMissCount(), getHitRate(), getEvictionCount());
+    }
+}
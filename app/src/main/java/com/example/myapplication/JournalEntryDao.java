@@ -4,57 +4,856 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * DAO (Data Access Object) interface for journal entries.
  * <br>
- * This interface provides methods for basic database operations related to the journal entries.
+ * This interface provides methods for basic database operations related to the journal entries
+ * and their attached images.
  */
 @Dao
 public interface JournalEntryDao {
 
     /**
-     * Inserts a new journal entry into the database.
+     * Inserts a new journal entry row into the database.
+     * <br>
+     * The change sequence of the entry is not set by this method,
+     * use {@link #insertEntry(JournalEntryEntity, boolean)}.
      *
      * @param entry The journal entry to be inserted.
+     * @return The ID of the inserted entry.
      */
     @Insert
-    void insertEntry(JournalEntryEntity entry);
+    long insertEntryRow(JournalEntryEntity entry);
 
     /**
-     * Updates an existing journal entry in the database.
+     * Inserts journal entry rows into the database.
+     * <br>
+     * The change sequence of the entries is not set by this method, use {@link #insertEntries(List, boolean)}.
      *
-     * @param entry The journal entry to be updated.
+     * @param entries The journal entries to be inserted.
+     * @return The IDs of the inserted entries, in the order of the given entries.
+     */
+    @Insert
+    List<Long> insertEntryRows(List<JournalEntryEntity> entries);
+
+    /**
+     * Updates existing journal entry rows in the database.
+     * <br>
+     * The change sequence of the entries is not set by this method, use {@link #updateEntries(List, boolean)}.
+     *
+     * @param entries The journal entries to be updated.
+     * @return The number of updated entries.
      */
     @Update
-    void updateEntry(JournalEntryEntity entry);
+    int updateEntryRows(List<JournalEntryEntity> entries);
 
     /**
-     * Deletes a journal entry from the database.
+     * Deletes journal entry rows from the database.
+     * <br>
+     * No tombstone is recorded by this method, use {@link #deleteEntries(List)}.
      *
-     * @param entry The journal entry to be deleted.
+     * @param entries The journal entries to be deleted.
+     * @return The number of deleted entries.
      */
     @Delete
-    void deleteEntry(JournalEntryEntity entry);
+    int deleteEntryRows(List<JournalEntryEntity> entries);
+
+    /**
+     * Inserts tombstones of deleted journal entries, replacing earlier tombstones of the same entries.
+     *
+     * @param tombstones The tombstones to be inserted.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void insertTombstones(List<JournalTombstoneEntity> tombstones);
+
+    /**
+     * Gets the change sequence following every write recorded in the database.
+     * <br>
+     * Tombstones are included, so the sequence keeps increasing when the latest written entry is deleted.
+     *
+     * @return The next change sequence.
+     */
+    @Query("SELECT MAX((SELECT IFNULL(MAX(changeSeq), 0) FROM journal_entries), " +
+            "(SELECT IFNULL(MAX(changeSeq), 0) FROM journal_tombstones)) + 1")
+    long getNextChangeSeq();
+
+    /**
+     * Gets the change sequence of the latest write recorded in the database.
+     *
+     * @return The latest change sequence, or 0 if nothing was written since change tracking was added.
+     */
+    @Query("SELECT MAX((SELECT IFNULL(MAX(changeSeq), 0) FROM journal_entries), " +
+            "(SELECT IFNULL(MAX(changeSeq), 0) FROM journal_tombstones))")
+    long getLastChangeSeq();
+
+    /**
+     * Inserts a new journal entry into the database with the next change sequence, storing its content
+     * in plain text.
+     *
+     * @param entry The journal entry to be inserted.
+     * @return The ID of the inserted entry.
+     */
+    @Transaction
+    default long insertEntry(JournalEntryEntity entry) {
+        return insertEntry(entry, false);
+    }
+
+    /**
+     * Inserts a new journal entry into the database with the next change sequence.
+     * <br>
+     * The image paths of the entry are not saved by this method.
+     *
+     * @param entry The journal entry to be inserted.
+     * @param compressContent Whether to compress long content, see {@link AppDatabase#isContentCompressionEnabled()}.
+     * @return The ID of the inserted entry.
+     */
+    @Transaction
+    default long insertEntry(JournalEntryEntity entry, boolean compressContent) {
+        return insertEntries(Collections.singletonList(entry), compressContent).get(0);
+    }
+
+    /**
+     * Updates an existing journal entry in the database with the next change sequence, storing new content
+     * in plain text.
+     *
+     * @param entry The journal entry to be updated.
+     */
+    @Transaction
+    default void updateEntry(JournalEntryEntity entry) {
+        updateEntry(entry, false);
+    }
+
+    /**
+     * Updates an existing journal entry in the database with the next change sequence.
+     * <br>
+     * The image paths of the entry are not saved by this method.
+     *
+     * @param entry The journal entry to be updated.
+     * @param compressContent Whether to compress long content, see {@link AppDatabase#isContentCompressionEnabled()}.
+     */
+    @Transaction
+    default void updateEntry(JournalEntryEntity entry, boolean compressContent) {
+        updateEntries(Collections.singletonList(entry), compressContent);
+    }
+
+    /**
+     * Deletes a journal entry from the database, recording its tombstone.
+     *
+     * @param entry The journal entry to be deleted.
+     */
+    @Transaction
+    default void deleteEntry(JournalEntryEntity entry) {
+        deleteEntries(Collections.singletonList(entry));
+    }
+
+    /**
+     * Inserts journal entries into the database with the next change sequence.
+     * <br>
+     * The image paths of the entries are not saved by this method.
+     *
+     * @param entries The journal entries to be inserted.
+     * @param compressContent Whether to compress long content, see {@link AppDatabase#isContentCompressionEnabled()}.
+     * @return The IDs of the inserted entries, in the order of the given entries.
+     */
+    @Transaction
+    default List<Long> insertEntries(List<JournalEntryEntity> entries, boolean compressContent) {
+        stampChange(entries, compressContent);
+        return insertEntryRows(entries);
+    }
+
+    /**
+     * Updates existing journal entries in the database with the next change sequence.
+     * <br>
+     * The image paths of the entries are not saved by this method.
+     *
+     * @param entries The journal entries to be updated.
+     * @param compressContent Whether to compress long content, see {@link AppDatabase#isContentCompressionEnabled()}.
+     * @return The number of updated entries.
+     */
+    @Transaction
+    default int updateEntries(List<JournalEntryEntity> entries, boolean compressContent) {
+        keepEntryUuids(entries);
+        stampChange(entries, compressContent);
+        return updateEntryRows(entries);
+    }
+
+    /**
+     * Deletes journal entries from the database, recording their tombstones with the next change sequence.
+     *
+     * @param entries The journal entries to be deleted.
+     * @return The number of deleted entries.
+     */
+    @Transaction
+    default int deleteEntries(List<JournalEntryEntity> entries) {
+        keepEntryUuids(entries);
+        long changeSeq = getNextChangeSeq();
+        long now = System.currentTimeMillis();
+        List<JournalTombstoneEntity> tombstones = new ArrayList<>(entries.size());
+        for (JournalEntryEntity entry : entries) {
+            JournalTombstoneEntity tombstone = new JournalTombstoneEntity();
+            tombstone.setEntryId(entry.getId());
+            tombstone.setUuid(entry.getUuid());
+            tombstone.setChangeSeq(changeSeq);
+            tombstone.setDeletedAt(now);
+            tombstones.add(tombstone);
+        }
+        insertTombstones(tombstones);
+        return deleteEntryRows(entries);
+    }
+
+    /**
+     * Sets the time of the write and the next change sequence on entries about to be written, and computes
+     * the stored form of content set since they were loaded.
+     * <br>
+     * Entries written in the same transaction share a change sequence. This must be called in the transaction
+     * of the write, so that no other write takes the same sequence. Entries without a UUID, which are
+     * inserted for the first time, are given a random UUID.
+     *
+     * @param entries The journal entries to be written.
+     * @param compressContent Whether to compress long content.
+     */
+    default void stampChange(List<JournalEntryEntity> entries, boolean compressContent) {
+        long changeSeq = getNextChangeSeq();
+        long now = System.currentTimeMillis();
+        for (JournalEntryEntity entry : entries) {
+            entry.setChangeSeq(changeSeq);
+            entry.setUpdatedAt(now);
+            if (entry.getUuid().isEmpty()) {
+                entry.setUuid(UUID.randomUUID().toString());
+            }
+            entry.encodeContent(compressContent);
+        }
+    }
+
+    /**
+     * Sets the stored UUID on existing entries that were loaded or built without it, so that a write
+     * does not change the identity of an entry.
+     *
+     * @param entries The journal entries to be updated or deleted.
+     */
+    default void keepEntryUuids(List<JournalEntryEntity> entries) {
+        for (JournalEntryEntity entry : entries) {
+            if (entry.getUuid().isEmpty()) {
+                String uuid = getEntryUuid(entry.getId());
+                if (uuid != null) {
+                    entry.setUuid(uuid);
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the UUID of a journal entry.
+     *
+     * @param id The ID of the journal entry.
+     * @return The UUID of the entry, or null if it does not exist.
+     */
+    @Query("SELECT uuid FROM journal_entries WHERE id = :id")
+    String getEntryUuid(int id);
+
+    /**
+     * Gets the UUIDs among the given UUIDs that belong to a journal entry.
+     *
+     * @param uuids The UUIDs to check.
+     * @return List of the UUIDs of existing entries.
+     */
+    @Query("SELECT uuid FROM journal_entries WHERE uuid IN (:uuids)")
+    List<String> getExistingEntryUuids(List<String> uuids);
+
+    /**
+     * Gets the journal entries with the given UUIDs.
+     * <br>
+     * The image paths of the entries are not loaded.
+     *
+     * @param uuids The UUIDs of the entries.
+     * @return List of the existing entries, in no particular order.
+     */
+    @Query("SELECT * FROM journal_entries WHERE uuid IN (:uuids)")
+    List<JournalEntryEntity> getEntriesByUuid(List<String> uuids);
+
+    /**
+     * Gets the latest tombstones of journal entries with the given UUIDs.
+     *
+     * @param uuids The UUIDs of the deleted entries.
+     * @return List of tombstones, in no particular order.
+     */
+    @Query("SELECT * FROM journal_tombstones WHERE uuid IN (:uuids)")
+    List<JournalTombstoneEntity> getTombstonesByUuid(List<String> uuids);
+
+    /**
+     * Inserts or replaces the sync states of journal entries.
+     *
+     * @param states The sync states to be saved.
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsertSyncStates(List<JournalSyncStateEntity> states);
+
+    /**
+     * Gets the sync states of the journal entries with the given UUIDs.
+     *
+     * @param uuids The UUIDs of the entries.
+     * @return List of the existing sync states, in no particular order.
+     */
+    @Query("SELECT * FROM journal_sync_state WHERE uuid IN (:uuids)")
+    List<JournalSyncStateEntity> getSyncStates(List<String> uuids);
+
+    /**
+     * Gets a page of the journal entries with changes that are not synced, ordered by change sequence and ID.
+     * <br>
+     * An entry is unsynced if it has no sync state or was written after its synced version. The page follows
+     * the given (changeSeq, id) key. The image paths of the entries are not loaded.
+     *
+     * @param afterSeq The change sequence of the last entry of the previous page, or -1 for the first page.
+     * @param afterId The ID of the last entry of the previous page.
+     * @param pageSize The maximum number of entries to return.
+     * @return List of at most pageSize journal entries.
+     */
+    @Query("SELECT e.* FROM journal_entries e LEFT JOIN journal_sync_state s ON s.uuid = e.uuid " +
+            "WHERE (s.uuid IS NULL OR e.changeSeq > s.syncedSeq) " +
+            "AND (e.changeSeq > :afterSeq OR (e.changeSeq = :afterSeq AND e.id > :afterId)) " +
+            "ORDER BY e.changeSeq, e.id LIMIT :pageSize")
+    List<JournalEntryEntity> getUnsyncedEntriesPage(long afterSeq, int afterId, int pageSize);
 
     /**
-     * Gets the LiveData list of all journal entries.
+     * Gets a page of the tombstones of synced journal entries whose deletion is not synced, ordered by
+     * change sequence and entry ID.
+     * <br>
+     * Entries deleted before they were ever synced are not returned, nor entries recreated since their deletion.
      *
-     * @return LiveData list of all journal entries.
+     * @param afterSeq The change sequence of the last tombstone of the previous page, or -1 for the first page.
+     * @param afterId The entry ID of the last tombstone of the previous page.
+     * @param pageSize The maximum number of tombstones to return.
+     * @return List of at most pageSize tombstones.
      */
-    @Query("SELECT * FROM journal_entries")
-    LiveData<List<JournalEntryEntity>> getAllEntries();
+    @Query("SELECT t.* FROM journal_tombstones t JOIN journal_sync_state s ON s.uuid = t.uuid " +
+            "WHERE t.changeSeq > s.syncedSeq " +
+            "AND NOT EXISTS (SELECT 1 FROM journal_entries e WHERE e.uuid = t.uuid) " +
+            "AND (t.changeSeq > :afterSeq OR (t.changeSeq = :afterSeq AND t.entryId > :afterId)) " +
+            "ORDER BY t.changeSeq, t.entryId LIMIT :pageSize")
+    List<JournalTombstoneEntity> getUnsyncedTombstonesPage(long afterSeq, int afterId, int pageSize);
+
+    /**
+     * Gets the IDs among the given IDs of journal entries that exist.
+     *
+     * @param ids The IDs to check.
+     * @return List of the given IDs that belong to an entry.
+     */
+    @Query("SELECT id FROM journal_entries WHERE id IN (:ids)")
+    List<Integer> getExistingEntryIds(List<Integer> ids);
 
     /**
      * Retrieves a specific journal entry by its ID.
+     * <br>
+     * The image paths of the entry are not loaded.
      *
      * @param id The ID of the journal entry to retrieve.
      * @return LiveData object containing the journal entry.
      */
     @Query("SELECT * FROM journal_entries WHERE id = :id")
     LiveData<JournalEntryEntity> getEntryById(int id);
+
+    /**
+     * Retrieves a specific journal entry by its ID together with its images, in a single transaction.
+     *
+     * @param id The ID of the journal entry to retrieve.
+     * @return LiveData object containing the journal entry and its images.
+     */
+    @Transaction
+    @Query("SELECT * FROM journal_entries WHERE id = :id")
+    LiveData<JournalEntryWithImages> getEntryWithImagesById(int id);
+
+    /**
+     * Inserts images attached to journal entries into the database.
+     *
+     * @param images The images to be inserted.
+     */
+    @Insert
+    void insertImages(List<JournalImageEntity> images);
+
+    /**
+     * Deletes all images attached to a journal entry from the database.
+     *
+     * @param entryId The ID of the journal entry.
+     */
+    @Query("DELETE FROM journal_images WHERE entryId = :entryId")
+    void deleteImagesForEntry(int entryId);
+
+    /**
+     * Deletes the images attached to journal entries.
+     *
+     * @param entryIds The IDs of the journal entries.
+     */
+    @Query("DELETE FROM journal_images WHERE entryId IN (:entryIds)")
+    void deleteImagesForEntries(List<Integer> entryIds);
+
+    /**
+     * Gets the IDs of all journal entries using an image file.
+     *
+     * @param path The path of the image file.
+     * @return List of IDs of the entries the image is attached to.
+     */
+    @Query("SELECT DISTINCT entryId FROM journal_images WHERE path = :path")
+    List<Integer> getEntryIdsUsingImage(String path);
+
+    /**
+     * Gets the image paths of a journal entry.
+     *
+     * @param entryId The ID of the journal entry.
+     * @return List of image paths in their order in the entry.
+     */
+    @Query("SELECT path FROM journal_images WHERE entryId = :entryId ORDER BY position")
+    List<String> getImagePathsForEntry(int entryId);
+
+    /**
+     * Gets the images attached to journal entries.
+     *
+     * @param entryIds The IDs of the journal entries.
+     * @return List of images ordered by entry and by their position in the entry.
+     */
+    @Query("SELECT * FROM journal_images WHERE entryId IN (:entryIds) ORDER BY entryId, position")
+    List<JournalImageEntity> getImagesForEntries(List<Integer> entryIds);
+
+    /**
+     * Counts the references to an image file from journal entries.
+     *
+     * @param path The path of the image file.
+     * @return The number of times the image is attached to entries.
+     */
+    @Query("SELECT COUNT(*) FROM journal_images WHERE path = :path")
+    int countImageReferences(String path);
+
+    /**
+     * Gets the paths among the given image paths that are attached to journal entries.
+     *
+     * @param paths The paths of the image files to check.
+     * @return List of the given paths that are referenced by at least one entry.
+     */
+    @Query("SELECT DISTINCT path FROM journal_images WHERE path IN (:paths)")
+    List<String> getReferencedImagePaths(List<String> paths);
+
+    /**
+     * Gets a page of the journal entries changed within a range of change sequences, ordered by change sequence
+     * and ID.
+     * <br>
+     * The page follows the given (changeSeq, id) key, the key of the last entry of the previous page.
+     * The image paths of the entries are not loaded.
+     *
+     * @param afterSeq The change sequence of the last entry of the previous page, or the start of the range,
+     *                 exclusive, for the first page.
+     * @param afterId The ID of the last entry of the previous page, or {@link Integer#MAX_VALUE} for the first page.
+     * @param untilSeq The end of the range, inclusive.
+     * @param pageSize The maximum number of entries to return.
+     * @return List of at most pageSize journal entries.
+     */
+    @Query("SELECT * FROM journal_entries WHERE changeSeq <= :untilSeq " +
+            "AND (changeSeq > :afterSeq OR (changeSeq = :afterSeq AND id > :afterId)) " +
+            "ORDER BY changeSeq, id LIMIT :pageSize")
+    List<JournalEntryEntity> getChangedEntriesPage(long afterSeq, int afterId, long untilSeq, int pageSize);
+
+    /**
+     * Counts the journal entries changed within a range of change sequences.
+     *
+     * @param sinceSeq The start of the range, exclusive.
+     * @param untilSeq The end of the range, inclusive.
+     * @return The number of changed entries.
+     */
+    @Query("SELECT COUNT(*) FROM journal_entries WHERE changeSeq > :sinceSeq AND changeSeq <= :untilSeq")
+    int countChangedEntries(long sinceSeq, long untilSeq);
+
+    /**
+     * Gets the page of image paths first attached within a range of change sequences that follows the given path,
+     * in lexicographic order.
+     * <br>
+     * A path attached within the range is excluded if it is still attached to an entry from before the range,
+     * so entries changed without changing their images add no images to the range.
+     *
+     * @param sinceSeq The start of the range, exclusive.
+     * @param untilSeq The end of the range, inclusive.
+     * @param afterPath The last path of the previous page, or an empty string for the first page.
+     * @param pageSize The maximum number of paths to return.
+     * @return List of at most pageSize image paths.
+     */
+    @Query("SELECT DISTINCT i.path FROM journal_images i " +
+            "WHERE i.changeSeq > :sinceSeq AND i.changeSeq <= :untilSeq AND i.path > :afterPath " +
+            "AND NOT EXISTS (SELECT 1 FROM journal_images pi WHERE pi.path = i.path AND pi.changeSeq <= :sinceSeq) " +
+            "ORDER BY i.path LIMIT :pageSize")
+    List<String> getChangedImagePathsPage(long sinceSeq, long untilSeq, String afterPath, int pageSize);
+
+    /**
+     * Counts the image paths first attached within a range of change sequences.
+     *
+     * @param sinceSeq The start of the range, exclusive.
+     * @param untilSeq The end of the range, inclusive.
+     * @return The number of image paths.
+     * @see #getChangedImagePathsPage(long, long, String, int)
+     */
+    @Query("SELECT COUNT(DISTINCT i.path) FROM journal_images i " +
+            "WHERE i.changeSeq > :sinceSeq AND i.changeSeq <= :untilSeq " +
+            "AND NOT EXISTS (SELECT 1 FROM journal_images pi WHERE pi.path = i.path AND pi.changeSeq <= :sinceSeq)")
+    int countChangedImagePaths(long sinceSeq, long untilSeq);
+
+    /**
+     * Gets the page of IDs of journal entries deleted within a range of change sequences that follows the given ID.
+     *
+     * @param sinceSeq The start of the range, exclusive.
+     * @param untilSeq The end of the range, inclusive.
+     * @param afterId The last ID of the previous page, or 0 for the first page.
+     * @param pageSize The maximum number of IDs to return.
+     * @return List of at most pageSize entry IDs, in ascending order.
+     */
+    @Query("SELECT entryId FROM journal_tombstones WHERE changeSeq > :sinceSeq AND changeSeq <= :untilSeq " +
+            "AND entryId > :afterId ORDER BY entryId LIMIT :pageSize")
+    List<Integer> getDeletedEntryIdsPage(long sinceSeq, long untilSeq, int afterId, int pageSize);
+
+    /**
+     * Gets the page of distinct attached image paths that follows the given path, in lexicographic order.
+     *
+     * @param afterPath The last path of the previous page, or an empty string for the first page.
+     * @param pageSize The maximum number of paths to return.
+     * @return List of at most pageSize image paths.
+     */
+    @Query("SELECT DISTINCT path FROM journal_images WHERE path > :afterPath ORDER BY path LIMIT :pageSize")
+    List<String> getImagePathsPageAfter(String afterPath, int pageSize);
+
+    /**
+     * Counts all journal entries.
+     *
+     * @return The number of entries.
+     */
+    @Query("SELECT COUNT(*) FROM journal_entries")
+    int countEntries();
+
+    /**
+     * Counts the distinct image files attached to journal entries.
+     *
+     * @return The number of attached image files.
+     */
+    @Query("SELECT COUNT(DISTINCT path) FROM journal_images")
+    int countImagePaths();
+
+    /**
+     * Counts the journal entries with the given date, title and content.
+     * <br>
+     * Entries with compressed content are matched by their plain beginning, then decompressed to be compared.
+     *
+     * @param date The date of the entry.
+     * @param title The title of the entry.
+     * @param content The content of the entry.
+     * @return The number of identical entries.
+     */
+    default int countIdenticalEntries(long date, String title, String content) {
+        int count = countIdenticalPlainEntries(date, title, content);
+        if (content != null && content.length() > ContentCompression.THRESHOLD) {
+            String preview = ContentCompression.getPreview(content);
+            for (byte[] compressedContent : getCompressedContents(date, title, preview)) {
+                try {
+                    if (content.equals(ContentCompression.decompress(compressedContent))) {
+                        count++;
+                    }
+                } catch (IOException e) {
+                    // A corrupted entry is not identical to any content
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the journal entries with the given date, title and content stored in plain text.
+     *
+     * @param date The date of the entry.
+     * @param title The title of the entry.
+     * @param content The content of the entry.
+     * @return The number of identical entries.
+     */
+    @Query("SELECT COUNT(*) FROM journal_entries WHERE date = :date AND title = :title AND content = :content " +
+            "AND compressedContent IS NULL")
+    int countIdenticalPlainEntries(long date, String title, String content);
+
+    /**
+     * Gets the compressed content of the journal entries with the given date, title and plain beginning.
+     *
+     * @param date The date of the entry.
+     * @param title The title of the entry.
+     * @param preview The plain beginning of the content.
+     * @return List of compressed contents, in no particular order.
+     */
+    @Query("SELECT compressedContent FROM journal_entries WHERE date = :date AND title = :title " +
+            "AND content = :preview AND compressedContent IS NOT NULL")
+    List<byte[]> getCompressedContents(long date, String title, String preview);
+
+    /**
+     * Gets the page of journal entries with long content stored in plain text that follows the given ID.
+     * <br>
+     * The image paths of the entries are not loaded.
+     *
+     * @param minLength The number of characters the content must exceed.
+     * @param afterId The ID of the last entry of the previous page, or 0 for the first page.
+     * @param pageSize The maximum number of entries to return.
+     * @return List of at most pageSize journal entries, in ascending order of ID.
+     */
+    @Query("SELECT * FROM journal_entries WHERE compressedContent IS NULL AND length(content) > :minLength " +
+            "AND id > :afterId ORDER BY id LIMIT :pageSize")
+    List<JournalEntryEntity> getPlainContentPage(int minLength, int afterId, int pageSize);
+
+    /**
+     * Replaces the plain content of a journal entry with its compressed form, unless the entry was written
+     * since it was loaded.
+     * <br>
+     * The change sequence is kept, as the content itself does not change.
+     *
+     * @param id The ID of the journal entry.
+     * @param changeSeq The change sequence of the entry when it was loaded.
+     * @param preview The plain beginning of the content.
+     * @param compressedContent The compressed content.
+     * @param searchTerms The search terms of the content past its plain beginning.
+     * @return The number of updated entries, 0 if the entry was written or deleted since it was loaded.
+     */
+    @Query("UPDATE journal_entries SET content = :preview, compressedContent = :compressedContent, " +
+            "searchTerms = :searchTerms WHERE id = :id AND changeSeq = :changeSeq AND compressedContent IS NULL")
+    int compressEntryContent(int id, long changeSeq, String preview, byte[] compressedContent, String searchTerms);
+
+    /**
+     * Counts all images attached to journal entries.
+     *
+     * @return The number of attached images.
+     */
+    @Query("SELECT COUNT(*) FROM journal_images")
+    int countImages();
+
+    /**
+     * Inserts a new journal entry together with its images in a single transaction, storing its content
+     * in plain text.
+     *
+     * @param entry The journal entry to be inserted, including its image paths.
+     * @return The ID of the inserted entry.
+     */
+    @Transaction
+    default long insertEntryWithImages(JournalEntryEntity entry) {
+        return insertEntryWithImages(entry, false);
+    }
+
+    /**
+     * Inserts a new journal entry together with its images in a single transaction.
+     *
+     * @param entry The journal entry to be inserted, including its image paths.
+     * @param compressContent Whether to compress long content, see {@link AppDatabase#isContentCompressionEnabled()}.
+     * @return The ID of the inserted entry.
+     */
+    @Transaction
+    default long insertEntryWithImages(JournalEntryEntity entry, boolean compressContent) {
+        long id = insertEntry(entry, compressContent);
+        insertImages(toImageEntities((int) id, entry.getImagePaths(), entry.getChangeSeq()));
+        return id;
+    }
+
+    /**
+     * Updates an existing journal entry and replaces its images in a single transaction, storing new content
+     * in plain text.
+     *
+     * @param entry The journal entry to be updated, including its image paths.
+     */
+    @Transaction
+    default void updateEntryWithImages(JournalEntryEntity entry) {
+        updateEntryWithImages(entry, false);
+    }
+
+    /**
+     * Updates an existing journal entry and replaces its images in a single transaction.
+     *
+     * @param entry The journal entry to be updated, including its image paths.
+     * @param compressContent Whether to compress long content, see {@link AppDatabase#isContentCompressionEnabled()}.
+     */
+    @Transaction
+    default void updateEntryWithImages(JournalEntryEntity entry, boolean compressContent) {
+        List<JournalImageEntity> previousImages = getImagesForEntries(Collections.singletonList(entry.getId()));
+        updateEntry(entry, compressContent);
+        deleteImagesForEntry(entry.getId());
+        List<JournalImageEntity> images = toImageEntities(entry.getId(), entry.getImagePaths(), entry.getChangeSeq());
+        keepImageChangeSeqs(images, previousImages);
+        insertImages(images);
+    }
+
+    /**
+     * Sets the change sequence of images that were already attached to their entry before it was rewritten,
+     * so that they keep the write that first attached them.
+     *
+     * @param images The images about to be inserted.
+     * @param previousImages The images of the entries before they were rewritten.
+     */
+    static void keepImageChangeSeqs(List<JournalImageEntity> images, List<JournalImageEntity> previousImages) {
+        Map<Integer, Map<String, Long>> changeSeqs = new HashMap<>();
+        for (JournalImageEntity image : previousImages) {
+            changeSeqs.computeIfAbsent(image.getEntryId(), id -> new HashMap<>())
+                    .merge(image.getPath(), image.getChangeSeq(), Math::min);
+        }
+        for (JournalImageEntity image : images) {
+            Long changeSeq = changeSeqs.getOrDefault(image.getEntryId(), Collections.emptyMap()).get(image.getPath());
+            if (changeSeq != null) {
+                image.setChangeSeq(changeSeq);
+            }
+        }
+    }
+
+    /**
+     * Creates the image rows for a list of image paths attached to an entry.
+     *
+     * @param entryId The ID of the journal entry.
+     * @param imagePaths The image paths, in their display order.
+     * @param changeSeq The change sequence of the write attaching the images.
+     * @return List of image entities with their positions set.
+     */
+    static List<JournalImageEntity> toImageEntities(int entryId, List<String> imagePaths, long changeSeq) {
+        List<JournalImageEntity> images = new ArrayList<>();
+        for (int position = 0; position < imagePaths.size(); position++) {
+            JournalImageEntity image = new JournalImageEntity();
+            image.setEntryId(entryId);
+            image.setPosition(position);
+            image.setPath(imagePaths.get(position));
+            image.setChangeSeq(changeSeq);
+            images.add(image);
+        }
+        return images;
+    }
+
+    /**
+     * Gets the first page of journal entry summaries, ordered from newest to oldest.
+     *
+     * @param pageSize The maximum number of summaries to return.
+     * @return List of at most pageSize journal entry summaries.
+     */
+    @Query("SELECT id, title, date FROM journal_entries ORDER BY date DESC, id DESC LIMIT :pageSize")
+    List<JournalEntrySummary> getFirstSummariesPage(int pageSize);
+
+    /**
+     * Gets the page of journal entry summaries that follows the given (date, id) key, ordered from newest to oldest.
+     * <br>
+     * The key is the date and ID of the last entry of the previous page, so the page is found with a
+     * range lookup instead of skipping over all previously loaded rows with an OFFSET.
+     *
+     * @param date The date of the last entry of the previous page.
+     * @param id The ID of the last entry of the previous page.
+     * @param pageSize The maximum number of summaries to return.
+     * @return List of at most pageSize journal entry summaries.
+     */
+    @Query("SELECT id, title, date FROM journal_entries WHERE date <= :date AND (date < :date OR id < :id) " +
+            "ORDER BY date DESC, id DESC LIMIT :pageSize")
+    List<JournalEntrySummary> getSummariesPageAfter(long date, int id, int pageSize);
+
+    /**
+     * Runs a query returning full-text search matches.
+     *
+     * @param query The query, selecting the ID and score of the matches.
+     * @return List of matches.
+     */
+    @RawQuery
+    List<JournalEntrySearchMatch> getSearchMatches(SupportSQLiteQuery query);
+
+    /**
+     * Gets the IDs and scores of the journal entries best matching a full-text search query.
+     * <br>
+     * Matches are scored and ranked in the database, see {@link JournalEntrySearchMatch}, so that only
+     * the best matches are returned.
+     *
+     * @param query The FTS match query.
+     * @param limit The maximum number of matches to return.
+     * @return List of at most limit matches, ordered from most to least relevant.
+     */
+    default List<JournalEntrySearchMatch> getBestSearchMatches(String query, int limit) {
+        return getSearchMatches(new SimpleSQLiteQuery(JournalEntrySearchMatch.RANKED_MATCHES_QUERY,
+                new Object[]{query, limit}));
+    }
+
+    /**
+     * Gets the search results with text snippets for the given matching journal entries.
+     * <br>
+     * Snippets are taken from the content, as the search terms of compressed content are not readable text.
+     *
+     * @param query The FTS match query.
+     * @param ids The IDs of the entries to load.
+     * @return List of search results, in no particular order.
+     */
+    @Query("SELECT journal_entries.id, journal_entries.title, journal_entries.date, " +
+            "snippet(journal_entries_fts, char(2), char(3), '…', 1, 12) AS snippet " +
+            "FROM journal_entries JOIN journal_entries_fts ON journal_entries.id = journal_entries_fts.rowid " +
+            "WHERE journal_entries_fts MATCH :query AND journal_entries_fts.rowid IN (:ids)")
+    List<JournalEntrySearchResult> getSearchResults(String query, List<Integer> ids);
+
+    /**
+     * Gets the LiveData list of summaries of the journal entries dated within a time range, ordered from newest to oldest.
+     *
+     * @param startDate The start of the range, inclusive.
+     * @param endDate The end of the range, exclusive.
+     * @return LiveData list of journal entry summaries.
+     */
+    @Query("SELECT id, title, date FROM journal_entries WHERE date >= :startDate AND date < :endDate " +
+            "ORDER BY date DESC, id DESC")
+    LiveData<List<JournalEntrySummary>> getEntrySummariesBetween(long startDate, long endDate);
+
+    /**
+     * Gets the date of the newest journal entry dated before a time.
+     *
+     * @param before The time, exclusive.
+     * @return The date of the entry, or null if no entry is dated before the time.
+     */
+    @Query("SELECT date FROM journal_entries WHERE date < :before ORDER BY date DESC LIMIT 1")
+    Long getLatestDateBefore(long before);
+
+    /**
+     * Counts the journal entries dated within a time range.
+     *
+     * @param startDate The start of the range, inclusive.
+     * @param endDate The end of the range, exclusive.
+     * @return The number of entries.
+     */
+    @Query("SELECT COUNT(*) FROM journal_entries WHERE date >= :startDate AND date < :endDate")
+    int countEntriesBetween(long startDate, long endDate);
+
+    /**
+     * Gets all months containing journal entries, with the number of entries in each month, from newest to oldest.
+     * <br>
+     * Months are walked with range lookups on the date index: the newest entry dated before a month gives the
+     * next month to count, so that only the rows of months containing entries are visited. Months are determined
+     * in the local time zone of the device, in which entry dates are selected.
+     *
+     * @return List of months containing entries.
+     */
+    @Transaction
+    default List<JournalEntryMonth> getEntryMonths() {
+        List<JournalEntryMonth> months = new ArrayList<>();
+        Calendar calendar = Calendar.getInstance();
+        Long date = getLatestDateBefore(Long.MAX_VALUE);
+        while (date != null) {
+            // Find the start and end of the month of the entry
+            calendar.setTimeInMillis(date);
+            calendar.set(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH), 1, 0, 0, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            long startDate = calendar.getTimeInMillis();
+            JournalEntryMonth month = new JournalEntryMonth();
+            month.setYear(calendar.get(Calendar.YEAR));
+            month.setMonth(calendar.get(Calendar.MONTH) + 1);
+            calendar.add(Calendar.MONTH, 1);
+            month.setEntryCount(countEntriesBetween(startDate, calendar.getTimeInMillis()));
+            months.add(month);
+            date = getLatestDateBefore(startDate);
+        }
+        return months;
+    }
 }
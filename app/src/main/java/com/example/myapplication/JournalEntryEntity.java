@@ -1,28 +1,65 @@
 package com.example.myapplication;
 
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
-import androidx.room.TypeConverters;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
  * Entity class representing a journal entry in the database.
+ * <br>
+ * Entries are indexed by date for ordered listing and date range lookups.
+ * Attached images are stored separately as {@link JournalImageEntity} rows.
+ * <br>
+ * Every write through {@link JournalEntryDao} sets the time of the write and a change sequence greater than
+ * that of any earlier write, which are indexed to find the entries changed since a backup.
+ * <br>
+ * Each entry also has a random UUID, set when it is first inserted, that identifies it across devices.
+ * <br>
+ * Long content may be stored compressed, see {@link ContentCompression}. The stored form is computed from
+ * the content when the entry is written, and compressed content is only decompressed once it is read.
+ * The search terms of compressed content are indexed along with its plain beginning.
  */
-@Entity(tableName = "journal_entries")
+@Entity(tableName = "journal_entries",
+        indices = {@Index("date"), @Index("changeSeq"), @Index(value = "uuid", unique = true)})
 public class JournalEntryEntity {
     // Primary key for the journal entry, auto-generated
     @PrimaryKey(autoGenerate = true)
     private int id;
+    // UUID identifying the journal entry across devices
+    @NonNull
+    @ColumnInfo(defaultValue = "")
+    private String uuid = "";
     // Title of the journal entry
     private String title;
-    // Content of the journal entry
+    // Content of the journal entry, or its plain beginning if it is stored compressed
+    @ColumnInfo(name = "content")
+    private String storedContent;
+    // Compressed content of the journal entry, or null if it is stored in plain text
+    @ColumnInfo(typeAffinity = ColumnInfo.BLOB)
+    private byte[] compressedContent;
+    // Distinct words of compressed content past its plain beginning, or null if it is stored in plain text
+    private String searchTerms;
+    // Content of the journal entry, decompressed when first read
+    @Ignore
     private String content;
     // Date of the journal entry, stored as a timestamp
     private long date;
-    // List of image paths representing images added in the journal entry
-    @TypeConverters(StringListConverter.class)
+    // Time of the last write of the journal entry, stored as a timestamp
+    @ColumnInfo(defaultValue = "0")
+    private long updatedAt;
+    // Change sequence of the last write of the journal entry
+    @ColumnInfo(defaultValue = "0")
+    private long changeSeq;
+    // List of image paths representing images added in the journal entry, stored in the journal images table
+    @Ignore
     private List<String> imagePaths;
 
     // Getters and setters
@@ -30,6 +67,15 @@ public class JournalEntryEntity {
 
     public void setId(int id) { this.id = id; }
 
+    @NonNull
+    public String getUuid() {
+        return uuid;
+    }
+
+    public void setUuid(@NonNull String uuid) {
+        this.uuid = uuid;
+    }
+
     public void setTitle(String title) {
         this.title = title;
     }
@@ -38,12 +84,76 @@ public class JournalEntryEntity {
         return title;
     }
 
+    /**
+     * Gets the content of the entry, decompressing it on first read if it is stored compressed.
+     *
+     * @return The content.
+     * @throws UncheckedIOException If the stored content is corrupted.
+     */
     public String getContent() {
+        if (content == null && compressedContent != null) {
+            try {
+                content = ContentCompression.decompress(compressedContent);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Corrupted content of entry " + id, e);
+            }
+        } else if (content == null) {
+            content = storedContent;
+        }
         return content;
     }
 
+    /**
+     * Sets the content of the entry, replacing its stored form.
+     *
+     * @param content The content.
+     */
     public void setContent(String content) {
         this.content = content;
+        storedContent = null;
+        compressedContent = null;
+        searchTerms = null;
+    }
+
+    // Stored form of the content, computed from the content when the entry is written, see encodeContent
+    public String getStoredContent() {
+        return storedContent == null && compressedContent == null ? content : storedContent;
+    }
+
+    public void setStoredContent(String storedContent) {
+        this.storedContent = storedContent;
+    }
+
+    public byte[] getCompressedContent() {
+        return compressedContent;
+    }
+
+    public void setCompressedContent(byte[] compressedContent) {
+        this.compressedContent = compressedContent;
+    }
+
+    public String getSearchTerms() {
+        return searchTerms;
+    }
+
+    public void setSearchTerms(String searchTerms) {
+        this.searchTerms = searchTerms;
+    }
+
+    /**
+     * Computes the stored form of content set since the entry was loaded, called once when the entry is written.
+     * <br>
+     * Content loaded in its stored form is kept as stored.
+     *
+     * @param compress Whether to compress the content if it is long enough.
+     */
+    void encodeContent(boolean compress) {
+        if (storedContent != null || compressedContent != null || content == null) {
+            return;
+        }
+        compressedContent = compress ? ContentCompression.compress(content) : null;
+        storedContent = compressedContent != null ? ContentCompression.getPreview(content) : content;
+        searchTerms = compressedContent != null ? ContentCompression.getSearchTerms(content) : null;
     }
 
     public long getDate() {
@@ -54,6 +164,22 @@ public class JournalEntryEntity {
         this.date = date;
     }
 
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(long updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
+    public long getChangeSeq() {
+        return changeSeq;
+    }
+
+    public void setChangeSeq(long changeSeq) {
+        this.changeSeq = changeSeq;
+    }
+
     public List<String> getImagePaths() {
         // If no image paths are found, create an empty list
         if(imagePaths == null) {
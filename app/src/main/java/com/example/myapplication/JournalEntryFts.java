@@ -0,0 +1,57 @@
+package com.example.myapplication;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full-text search entity over the titles and content of journal entries.
+ * <br>
+ * The FTS table only stores the search index. The text itself is read from the journal entries table,
+ * and Room keeps the index in sync with that table through triggers. Compressed content is indexed from
+ * its plain beginning and its search terms, see {@link ContentCompression}.
+ */
+@Fts4(contentEntity = JournalEntryEntity.class)
+@Entity(tableName = "journal_entries_fts")
+public class JournalEntryFts {
+    // Row ID of the indexed journal entry, equal to the entry ID
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private int rowId;
+    // Title of the journal entry
+    private String title;
+    // Content of the journal entry, or its plain beginning if it is stored compressed
+    private String content;
+    // Search terms of the compressed content of the journal entry
+    private String searchTerms;
+
+    // Getters and setters
+    public int getRowId() { return rowId; }
+
+    public void setRowId(int rowId) { this.rowId = rowId; }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+
+    public String getSearchTerms() {
+        return searchTerms;
+    }
+
+    public void setSearchTerms(String searchTerms) {
+        this.searchTerms = searchTerms;
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.myapplication;
+
+/**
+ * Month of the journal containing at least one entry, with the number of entries in that month.
+ */
+public class JournalEntryMonth {
+    // Year of the month
+    private int year;
+    // Month of the year, from 1 (January) to 12 (December)
+    private int month;
+    // Number of entries dated in the month
+    private int entryCount;
+
+    // Getters and setters
+    public int getYear() { return year; }
+
+    public void setYear(int year) { this.year = year; }
+
+    public int getMonth() { return month; }
+
+    public void setMonth(int month) { this.month = month; }
+
+    public int getEntryCount() { return entryCount; }
+
+    public void setEntryCount(int entryCount) { this.entryCount = entryCount; }
+}
@@ -1,11 +1,27 @@
 package com.example.myapplication;
 
 import android.app.Application;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+import androidx.room.InvalidationTracker;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executor;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Repository class for abstracting data operations from the UI.
@@ -14,10 +30,20 @@ import java.util.concurrent.Executors;
  * to focus on preparing data for the UI.
  * */
 public class JournalEntryRepository {
+    // Database instance used for observing table changes
+    private final AppDatabase database;
+    // Maximum number of search results returned for a query
+    static final int SEARCH_RESULT_LIMIT = 100;
     // DAO instance for accessing database operations
     private final JournalEntryDao journalEntryDao;
     // Executor instance for controlling thread execution
     private final Executor executor;
+    // Writer coalescing entry writes into batched transactions on the executor
+    private final JournalEntryBatchWriter batchWriter;
+    // Engine syncing the journal with a remote, shared by all repositories
+    private final SyncEngine syncEngine;
+    // Cache of the loaded entries, shared by all repositories
+    private final JournalEntryCache entryCache;
 
     /**
      * Constructor for JournalEntryRepository.
@@ -26,54 +52,359 @@ public class JournalEntryRepository {
      */
     public JournalEntryRepository(Application application) {
         // Get singleton database instance
-        AppDatabase db = AppDatabase.getDatabase(application.getApplicationContext());
-        journalEntryDao = db.journalEntryDao();
-        executor = Executors.newSingleThreadExecutor();
+        database = AppDatabase.getDatabase(application.getApplicationContext());
+        journalEntryDao = database.journalEntryDao();
+        executor = AppExecutors.getInstance().database();
+        batchWriter = new JournalEntryBatchWriter(database, executor);
+        syncEngine = SyncEngine.getInstance(application.getApplicationContext());
+        entryCache = JournalEntryCache.getInstance(application.getApplicationContext());
     }
 
     /**
-     * Inserts a new journal entry into the database.
+     * Inserts a new journal entry and its images into the database.
+     * <br>
+     * The write is coalesced with other writes submitted at the same time into a single transaction.
      *
      * @param entry The journal entry to be inserted.
+     * @return Future completed once the entry is committed, with the outcome including the generated ID,
+     * or exceptionally with the error that made the write fail.
      */
-    public void insertEntry(JournalEntryEntity entry) {
-        executor.execute(() -> journalEntryDao.insertEntry(entry));
+    public CompletableFuture<JournalEntryBatchWriter.Outcome> insertEntry(JournalEntryEntity entry) {
+        return batchWriter.insert(entry);
     }
 
     /**
-     * Updates an existing journal entry in the database.
+     * Updates an existing journal entry and its images in the database.
+     * <br>
+     * Images removed from the entry are deleted from storage if no other entry references them.
+     * If the images of the entry are unchanged, only the entry row is written.
      *
      * @param entry The journal entry to be updated.
+     * @return Future completed once the update is committed, or exceptionally with the error that made it fail.
      */
-    public void updateEntry(JournalEntryEntity entry) {
-        executor.execute(() -> journalEntryDao.updateEntry(entry));
+    public CompletableFuture<JournalEntryBatchWriter.Outcome> updateEntry(JournalEntryEntity entry) {
+        return removeFromCache(batchWriter.update(entry), Collections.singletonList(entry));
     }
 
     /**
-     * Deletes a journal entry from the database.
+     * Deletes a journal entry and its images from the database.
+     * <br>
+     * The images of the entry are deleted from storage if no other entry references them.
      *
      * @param entry The journal entry to be deleted.
+     * @return Future completed once the deletion is committed, or exceptionally with the error that made it fail.
+     */
+    public CompletableFuture<JournalEntryBatchWriter.Outcome> deleteEntry(JournalEntryEntity entry) {
+        return removeFromCache(batchWriter.delete(entry), Collections.singletonList(entry));
+    }
+
+    /**
+     * Inserts journal entries and their images into the database in a single transaction.
+     *
+     * @param entries The journal entries to be inserted.
+     * @return Future completed once the entries are committed, with the outcome of each entry
+     * including its generated ID.
+     */
+    public CompletableFuture<List<JournalEntryBatchWriter.Outcome>> insertEntries(List<JournalEntryEntity> entries) {
+        return batchWriter.insertAll(entries);
+    }
+
+    /**
+     * Updates journal entries and their images in the database in a single transaction.
+     *
+     * @param entries The journal entries to be updated.
+     * @return Future completed once the entries are committed, with the outcome of each entry.
+     */
+    public CompletableFuture<List<JournalEntryBatchWriter.Outcome>> updateEntries(List<JournalEntryEntity> entries) {
+        return removeFromCache(batchWriter.updateAll(entries), entries);
+    }
+
+    /**
+     * Deletes journal entries and their images from the database in a single transaction.
+     *
+     * @param entries The journal entries to be deleted.
+     * @return Future completed once the entries are committed, with the outcome of each entry.
      */
-    public void deleteEntry(JournalEntryEntity entry) {
-        executor.execute(() -> journalEntryDao.deleteEntry(entry));
+    public CompletableFuture<List<JournalEntryBatchWriter.Outcome>> deleteEntries(List<JournalEntryEntity> entries) {
+        return removeFromCache(batchWriter.deleteAll(entries), entries);
     }
 
     /**
-     * Gets the LiveData list of all journal entries.
+     * Releases stored images that were not saved with an entry.
+     * <br>
+     * The images are deleted from storage if no entry references them.
      *
-     * @return LiveData list of all journal entries.
+     * @param imagePaths The paths of the stored images.
      */
-    public LiveData<List<JournalEntryEntity>> getAllEntries() {
-        return journalEntryDao.getAllEntries();
+    public void releaseImages(List<String> imagePaths) {
+        batchWriter.release(imagePaths);
     }
 
     /**
-     * Retrieves a specific journal entry by its ID.
+     * Removes written entries from the entry cache, when the write is submitted and again once it completes.
+     * <br>
+     * Removing the entries again once written discards a version cached while the write was pending.
+     * New entries are not removed, as their generated IDs have never been used.
+     *
+     * @param future The future of the write.
+     * @param entries The entries being written.
+     * @return The future of the write, completed once the entries are removed from the cache.
+     */
+    private <T> CompletableFuture<T> removeFromCache(CompletableFuture<T> future, List<JournalEntryEntity> entries) {
+        List<JournalEntryEntity> writtenEntries = new ArrayList<>(entries);
+        entryCache.removeAll(writtenEntries);
+        return future.whenComplete((result, error) -> entryCache.removeAll(writtenEntries));
+    }
+
+    /**
+     * Syncs the journal with a remote, pushing and pulling only the entries and images that changed.
+     * <br>
+     * The sync runs on the disk executor, and an interrupted sync continues where it stopped when run again.
+     * The entry cache is cleared once the sync ends, as pulled entries are written without going through
+     * the repository.
+     *
+     * @param transport The transport to the remote.
+     * @return Future completed with the outcome of the sync, or exceptionally with the error that stopped it.
+     */
+    public CompletableFuture<SyncEngine.Result> sync(SyncTransport transport) {
+        CompletableFuture<SyncEngine.Result> future = new CompletableFuture<>();
+        AppExecutors.getInstance().disk().execute(() -> {
+            try {
+                SyncEngine.Result result = syncEngine.sync(transport);
+                entryCache.clear();
+                future.complete(result);
+            } catch (IOException | RuntimeException e) {
+                entryCache.clear();
+                future.completeExceptionally(e);
+            }
+        }, AppExecutors.Priority.DEFAULT);
+        return future;
+    }
+
+    /**
+     * Retrieves a specific journal entry by its ID, including its image paths.
+     * <br>
+     * The entry and its images are loaded in a single transaction. Compressed content is decompressed
+     * on the repository executor before the entry is delivered, so it is not decompressed on the main thread.
+     * <br>
+     * An entry loaded before is delivered from the entry cache right away, then replaced by the entry loaded
+     * from the database. Delivered entries are shared with the cache and must be copied before being modified.
+     * Must be called on the main thread.
      *
      * @param id The ID of the journal entry to retrieve.
-     * @return LiveData object containing the journal entry.
+     * @return LiveData object containing the journal entry, or null if it does not exist.
      */
     public LiveData<JournalEntryEntity> getEntryById(int id) {
-        return journalEntryDao.getEntryById(id);
+        MediatorLiveData<JournalEntryEntity> entry = new MediatorLiveData<>();
+        JournalEntryEntity cached = entryCache.get(id);
+        if (cached != null) {
+            entry.setValue(cached);
+        }
+        // Number of versions of the entry loaded so far, so that an outdated version is not delivered
+        AtomicInteger version = new AtomicInteger();
+        entry.addSource(journalEntryDao.getEntryWithImagesById(id), entryWithImages -> {
+            int loadedVersion = version.incrementAndGet();
+            if (entryWithImages == null) {
+                entryCache.remove(id);
+                entry.setValue(null);
+                return;
+            }
+            if (entryWithImages.getEntry().getCompressedContent() == null) {
+                JournalEntryEntity loaded = entryWithImages.toEntry();
+                entryCache.put(loaded);
+                entry.setValue(loaded);
+                return;
+            }
+            executor.execute(() -> {
+                JournalEntryEntity loaded = entryWithImages.toEntry();
+                try {
+                    loaded.getContent();
+                    entryCache.put(loaded);
+                } catch (UncheckedIOException e) {
+                    Log.e("JournalEntryRepository", "Failed to decompress entry " + id, e);
+                    entryCache.remove(id);
+                    loaded = null;
+                }
+                if (version.get() == loadedVersion) {
+                    entry.postValue(loaded);
+                }
+            });
+        });
+        return entry;
+    }
+
+    /**
+     * Gets the cache of the loaded entries, whose hit rate shows how often entries are shown without waiting
+     * for the database.
+     *
+     * @return The entry cache.
+     */
+    public JournalEntryCache getEntryCache() {
+        return entryCache;
+    }
+
+    /**
+     * Loads a page of journal entry summaries, ordered from newest to oldest.
+     * <br>
+     * The query runs on the repository executor and the loaded page is passed to the callback on that thread.
+     *
+     * @param lastEntry The last entry of the previous page, or null to load the first page.
+     * @param pageSize The maximum number of entries to load.
+     * @param callback The callback receiving the loaded page.
+     */
+    public void loadEntriesPage(@Nullable JournalEntrySummary lastEntry, int pageSize,
+                                Consumer<List<JournalEntrySummary>> callback) {
+        executor.execute(() -> {
+            List<JournalEntrySummary> page = lastEntry == null
+                    ? journalEntryDao.getFirstSummariesPage(pageSize)
+                    : journalEntryDao.getSummariesPageAfter(lastEntry.getDate(), lastEntry.getId(), pageSize);
+            callback.accept(page);
+        });
+    }
+
+    /**
+     * Gets the LiveData list of summaries of the journal entries dated within a time range.
+     *
+     * @param startDate The start of the range in milliseconds, inclusive.
+     * @param endDate The end of the range in milliseconds, exclusive.
+     * @return LiveData list of journal entry summaries, ordered from newest to oldest.
+     */
+    public LiveData<List<JournalEntrySummary>> getEntrySummariesBetween(long startDate, long endDate) {
+        return journalEntryDao.getEntrySummariesBetween(startDate, endDate);
+    }
+
+    /**
+     * Gets the LiveData list of summaries of the journal entries dated in a month.
+     *
+     * @param year The year of the month.
+     * @param month The month of the year, from 1 (January) to 12 (December).
+     * @return LiveData list of journal entry summaries, ordered from newest to oldest.
+     */
+    public LiveData<List<JournalEntrySummary>> getEntrySummariesForMonth(int year, int month) {
+        Calendar start = startOfDay(year, month - 1, 1);
+        Calendar end = (Calendar) start.clone();
+        end.add(Calendar.MONTH, 1);
+        return getEntrySummariesBetween(start.getTimeInMillis(), end.getTimeInMillis());
+    }
+
+    /**
+     * Loads all months containing journal entries, with the number of entries in each month.
+     * <br>
+     * The query runs on the repository executor and the months are passed to the callback on that thread.
+     *
+     * @param callback The callback receiving the months, ordered from newest to oldest.
+     */
+    public void loadEntryMonths(Consumer<List<JournalEntryMonth>> callback) {
+        executor.execute(() -> callback.accept(journalEntryDao.getEntryMonths()));
+    }
+
+    /**
+     * Creates a calendar set to the start of a day in the local time zone, in which entry dates are selected.
+     *
+     * @param year The year.
+     * @param month The month, as a {@link Calendar} month constant.
+     * @param day The day of the month.
+     * @return The calendar set to midnight of the given day.
+     */
+    private static Calendar startOfDay(int year, int month, int day) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day);
+        return calendar;
+    }
+
+    /**
+     * Searches the titles and content of all journal entries.
+     * <br>
+     * Matches are looked up in the full-text search index and ranked by relevance in the database.
+     * Text snippets are then loaded for the best matches only. The search runs on the repository
+     * executor and the results are passed to the callback on that thread.
+     * <br>
+     * Only the first {@link JournalEntrySearchMatch#MAX_SCORED_PHRASES} words of the text are scored.
+     * Further words still have to be found in each result, but do not change its rank.
+     *
+     * @param text The text to search for.
+     * @param callback The callback receiving the search results, ordered from most to least relevant.
+     */
+    public void searchEntries(String text, Consumer<List<JournalEntrySearchResult>> callback) {
+        executor.execute(() -> {
+            String query = buildMatchQuery(text);
+            if (query.isEmpty()) {
+                callback.accept(new ArrayList<>());
+                return;
+            }
+
+            // Rank the matches in the database and keep the best ones
+            List<JournalEntrySearchMatch> matches = journalEntryDao.getBestSearchMatches(query, SEARCH_RESULT_LIMIT);
+            if (matches.isEmpty()) {
+                callback.accept(new ArrayList<>());
+                return;
+            }
+            Map<Integer, Double> scores = new HashMap<>();
+            List<Integer> ids = new ArrayList<>();
+            for (JournalEntrySearchMatch match : matches) {
+                scores.put(match.getId(), match.getScore());
+                ids.add(match.getId());
+            }
+
+            // Load the snippets of the best matches and order them by their score
+            List<JournalEntrySearchResult> results = journalEntryDao.getSearchResults(query, ids);
+            results.sort((first, second) -> Double.compare(
+                    scores.getOrDefault(second.getId(), 0.0), scores.getOrDefault(first.getId(), 0.0)));
+            callback.accept(results);
+        });
+    }
+
+    /**
+     * Builds a full-text search match query from text entered by the user.
+     * <br>
+     * The text is split into words, and each word is matched as a prefix so that results appear while typing.
+     * Characters with a special meaning in FTS queries are dropped.
+     *
+     * @param text The text entered by the user.
+     * @return The match query, or an empty string if the text contains no words.
+     */
+    static String buildMatchQuery(String text) {
+        StringBuilder query = new StringBuilder();
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i <= text.length(); i++) {
+            char c = i < text.length() ? text.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(c);
+            } else if (word.length() > 0) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                query.append('"').append(word).append("*\"");
+                word.setLength(0);
+            }
+        }
+        return query.toString();
+    }
+
+    /**
+     * Starts observing changes to the journal entries table.
+     *
+     * @param onChanged The action to run whenever the table is modified.
+     * @return The registered observer, to be passed to {@link #stopObservingEntryChanges} when no longer needed.
+     */
+    public InvalidationTracker.Observer observeEntryChanges(Runnable onChanged) {
+        InvalidationTracker.Observer observer = new InvalidationTracker.Observer("journal_entries") {
+            @Override
+            public void onInvalidated(@NonNull Set<String> tables) {
+                onChanged.run();
+            }
+        };
+        database.getInvalidationTracker().addObserver(observer);
+        return observer;
+    }
+
+    /**
+     * Stops observing changes to the journal entries table.
+     *
+     * @param observer The observer returned by {@link #observeEntryChanges}.
+     */
+    public void stopObservingEntryChanges(InvalidationTracker.Observer observer) {
+        database.getInvalidationTracker().removeObserver(observer);
     }
 }
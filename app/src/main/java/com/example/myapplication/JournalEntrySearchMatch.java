@@ -0,0 +1,88 @@
+package com.example.myapplication;
+
+/**
+ * Full-text search match for a journal entry, ranked by relevance.
+ * <br>
+ * The score is computed in SQL from the blob returned by the FTS4 matchinfo function with the 'x' format,
+ * which holds for each phrase and column the hits in this row, the hits in all rows and the number of rows
+ * with hits, so that matches are ranked and limited in the database instead of being loaded one by one.
+ */
+public class JournalEntrySearchMatch {
+    // Weight of a hit in each column of the full-text search index, title, content then search terms
+    static final double[] COLUMN_WEIGHTS = {2.0, 1.0, 1.0};
+    // Maximum number of phrases of a query that are scored, further phrases only filter the matches
+    static final int MAX_SCORED_PHRASES = 8;
+    // Hexadecimal digits, in the case returned by the hex function
+    private static final String HEX_DIGITS = "'0123456789ABCDEF'";
+
+    // Query ranking the entries matching a full-text search query, bound to the query and the maximum number of matches
+    static final String RANKED_MATCHES_QUERY = "SELECT id, " + buildScoreExpression("matchInfo") + " AS score " +
+            "FROM (SELECT rowid AS id, hex(matchinfo(journal_entries_fts, 'x')) AS matchInfo " +
+            "FROM journal_entries_fts WHERE journal_entries_fts MATCH ?) " +
+            "ORDER BY score DESC, id DESC LIMIT ?";
+
+    // ID of the matching journal entry
+    private int id;
+    // Relevance score of the match, higher for more relevant entries
+    private double score;
+
+    // Getters and setters
+    public int getId() { return id; }
+
+    public void setId(int id) { this.id = id; }
+
+    public double getScore() {
+        return score;
+    }
+
+    public void setScore(double score) {
+        this.score = score;
+    }
+
+    /**
+     * Builds the SQL expression computing the relevance score of a match.
+     * <br>
+     * For each phrase and column, the hits in this entry are weighted by how rare the phrase is
+     * across all entries, so that rare terms and title hits rank higher. Values are read from the
+     * hexadecimal match info as little-endian integers, the byte order of Android devices, and values
+     * past the end of the match info of a query with fewer phrases read as 0.
+     *
+     * @param matchInfo The SQL expression of the match info in hexadecimal.
+     * @return The SQL expression of the score.
+     */
+    static String buildScoreExpression(String matchInfo) {
+        StringBuilder expression = new StringBuilder("(0");
+        for (int phrase = 0; phrase < MAX_SCORED_PHRASES; phrase++) {
+            for (int column = 0; column < COLUMN_WEIGHTS.length; column++) {
+                int index = 3 * (phrase * COLUMN_WEIGHTS.length + column);
+                String hitsInRow = buildIntegerExpression(matchInfo, index);
+                String hitsInAllRows = buildIntegerExpression(matchInfo, index + 1);
+                expression.append(" + ").append(COLUMN_WEIGHTS[column]).append(" * ").append(hitsInRow)
+                        .append(" / max(").append(hitsInAllRows).append(", 1)");
+            }
+        }
+        return expression.append(')').toString();
+    }
+
+    /**
+     * Builds the SQL expression reading an unsigned 32-bit integer of the match info.
+     *
+     * @param matchInfo The SQL expression of the match info in hexadecimal.
+     * @param index The index of the integer in the match info.
+     * @return The SQL expression of the integer.
+     */
+    private static String buildIntegerExpression(String matchInfo, int index) {
+        StringBuilder expression = new StringBuilder("(");
+        for (int i = 0; i < 4; i++) {
+            // Each byte is two hexadecimal digits, and instr returns 1 for the empty string past the end
+            int position = 8 * index + 2 * i + 1;
+            if (i > 0) {
+                expression.append(" + ").append(1L << (8 * i)).append(" * ");
+            }
+            expression.append("(instr(").append(HEX_DIGITS).append(", substr(").append(matchInfo).append(", ")
+                    .append(position).append(", 1)) * 16 + instr(").append(HEX_DIGITS).append(", substr(")
+                    .append(matchInfo).append(", ").append(position + 1).append(", 1)) - 17)");
+        }
+        return expression.append(')').toString();
+    }
+}
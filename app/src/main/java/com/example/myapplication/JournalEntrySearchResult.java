@@ -0,0 +1,24 @@
+package com.example.myapplication;
+
+/**
+ * Search result for a journal entry, extending the summary with a snippet of the matching text.
+ * <br>
+ * Matching terms in the snippet are enclosed in the {@link #MATCH_START} and {@link #MATCH_END} markers.
+ */
+public class JournalEntrySearchResult extends JournalEntrySummary {
+    // Markers placed around matching terms in the snippet
+    public static final char MATCH_START = '\u0002';
+    public static final char MATCH_END = '\u0003';
+
+    // Snippet of the entry text around the matching terms
+    private String snippet;
+
+    // Getters and setters
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.myapplication;
+
+import androidx.room.Ignore;
+
+/**
+ * Summary projection of a journal entry for displaying entries in a list.
+ * <br>
+ * Only the columns shown in the list are loaded, so the entry content and image paths are
+ * neither read from the database nor converted when the list is displayed.
+ */
+public class JournalEntrySummary {
+    // ID of the journal entry
+    private int id;
+    // Title of the journal entry
+    private String title;
+    // Date of the journal entry, stored as a timestamp
+    private long date;
+    // Date formatted for display, cached after the entry is first bound in the list
+    @Ignore
+    private CharSequence formattedDate;
+
+    // Getters and setters
+    public int getId() { return id; }
+
+    public void setId(int id) { this.id = id; }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public long getDate() {
+        return date;
+    }
+
+    public void setDate(long date) {
+        this.date = date;
+    }
+
+    public CharSequence getFormattedDate() {
+        return formattedDate;
+    }
+
+    public void setFormattedDate(CharSequence formattedDate) {
+        this.formattedDate = formattedDate;
+    }
+}
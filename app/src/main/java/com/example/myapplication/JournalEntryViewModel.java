@@ -3,8 +3,14 @@ package com.example.myapplication;
 import android.app.Application;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.room.InvalidationTracker;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * ViewModel class for managing UI-related data in the lifecycle of the journal app.
@@ -14,6 +20,24 @@ import java.util.List;
 public class JournalEntryViewModel extends AndroidViewModel {
     // Repository instance for handling the data operations
     protected JournalEntryRepository journalEntryRepository;
+    // Number of entries loaded per page in the paged list
+    static final int PAGE_SIZE = 50;
+    // Paged list of journal entry summaries exposed to the UI
+    private final MutableLiveData<List<JournalEntrySummary>> pagedEntries = new MutableLiveData<>();
+    // Entry summaries loaded so far in the paged list
+    private final List<JournalEntrySummary> loadedEntries = new ArrayList<>();
+    // Lock guarding the paging state below
+    private final Object pagingLock = new Object();
+    // Incremented on every refresh so that pages requested before the refresh are discarded
+    private int pagingGeneration;
+    private boolean pageLoading;
+    private boolean lastPageReached;
+    // Observer reloading the paged list when the journal entries table changes
+    private InvalidationTracker.Observer entriesObserver;
+    // Results of the latest search query
+    private final MutableLiveData<List<JournalEntrySearchResult>> searchResults = new MutableLiveData<>();
+    // Incremented for every search so that results of outdated queries are discarded
+    private final AtomicInteger searchGeneration = new AtomicInteger();
 
     /**
      * Constructor for JournalEntryViewModel.
@@ -29,36 +53,30 @@ public class JournalEntryViewModel extends AndroidViewModel {
      * Calls repository method to insert a new journal entry into the database.
      *
      * @param entry The journal entry to be inserted.
+     * @return Future completed once the write is committed, with its outcome including its generated ID, or exceptionally with its error.
      */
-    public void insertEntry(JournalEntryEntity entry) {
-        journalEntryRepository.insertEntry(entry);
+    public CompletableFuture<JournalEntryBatchWriter.Outcome> insertEntry(JournalEntryEntity entry) {
+        return journalEntryRepository.insertEntry(entry);
     }
 
     /**
      * Calls repository method to update an existing journal entry in the database.
      *
      * @param entry The journal entry to be updated.
+     * @return Future completed once the write is committed, with its outcome or exceptionally with its error.
      */
-    public void updateEntry(JournalEntryEntity entry) {
-        journalEntryRepository.updateEntry(entry);
+    public CompletableFuture<JournalEntryBatchWriter.Outcome> updateEntry(JournalEntryEntity entry) {
+        return journalEntryRepository.updateEntry(entry);
     }
 
     /**
      * Calls repository method to delete a journal entry from the database.
      *
      * @param entry The journal entry to be deleted.
+     * @return Future completed once the write is committed, with its outcome or exceptionally with its error.
      */
-    public void deleteEntry(JournalEntryEntity entry) {
-        journalEntryRepository.deleteEntry(entry);
-    }
-
-    /**
-     * Calls repository method to get the LiveData list of all journal entries.
-     *
-     * @return LiveData list of all journal entries.
-     */
-    public LiveData<List<JournalEntryEntity>> getAllEntries() {
-        return journalEntryRepository.getAllEntries();
+    public CompletableFuture<JournalEntryBatchWriter.Outcome> deleteEntry(JournalEntryEntity entry) {
+        return journalEntryRepository.deleteEntry(entry);
     }
 
     /**
@@ -70,4 +88,133 @@ public class JournalEntryViewModel extends AndroidViewModel {
     public LiveData<JournalEntryEntity> getEntryById(int id) {
         return journalEntryRepository.getEntryById(id);
     }
+
+    /**
+     * Calls repository method to get the LiveData list of summaries of the journal entries dated in a month.
+     *
+     * @param year The year of the month.
+     * @param month The month of the year, from 1 (January) to 12 (December).
+     * @return LiveData list of journal entry summaries.
+     */
+    public LiveData<List<JournalEntrySummary>> getEntrySummariesForMonth(int year, int month) {
+        return journalEntryRepository.getEntrySummariesForMonth(year, month);
+    }
+
+    /**
+     * Calls repository method to load all months containing journal entries.
+     *
+     * @param callback The callback receiving the months on a background thread, ordered from newest to oldest.
+     */
+    public void loadEntryMonths(Consumer<List<JournalEntryMonth>> callback) {
+        journalEntryRepository.loadEntryMonths(callback);
+    }
+
+    /**
+     * Gets the paged list of journal entry summaries, ordered from newest to oldest.
+     * <br>
+     * The first page is loaded when this method is first called. Further pages are loaded with
+     * {@link #loadNextPage()}, and the loaded pages are refreshed whenever the entries change in the database.
+     *
+     * @return LiveData list of the journal entry summaries loaded so far.
+     */
+    public LiveData<List<JournalEntrySummary>> getPagedEntries() {
+        synchronized (pagingLock) {
+            if (entriesObserver == null) {
+                entriesObserver = journalEntryRepository.observeEntryChanges(this::refreshPagedEntries);
+                loadNextPage();
+            }
+        }
+        return pagedEntries;
+    }
+
+    /**
+     * Loads the next page of journal entries into the paged list.
+     * <br>
+     * The call is ignored if a page is already being loaded or all entries have been loaded.
+     */
+    public void loadNextPage() {
+        JournalEntrySummary lastEntry;
+        int generation;
+        synchronized (pagingLock) {
+            if (pageLoading || lastPageReached) {
+                return;
+            }
+            pageLoading = true;
+            generation = pagingGeneration;
+            lastEntry = loadedEntries.isEmpty() ? null : loadedEntries.get(loadedEntries.size() - 1);
+        }
+        journalEntryRepository.loadEntriesPage(lastEntry, PAGE_SIZE, page -> {
+            synchronized (pagingLock) {
+                // Discard the page if the list was refreshed while it was loading
+                if (generation != pagingGeneration) {
+                    return;
+                }
+                loadedEntries.addAll(page);
+                lastPageReached = page.size() < PAGE_SIZE;
+                pageLoading = false;
+                pagedEntries.postValue(new ArrayList<>(loadedEntries));
+            }
+        });
+    }
+
+    /**
+     * Reloads all entries loaded so far in the paged list after a change in the database.
+     * <br>
+     * The reload is a single query for the first pages, so the list keeps its length and scroll position.
+     */
+    private void refreshPagedEntries() {
+        int generation;
+        int count;
+        synchronized (pagingLock) {
+            generation = ++pagingGeneration;
+            pageLoading = true;
+            count = Math.max(loadedEntries.size(), PAGE_SIZE);
+        }
+        journalEntryRepository.loadEntriesPage(null, count, entries -> {
+            synchronized (pagingLock) {
+                if (generation != pagingGeneration) {
+                    return;
+                }
+                loadedEntries.clear();
+                loadedEntries.addAll(entries);
+                lastPageReached = entries.size() < count;
+                pageLoading = false;
+                pagedEntries.postValue(new ArrayList<>(loadedEntries));
+            }
+        });
+    }
+
+    /**
+     * Gets the results of the latest search started with {@link #searchEntries(String)}.
+     *
+     * @return LiveData list of search results, ordered from most to least relevant.
+     */
+    public LiveData<List<JournalEntrySearchResult>> getSearchResults() {
+        return searchResults;
+    }
+
+    /**
+     * Calls repository method to search the titles and content of all journal entries.
+     * <br>
+     * Results of a previous search that are still loading are discarded when a new search is started.
+     *
+     * @param text The text to search for.
+     */
+    public void searchEntries(String text) {
+        int generation = searchGeneration.incrementAndGet();
+        journalEntryRepository.searchEntries(text, results -> {
+            if (generation == searchGeneration.get()) {
+                searchResults.postValue(results);
+            }
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        // Stop observing the database once the ViewModel is no longer used
+        if (entriesObserver != null) {
+            journalEntryRepository.stopObservingEntryChanges(entriesObserver);
+        }
+    }
 }
@@ -0,0 +1,55 @@
+package com.example.myapplication;
+
+import androidx.room.Embedded;
+import androidx.room.Relation;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Relation class combining a journal entry with its attached images.
+ * <br>
+ * The entry and its images are loaded together in a single transaction.
+ */
+public class JournalEntryWithImages {
+    // The journal entry
+    @Embedded
+    private JournalEntryEntity entry;
+    // The images attached to the entry, in no particular order
+    @Relation(parentColumn = "id", entityColumn = "entryId")
+    private List<JournalImageEntity> images;
+
+    // Getters and setters
+    public JournalEntryEntity getEntry() {
+        return entry;
+    }
+
+    public void setEntry(JournalEntryEntity entry) {
+        this.entry = entry;
+    }
+
+    public List<JournalImageEntity> getImages() {
+        return images;
+    }
+
+    public void setImages(List<JournalImageEntity> images) {
+        this.images = images;
+    }
+
+    /**
+     * Gets the journal entry with the paths of its images set in their saved order.
+     *
+     * @return The journal entry including its image paths.
+     */
+    public JournalEntryEntity toEntry() {
+        List<JournalImageEntity> orderedImages = new ArrayList<>(images != null ? images : new ArrayList<>());
+        orderedImages.sort(Comparator.comparingInt(JournalImageEntity::getPosition));
+        List<String> imagePaths = new ArrayList<>();
+        for (JournalImageEntity image : orderedImages) {
+            imagePaths.add(image.getPath());
+        }
+        entry.setImagePaths(imagePaths);
+        return entry;
+    }
+}
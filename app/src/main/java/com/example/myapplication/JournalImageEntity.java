@@ -0,0 +1,64 @@
+package com.example.myapplication;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class representing an image attached to a journal entry in the database.
+ * <br>
+ * Images are deleted together with their entry, and are indexed by path to look up
+ * which entries use a given image file. Each image records the change sequence of the write that attached it
+ * to its entry, which is kept when the images of the entry are rewritten, so that incremental backups only
+ * hold newly attached images.
+ */
+@Entity(tableName = "journal_images",
+        foreignKeys = @ForeignKey(entity = JournalEntryEntity.class,
+                parentColumns = "id",
+                childColumns = "entryId",
+                onDelete = ForeignKey.CASCADE),
+        indices = {@Index({"entryId", "position"}), @Index("path"), @Index("changeSeq")})
+public class JournalImageEntity {
+    // Primary key for the image, auto-generated
+    @PrimaryKey(autoGenerate = true)
+    private int id;
+    // ID of the journal entry the image is attached to
+    private int entryId;
+    // Position of the image among the images of the entry, starting from 0
+    private int position;
+    // Path of the image file in internal storage
+    @NonNull
+    private String path = "";
+    // Change sequence of the write that attached the image to the entry, 0 until the image is inserted
+    @ColumnInfo(defaultValue = "0")
+    private long changeSeq;
+
+    // Getters and setters
+    public int getId() { return id; }
+
+    public void setId(int id) { this.id = id; }
+
+    public int getEntryId() { return entryId; }
+
+    public void setEntryId(int entryId) { this.entryId = entryId; }
+
+    public int getPosition() { return position; }
+
+    public void setPosition(int position) { this.position = position; }
+
+    @NonNull
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(@NonNull String path) {
+        this.path = path;
+    }
+
+    public long getChangeSeq() { return changeSeq; }
+
+    public void setChangeSeq(long changeSeq) { this.changeSeq = changeSeq; }
+}
@@ -0,0 +1,38 @@
+package com.example.myapplication;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class recording the last version of a journal entry synced with the remote.
+ * <br>
+ * The state is keyed by the UUID of the entry, so it outlives the deletion of the entry until the deletion
+ * is synced. An entry or tombstone whose change sequence is greater than the synced sequence has local
+ * changes that are not yet pushed.
+ */
+@Entity(tableName = "journal_sync_state")
+public class JournalSyncStateEntity {
+    // UUID of the journal entry
+    @PrimaryKey
+    @NonNull
+    private String uuid = "";
+    // Revision of the entry on the remote that the local version is based on
+    private long revision;
+    // Change sequence of the local version that was last synced
+    private long syncedSeq;
+
+    // Getters and setters
+    @NonNull
+    public String getUuid() { return uuid; }
+
+    public void setUuid(@NonNull String uuid) { this.uuid = uuid; }
+
+    public long getRevision() { return revision; }
+
+    public void setRevision(long revision) { this.revision = revision; }
+
+    public long getSyncedSeq() { return syncedSeq; }
+
+    public void setSyncedSeq(long syncedSeq) { this.syncedSeq = syncedSeq; }
+}
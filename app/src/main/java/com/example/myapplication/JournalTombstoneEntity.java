@@ -0,0 +1,47 @@
+package com.example.myapplication;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Entity class recording the deletion of a journal entry in the database.
+ * <br>
+ * Tombstones carry the change sequence of the deletion, so that incremental backups can include
+ * the entries deleted since the previous backup. Entry IDs are never reused, so a tombstone is kept
+ * for each deleted entry. The UUID of the entry is kept so that the deletion can be synced to other devices.
+ */
+@Entity(tableName = "journal_tombstones", indices = {@Index("changeSeq"), @Index("uuid")})
+public class JournalTombstoneEntity {
+    // ID of the deleted journal entry
+    @PrimaryKey
+    private int entryId;
+    // UUID of the deleted journal entry, empty for entries deleted before UUIDs were added
+    @NonNull
+    @ColumnInfo(defaultValue = "")
+    private String uuid = "";
+    // Change sequence of the deletion
+    private long changeSeq;
+    // Time of the deletion, stored as a timestamp
+    private long deletedAt;
+
+    // Getters and setters
+    public int getEntryId() { return entryId; }
+
+    public void setEntryId(int entryId) { this.entryId = entryId; }
+
+    @NonNull
+    public String getUuid() { return uuid; }
+
+    public void setUuid(@NonNull String uuid) { this.uuid = uuid; }
+
+    public long getChangeSeq() { return changeSeq; }
+
+    public void setChangeSeq(long changeSeq) { this.changeSeq = changeSeq; }
+
+    public long getDeletedAt() { return deletedAt; }
+
+    public void setDeletedAt(long deletedAt) { this.deletedAt = deletedAt; }
+}
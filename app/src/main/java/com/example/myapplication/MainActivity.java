@@ -1,19 +1,39 @@
 package com.example.myapplication;
 
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
+import android.text.format.Formatter;
+import android.util.Log;
+import android.view.Menu;
+import android.view.MenuItem;
+import android.widget.Toast;
 
 import androidx.activity.EdgeToEdge;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
+import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.appbar.MaterialToolbar;
+import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.progressindicator.LinearProgressIndicator;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Main activity class for the journal app.
@@ -22,11 +42,26 @@ import com.google.android.material.floatingactionbutton.FloatingActionButton;
  * FloatingActionButton for adding new entries.
  */
 public class MainActivity extends AppCompatActivity {
+    // MIME type of backup archives
+    private static final String BACKUP_MIME_TYPE = "application/zip";
 
     // Adapter for the RecyclerView
     private JournalEntryAdapter adapter;
     // RecyclerView for displaying journal entries
     private RecyclerView recyclerView;
+    // ViewModel providing the journal entries and search results
+    private JournalEntryViewModel viewModel;
+    // Whether the list currently shows search results instead of all entries
+    private boolean searchActive;
+    // Entries of the month being browsed, or null when all entries are shown
+    private LiveData<List<JournalEntrySummary>> monthEntries;
+    // Launchers of the document pickers selecting where to write a backup and which backups to restore
+    private ActivityResultLauncher<String> createBackupDocument;
+    private ActivityResultLauncher<String[]> openBackupDocuments;
+    // ViewModel running backups and restores across configuration changes
+    private BackupViewModel backupViewModel;
+    // Progress indicator for a running backup or restore
+    private LinearProgressIndicator backupProgressIndicator;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -46,12 +81,67 @@ public class MainActivity extends AppCompatActivity {
         setUpTopAppBar();
         // Set up the FloatingActionButton for adding new entries
         setUpFloatingActionButton();
-        // Initialize the ViewModel and observe journal entries
-        initializeViewModel();
 
         // Initialize the RecyclerView for displaying journal entries
         recyclerView = findViewById(R.id.journalEntryRecyclerView);
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
+
+        // Initialize the ViewModel and observe journal entries
+        initializeViewModel();
+
+        // Delete image files left without an entry while the device is idle
+        OrphanImageCollectionService.schedule(getApplicationContext());
+
+        // Register for activity results to select the documents of backups
+        backupProgressIndicator = findViewById(R.id.backupProgressIndicator);
+        backupViewModel = new ViewModelProvider(this).get(BackupViewModel.class);
+        createBackupDocument = registerForActivityResult(
+                new ActivityResultContracts.CreateDocument(BACKUP_MIME_TYPE),
+                uri -> backupViewModel.run(uri == null ? Collections.emptyList() : Collections.singletonList(uri),
+                        false));
+        openBackupDocuments = registerForActivityResult(
+                new ActivityResultContracts.OpenMultipleDocuments(), uris -> backupViewModel.run(uris, true));
+        observeBackupTask();
+
+        // Finish compressing long entries if the compaction was stopped
+        compressLongEntries(null);
+    }
+
+    // Initialize the top app bar with the search and browse menu items
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        getMenuInflater().inflate(R.menu.main_top_app_bar_menu, menu);
+        setUpSearch(menu.findItem(R.id.action_search));
+        menu.findItem(R.id.action_compress_content)
+                .setChecked(AppDatabase.getDatabase(this).isContentCompressionEnabled());
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(@NonNull MenuItem item) {
+        if (item.getItemId() == R.id.action_browse_month) {
+            // Execute if the browse by month icon is clicked
+            showMonthSelection();
+            return true;
+        } else if ((item.getItemId() == R.id.action_backup || item.getItemId() == R.id.action_backup_changes)
+                && !backupViewModel.isRunning()) {
+            // Execute if the back up journal or back up changes item is clicked
+            boolean incrementalBackup = item.getItemId() == R.id.action_backup_changes;
+            backupViewModel.setIncrementalBackup(incrementalBackup);
+            String date = new SimpleDateFormat("yyyy-MM-dd-HHmm", Locale.US).format(System.currentTimeMillis());
+            createBackupDocument.launch((incrementalBackup ? "journal-changes-" : "journal-backup-") + date + ".zip");
+            return true;
+        } else if (item.getItemId() == R.id.action_restore && !backupViewModel.isRunning()) {
+            // Execute if the restore journal item is clicked
+            openBackupDocuments.launch(new String[]{BACKUP_MIME_TYPE});
+            return true;
+        } else if (item.getItemId() == R.id.action_compress_content) {
+            // Execute if the compress long entries item is toggled
+            item.setChecked(!item.isChecked());
+            compressLongEntries(item.isChecked());
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
     }
 
     /**
@@ -81,13 +171,209 @@ public class MainActivity extends AppCompatActivity {
      * Initializes the ViewModel and observe journal entries.
      * <br>
      * The ViewModel is used to update data in the UI in case of changes in the database.
+     * Entries are loaded page by page, and the next page is requested as the list nears its end.
+     * The same adapter is reused for every update, so only the changed rows are redrawn.
      * */
     private void initializeViewModel() {
-        JournalEntryViewModel viewModel = new ViewModelProvider(this)
-                .get(JournalEntryViewModel.class);
-        viewModel.getAllEntries().observe(this, journalEntries -> {
-            adapter = new JournalEntryAdapter(journalEntries);
-            recyclerView.setAdapter(adapter);
+        viewModel = new ViewModelProvider(this).get(JournalEntryViewModel.class);
+        adapter = new JournalEntryAdapter(() -> {
+            // Only the full entry list is paged
+            if (!searchActive && monthEntries == null) {
+                viewModel.loadNextPage();
+            }
         });
+        recyclerView.setAdapter(adapter);
+        viewModel.getPagedEntries().observe(this, journalEntries -> {
+            if (!searchActive && monthEntries == null) {
+                adapter.submitList(journalEntries);
+            }
+        });
+        viewModel.getSearchResults().observe(this, searchResults -> {
+            if (searchActive) {
+                adapter.submitList(new ArrayList<>(searchResults));
+            }
+        });
+    }
+
+    /**
+     * Sets up the search action in the top app bar.
+     * <br>
+     * While the search view is expanded, the list shows the entries matching the entered text.
+     * Collapsing the search view returns to the full list of entries.
+     *
+     * @param searchItem The search menu item.
+     */
+    private void setUpSearch(MenuItem searchItem) {
+        SearchView searchView = (SearchView) searchItem.getActionView();
+        if (searchView == null) {
+            return;
+        }
+        searchView.setQueryHint(getString(R.string.search_hint));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                viewModel.searchEntries(query);
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                viewModel.searchEntries(newText);
+                return true;
+            }
+        });
+        searchItem.setOnActionExpandListener(new MenuItem.OnActionExpandListener() {
+            @Override
+            public boolean onMenuItemActionExpand(@NonNull MenuItem item) {
+                searchActive = true;
+                adapter.submitList(new ArrayList<>());
+                return true;
+            }
+
+            @Override
+            public boolean onMenuItemActionCollapse(@NonNull MenuItem item) {
+                searchActive = false;
+                // Show the browsed entries again
+                LiveData<List<JournalEntrySummary>> journalEntries =
+                        monthEntries != null ? monthEntries : viewModel.getPagedEntries();
+                adapter.submitList(journalEntries.getValue());
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Shows a dialog for selecting the month to browse.
+     * <br>
+     * Only months containing entries are listed, along with their number of entries.
+     * The first option returns to the full list of entries.
+     */
+    private void showMonthSelection() {
+        viewModel.loadEntryMonths(months -> runOnUiThread(() -> {
+            if (isFinishing()) {
+                return;
+            }
+            String[] options = new String[months.size() + 1];
+            options[0] = getString(R.string.all_entries_option);
+            for (int i = 0; i < months.size(); i++) {
+                JournalEntryMonth month = months.get(i);
+                options[i + 1] = formatMonth(month) + " (" + month.getEntryCount() + ")";
+            }
+
+            new MaterialAlertDialogBuilder(MainActivity.this)
+                    .setTitle(R.string.browse_month_title)
+                    .setItems(options, (dialog, which) -> {
+                        if (which == 0) {
+                            showAllEntries();
+                        } else {
+                            showMonth(months.get(which - 1));
+                        }
+                    })
+                    .show();
+        }));
+    }
+
+    /**
+     * Shows the entries of a month in the list.
+     *
+     * @param month The month to browse.
+     */
+    private void showMonth(JournalEntryMonth month) {
+        if (monthEntries != null) {
+            monthEntries.removeObservers(this);
+        }
+        monthEntries = viewModel.getEntrySummariesForMonth(month.getYear(), month.getMonth());
+        monthEntries.observe(this, journalEntries -> {
+            if (!searchActive) {
+                adapter.submitList(journalEntries);
+            }
+        });
+        // Show the browsed month below the app title
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(formatMonth(month));
+        }
+    }
+
+    /**
+     * Shows the full list of entries after browsing a month.
+     */
+    private void showAllEntries() {
+        if (monthEntries == null) {
+            return;
+        }
+        monthEntries.removeObservers(this);
+        monthEntries = null;
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setSubtitle(R.string.app_subtitle);
+        }
+        if (!searchActive) {
+            adapter.submitList(viewModel.getPagedEntries().getValue());
+        }
+    }
+
+    /**
+     * Shows the progress of a running backup or restore below the top app bar, and informs the user
+     * once it is finished.
+     * <br>
+     * The task runs in {@link BackupViewModel}, so a task started before the screen was recreated is shown too.
+     */
+    private void observeBackupTask() {
+        backupViewModel.getProgress().observe(this, percent -> {
+            if (percent == null) {
+                backupProgressIndicator.hide();
+            } else {
+                backupProgressIndicator.setProgressCompat(percent, backupProgressIndicator.isShown());
+                backupProgressIndicator.show();
+            }
+        });
+        backupViewModel.getResultMessage().observe(this, messageId -> {
+            if (messageId != null) {
+                Toast.makeText(MainActivity.this, messageId, Toast.LENGTH_LONG).show();
+                backupViewModel.clearResultMessage();
+            }
+        });
+    }
+
+    /**
+     * Changes the storage mode of long entries and compresses those stored in plain text, off the main thread.
+     * <br>
+     * Entries are compressed in background batches. When the mode is enabled by the user, the space saved
+     * is shown once all entries are compressed.
+     *
+     * @param enabled Whether to enable or disable compression, or null to only resume a stopped compaction.
+     */
+    private void compressLongEntries(Boolean enabled) {
+        Context context = getApplicationContext();
+        AppExecutors.getInstance().disk().execute(() -> {
+            if (enabled != null) {
+                ContentCompactor.setCompressionEnabled(context, enabled);
+            }
+            if (!ContentCompactor.isCompactionPending(context)) {
+                return;
+            }
+            ContentCompactor.Result result = new ContentCompactor(context).compact();
+            String savedSize = Formatter.formatShortFileSize(context, result.getSavedBytes());
+            Log.i("ContentCompactor", "Compressed " + result.getCompressedEntryCount() + " entries, saved "
+                    + savedSize);
+            if (enabled != null) {
+                runOnUiThread(() -> Toast.makeText(MainActivity.this, result.getCompressedEntryCount() > 0
+                        ? getString(R.string.compress_content_info_message, result.getCompressedEntryCount(), savedSize)
+                        : getString(R.string.compress_content_none_message), Toast.LENGTH_LONG).show());
+            }
+        }, AppExecutors.Priority.BACKGROUND);
+    }
+
+    /**
+     * Formats a month for display, e.g. "March 2023".
+     *
+     * @param month The month to format.
+     * @return The month name followed by the year.
+     */
+    private static String formatMonth(JournalEntryMonth month) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(month.getYear(), month.getMonth() - 1, 1);
+        return new SimpleDateFormat("MMMM yyyy", Locale.getDefault()).format(calendar.getTime());
     }
 }
\ No newline at end of file
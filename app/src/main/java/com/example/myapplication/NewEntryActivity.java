@@ -37,11 +37,12 @@ import com.google.android.material.datepicker.CalendarConstraints;
 import com.google.android.material.datepicker.DateValidatorPointBackward;
 import com.google.android.material.datepicker.MaterialDatePicker;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.progressindicator.LinearProgressIndicator;
 import com.google.android.material.snackbar.Snackbar;
 
+import java.io.IOException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
@@ -60,12 +61,16 @@ public class NewEntryActivity extends AppCompatActivity {
     private EditText contentEditText;
     private Button saveButton;
     private final int allowedImageSelections = 5;
-    private boolean entrySaved;
+    // Whether the entry is being written to the database, to ignore repeated clicks on the save button
+    private boolean saving;
     private ActivityResultLauncher<PickVisualMediaRequest> pickMultipleMedia;
     private CarouselAdapter carouselAdapter;
     private String startingAction;
     private List<String> tempImagePaths;
     private ImageHandler imageHandler;
+    // ViewModel keeping the images and their import while the activity is recreated
+    private EntryImagesViewModel imagesViewModel;
+    private LinearProgressIndicator importProgressIndicator;
     private static final int REQUEST_CODE_READ_MEDIA_IMAGES = 100;
 
     @Override
@@ -82,9 +87,11 @@ public class NewEntryActivity extends AppCompatActivity {
             return insets;
         });
 
-        tempImagePaths = new ArrayList<>();
+        // The images of the entry outlive the activity when it is recreated
+        imagesViewModel = new ViewModelProvider(this).get(EntryImagesViewModel.class);
+        tempImagePaths = imagesViewModel.getImagePaths();
         // All image handling operations are delegated to the imageHandler object
-        imageHandler = new ImageHandler(getContentResolver(), getCacheDir(), getFilesDir(), tempImagePaths);
+        imageHandler = imagesViewModel.getImageHandler();
 
         // Set up the top app bar
         setUpTopAppBar();
@@ -98,8 +105,15 @@ public class NewEntryActivity extends AppCompatActivity {
         CarouselSnapHelper snapHelper = new CarouselSnapHelper();
         snapHelper.attachToRecyclerView(carouselRecyclerView);
         // Load adapter with selected image paths
-        carouselAdapter = new CarouselAdapter(tempImagePaths);
+        carouselAdapter = new CarouselAdapter(tempImagePaths, imageHandler::discardImage);
         carouselRecyclerView.setAdapter(carouselAdapter);
+        importProgressIndicator = findViewById(R.id.imageImportProgressIndicator);
+        // Follow the import started before the activity was recreated, if it is still running
+        imagesViewModel.setImportCallback(importCallback);
+        if (imagesViewModel.isImportRunning()) {
+            importProgressIndicator.setProgressCompat(imagesViewModel.getImportPercent(), false);
+            importProgressIndicator.show();
+        }
 
         dateEditText = findViewById(R.id.dateEditText);
         // Open date picker when date field is clicked
@@ -137,14 +151,11 @@ public class NewEntryActivity extends AppCompatActivity {
         }
     }
 
-    /* Clean up code for images if the entry is not saved or updated */
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        // Delete temporary images from storage if the entry was not saved
-        if (!entrySaved) {
-            imageHandler.deleteTemporaryImages();
-        }
+        // The import keeps running in the ViewModel, which deletes the temporary images once the activity is finished
+        imagesViewModel.setImportCallback(null);
     }
 
     /* Setup methods */
@@ -175,7 +186,11 @@ public class NewEntryActivity extends AppCompatActivity {
         // Set click listener to open the PhotoPicker
         addImageButton.setOnClickListener(v -> {
             // Check if the permission to read media images is granted
-            if (ContextCompat.checkSelfPermission(NewEntryActivity.this, READ_MEDIA_IMAGES) == PackageManager.PERMISSION_GRANTED) {
+            if (isImportRunning()) {
+                // Display a message while selected images are still being imported
+                Snackbar.make(addImageButton, R.string.wait_message,
+                        Snackbar.LENGTH_SHORT).setAnchorView(addImageButton).show();
+            } else if (ContextCompat.checkSelfPermission(NewEntryActivity.this, READ_MEDIA_IMAGES) == PackageManager.PERMISSION_GRANTED) {
                 // Calculate the remaining number of images that can be selected
                 int remainingSelections = allowedImageSelections - tempImagePaths.size();
                 /*
@@ -288,10 +303,10 @@ public class NewEntryActivity extends AppCompatActivity {
         titleEditText.setText(titleText);
         contentEditText.setText(contentText);
 
-        // Copy any existing images to temporary storage to prevent direct modifications to original data
+        // Reference the existing images in place, so that only added images are copied and removals are
+        // applied to the stored images once the entry is updated
         if (imagePaths != null) {
-            tempImagePaths.clear();
-            imageHandler.copyExistingImagesToTemporaryStorage(imagePaths);
+            imagesViewModel.startEditSession(imagePaths);
             // Load images in carousel
             carouselAdapter.notifyDataSetChanged();
         }
@@ -310,25 +325,56 @@ public class NewEntryActivity extends AppCompatActivity {
     /**
      * Handles media selection from the photo picker.
      * <br>
-     * The selected images are stored in temporary storage until the entry is saved.
+     * The selected images are imported to temporary storage in the background until the entry is saved.
+     * Each image is added to the carousel as soon as it is copied, and the progress of the import is shown
+     * in the progress indicator.
      *
      * @param uris The list of selected media URIs.
      */
     private void handleMediaSelection(List<Uri> uris) {
         if (!uris.isEmpty()) {
-            boolean result = imageHandler.copyImagesToTemporaryStorage(uris);
-            if (result) {
-                // If images are saved, update carousel
-                carouselAdapter.notifyDataSetChanged();
-            }
-            else { // If an image was not saved, display error message
+            importProgressIndicator.setProgressCompat(0, false);
+            importProgressIndicator.show();
+            imagesViewModel.importImages(uris);
+        } else {
+            Log.d("PhotoPicker", "No media selected");
+        }
+    }
+
+    // Callback showing the progress of the import of selected images
+    private final ImageHandler.ImportCallback importCallback = new ImageHandler.ImportCallback() {
+        @Override
+        public void onImageProgress(int index, long bytesCopied, long totalBytes) {
+            importProgressIndicator.setProgressCompat(imagesViewModel.getImportPercent(), true);
+        }
+
+        @Override
+        public void onImageImported(int index, String imagePath) {
+            importProgressIndicator.setProgressCompat(imagesViewModel.getImportPercent(), true);
+            // Show the image in the carousel as soon as it is copied
+            carouselAdapter.notifyItemInserted(tempImagePaths.size() - 1);
+        }
+
+        @Override
+        public void onImageFailed(int index, Uri uri, IOException error) {
+            importProgressIndicator.setProgressCompat(imagesViewModel.getImportPercent(), true);
+        }
+
+        @Override
+        public void onImportFinished(int importedCount, int failedCount) {
+            importProgressIndicator.hide();
+            if (failedCount > 0) { // If an image was not saved, display error message
                 // Get reference to the parent layout
                 View parentLayout = findViewById(android.R.id.content);
-                Snackbar.make(parentLayout, "Failed to save image", Snackbar.LENGTH_SHORT).show();
+                Snackbar.make(parentLayout, getString(R.string.image_import_error,
+                        failedCount, importedCount + failedCount), Snackbar.LENGTH_SHORT).show();
             }
-        } else {
-            Log.d("PhotoPicker", "No media selected");
         }
+    };
+
+    /** Returns whether selected images are still being imported. */
+    private boolean isImportRunning() {
+        return imagesViewModel.isImportRunning();
     }
 
     /**
@@ -339,6 +385,17 @@ public class NewEntryActivity extends AppCompatActivity {
      * Depending on the specific action, the object is then either inserted or updated in the database.
      * */
     private void onSaveButtonClicked() {
+        // Ignore clicks while the entry is being saved
+        if (saving) {
+            return;
+        }
+        // Wait for selected images to be imported before saving them with the entry
+        if (isImportRunning()) {
+            View parentLayout = findViewById(android.R.id.content);
+            Snackbar.make(parentLayout, R.string.wait_message, Snackbar.LENGTH_SHORT).show();
+            return;
+        }
+
         JournalEntryViewModel viewModel = new ViewModelProvider(this).get(JournalEntryViewModel.class);
 
         long date;
@@ -371,25 +428,30 @@ public class NewEntryActivity extends AppCompatActivity {
             entry.setTitle(title);
             entry.setContent(content);
 
-            List<String> savedImagePaths = new ArrayList<>();
-            // Move selected images from temporary cache to internal storage
-            imageHandler.moveImagesToInternalStorage(savedImagePaths);
-            // Set the image paths for the entry
-            entry.setImagePaths(savedImagePaths);
-
-            // If entry is being edited, update entry in database
-            if ("edit".equals(startingAction)) {
-                entry.setId(entryId);
-
-                // Delete previously saved images that were removed during editing
-                imageHandler.deleteImagesRemovedFromOriginal(entry.getImagePaths(), savedImagePaths);
-                // Set the updated image paths for the entry
+            saving = true;
+            // Move selected images from temporary cache to internal storage off the main thread
+            imageHandler.storeImages().whenComplete((savedImagePaths, error) -> {
+                if (error != null) {
+                    Log.e("NewEntryActivity", "Failed to store images", error);
+                    // Show the images left in the list, so that saving can be retried
+                    saving = false;
+                    carouselAdapter.notifyDataSetChanged();
+                    Toast.makeText(NewEntryActivity.this, R.string.save_error_message, Toast.LENGTH_SHORT).show();
+                    return;
+                }
+                // Set the image paths for the entry
                 entry.setImagePaths(savedImagePaths);
 
-                updateEntry(viewModel, entry);
-            } else { // If entry is being created, save entry in database
-                saveEntry(viewModel, entry);
-            }
+                // If entry is being edited, update entry in database
+                if ("edit".equals(startingAction)) {
+                    entry.setId(entryId);
+
+                    // Images removed during editing are deleted by the repository once no entry references them
+                    updateEntry(viewModel, entry);
+                } else { // If entry is being created, save entry in database
+                    saveEntry(viewModel, entry);
+                }
+            });
         }
     }
 
@@ -413,45 +475,52 @@ public class NewEntryActivity extends AppCompatActivity {
 
     /**
      * Saves a journal entry to the database.
+     * <br>
+     * The user is informed and the activity finished once the entry is committed.
      *
      * @param viewModel The ViewModel instance for database operations.
      * @param entry The journal entry to be saved.
      */
     private void saveEntry(JournalEntryViewModel viewModel, JournalEntryEntity entry) {
-        // Create a new thread to perform the database operation
-        new Thread(() -> {
-            // Save the entry to the database
-            viewModel.insertEntry(entry);
-            entrySaved = true;
-
-            runOnUiThread(() -> {
-                // Inform user that the entry has been saved
-                Toast.makeText(NewEntryActivity.this, R.string.save_info_message,
-                        Toast.LENGTH_SHORT).show();
-                finish(); // Return to MainActivity
-            });
-        }).start();
+        viewModel.insertEntry(entry).whenCompleteAsync((outcome, error) ->
+                onEntryWritten(entry, error, R.string.save_info_message), ContextCompat.getMainExecutor(this));
     }
 
     /**
      * Updates a journal entry in the database.
+     * <br>
+     * The user is informed and the activity finished once the update is committed.
      *
      * @param viewModel The ViewModel instance for database operations.
      * @param entry The journal entry to be updated.
      */
     private void updateEntry(JournalEntryViewModel viewModel, JournalEntryEntity entry) {
-        // Create a new thread to perform the database operation
-        new Thread(() -> {
-            // Update the entry in the database
-            viewModel.updateEntry(entry);
-            entrySaved = true;
-
-            runOnUiThread(() -> {
-                // Inform user that the entry has been updated
-                Toast.makeText(NewEntryActivity.this, R.string.update_info_message,
-                        Toast.LENGTH_SHORT).show();
-                finish(); // Return to ViewEntryActivity
-            });
-        }).start();
+        viewModel.updateEntry(entry).whenCompleteAsync((outcome, error) ->
+                onEntryWritten(entry, error, R.string.update_info_message), ContextCompat.getMainExecutor(this));
+    }
+
+    /**
+     * Handles the completion of the write of the entry.
+     * <br>
+     * If the write failed, the images already moved to internal storage are shown again, so that saving
+     * can be retried with them. They are kept as images of the session, and released if the entry is not saved.
+     *
+     * @param entry The written journal entry.
+     * @param error The error that made the write fail, or null if the entry was committed.
+     * @param messageId The message informing the user that the entry was committed.
+     */
+    private void onEntryWritten(JournalEntryEntity entry, Throwable error, int messageId) {
+        if (error != null) {
+            Log.e("NewEntryActivity", "Failed to save entry", error);
+            saving = false;
+            imagesViewModel.restoreStoredImages(entry.getImagePaths());
+            carouselAdapter.notifyDataSetChanged();
+            Toast.makeText(NewEntryActivity.this, R.string.save_error_message, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        imagesViewModel.setEntrySaved();
+        // Inform user that the entry has been saved
+        Toast.makeText(NewEntryActivity.this, messageId, Toast.LENGTH_SHORT).show();
+        finish(); // Return to the previous activity
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,67 @@
+package com.example.myapplication;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.text.format.Formatter;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Job service running the {@link OrphanImageCollector} while the device is idle.
+ * <br>
+ * The job is periodic. If the system stops it before the sweep is complete, the sweep resumes
+ * from its saved position the next time the job runs.
+ * */
+public class OrphanImageCollectionService extends JobService {
+    // ID of the job within the application
+    private static final int JOB_ID = 1;
+    // Interval between two runs of the job
+    private static final long INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    private volatile OrphanImageCollector collector;
+
+    /**
+     * Schedules the periodic collection of orphan images, unless it is already scheduled.
+     *
+     * @param context The application context.
+     */
+    public static void schedule(Context context) {
+        JobScheduler jobScheduler = context.getSystemService(JobScheduler.class);
+        if (jobScheduler == null || jobScheduler.getPendingJob(JOB_ID) != null) {
+            return;
+        }
+        JobInfo jobInfo = new JobInfo.Builder(JOB_ID,
+                new ComponentName(context, OrphanImageCollectionService.class))
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(INTERVAL_MS)
+                .build();
+        jobScheduler.schedule(jobInfo);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        collector = new OrphanImageCollector(getApplicationContext());
+        AppExecutors.getInstance().disk().execute(() -> {
+            OrphanImageCollector.Result result = collector.collect();
+            Log.i("OrphanImageCollector", "Deleted " + result.getDeletedFileCount() + " orphan images, reclaimed "
+                    + Formatter.formatShortFileSize(this, result.getReclaimedBytes()));
+            // Reschedule a stopped sweep so that it resumes from its saved position
+            jobFinished(params, !result.isComplete());
+        }, AppExecutors.Priority.BACKGROUND);
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        OrphanImageCollector runningCollector = collector;
+        if (runningCollector != null) {
+            runningCollector.stop();
+        }
+        return true;
+    }
+}
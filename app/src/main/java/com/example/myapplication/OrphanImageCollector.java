@@ -0,0 +1,330 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The OrphanImageCollector class deletes image files that no journal entry references.
+ * <br>
+ * Stored images in internal storage are checked against the image paths in the database, and temporary images
+ * left in cache storage by an interrupted edit are deleted. Files are only collected once they are older than
+ * a grace period, so images that are being imported or saved are never deleted.
+ * <br>
+ * The sweep is incremental. Files are checked in order of modification time, in bounded batches, and the
+ * position of the sweep is saved after each batch, so a stopped sweep resumes where it left off and a later
+ * sweep only checks files added since. Images whose references are removed are deleted by the repository,
+ * so all files are only checked again after a longer interval, to collect images whose deletion failed.
+ * */
+public class OrphanImageCollector {
+    // Number of files checked against the database per batch
+    static final int BATCH_SIZE = 100;
+    // Minimum age of a file before it can be collected
+    static final long GRACE_PERIOD_MS = TimeUnit.DAYS.toMillis(1);
+    // Interval after which all files are checked again
+    static final long FULL_SWEEP_INTERVAL_MS = TimeUnit.DAYS.toMillis(30);
+    // Name of the file holding the position of the sweep
+    static final String STATE_FILE = "orphan_images.properties";
+    // Keys of the state file
+    private static final String FULL_SWEEP_TIME = "fullSweepTime";
+    private static final String CURSOR_TIME = ".cursorTime";
+    private static final String CURSOR_NAME = ".cursorName";
+    private static final String LISTED_TIME = ".listedTime";
+
+    private final JournalEntryDao journalEntryDao;
+    private final List<Location> locations;
+    private final File stateFile;
+    private final LongSupplier clock;
+    private volatile boolean stopped;
+
+    /**
+     * The result of a sweep.
+     */
+    public static final class Result {
+        private int deletedFileCount;
+        private long reclaimedBytes;
+        private boolean complete;
+
+        /** Returns the number of files deleted. */
+        public int getDeletedFileCount() {
+            return deletedFileCount;
+        }
+
+        /** Returns the total size of the deleted files in bytes. */
+        public long getReclaimedBytes() {
+            return reclaimedBytes;
+        }
+
+        /** Returns whether all files due for collection were checked, or false if the sweep was stopped. */
+        public boolean isComplete() {
+            return complete;
+        }
+    }
+
+    /**
+     * A directory swept for image files.
+     */
+    private static final class Location {
+        // Key of the location in the state file
+        private final String key;
+        private final File directory;
+        // Prefix of the image files in the directory
+        private final String prefix;
+        // Whether the images may be referenced by entries, or are always collected once old enough
+        private final boolean referenced;
+
+        Location(String key, File directory, String prefix, boolean referenced) {
+            this.key = key;
+            this.directory = directory;
+            this.prefix = prefix;
+            this.referenced = referenced;
+        }
+    }
+
+    /**
+     * Creates a collector for the image files of the application.
+     *
+     * @param context The application context.
+     */
+    public OrphanImageCollector(Context context) {
+        this(AppDatabase.getDatabase(context).journalEntryDao(), context.getFilesDir(), context.getCacheDir(),
+                new File(context.getNoBackupFilesDir(), STATE_FILE), System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a collector for the given directories.
+     *
+     * @param journalEntryDao The DAO used to look up image references.
+     * @param filesDir The directory of the stored images.
+     * @param cacheDir The directory of the temporary images.
+     * @param stateFile The file in which the position of the sweep is saved.
+     * @param clock The source of the current time in milliseconds.
+     */
+    OrphanImageCollector(JournalEntryDao journalEntryDao, File filesDir, File cacheDir, File stateFile,
+                         LongSupplier clock) {
+        this.journalEntryDao = journalEntryDao;
+        this.locations = Arrays.asList(
+                new Location("files", filesDir, ImageHandler.STORED_IMAGE_PREFIX, true),
+                new Location("cache", cacheDir, ImageHandler.TEMP_IMAGE_PREFIX, false));
+        this.stateFile = stateFile;
+        this.clock = clock;
+    }
+
+    /**
+     * Deletes the unreferenced image files added since the previous sweep.
+     * <br>
+     * This performs file and database operations and must not be called on the main thread.
+     *
+     * @return The result of the sweep.
+     */
+    public Result collect() {
+        stopped = false;
+        Result result = new Result();
+        long now = clock.getAsLong();
+        Properties state = readState();
+
+        // Start over from the oldest file periodically
+        if (now - parseLong(state.getProperty(FULL_SWEEP_TIME), 0) >= FULL_SWEEP_INTERVAL_MS) {
+            state.clear();
+            state.setProperty(FULL_SWEEP_TIME, Long.toString(now));
+            writeState(state);
+        }
+
+        for (Location location : locations) {
+            if (!sweep(location, state, now - GRACE_PERIOD_MS, result)) {
+                return result;
+            }
+        }
+        result.complete = true;
+        return result;
+    }
+
+    /**
+     * Stops a running sweep after its current batch, keeping its position for the next sweep.
+     */
+    public void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Sweeps a directory from the saved position.
+     *
+     * @param location The directory to sweep.
+     * @param state The state of the sweep, updated after each batch.
+     * @param cutoff The latest modification time of files that can be collected.
+     * @param result The result to add deleted files to.
+     * @return False if the sweep was stopped before reaching the end of the directory.
+     */
+    private boolean sweep(Location location, Properties state, long cutoff, Result result) {
+        // Files are added to the directory by creating or renaming them, which updates the directory,
+        // so an unchanged directory whose files were all checked is not listed again
+        long listedTime = parseLong(state.getProperty(location.key + LISTED_TIME), -1);
+        if (listedTime >= 0 && location.directory.lastModified() == listedTime) {
+            return true;
+        }
+
+        long cursorTime = parseLong(state.getProperty(location.key + CURSOR_TIME), Long.MIN_VALUE);
+        String cursorName = state.getProperty(location.key + CURSOR_NAME, "");
+        File[] files = location.directory.listFiles(file -> file.isFile()
+                && file.getName().startsWith(location.prefix)
+                && isAfter(file.lastModified(), file.getName(), cursorTime, cursorName));
+        List<File> pendingFiles = new ArrayList<>();
+        if (files != null) {
+            // Modification times are read once, as they would change the order while sorting
+            long[] times = new long[files.length];
+            List<Integer> order = new ArrayList<>();
+            for (int i = 0; i < files.length; i++) {
+                times[i] = files[i].lastModified();
+                order.add(i);
+            }
+            order.sort(Comparator.<Integer>comparingLong(i -> times[i]).thenComparing(i -> files[i].getName()));
+            for (int i : order) {
+                if (times[i] > cutoff) {
+                    // Newer files are checked by a later sweep, once they are older than the grace period
+                    break;
+                }
+                pendingFiles.add(files[i]);
+            }
+            if (pendingFiles.size() < files.length) {
+                state.remove(location.key + LISTED_TIME);
+            }
+        }
+
+        for (int start = 0; start < pendingFiles.size(); start += BATCH_SIZE) {
+            if (stopped) {
+                return false;
+            }
+            List<File> batch = pendingFiles.subList(start, Math.min(start + BATCH_SIZE, pendingFiles.size()));
+            collectBatch(location, batch, result);
+            File last = batch.get(batch.size() - 1);
+            state.setProperty(location.key + CURSOR_TIME, Long.toString(last.lastModified()));
+            state.setProperty(location.key + CURSOR_NAME, last.getName());
+            writeState(state);
+        }
+
+        if (files != null && pendingFiles.size() == files.length) {
+            // Every file of the directory was checked
+            state.setProperty(location.key + LISTED_TIME, Long.toString(location.directory.lastModified()));
+            writeState(state);
+        }
+        return true;
+    }
+
+    /**
+     * Deletes the files of a batch that are not referenced by any entry.
+     * <br>
+     * A variant of an image is kept as long as its original image is referenced.
+     *
+     * @param location The directory of the files.
+     * @param batch The files to check.
+     * @param result The result to add deleted files to.
+     */
+    private void collectBatch(Location location, List<File> batch, Result result) {
+        Set<String> referencedPaths = new HashSet<>();
+        if (location.referenced) {
+            Set<String> originalPaths = new LinkedHashSet<>();
+            for (File file : batch) {
+                originalPaths.add(ImageVariants.getOriginalFile(file).getAbsolutePath());
+            }
+            referencedPaths.addAll(journalEntryDao.getReferencedImagePaths(new ArrayList<>(originalPaths)));
+        }
+
+        for (File file : batch) {
+            if (referencedPaths.contains(ImageVariants.getOriginalFile(file).getAbsolutePath())) {
+                continue;
+            }
+            long length = file.length();
+            if (file.delete()) {
+                result.deletedFileCount++;
+                result.reclaimedBytes += length;
+            } else if (file.exists()) {
+                Log.e("OrphanImageCollector", "Failed to delete orphan image: " + file);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a file comes after the position of the sweep.
+     *
+     * @param time The modification time of the file.
+     * @param name The name of the file.
+     * @param cursorTime The modification time of the last checked file.
+     * @param cursorName The name of the last checked file.
+     * @return True if the file was not checked yet.
+     */
+    private static boolean isAfter(long time, String name, long cursorTime, String cursorName) {
+        return time > cursorTime || (time == cursorTime && name.compareTo(cursorName) > 0);
+    }
+
+    /**
+     * Reads the state of the sweep.
+     *
+     * @return The saved state, or an empty state to start over if it cannot be read.
+     */
+    private Properties readState() {
+        Properties state = new Properties();
+        if (stateFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(stateFile)) {
+                state.load(inputStream);
+            } catch (IOException e) {
+                Log.w("OrphanImageCollector", "Failed to read sweep state", e);
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Saves the state of the sweep.
+     * <br>
+     * The state is written to a temporary file first, so an interrupted write keeps the previous state.
+     *
+     * @param state The state to save.
+     */
+    private void writeState(Properties state) {
+        File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            state.store(outputStream, null);
+        } catch (IOException e) {
+            Log.e("OrphanImageCollector", "Failed to write sweep state", e);
+            return;
+        }
+        if (!tempFile.renameTo(stateFile)) {
+            Log.e("OrphanImageCollector", "Failed to replace sweep state: " + stateFile);
+        }
+    }
+
+    /**
+     * Parses a number from the state file.
+     *
+     * @param value The saved value, which may be null.
+     * @param defaultValue The value returned if no valid number is saved.
+     * @return The parsed number.
+     */
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
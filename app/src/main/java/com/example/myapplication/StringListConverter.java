@@ -2,27 +2,52 @@ package com.example.myapplication;
 
 import androidx.room.TypeConverter;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-
-import java.lang.reflect.Type;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
  * TypeConverter class for String Lists and JSON strings.
  * <br>
- * It handles conversion between a list of image paths and a JSON string to enable storage
- * and retrieval of image paths in the Room database.
+ * It handles conversion between a list of strings and a JSON array string. This is the format in which
+ * image paths were stored before schema version 6, and the migration reads them back with this converter.
+ * <br>
+ * The conversion is hand-written for arrays of strings, without reflection or intermediate objects.
+ * The output is identical to the output of Gson with its default settings, including its escaping of
+ * HTML characters, so values written by either implementation can be read by the other.
  */
 public class StringListConverter {
 
+    // Hexadecimal digits used for unicode escapes
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
     /** Converts a given List of String objects into a single JSON string
      * @param list The list to be converted */
     @TypeConverter
     public static String fromStringList(List<String> list) {
         if (list == null) return null;
-        Gson gson = new Gson();
-        return gson.toJson(list);
+
+        // Estimate the length to avoid growing the builder for typical paths
+        int capacity = 2;
+        for (int i = 0; i < list.size(); i++) {
+            String value = list.get(i);
+            capacity += value != null ? value.length() + 3 : 5;
+        }
+
+        StringBuilder json = new StringBuilder(capacity);
+        json.append('[');
+        for (int i = 0; i < list.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            String value = list.get(i);
+            if (value == null) {
+                json.append("null");
+            } else {
+                appendQuoted(json, value);
+            }
+        }
+        json.append(']');
+        return json.toString();
     }
 
     /** Converts a given JSON string into a List of String objects
@@ -30,8 +55,204 @@ public class StringListConverter {
     @TypeConverter
     public static List<String> toStringList(String json) {
         if (json == null) return null;
-        Gson gson = new Gson();
-        Type type = new TypeToken<List<String>>() {}.getType();
-        return gson.fromJson(json, type);
+
+        int length = json.length();
+        int position = skipWhitespace(json, 0);
+        // An empty string or a JSON null converts to a null list
+        if (position == length) {
+            return null;
+        }
+        if (json.startsWith("null", position) && skipWhitespace(json, position + 4) == length) {
+            return null;
+        }
+        if (json.charAt(position) != '[') {
+            throw syntaxError(json, position);
+        }
+
+        List<String> list = new ArrayList<>();
+        position = skipWhitespace(json, position + 1);
+        if (position < length && json.charAt(position) == ']') {
+            position++;
+        } else {
+            while (true) {
+                if (position >= length) {
+                    throw syntaxError(json, position);
+                }
+                char c = json.charAt(position);
+                if (c == '"') {
+                    position = readString(json, position + 1, list);
+                } else if (json.startsWith("null", position)) {
+                    list.add(null);
+                    position += 4;
+                } else {
+                    throw syntaxError(json, position);
+                }
+
+                position = skipWhitespace(json, position);
+                if (position >= length) {
+                    throw syntaxError(json, position);
+                }
+                c = json.charAt(position++);
+                if (c == ']') {
+                    break;
+                } else if (c != ',') {
+                    throw syntaxError(json, position - 1);
+                }
+                position = skipWhitespace(json, position);
+            }
+        }
+
+        if (skipWhitespace(json, position) != length) {
+            throw syntaxError(json, position);
+        }
+        return list;
+    }
+
+    /**
+     * Appends a string as a quoted JSON string, escaping characters in the same way as Gson.
+     *
+     * @param json The builder to append to.
+     * @param value The string to append.
+     */
+    private static void appendQuoted(StringBuilder json, String value) {
+        json.append('"');
+        int unescapedStart = 0;
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            String replacement;
+            if (c < 0x20) {
+                switch (c) {
+                    case '\t': replacement = "\\t"; break;
+                    case '\b': replacement = "\\b"; break;
+                    case '\n': replacement = "\\n"; break;
+                    case '\r': replacement = "\\r"; break;
+                    case '\f': replacement = "\\f"; break;
+                    default: replacement = null; break;
+                }
+            } else if (c == '"') {
+                replacement = "\\\"";
+            } else if (c == '\\') {
+                replacement = "\\\\";
+            } else if (c == '<' || c == '>' || c == '&' || c == '=' || c == '\'' || c == '\u2028' || c == '\u2029') {
+                replacement = null;
+            } else {
+                continue;
+            }
+
+            // Copy the characters that need no escaping in one call
+            json.append(value, unescapedStart, i);
+            if (replacement != null) {
+                json.append(replacement);
+            } else {
+                json.append("\\u")
+                        .append(HEX_DIGITS[(c >> 12) & 0xf])
+                        .append(HEX_DIGITS[(c >> 8) & 0xf])
+                        .append(HEX_DIGITS[(c >> 4) & 0xf])
+                        .append(HEX_DIGITS[c & 0xf]);
+            }
+            unescapedStart = i + 1;
+        }
+        json.append(value, unescapedStart, length);
+        json.append('"');
+    }
+
+    /**
+     * Reads a JSON string and adds it to the list.
+     * <br>
+     * Strings without escape sequences, such as file paths, are taken as a single substring of the JSON.
+     *
+     * @param json The JSON being parsed.
+     * @param start The position after the opening quote.
+     * @param list The list to add the string to.
+     * @return The position after the closing quote.
+     */
+    private static int readString(String json, int start, List<String> list) {
+        int length = json.length();
+        StringBuilder builder = null;
+        int unescapedStart = start;
+        int position = start;
+        while (position < length) {
+            char c = json.charAt(position);
+            if (c == '"') {
+                if (builder == null) {
+                    list.add(json.substring(start, position));
+                } else {
+                    builder.append(json, unescapedStart, position);
+                    list.add(builder.toString());
+                }
+                return position + 1;
+            } else if (c == '\\') {
+                if (builder == null) {
+                    builder = new StringBuilder(position - start + 16);
+                }
+                builder.append(json, unescapedStart, position);
+                if (position + 1 >= length) {
+                    throw syntaxError(json, position);
+                }
+                char escaped = json.charAt(position + 1);
+                position += 2;
+                switch (escaped) {
+                    case '"': builder.append('"'); break;
+                    case '\\': builder.append('\\'); break;
+                    case '/': builder.append('/'); break;
+                    case 'b': builder.append('\b'); break;
+                    case 'f': builder.append('\f'); break;
+                    case 'n': builder.append('\n'); break;
+                    case 'r': builder.append('\r'); break;
+                    case 't': builder.append('\t'); break;
+                    case 'u':
+                        if (position + 4 > length) {
+                            throw syntaxError(json, position);
+                        }
+                        int code = 0;
+                        for (int i = 0; i < 4; i++) {
+                            int digit = Character.digit(json.charAt(position + i), 16);
+                            if (digit < 0) {
+                                throw syntaxError(json, position + i);
+                            }
+                            code = (code << 4) | digit;
+                        }
+                        builder.append((char) code);
+                        position += 4;
+                        break;
+                    default:
+                        throw syntaxError(json, position - 1);
+                }
+                unescapedStart = position;
+            } else {
+                position++;
+            }
+        }
+        throw syntaxError(json, position);
+    }
+
+    /**
+     * Skips JSON whitespace.
+     *
+     * @param json The JSON being parsed.
+     * @param position The position to start from.
+     * @return The position of the next non-whitespace character, or the length of the JSON.
+     */
+    private static int skipWhitespace(String json, int position) {
+        while (position < json.length()) {
+            char c = json.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * Creates the exception thrown for malformed JSON.
+     *
+     * @param json The JSON being parsed.
+     * @param position The position of the error.
+     * @return The exception describing the error.
+     */
+    private static IllegalArgumentException syntaxError(String json, int position) {
+        return new IllegalArgumentException("Malformed JSON string list at position " + position + ": " + json);
     }
 }
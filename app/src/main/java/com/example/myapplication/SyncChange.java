@@ -0,0 +1,85 @@
+package com.example.myapplication;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A version of a journal entry exchanged with the sync remote.
+ * <br>
+ * Entries are identified by their UUID and reference their images by the file names of the stored images,
+ * whose content is transferred separately as blobs. The revision is the version of the entry on the remote:
+ * a pushed change carries the revision it is based on, and a pulled change carries its own revision.
+ */
+public class SyncChange {
+
+    /**
+     * The kinds of changes.
+     */
+    public enum Status {
+        // A version of an entry, pushed or pulled
+        CHANGE,
+        // A pushed change was stored by the remote with the given revision
+        ACCEPTED,
+        // A pushed change was rejected as the remote holds a newer version, which is given
+        CONFLICT
+    }
+
+    private Status status = Status.CHANGE;
+    // UUID of the journal entry
+    @NonNull
+    private String uuid = "";
+    // Revision of the entry on the remote
+    private long revision;
+    // Whether the entry is deleted
+    private boolean deleted;
+    // Time of the write of this version, or of the deletion, stored as a timestamp
+    private long updatedAt;
+    private String title;
+    private String content;
+    private long date;
+    // File names of the images of the entry, in their display order
+    private List<String> imageNames = new ArrayList<>();
+
+    // Getters and setters
+    public Status getStatus() { return status; }
+
+    public void setStatus(Status status) { this.status = status; }
+
+    @NonNull
+    public String getUuid() { return uuid; }
+
+    public void setUuid(@NonNull String uuid) { this.uuid = uuid; }
+
+    public long getRevision() { return revision; }
+
+    public void setRevision(long revision) { this.revision = revision; }
+
+    public boolean isDeleted() { return deleted; }
+
+    public void setDeleted(boolean deleted) { this.deleted = deleted; }
+
+    public long getUpdatedAt() { return updatedAt; }
+
+    public void setUpdatedAt(long updatedAt) { this.updatedAt = updatedAt; }
+
+    public String getTitle() { return title; }
+
+    public void setTitle(String title) { this.title = title; }
+
+    public String getContent() { return content; }
+
+    public void setContent(String content) { this.content = content; }
+
+    public long getDate() { return date; }
+
+    public void setDate(long date) { this.date = date; }
+
+    public List<String> getImageNames() { return imageNames; }
+
+    public void setImageNames(List<String> imageNames) {
+        // If passed list is null, set an empty list
+        this.imageNames = imageNames != null ? imageNames : new ArrayList<>();
+    }
+}
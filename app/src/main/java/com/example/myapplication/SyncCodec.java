@@ -0,0 +1,207 @@
+package com.example.myapplication;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The SyncCodec class encodes the batches of changes exchanged with the sync remote.
+ * <br>
+ * A batch is written in a compact binary form and compressed with gzip, so the text of many entries
+ * compresses together. An accepted change only carries its UUID and revision, and a deleted entry carries
+ * no content.
+ * */
+public final class SyncCodec {
+    // Version of the encoding written by this class
+    static final int FORMAT_VERSION = 1;
+    // Maximum number of changes in a batch and of images of an entry, guarding against corrupted input
+    private static final int MAX_COUNT = 100_000;
+    // Maximum size of an encoded string in bytes
+    private static final int MAX_STRING_SIZE = 16 * 1024 * 1024;
+
+    private SyncCodec() {
+    }
+
+    /**
+     * A batch of changes, with the position of the remote after it when pulled.
+     */
+    public static final class Batch {
+        private final List<SyncChange> changes;
+        private final long cursor;
+        private final boolean hasMore;
+
+        /**
+         * Creates a batch.
+         *
+         * @param changes The changes of the batch.
+         * @param cursor The revision up to which the remote was read for a pulled batch, or 0.
+         * @param hasMore Whether the remote holds more changes after the cursor.
+         */
+        public Batch(List<SyncChange> changes, long cursor, boolean hasMore) {
+            this.changes = changes;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+        }
+
+        /** Returns the changes of the batch. */
+        public List<SyncChange> getChanges() {
+            return changes;
+        }
+
+        /** Returns the revision up to which the remote was read. */
+        public long getCursor() {
+            return cursor;
+        }
+
+        /** Returns whether the remote holds more changes after the cursor. */
+        public boolean hasMore() {
+            return hasMore;
+        }
+    }
+
+    /**
+     * Encodes and compresses a batch.
+     *
+     * @param batch The batch to encode.
+     * @return The encoded batch.
+     */
+    public static byte[] encode(Batch batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(new GZIPOutputStream(bytes))) {
+            output.writeInt(FORMAT_VERSION);
+            output.writeLong(batch.cursor);
+            output.writeBoolean(batch.hasMore);
+            output.writeInt(batch.changes.size());
+            for (SyncChange change : batch.changes) {
+                output.writeByte(change.getStatus().ordinal());
+                writeString(output, change.getUuid());
+                output.writeLong(change.getRevision());
+                if (change.getStatus() == SyncChange.Status.ACCEPTED) {
+                    continue;
+                }
+                output.writeBoolean(change.isDeleted());
+                output.writeLong(change.getUpdatedAt());
+                if (change.isDeleted()) {
+                    continue;
+                }
+                writeString(output, change.getTitle());
+                writeString(output, change.getContent());
+                output.writeLong(change.getDate());
+                output.writeInt(change.getImageNames().size());
+                for (String imageName : change.getImageNames()) {
+                    writeString(output, imageName);
+                }
+            }
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decompresses and decodes a batch.
+     *
+     * @param encoded The encoded batch.
+     * @return The decoded batch.
+     * @throws IOException If the batch is corrupted or has an unsupported format.
+     */
+    public static Batch decode(byte[] encoded) throws IOException {
+        try (DataInputStream input = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(encoded)))) {
+            int formatVersion = input.readInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported sync format: " + formatVersion);
+            }
+            long cursor = input.readLong();
+            boolean hasMore = input.readBoolean();
+            int count = readCount(input);
+            List<SyncChange> changes = new ArrayList<>(count);
+            SyncChange.Status[] statuses = SyncChange.Status.values();
+            for (int i = 0; i < count; i++) {
+                SyncChange change = new SyncChange();
+                int status = input.readUnsignedByte();
+                if (status >= statuses.length) {
+                    throw new IOException("Invalid change status: " + status);
+                }
+                change.setStatus(statuses[status]);
+                String uuid = readString(input);
+                if (uuid == null) {
+                    throw new IOException("Change without UUID");
+                }
+                change.setUuid(uuid);
+                change.setRevision(input.readLong());
+                changes.add(change);
+                if (change.getStatus() == SyncChange.Status.ACCEPTED) {
+                    continue;
+                }
+                change.setDeleted(input.readBoolean());
+                change.setUpdatedAt(input.readLong());
+                if (change.isDeleted()) {
+                    continue;
+                }
+                change.setTitle(readString(input));
+                change.setContent(readString(input));
+                change.setDate(input.readLong());
+                int imageCount = readCount(input);
+                List<String> imageNames = new ArrayList<>(imageCount);
+                for (int j = 0; j < imageCount; j++) {
+                    String imageName = readString(input);
+                    if (imageName != null) {
+                        imageNames.add(imageName);
+                    }
+                }
+                change.setImageNames(imageNames);
+            }
+            return new Batch(changes, cursor, hasMore);
+        }
+    }
+
+    /**
+     * Writes a string that may be null as its UTF-8 length followed by its bytes.
+     * <br>
+     * {@link DataOutputStream#writeUTF} is not used as it is limited to 64 KB.
+     */
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString}.
+     */
+    private static String readString(DataInputStream input) throws IOException {
+        int length = input.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > MAX_STRING_SIZE) {
+            throw new IOException("Invalid string length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the number of items of a list.
+     */
+    private static int readCount(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        if (count < 0 || count > MAX_COUNT) {
+            throw new IOException("Invalid count: " + count);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,727 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * The SyncEngine class syncs the journal with a remote through a {@link SyncTransport}.
+ * <br>
+ * A sync first pulls the changes other devices pushed since the previous sync, then pushes the local changes,
+ * found from the change sequence of entries and tombstones compared with the sequence of their last synced
+ * version. Only changed entries are exchanged, in compressed batches, and an image is only uploaded or
+ * downloaded if the other side does not hold it yet, as stored images are named by their content hash.
+ * <br>
+ * An entry changed both locally and remotely is resolved on its own: the version written last is kept,
+ * and the remote version is kept if both were written at the same time. A local version kept over
+ * a remote one is pushed again based on the remote revision.
+ * <br>
+ * The pull position is saved after each batch and blob transfers resume from the bytes already transferred,
+ * so an interrupted sync continues where it stopped when run again. Images that remote updates and deletions
+ * remove from entries are deleted once the changes are committed, if no other entry references them.
+ * */
+public class SyncEngine {
+    // Name of the file holding the device ID and the pull position
+    static final String STATE_FILE = "sync_state.properties";
+    // Keys of the state file
+    private static final String DEVICE_ID = "deviceId";
+    private static final String PULL_CURSOR = "pullCursor";
+    // Number of changes requested per pull
+    static final int PULL_BATCH_SIZE = 200;
+    // Number of changes sent per push
+    static final int PUSH_BATCH_SIZE = 100;
+    // Number of times local changes kept over conflicting remote changes are pushed again in a sync
+    private static final int MAX_PUSH_ROUNDS = 3;
+    // Buffer size for copying blob streams
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Suffix of partially downloaded images, which keep the prefix of stored images so an abandoned
+    // download is deleted as an orphan
+    private static final String PARTIAL_BLOB_SUFFIX = ".partial";
+    // Define singleton sync engine instance
+    private static volatile SyncEngine INSTANCE;
+
+    private final AppDatabase database;
+    private final JournalEntryDao journalEntryDao;
+    private final File filesDir;
+    private final File stateFile;
+    private final ImageVariants imageVariants = new ImageVariants();
+
+    /**
+     * The outcome of a sync.
+     */
+    public static final class Result {
+        private int pulledCount;
+        private int pushedCount;
+        private int conflictCount;
+        private long bytesSent;
+        private long bytesReceived;
+
+        /** Returns the number of remote changes applied to the journal. */
+        public int getPulledCount() {
+            return pulledCount;
+        }
+
+        /** Returns the number of local changes accepted by the remote. */
+        public int getPushedCount() {
+            return pushedCount;
+        }
+
+        /** Returns the number of entries changed both locally and remotely. */
+        public int getConflictCount() {
+            return conflictCount;
+        }
+
+        /** Returns the number of bytes of changes and blobs sent to the remote. */
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /** Returns the number of bytes of changes and blobs received from the remote. */
+        public long getBytesReceived() {
+            return bytesReceived;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "pulled=%d pushed=%d conflicts=%d sent=%dB received=%dB",
+                    pulledCount, pushedCount, conflictCount, bytesSent, bytesReceived);
+        }
+    }
+
+    /**
+     * Gets the singleton sync engine for the journal of the application.
+     * <br>
+     * All syncs of the journal go through the same engine, so that they run one after the other.
+     *
+     * @param context The application context.
+     * @return The singleton SyncEngine instance.
+     */
+    public static SyncEngine getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (SyncEngine.class) {
+                if (INSTANCE == null) {
+                    Context applicationContext = context.getApplicationContext();
+                    AppDatabase database = AppDatabase.getDatabase(applicationContext);
+                    INSTANCE = new SyncEngine(database, database.journalEntryDao(), applicationContext.getFilesDir(),
+                            applicationContext.getNoBackupFilesDir());
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a sync engine for the given database and image directory.
+     *
+     * @param database The database of the journal.
+     * @param journalEntryDao The DAO used to read and write entries.
+     * @param filesDir The directory of the stored images.
+     * @param stateDir The directory in which the device ID and the pull position are saved.
+     */
+    SyncEngine(AppDatabase database, JournalEntryDao journalEntryDao, File filesDir, File stateDir) {
+        this.database = database;
+        this.journalEntryDao = journalEntryDao;
+        this.filesDir = filesDir;
+        this.stateFile = new File(stateDir, STATE_FILE);
+    }
+
+    /**
+     * Syncs the journal with a remote.
+     * <br>
+     * This performs network, file and database operations and must not be called on the main thread.
+     * Concurrent syncs run one after the other.
+     *
+     * @param transport The transport to the remote.
+     * @return The outcome of the sync.
+     * @throws IOException If the remote cannot be reached or sends invalid data. Changes synced before
+     *                     the failure are kept.
+     */
+    public synchronized Result sync(SyncTransport transport) throws IOException {
+        Properties state = readState();
+        String deviceId = state.getProperty(DEVICE_ID);
+        if (deviceId == null) {
+            deviceId = UUID.randomUUID().toString();
+            state.setProperty(DEVICE_ID, deviceId);
+            writeState(state);
+        }
+        Result result = new Result();
+        pull(transport, deviceId, state, result);
+        for (int round = 0; round < MAX_PUSH_ROUNDS; round++) {
+            if (!push(transport, deviceId, result)) {
+                break;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Pulls and applies the remote changes since the previous pull, one batch per transaction.
+     *
+     * @param transport The transport to the remote.
+     * @param deviceId The ID of this device.
+     * @param state The sync state, whose pull position is saved after each batch.
+     * @param result The outcome of the sync.
+     * @throws IOException If the remote cannot be reached or sends invalid data.
+     */
+    private void pull(SyncTransport transport, String deviceId, Properties state, Result result)
+            throws IOException {
+        long cursor = parseLong(state.getProperty(PULL_CURSOR), 0);
+        boolean hasMore = true;
+        while (hasMore) {
+            byte[] response = transport.pull(deviceId, cursor, PULL_BATCH_SIZE);
+            result.bytesReceived += response.length;
+            SyncCodec.Batch batch = SyncCodec.decode(response);
+            List<SyncChange> changes = batch.getChanges();
+            downloadImages(transport, changes, result);
+            List<String> releasedImagePaths = new ArrayList<>();
+            database.runInTransaction(() -> applyRemoteChanges(changes, releasedImagePaths, result));
+            JournalEntryBatchWriter.releaseImages(journalEntryDao, releasedImagePaths);
+
+            // Stop if the remote does not move forward, rather than requesting the same batch again
+            hasMore = batch.hasMore() && batch.getCursor() > cursor;
+            cursor = Math.max(cursor, batch.getCursor());
+            state.setProperty(PULL_CURSOR, Long.toString(cursor));
+            writeState(state);
+        }
+    }
+
+    /**
+     * Pushes the local changes that are not synced, in batches.
+     *
+     * @param transport The transport to the remote.
+     * @param deviceId The ID of this device.
+     * @param result The outcome of the sync.
+     * @return True if local changes were kept over conflicting remote changes and must be pushed again.
+     * @throws IOException If the remote cannot be reached or sends invalid data.
+     */
+    private boolean push(SyncTransport transport, String deviceId, Result result) throws IOException {
+        boolean pushAgain = false;
+
+        long afterSeq = -1;
+        int afterId = 0;
+        List<JournalEntryEntity> entries;
+        while (!(entries = journalEntryDao.getUnsyncedEntriesPage(afterSeq, afterId, PUSH_BATCH_SIZE)).isEmpty()) {
+            JournalEntryEntity last = entries.get(entries.size() - 1);
+            afterSeq = last.getChangeSeq();
+            afterId = last.getId();
+
+            List<Integer> ids = new ArrayList<>(entries.size());
+            List<String> uuids = new ArrayList<>(entries.size());
+            for (JournalEntryEntity entry : entries) {
+                ids.add(entry.getId());
+                uuids.add(entry.getUuid());
+            }
+            Map<Integer, List<String>> imageNames = new HashMap<>();
+            Set<String> imagePaths = new LinkedHashSet<>();
+            for (JournalImageEntity image : journalEntryDao.getImagesForEntries(ids)) {
+                imageNames.computeIfAbsent(image.getEntryId(), id -> new ArrayList<>())
+                        .add(new File(image.getPath()).getName());
+                imagePaths.add(image.getPath());
+            }
+            Map<String, Long> revisions = getRevisions(uuids);
+
+            List<SyncChange> changes = new ArrayList<>(entries.size());
+            List<Long> changeSeqs = new ArrayList<>(entries.size());
+            for (JournalEntryEntity entry : entries) {
+                SyncChange change = new SyncChange();
+                change.setUuid(entry.getUuid());
+                change.setRevision(revisions.getOrDefault(entry.getUuid(), 0L));
+                change.setUpdatedAt(entry.getUpdatedAt());
+                change.setTitle(entry.getTitle());
+                change.setContent(entry.getContent());
+                change.setDate(entry.getDate());
+                change.setImageNames(imageNames.get(entry.getId()));
+                changes.add(change);
+                changeSeqs.add(entry.getChangeSeq());
+            }
+            // Images are uploaded first, so that other devices never pull an entry whose images are missing
+            uploadImages(transport, new ArrayList<>(imagePaths), result);
+            pushAgain |= pushBatch(transport, deviceId, changes, changeSeqs, result);
+        }
+
+        afterSeq = -1;
+        afterId = 0;
+        List<JournalTombstoneEntity> tombstones;
+        while (!(tombstones = journalEntryDao.getUnsyncedTombstonesPage(afterSeq, afterId, PUSH_BATCH_SIZE))
+                .isEmpty()) {
+            JournalTombstoneEntity last = tombstones.get(tombstones.size() - 1);
+            afterSeq = last.getChangeSeq();
+            afterId = last.getEntryId();
+
+            List<String> uuids = new ArrayList<>(tombstones.size());
+            for (JournalTombstoneEntity tombstone : tombstones) {
+                uuids.add(tombstone.getUuid());
+            }
+            Map<String, Long> revisions = getRevisions(uuids);
+
+            List<SyncChange> changes = new ArrayList<>(tombstones.size());
+            List<Long> changeSeqs = new ArrayList<>(tombstones.size());
+            for (JournalTombstoneEntity tombstone : tombstones) {
+                SyncChange change = new SyncChange();
+                change.setUuid(tombstone.getUuid());
+                change.setRevision(revisions.getOrDefault(tombstone.getUuid(), 0L));
+                change.setDeleted(true);
+                change.setUpdatedAt(tombstone.getDeletedAt());
+                changes.add(change);
+                changeSeqs.add(tombstone.getChangeSeq());
+            }
+            pushAgain |= pushBatch(transport, deviceId, changes, changeSeqs, result);
+        }
+        return pushAgain;
+    }
+
+    /**
+     * Pushes a batch of changes and records their outcome.
+     * <br>
+     * Accepted changes are marked as synced up to the change sequence they were read at, so an entry written
+     * again during the push stays unsynced. Conflicting changes are resolved against the remote version.
+     *
+     * @param transport The transport to the remote.
+     * @param deviceId The ID of this device.
+     * @param changes The changes to push.
+     * @param changeSeqs The change sequences of the pushed versions, in the order of the changes.
+     * @param result The outcome of the sync.
+     * @return True if local changes were kept over conflicting remote changes and must be pushed again.
+     * @throws IOException If the remote cannot be reached or sends invalid data.
+     */
+    private boolean pushBatch(SyncTransport transport, String deviceId, List<SyncChange> changes,
+                              List<Long> changeSeqs, Result result) throws IOException {
+        byte[] request = SyncCodec.encode(new SyncCodec.Batch(changes, 0, false));
+        result.bytesSent += request.length;
+        byte[] response = transport.push(deviceId, request);
+        result.bytesReceived += response.length;
+        List<SyncChange> results = SyncCodec.decode(response).getChanges();
+        if (results.size() != changes.size()) {
+            throw new IOException("Invalid push response");
+        }
+
+        List<JournalSyncStateEntity> states = new ArrayList<>();
+        List<SyncChange> conflicts = new ArrayList<>();
+        for (int i = 0; i < results.size(); i++) {
+            SyncChange pushResult = results.get(i);
+            if (!pushResult.getUuid().equals(changes.get(i).getUuid())) {
+                throw new IOException("Invalid push response");
+            }
+            if (pushResult.getStatus() == SyncChange.Status.ACCEPTED) {
+                states.add(newSyncState(pushResult.getUuid(), pushResult.getRevision(), changeSeqs.get(i)));
+            } else if (pushResult.getStatus() == SyncChange.Status.CONFLICT) {
+                conflicts.add(pushResult);
+            } else {
+                throw new IOException("Invalid push result: " + pushResult.getStatus());
+            }
+        }
+        downloadImages(transport, conflicts, result);
+        boolean[] pushAgain = new boolean[1];
+        List<String> releasedImagePaths = new ArrayList<>();
+        database.runInTransaction(() -> {
+            journalEntryDao.upsertSyncStates(states);
+            pushAgain[0] = applyRemoteChanges(conflicts, releasedImagePaths, result);
+        });
+        JournalEntryBatchWriter.releaseImages(journalEntryDao, releasedImagePaths);
+        result.pushedCount += states.size();
+        return pushAgain[0];
+    }
+
+    /**
+     * Applies remote versions of entries, resolving them against local changes that are not synced.
+     * <br>
+     * This must be called in a transaction.
+     *
+     * @param changes The remote versions, whose available images are stored.
+     * @param releasedImagePaths The list receiving the paths of the images removed from local entries.
+     * @param result The outcome of the sync.
+     * @return True if local changes were kept over some of the remote versions.
+     */
+    private boolean applyRemoteChanges(List<SyncChange> changes, List<String> releasedImagePaths, Result result) {
+        if (changes.isEmpty()) {
+            return false;
+        }
+        List<String> uuids = new ArrayList<>(changes.size());
+        for (SyncChange change : changes) {
+            uuids.add(change.getUuid());
+        }
+        Map<String, JournalEntryEntity> entries = new HashMap<>();
+        List<Integer> entryIds = new ArrayList<>();
+        for (JournalEntryEntity entry : journalEntryDao.getEntriesByUuid(uuids)) {
+            entries.put(entry.getUuid(), entry);
+            entryIds.add(entry.getId());
+        }
+        // Stored images of the local entries, released if a remote version removes them
+        Map<Integer, List<String>> storedImagePaths = new HashMap<>();
+        if (!entryIds.isEmpty()) {
+            for (JournalImageEntity image : journalEntryDao.getImagesForEntries(entryIds)) {
+                storedImagePaths.computeIfAbsent(image.getEntryId(), id -> new ArrayList<>()).add(image.getPath());
+            }
+        }
+        Map<String, JournalTombstoneEntity> tombstones = new HashMap<>();
+        for (JournalTombstoneEntity tombstone : journalEntryDao.getTombstonesByUuid(uuids)) {
+            tombstones.merge(tombstone.getUuid(), tombstone,
+                    (first, second) -> first.getChangeSeq() >= second.getChangeSeq() ? first : second);
+        }
+        Map<String, JournalSyncStateEntity> states = new HashMap<>();
+        for (JournalSyncStateEntity state : journalEntryDao.getSyncStates(uuids)) {
+            states.put(state.getUuid(), state);
+        }
+
+        boolean localChangesKept = false;
+        List<JournalSyncStateEntity> updatedStates = new ArrayList<>();
+        for (SyncChange change : changes) {
+            JournalSyncStateEntity state = states.get(change.getUuid());
+            if (state != null && state.getRevision() >= change.getRevision()) {
+                // The local version already includes this remote version
+                continue;
+            }
+            JournalEntryEntity entry = entries.get(change.getUuid());
+            JournalTombstoneEntity tombstone = tombstones.get(change.getUuid());
+            long localChangeTime = getUnsyncedChangeTime(entry, tombstone, state);
+            if (localChangeTime >= 0) {
+                result.conflictCount++;
+                if (localChangeTime > change.getUpdatedAt()) {
+                    // Keep the local change, to be pushed based on the remote revision
+                    updatedStates.add(newSyncState(change.getUuid(), change.getRevision(),
+                            state != null ? state.getSyncedSeq() : -1));
+                    localChangesKept = true;
+                    continue;
+                }
+            }
+            if (entry != null) {
+                List<String> removedImagePaths = new ArrayList<>(storedImagePaths.getOrDefault(entry.getId(),
+                        Collections.emptyList()));
+                if (!change.isDeleted()) {
+                    removedImagePaths.removeAll(getImagePaths(change));
+                }
+                releasedImagePaths.addAll(removedImagePaths);
+            }
+            long syncedSeq = applyRemoteChange(change, entry);
+            JournalSyncStateEntity updatedState = newSyncState(change.getUuid(), change.getRevision(), syncedSeq);
+            states.put(change.getUuid(), updatedState);
+            updatedStates.add(updatedState);
+            result.pulledCount++;
+        }
+        journalEntryDao.upsertSyncStates(updatedStates);
+        return localChangesKept;
+    }
+
+    /**
+     * Gets the time of the local change of an entry that is not synced.
+     *
+     * @param entry The local entry, or null if it does not exist.
+     * @param tombstone The latest tombstone of the entry, or null if it was never deleted.
+     * @param state The sync state of the entry, or null if it was never synced.
+     * @return The time of the unsynced write or deletion, or -1 if the entry has no unsynced change.
+     */
+    private static long getUnsyncedChangeTime(JournalEntryEntity entry, JournalTombstoneEntity tombstone,
+                                              JournalSyncStateEntity state) {
+        if (entry != null) {
+            return state == null || entry.getChangeSeq() > state.getSyncedSeq() ? entry.getUpdatedAt() : -1;
+        }
+        if (tombstone != null && state != null && tombstone.getChangeSeq() > state.getSyncedSeq()) {
+            return tombstone.getDeletedAt();
+        }
+        return -1;
+    }
+
+    /**
+     * Writes a remote version of an entry to the journal.
+     *
+     * @param change The remote version.
+     * @param entry The local entry, or null if it does not exist.
+     * @return The change sequence of the local write, which is marked as synced.
+     */
+    private long applyRemoteChange(SyncChange change, JournalEntryEntity entry) {
+        if (change.isDeleted()) {
+            if (entry != null) {
+                journalEntryDao.deleteEntry(entry);
+            }
+            return journalEntryDao.getLastChangeSeq();
+        }
+        boolean inserted = entry == null;
+        if (inserted) {
+            entry = new JournalEntryEntity();
+            entry.setUuid(change.getUuid());
+        }
+        entry.setTitle(change.getTitle());
+        entry.setContent(change.getContent());
+        entry.setDate(change.getDate());
+        entry.setImagePaths(getImagePaths(change));
+        if (inserted) {
+            journalEntryDao.insertEntryWithImages(entry, database.isContentCompressionEnabled());
+        } else {
+            journalEntryDao.updateEntryWithImages(entry, database.isContentCompressionEnabled());
+        }
+        return entry.getChangeSeq();
+    }
+
+    /**
+     * Gets the paths in internal storage of the images of a remote version of an entry.
+     *
+     * @param change The remote version.
+     * @return List of the image paths, in their display order.
+     */
+    private List<String> getImagePaths(SyncChange change) {
+        List<String> imagePaths = new ArrayList<>(change.getImageNames().size());
+        for (String imageName : change.getImageNames()) {
+            imagePaths.add(new File(filesDir, imageName).getAbsolutePath());
+        }
+        return imagePaths;
+    }
+
+    /**
+     * Gets the remote revisions the local versions of entries are based on.
+     *
+     * @param uuids The UUIDs of the entries.
+     * @return Map of the revision of each entry that was synced before.
+     */
+    private Map<String, Long> getRevisions(List<String> uuids) {
+        Map<String, Long> revisions = new HashMap<>();
+        for (JournalSyncStateEntity state : journalEntryDao.getSyncStates(uuids)) {
+            revisions.put(state.getUuid(), state.getRevision());
+        }
+        return revisions;
+    }
+
+    /**
+     * Creates the sync state of an entry.
+     */
+    private static JournalSyncStateEntity newSyncState(String uuid, long revision, long syncedSeq) {
+        JournalSyncStateEntity state = new JournalSyncStateEntity();
+        state.setUuid(uuid);
+        state.setRevision(revision);
+        state.setSyncedSeq(syncedSeq);
+        return state;
+    }
+
+    /**
+     * Uploads the images the remote does not hold yet.
+     *
+     * @param transport The transport to the remote.
+     * @param imagePaths The paths of the images.
+     * @param result The outcome of the sync.
+     * @throws IOException If an image cannot be read or the remote cannot be reached.
+     */
+    private void uploadImages(SyncTransport transport, List<String> imagePaths, Result result) throws IOException {
+        if (imagePaths.isEmpty()) {
+            return;
+        }
+        Map<String, File> files = new HashMap<>();
+        for (String imagePath : imagePaths) {
+            File file = new File(imagePath);
+            files.put(file.getName(), file);
+        }
+        for (String name : transport.getMissingBlobs(new ArrayList<>(files.keySet()))) {
+            File file = files.get(name);
+            if (file == null || !file.exists()) {
+                Log.w("SyncEngine", "Missing image not uploaded: " + name);
+                continue;
+            }
+            long length = file.length();
+            long offset = transport.getUploadOffset(name);
+            if (offset < 0 || offset > length) {
+                offset = 0;
+            }
+            try (InputStream inputStream = new FileInputStream(file)) {
+                skipFully(inputStream, offset);
+                transport.uploadBlob(name, offset, length, inputStream);
+            }
+            result.bytesSent += length - offset;
+        }
+    }
+
+    /**
+     * Downloads the images of remote versions that are not stored yet.
+     * <br>
+     * An image the remote does not hold is removed from its entry. A download resumes from the partial file
+     * left by an interrupted download, and the content of a content-addressed image is checked against its
+     * name before the image is stored, a corrupted image being removed from its entry as well.
+     *
+     * @param transport The transport to the remote.
+     * @param changes The remote versions, whose image names are replaced by the names of the stored images.
+     * @param result The outcome of the sync.
+     * @throws IOException If an image cannot be written or the remote cannot be reached.
+     */
+    private void downloadImages(SyncTransport transport, List<SyncChange> changes, Result result)
+            throws IOException {
+        for (SyncChange change : changes) {
+            if (change.isDeleted()) {
+                continue;
+            }
+            List<String> storedNames = new ArrayList<>(change.getImageNames().size());
+            for (String name : change.getImageNames()) {
+                if (!isPlainFileName(name)) {
+                    Log.w("SyncEngine", "Invalid image name skipped: " + name);
+                    continue;
+                }
+                File imageFile = new File(filesDir, name);
+                if (ImageHandler.reuseStoredImage(imageFile) || downloadImage(transport, name, imageFile, result)) {
+                    storedNames.add(name);
+                }
+            }
+            change.setImageNames(storedNames);
+        }
+    }
+
+    /**
+     * Downloads an image to internal storage.
+     *
+     * @param transport The transport to the remote.
+     * @param name The name of the image blob.
+     * @param imageFile The file of the stored image.
+     * @param result The outcome of the sync.
+     * @return True if the image is stored, false if the remote does not hold it or its content does not match
+     *         its name.
+     * @throws IOException If the image cannot be written or the remote cannot be reached.
+     */
+    private boolean downloadImage(SyncTransport transport, String name, File imageFile, Result result)
+            throws IOException {
+        File partialFile = new File(filesDir, name + PARTIAL_BLOB_SUFFIX);
+        long offset = partialFile.length();
+        try (InputStream inputStream = transport.downloadBlob(name, offset);
+             OutputStream outputStream = new FileOutputStream(partialFile, true)) {
+            result.bytesReceived += copy(inputStream, outputStream);
+        } catch (FileNotFoundException e) {
+            Log.w("SyncEngine", "Image missing on the remote: " + name);
+            deleteFile(partialFile);
+            return false;
+        }
+
+        String expectedHash = ImageHandler.getStoredImageHash(imageFile);
+        if (expectedHash != null && !expectedHash.equals(ContentHasher.hash(partialFile))) {
+            // The entry is synced without the image rather than stopping the sync on every attempt
+            Log.w("SyncEngine", "Corrupted image skipped: " + name);
+            deleteFile(partialFile);
+            return false;
+        }
+        if (!partialFile.renameTo(imageFile)) {
+            throw new IOException("Failed to store image: " + name);
+        }
+        try {
+            imageVariants.createVariants(imageFile);
+        } catch (IOException e) {
+            // The original is displayed instead
+            Log.w("SyncEngine", "Failed to create image variants: " + imageFile, e);
+        }
+        return true;
+    }
+
+    /**
+     * Checks that a name from the remote is a single file name, so it cannot point outside the image directory.
+     */
+    private static boolean isPlainFileName(String fileName) {
+        return !fileName.isEmpty() && !fileName.equals(".") && !fileName.equals("..")
+                && fileName.indexOf('/') < 0 && fileName.indexOf('\\') < 0;
+    }
+
+    /**
+     * Copies a stream to another without closing either of them.
+     *
+     * @return The number of bytes copied.
+     */
+    private static long copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long total = 0;
+        int length;
+        while ((length = inputStream.read(buffer)) > 0) {
+            outputStream.write(buffer, 0, length);
+            total += length;
+        }
+        return total;
+    }
+
+    /**
+     * Skips bytes of a stream, failing if it ends before.
+     */
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        while (count > 0) {
+            long skipped = inputStream.skip(count);
+            if (skipped <= 0) {
+                throw new IOException("Unexpected end of stream");
+            }
+            count -= skipped;
+        }
+    }
+
+    /**
+     * Deletes a file, logging a failure.
+     */
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e("SyncEngine", "Failed to delete file: " + file);
+        }
+    }
+
+    /**
+     * Reads the sync state.
+     *
+     * @return The saved state, or an empty state if none is saved or it cannot be read.
+     */
+    private Properties readState() {
+        Properties state = new Properties();
+        if (stateFile.exists()) {
+            try (InputStream inputStream = new FileInputStream(stateFile)) {
+                state.load(inputStream);
+            } catch (IOException | IllegalArgumentException e) {
+                Log.w("SyncEngine", "Failed to read sync state", e);
+                state.clear();
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Saves the sync state.
+     * <br>
+     * The state is written to a temporary file first, so an interrupted write keeps the previous state.
+     *
+     * @param state The state to save.
+     */
+    private void writeState(Properties state) {
+        File tempFile = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+        try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+            state.store(outputStream, null);
+        } catch (IOException e) {
+            Log.e("SyncEngine", "Failed to write sync state", e);
+            return;
+        }
+        if (!tempFile.renameTo(stateFile)) {
+            Log.e("SyncEngine", "Failed to replace sync state");
+        }
+    }
+
+    /**
+     * Parses a number from the state file.
+     *
+     * @param value The saved value, which may be null.
+     * @param defaultValue The value returned if no valid number is saved.
+     * @return The parsed number.
+     */
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.myapplication;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Interface for the remote the journal is synced with.
+ * <br>
+ * Changes are exchanged as batches encoded by {@link SyncCodec}, and images as blobs named by the file names
+ * of the stored images. The remote keeps a revision for each entry, increasing with every change it accepts,
+ * and accepts a pushed change only if it is based on the current revision of the entry.
+ * <br>
+ * Blob uploads and downloads can start at an offset, so an interrupted transfer is resumed instead of restarted.
+ * Implementations map these calls to a network protocol, and are called on a background thread.
+ */
+public interface SyncTransport {
+
+    /**
+     * Pushes a batch of changes.
+     *
+     * @param deviceId The ID of the pushing device.
+     * @param changes The encoded batch of changes, each carrying the revision it is based on.
+     * @return The encoded batch of results in the order of the changes, each either accepted with its new
+     *         revision or in conflict with the current version on the remote.
+     * @throws IOException If the remote cannot be reached.
+     */
+    byte[] push(String deviceId, byte[] changes) throws IOException;
+
+    /**
+     * Pulls the changes accepted after a revision, except those pushed by the requesting device.
+     *
+     * @param deviceId The ID of the pulling device.
+     * @param cursor The revision up to which changes were already pulled, or 0 for the first pull.
+     * @param limit The maximum number of changes to return.
+     * @return The encoded batch of changes in order of revision, with the cursor of the next pull.
+     * @throws IOException If the remote cannot be reached.
+     */
+    byte[] pull(String deviceId, long cursor, int limit) throws IOException;
+
+    /**
+     * Gets the blobs among the given ones that the remote does not hold in full.
+     *
+     * @param names The names of the blobs.
+     * @return List of the missing names.
+     * @throws IOException If the remote cannot be reached.
+     */
+    List<String> getMissingBlobs(List<String> names) throws IOException;
+
+    /**
+     * Gets the number of bytes of a blob received by the remote in an interrupted upload.
+     *
+     * @param name The name of the blob.
+     * @return The number of bytes received, or 0 if no upload of the blob was started.
+     * @throws IOException If the remote cannot be reached.
+     */
+    long getUploadOffset(String name) throws IOException;
+
+    /**
+     * Uploads the content of a blob from an offset.
+     * <br>
+     * The remote stores the blob once all of its bytes are received, after checking the content against
+     * the hash in the name of a content-addressed image.
+     *
+     * @param name The name of the blob.
+     * @param offset The offset of the first uploaded byte, as returned by {@link #getUploadOffset}.
+     * @param length The total length of the blob.
+     * @param data The content of the blob from the offset.
+     * @throws IOException If the remote cannot be reached or rejects the content.
+     */
+    void uploadBlob(String name, long offset, long length, InputStream data) throws IOException;
+
+    /**
+     * Downloads the content of a blob from an offset.
+     *
+     * @param name The name of the blob.
+     * @param offset The offset of the first byte to download.
+     * @return The stream of the content from the offset, to be closed by the caller.
+     * @throws FileNotFoundException If the remote does not hold the blob.
+     * @throws IOException If the remote cannot be reached.
+     */
+    InputStream downloadBlob(String name, long offset) throws IOException;
+}
@@ -0,0 +1,448 @@
+package com.example.myapplication;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The ThumbnailDiskCache class stores images scaled down to the size of the views that display them.
+ * <br>
+ * Thumbnails are keyed by the content hash of the source image and the target size, so a thumbnail is found
+ * again for the same content regardless of where the image is stored. The cache is capped in size and evicts
+ * thumbnails in least recently used order.
+ * <br>
+ * Every change is appended to a journal, which is replayed when the cache is opened, so the cache and its
+ * access order survive the process. The journal is compacted when it grows much larger than the cache.
+ * */
+public class ThumbnailDiskCache {
+    // Name of the cache directory within the cache storage of the application
+    private static final String DIRECTORY_NAME = "thumbnails";
+    // Maximum total size of the cached thumbnails in bytes
+    private static final long MAX_SIZE = 32 * 1024 * 1024;
+    // Quality of the compressed thumbnails
+    private static final int JPEG_QUALITY = 90;
+    // Name and first line of the journal file
+    static final String JOURNAL_FILE = "journal";
+    private static final String JOURNAL_HEADER = "thumbnail-cache 1";
+    // Journal operations
+    private static final String PUT = "PUT";
+    private static final String GET = "GET";
+    private static final String DELETE = "DEL";
+    // Extension of the thumbnail files
+    private static final String EXTENSION = ".jpg";
+    // Define singleton cache instance
+    private static volatile ThumbnailDiskCache INSTANCE;
+
+    private final File directory;
+    private final long maxSize;
+    // Size of each cached thumbnail by key, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // Content hashes of source images, reused while the file is unchanged
+    private final Map<String, ContentHash> contentHashes = new HashMap<>();
+    private Writer journalWriter;
+    // Number of operations in the journal, used to decide when to compact it
+    private int journalOperationCount;
+    private long size;
+    private int tempFileCounter;
+
+    /**
+     * The content hash of a file, valid as long as the file is not modified.
+     */
+    private static final class ContentHash {
+        private final long length;
+        private final long lastModified;
+        private final String hash;
+
+        private ContentHash(long length, long lastModified, String hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+        }
+    }
+
+    /**
+     * Gets the singleton cache instance.
+     * <br>
+     * The cache is opened on first use, so this method does not access the storage.
+     *
+     * @param context The application context.
+     * @return The singleton ThumbnailDiskCache instance.
+     */
+    public static ThumbnailDiskCache getInstance(final Context context) {
+        if (INSTANCE == null) {
+            synchronized (ThumbnailDiskCache.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new ThumbnailDiskCache(
+                            new File(context.getApplicationContext().getCacheDir(), DIRECTORY_NAME), MAX_SIZE);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Creates a cache in the given directory.
+     *
+     * @param directory The directory in which the thumbnails and the journal are stored.
+     * @param maxSize The maximum total size of the thumbnails in bytes.
+     */
+    ThumbnailDiskCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the cached thumbnail of an image.
+     *
+     * @param source The source image file.
+     * @param targetSize The longer edge of the thumbnail in pixels.
+     * @return The thumbnail file, or null if the image has no cached thumbnail of that size.
+     */
+    public File get(File source, int targetSize) {
+        try {
+            return get(getKey(source, targetSize));
+        } catch (IOException e) {
+            Log.e("ThumbnailDiskCache", "Failed to read thumbnail: " + source, e);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the thumbnail of an image, scaling the decoded image down to the target size.
+     *
+     * @param source The source image file.
+     * @param targetSize The longer edge of the thumbnail in pixels.
+     * @param bitmap The decoded image.
+     */
+    public void put(File source, int targetSize, Bitmap bitmap) {
+        File tempFile = null;
+        Bitmap thumbnail = scaleToFit(bitmap, targetSize);
+        try {
+            String key = getKey(source, targetSize);
+            tempFile = createTempFile();
+            try (OutputStream outputStream = new FileOutputStream(tempFile)) {
+                if (!thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream)) {
+                    throw new IOException("Failed to compress thumbnail: " + source);
+                }
+            }
+            put(key, tempFile);
+        } catch (IOException e) {
+            Log.e("ThumbnailDiskCache", "Failed to store thumbnail: " + source, e);
+            if (tempFile != null && tempFile.exists() && !tempFile.delete()) {
+                Log.e("ThumbnailDiskCache", "Failed to delete temp thumbnail: " + tempFile);
+            }
+        } finally {
+            if (thumbnail != bitmap) {
+                thumbnail.recycle();
+            }
+        }
+    }
+
+    /**
+     * Gets a cached thumbnail by key and records the access in the journal.
+     *
+     * @param key The key of the thumbnail.
+     * @return The thumbnail file, or null if it is not cached.
+     * @throws IOException If the cache cannot be opened or the journal cannot be written.
+     */
+    synchronized File get(String key) throws IOException {
+        open();
+        if (entries.get(key) == null) {
+            return null;
+        }
+        File file = getEntryFile(key);
+        if (!file.exists()) {
+            // The thumbnail was removed from storage, for example by the system clearing the cache
+            remove(key);
+            return null;
+        }
+        appendToJournal(GET, key, -1);
+        return file;
+    }
+
+    /**
+     * Adds a written thumbnail file to the cache, evicting the least recently used thumbnails if needed.
+     *
+     * @param key The key of the thumbnail.
+     * @param tempFile The written thumbnail file, which is moved into the cache.
+     * @throws IOException If the file cannot be moved or the journal cannot be written.
+     */
+    synchronized void put(String key, File tempFile) throws IOException {
+        open();
+        File file = getEntryFile(key);
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Failed to store thumbnail: " + file);
+        }
+        Long previousSize = entries.put(key, file.length());
+        if (previousSize != null) {
+            size -= previousSize;
+        }
+        size += file.length();
+        appendToJournal(PUT, key, file.length());
+        trimToSize();
+    }
+
+    /**
+     * Creates a file in the cache directory to write a thumbnail to before it is added.
+     *
+     * @return The temporary file.
+     * @throws IOException If the cache cannot be opened.
+     */
+    synchronized File createTempFile() throws IOException {
+        open();
+        return new File(directory, "thumbnail_" + System.nanoTime() + "_" + (tempFileCounter++) + ".tmp");
+    }
+
+    /** Returns the total size of the cached thumbnails in bytes. */
+    synchronized long size() throws IOException {
+        open();
+        return size;
+    }
+
+    /**
+     * Returns the key of the thumbnail of an image.
+     *
+     * @param source The source image file.
+     * @param targetSize The longer edge of the thumbnail in pixels.
+     * @return The key, made of the content hash of the image and the target size.
+     * @throws IOException If the image cannot be read.
+     */
+    String getKey(File source, int targetSize) throws IOException {
+        return getContentHash(source) + "_" + targetSize;
+    }
+
+    /**
+     * Opens the cache by replaying the journal, if it is not open yet.
+     * <br>
+     * Thumbnails missing from storage are dropped, files not referenced by the journal are deleted,
+     * and the journal is rewritten with only the current thumbnails in access order.
+     *
+     * @throws IOException If the directory cannot be created or the journal cannot be written.
+     */
+    private void open() throws IOException {
+        if (journalWriter != null) {
+            return;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create thumbnail cache directory: " + directory);
+        }
+
+        File journalFile = new File(directory, JOURNAL_FILE);
+        if (journalFile.exists()) {
+            readJournal(journalFile);
+        }
+
+        // Drop thumbnails whose files are missing or incomplete
+        size = 0;
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            File file = getEntryFile(entry.getKey());
+            if (file.length() != entry.getValue()) {
+                deleteFile(file);
+                iterator.remove();
+            } else {
+                size += entry.getValue();
+            }
+        }
+
+        // Delete files that are not part of the cache, such as thumbnails that were being written
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                boolean cached = name.endsWith(EXTENSION)
+                        && entries.containsKey(name.substring(0, name.length() - EXTENSION.length()));
+                if (!cached && !name.equals(JOURNAL_FILE)) {
+                    deleteFile(file);
+                }
+            }
+        }
+
+        rebuildJournal();
+        trimToSize();
+    }
+
+    /**
+     * Replays the operations of the journal into the cache entries.
+     *
+     * @param journalFile The journal file.
+     */
+    private void readJournal(File journalFile) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(journalFile))) {
+            if (!JOURNAL_HEADER.equals(reader.readLine())) {
+                // The journal is from an unknown version, so the cache starts empty
+                return;
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(" ");
+                if (parts.length == 3 && PUT.equals(parts[0])) {
+                    entries.put(parts[1], Long.parseLong(parts[2]));
+                } else if (parts.length == 2 && GET.equals(parts[0])) {
+                    // Reading the entry moves it to the end of the access order
+                    entries.get(parts[1]);
+                } else if (parts.length == 2 && DELETE.equals(parts[0])) {
+                    entries.remove(parts[1]);
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // Keep the operations read before the error, a truncated last line is expected after a crash
+            Log.w("ThumbnailDiskCache", "Failed to read journal completely", e);
+        }
+    }
+
+    /**
+     * Rewrites the journal with a single operation for each thumbnail, in access order.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    private void rebuildJournal() throws IOException {
+        if (journalWriter != null) {
+            journalWriter.close();
+        }
+        File journalFile = new File(directory, JOURNAL_FILE);
+        File tempJournalFile = new File(directory, JOURNAL_FILE + ".tmp");
+        try (Writer writer = new BufferedWriter(new FileWriter(tempJournalFile))) {
+            writer.write(JOURNAL_HEADER + "\n");
+            for (Map.Entry<String, Long> entry : entries.entrySet()) {
+                writer.write(PUT + " " + entry.getKey() + " " + entry.getValue() + "\n");
+            }
+        }
+        if (!tempJournalFile.renameTo(journalFile)) {
+            throw new IOException("Failed to replace journal: " + journalFile);
+        }
+        journalWriter = new BufferedWriter(new FileWriter(journalFile, true));
+        journalOperationCount = entries.size();
+    }
+
+    /**
+     * Appends an operation to the journal, compacting the journal if it has grown too large.
+     *
+     * @param operation The operation.
+     * @param key The key of the thumbnail.
+     * @param length The size of the thumbnail for additions, ignored for other operations.
+     * @throws IOException If the journal cannot be written.
+     */
+    private void appendToJournal(String operation, String key, long length) throws IOException {
+        journalWriter.write(operation + " " + key + (PUT.equals(operation) ? " " + length : "") + "\n");
+        journalWriter.flush();
+        journalOperationCount++;
+        if (journalOperationCount > 2 * entries.size() + 100) {
+            rebuildJournal();
+        }
+    }
+
+    /**
+     * Evicts the least recently used thumbnails until the cache fits its maximum size.
+     *
+     * @throws IOException If the journal cannot be written.
+     */
+    private void trimToSize() throws IOException {
+        while (size > maxSize && !entries.isEmpty()) {
+            remove(entries.keySet().iterator().next());
+        }
+    }
+
+    /**
+     * Removes a thumbnail from the cache and from storage.
+     *
+     * @param key The key of the thumbnail.
+     * @throws IOException If the journal cannot be written.
+     */
+    private void remove(String key) throws IOException {
+        Long length = entries.remove(key);
+        if (length != null) {
+            size -= length;
+            deleteFile(getEntryFile(key));
+            appendToJournal(DELETE, key, -1);
+        }
+    }
+
+    /**
+     * Returns the file in which a thumbnail is stored.
+     *
+     * @param key The key of the thumbnail.
+     * @return The thumbnail file.
+     */
+    private File getEntryFile(String key) {
+        return new File(directory, key + EXTENSION);
+    }
+
+    /**
+     * Returns a hash identifying the content of a file.
+     * <br>
+     * Hashes are remembered for each path and computed again only if the size or the modification time
+     * of the file has changed.
+     *
+     * @param file The file to hash.
+     * @return The hash as a hexadecimal string, or the name of a content-addressed stored image.
+     * @throws IOException If the file cannot be read.
+     */
+    private String getContentHash(File file) throws IOException {
+        // Stored images and their variants are named after the content hash of the image, so their name identifies them
+        if (ImageHandler.getStoredImageHash(ImageVariants.getOriginalFile(file)) != null) {
+            return file.getName();
+        }
+
+        String path = file.getAbsolutePath();
+        long length = file.length();
+        long lastModified = file.lastModified();
+        synchronized (contentHashes) {
+            ContentHash contentHash = contentHashes.get(path);
+            if (contentHash != null && contentHash.length == length && contentHash.lastModified == lastModified) {
+                return contentHash.hash;
+            }
+        }
+
+        String hash = ContentHasher.hash(file);
+        synchronized (contentHashes) {
+            contentHashes.put(path, new ContentHash(length, lastModified, hash));
+        }
+        return hash;
+    }
+
+    /**
+     * Scales a bitmap down so that its longer edge is at most the target size.
+     *
+     * @param bitmap The bitmap to scale.
+     * @param targetSize The maximum length of the longer edge.
+     * @return The scaled bitmap, which is the given bitmap if it already fits.
+     */
+    private static Bitmap scaleToFit(Bitmap bitmap, int targetSize) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int longEdge = Math.max(width, height);
+        if (targetSize <= 0 || longEdge <= targetSize) {
+            return bitmap;
+        }
+        float scale = (float) targetSize / longEdge;
+        return Bitmap.createScaledBitmap(bitmap,
+                Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)), true);
+    }
+
+    /**
+     * Deletes a file from the cache directory.
+     *
+     * @param file The file to delete.
+     */
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.e("ThumbnailDiskCache", "Failed to delete file: " + file);
+        }
+    }
+}
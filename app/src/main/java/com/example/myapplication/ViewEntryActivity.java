@@ -9,10 +9,12 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.appbar.MaterialToolbar;
@@ -28,13 +30,16 @@ import java.util.List;
  * View entry activity class for viewing a saved entry in the journal app.
  * <br>
  * This activity displays the saved data, including date, title, content, and images.
- * The saved images are displayed in a carousel component.
+ * The saved images are displayed in a carousel component. The content is shown in chunks laid out
+ * in the background, so long entries open as fast as short ones.
  * The activity also provides options to edit or delete the entry being viewed.
  * */
 public class ViewEntryActivity extends AppCompatActivity {
     private TextView dateArea;
     private TextView titleArea;
-    private TextView contentArea;
+    private ContentChunkAdapter contentAdapter;
+    // Number of times the content was shown, so that the chunks of outdated content are not displayed
+    private int contentVersion;
     private int entryId;
     private long entryDate;
     private String entryTitle;
@@ -60,6 +65,12 @@ public class ViewEntryActivity extends AppCompatActivity {
         // Set up the top app bar
         setUpTopAppBar();
 
+        // Initialize the RecyclerView for displaying the content in chunks
+        RecyclerView contentRecyclerView = findViewById(R.id.contentRecyclerView);
+        contentRecyclerView.setLayoutManager(new LinearLayoutManager(this));
+        contentAdapter = new ContentChunkAdapter(AppExecutors.getInstance().cpu());
+        contentRecyclerView.setAdapter(contentAdapter);
+
         // Set up the ViewModel to observe and update changes
         setUpViewModel();
 
@@ -130,7 +141,6 @@ public class ViewEntryActivity extends AppCompatActivity {
         // Get views
         dateArea = findViewById(R.id.dateArea);
         titleArea = findViewById(R.id.titleArea);
-        contentArea = findViewById(R.id.contentArea);
 
         viewModel = new ViewModelProvider(this).get(JournalEntryViewModel.class);
         viewModel.getEntryById(entryId).observe(this, entry -> {
@@ -144,7 +154,7 @@ public class ViewEntryActivity extends AppCompatActivity {
                 // Update the UI with the retrieved entry data
                 dateArea.setText(DateFormat.format("dd-MM-yyyy", new Date(entryDate)));
                 titleArea.setText(entryTitle);
-                contentArea.setText(entryContent);
+                showContent(entryContent);
 
                 // Update the carousel with the entry's image paths if available
                 if(entryImagePaths != null) {
@@ -161,6 +171,26 @@ public class ViewEntryActivity extends AppCompatActivity {
         });
     }
 
+    /**
+     * Shows the content of the entry in chunks.
+     * <br>
+     * The content is split off the main thread, and the text layout of each chunk is precomputed
+     * as it is about to be displayed.
+     *
+     * @param content The content of the entry.
+     */
+    private void showContent(String content) {
+        int version = ++contentVersion;
+        AppExecutors.getInstance().cpu().execute(() -> {
+            List<String> chunks = ContentChunker.split(content, ContentChunker.CHUNK_LENGTH);
+            runOnUiThread(() -> {
+                if (version == contentVersion) {
+                    contentAdapter.submitList(chunks);
+                }
+            });
+        });
+    }
+
     /* Event handling methods */
 
     /**
@@ -197,17 +227,19 @@ public class ViewEntryActivity extends AppCompatActivity {
                 .setPositiveButton(R.string.delete_button, (dialog, which) -> {
                     JournalEntryEntity entry = new JournalEntryEntity();
                     entry.setId(entryId);
-                    new Thread(() -> {
-                        // Delete the entry from the database
-                        viewModel.deleteEntry(entry);
-
-                        runOnUiThread(() -> {
-                            // Show a toast message indicating the entry was deleted
-                            Toast.makeText(ViewEntryActivity.this, R.string.delete_info_message,
+                    // Delete the entry from the database and return once the deletion is committed
+                    viewModel.deleteEntry(entry).whenCompleteAsync((outcome, error) -> {
+                        if (error != null) {
+                            Log.e("ViewEntryActivity", "Failed to delete entry", error);
+                            Toast.makeText(ViewEntryActivity.this, R.string.delete_error_message,
                                     Toast.LENGTH_SHORT).show();
-                            finish(); // Return to MainActivity
-                        });
-                    }).start();
+                            return;
+                        }
+                        // Show a toast message indicating the entry was deleted
+                        Toast.makeText(ViewEntryActivity.this, R.string.delete_info_message,
+                                Toast.LENGTH_SHORT).show();
+                        finish(); // Return to MainActivity
+                    }, ContextCompat.getMainExecutor(this));
                 })
                 .show();
     }
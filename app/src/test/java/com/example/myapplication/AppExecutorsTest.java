@@ -0,0 +1,102 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The AppExecutorsTest class provides unit tests for the task pools of the {@link AppExecutors} class.
+ * <br>
+ * These tests ensure that queued tasks run in order of priority and then of submission, that a cancelled task
+ * does not run, and that the queue depth and latencies of the tasks are recorded.
+ */
+public class AppExecutorsTest {
+
+    /**
+     * Blocks the thread of a single-thread pool until the returned latch is released.
+     */
+    private static CountDownLatch blockPool(AppExecutors.TaskPool pool, CountDownLatch started) {
+        CountDownLatch release = new CountDownLatch(1);
+        pool.execute(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        return release;
+    }
+
+    @Test
+    public void testRunTasksInOrderOfPriority() throws Exception {
+        AppExecutors.TaskPool pool = new AppExecutors.TaskPool("test", 1, Executors.defaultThreadFactory());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = blockPool(pool, started);
+        started.await(5, TimeUnit.SECONDS);
+
+        // Queue tasks while the thread is busy, so that they are ordered by the queue
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch done = new CountDownLatch(4);
+        pool.execute(() -> { order.add("background"); done.countDown(); }, AppExecutors.Priority.BACKGROUND);
+        pool.execute(() -> { order.add("default"); done.countDown(); }, AppExecutors.Priority.DEFAULT);
+        pool.execute(() -> { order.add("visible1"); done.countDown(); });
+        pool.withPriority(AppExecutors.Priority.USER_VISIBLE).execute(() -> {
+            order.add("visible2");
+            done.countDown();
+        });
+        assertEquals(4, pool.getQueueDepth());
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("visible1", "visible2", "default", "background"), order);
+    }
+
+    @Test
+    public void testCancelledTaskDoesNotRun() throws Exception {
+        AppExecutors.TaskPool pool = new AppExecutors.TaskPool("test", 1, Executors.defaultThreadFactory());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = blockPool(pool, started);
+        started.await(5, TimeUnit.SECONDS);
+
+        List<String> ran = Collections.synchronizedList(new ArrayList<>());
+        Future<?> cancelled = pool.submit(() -> ran.add("cancelled"), AppExecutors.Priority.USER_VISIBLE);
+        Future<?> kept = pool.submit(() -> ran.add("kept"), AppExecutors.Priority.USER_VISIBLE);
+        cancelled.cancel(false);
+
+        release.countDown();
+        kept.get(5, TimeUnit.SECONDS);
+        assertEquals(Collections.singletonList("kept"), ran);
+    }
+
+    @Test
+    public void testRecordMetrics() throws Exception {
+        AppExecutors.TaskPool pool = new AppExecutors.TaskPool("test", 1, Executors.defaultThreadFactory());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = blockPool(pool, started);
+        started.await(5, TimeUnit.SECONDS);
+
+        Future<?> waiting = pool.submit(() -> { }, AppExecutors.Priority.DEFAULT);
+        assertEquals(1, pool.getQueueDepth());
+        assertEquals(1, pool.getActiveCount());
+        Thread.sleep(20);
+        release.countDown();
+        waiting.get(5, TimeUnit.SECONDS);
+
+        // Verify that the task that waited for the blocked thread recorded its wait
+        assertEquals(2, pool.getStartedCount());
+        assertEquals(0, pool.getQueueDepth());
+        assertTrue(pool.getMaxWaitMs() >= 20);
+        assertTrue(pool.getAverageWaitMs() > 0);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The ContentChunkerTest class provides unit tests for the {@link ContentChunker} class.
+ * <br>
+ * These tests ensure that chunks preferably end at line breaks, that lines longer than the chunk length are
+ * split at sentence boundaries or whitespace, that no chunk exceeds the chunk length, and that chunks together
+ * display the whole content.
+ */
+public class ContentChunkerTest {
+
+    /**
+     * Joins chunks as they are displayed, each starting on a new line.
+     */
+    private static String join(List<String> chunks) {
+        return String.join("\n", chunks);
+    }
+
+    @Test
+    public void testSplitAtLineBreaks() {
+        String content = "First paragraph\nSecond paragraph\n\nThird paragraph";
+        List<String> chunks = ContentChunker.split(content, 20);
+
+        assertEquals(Arrays.asList("First paragraph", "Second paragraph\n", "Third paragraph"), chunks);
+        assertEquals(content, join(chunks));
+    }
+
+    @Test
+    public void testSplitLongParagraph() {
+        String paragraph = "word ".repeat(2000);
+        String content = "Short line\n" + paragraph + "\n" + "x".repeat(50) + "\n" + "😀".repeat(20);
+        List<String> chunks = ContentChunker.split(content, 100);
+
+        // The long paragraph is split at whitespace, and the lines around it still end at their line breaks
+        List<String> expected = new ArrayList<>();
+        expected.add("Short line");
+        expected.addAll(Collections.nCopies(100, "word ".repeat(20)));
+        expected.add("x".repeat(50) + "\n" + "😀".repeat(20));
+        assertEquals(expected, chunks);
+    }
+
+    @Test
+    public void testSplitTextWithoutLineBreaks() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            builder.append("This is sentence number ").append(i).append(". ");
+        }
+        String content = builder.toString();
+        List<String> chunks = ContentChunker.split(content, 100);
+
+        // Chunks end at the last sentence that fits, keeping its trailing space
+        assertTrue(chunks.size() > content.length() / 100);
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 100);
+            assertTrue(chunk.startsWith("This is sentence number "));
+            assertTrue(chunk.endsWith(". "));
+        }
+        assertEquals(content, String.join("", chunks));
+    }
+
+    @Test
+    public void testSplitLongWord() {
+        assertEquals(Arrays.asList("x".repeat(100), "x".repeat(100), "x".repeat(50)),
+                ContentChunker.split("x".repeat(250), 100));
+
+        // A surrogate pair is not cut in half
+        String content = "😀".repeat(80);
+        List<String> chunks = ContentChunker.split(content, 99);
+        for (String chunk : chunks) {
+            assertTrue(chunk.length() <= 99);
+            assertFalse(Character.isHighSurrogate(chunk.charAt(chunk.length() - 1)));
+        }
+        assertEquals(content, String.join("", chunks));
+    }
+
+    @Test
+    public void testSplitGroupsLines() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append("Line number ").append(i).append('\n');
+        }
+        String content = builder.toString();
+        List<String> chunks = ContentChunker.split(content, 100);
+
+        for (String chunk : chunks) {
+            // Each chunk holds whole lines
+            assertTrue(chunk.length() <= 100);
+            assertTrue(chunk.startsWith("Line number "));
+        }
+        assertTrue(chunks.size() < 100);
+        assertEquals(content, join(chunks));
+    }
+
+    @Test
+    public void testShortContent() {
+        assertEquals(Collections.singletonList("Short content"),
+                ContentChunker.split("Short content", ContentChunker.CHUNK_LENGTH));
+        assertEquals(Collections.emptyList(), ContentChunker.split("", ContentChunker.CHUNK_LENGTH));
+        assertEquals(Collections.emptyList(), ContentChunker.split(null, ContentChunker.CHUNK_LENGTH));
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The ContentCompressionTest class provides unit tests for the {@link ContentCompression} class.
+ * <br>
+ * These tests ensure that only long content is compressed, that it is decompressed as it was written,
+ * and that entries compute their stored content when written and decompress it when read.
+ */
+public class ContentCompressionTest {
+
+    private static String longContent() {
+        StringBuilder content = new StringBuilder();
+        while (content.length() <= ContentCompression.THRESHOLD * 4) {
+            content.append("Today I wrote in my journal é😀. ");
+        }
+        return content.toString();
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        String content = longContent();
+        byte[] compressed = ContentCompression.compress(content);
+
+        assertNotNull(compressed);
+        assertTrue(compressed.length < content.length() / 10);
+        assertEquals(content, ContentCompression.decompress(compressed));
+    }
+
+    @Test
+    public void testKeepShortContent() {
+        assertNull(ContentCompression.compress(null));
+        assertNull(ContentCompression.compress("Short content"));
+        char[] content = new char[ContentCompression.THRESHOLD];
+        Arrays.fill(content, 'a');
+        assertNull(ContentCompression.compress(new String(content)));
+    }
+
+    @Test
+    public void testPreviewKeepsSurrogatePairs() {
+        char[] prefix = new char[ContentCompression.PREVIEW_LENGTH - 1];
+        Arrays.fill(prefix, 'a');
+        String content = new String(prefix) + "😀 and more";
+
+        assertEquals(new String(prefix), ContentCompression.getPreview(content));
+        assertEquals("Short", ContentCompression.getPreview("Short"));
+    }
+
+    @Test
+    public void testSearchTermsPastPreview() {
+        char[] prefix = new char[ContentCompression.PREVIEW_LENGTH - 3];
+        Arrays.fill(prefix, ' ');
+        String content = new String(prefix) + "Lighthouse, LIGHTHOUSE and café at the lighthouse-keeper's 2nd house";
+
+        // The word cut by the end of the beginning is included whole, and words are folded and deduplicated
+        assertEquals("lighthouse and café at the keeper s 2nd house", ContentCompression.getSearchTerms(content));
+        assertEquals("", ContentCompression.getSearchTerms("Short"));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectCorruptedContent() throws IOException {
+        byte[] compressed = ContentCompression.compress(longContent());
+        ContentCompression.decompress(Arrays.copyOf(compressed, compressed.length / 2));
+    }
+
+    @Test
+    public void testEntryStoresCompressedContent() {
+        String content = longContent();
+        JournalEntryEntity plainEntry = new JournalEntryEntity();
+        plainEntry.setContent(content);
+        plainEntry.encodeContent(false);
+        assertEquals(content, plainEntry.getStoredContent());
+        assertNull(plainEntry.getCompressedContent());
+
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setContent(content);
+        // The stored form is computed once, when the entry is written
+        assertNull(entry.getCompressedContent());
+        entry.encodeContent(true);
+        assertEquals(ContentCompression.getPreview(content), entry.getStoredContent());
+        assertNotNull(entry.getCompressedContent());
+        assertEquals(ContentCompression.getSearchTerms(content), entry.getSearchTerms());
+        assertEquals(content, entry.getContent());
+
+        // An entry loaded in its stored form is decompressed when read
+        JournalEntryEntity loaded = new JournalEntryEntity();
+        loaded.setStoredContent(entry.getStoredContent());
+        loaded.setCompressedContent(entry.getCompressedContent());
+        assertEquals(content, loaded.getContent());
+        assertArrayEquals(entry.getCompressedContent(), loaded.getCompressedContent());
+
+        // Setting new content replaces the stored form
+        loaded.setContent("Short content");
+        loaded.encodeContent(true);
+        assertEquals("Short content", loaded.getStoredContent());
+        assertNull(loaded.getCompressedContent());
+        assertNull(loaded.getSearchTerms());
+    }
+}
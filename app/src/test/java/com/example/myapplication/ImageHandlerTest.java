@@ -14,9 +14,15 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -27,13 +33,15 @@ import static org.mockito.Mockito.*;
  * The ImageHandlerTest class provides unit tests for the {@link ImageHandler} class.
  * <br>
  * These tests ensure that the ImageHandler methods function correctly and handle various
- * scenarios related to image file operations, including copying, moving, and deleting images.
+ * scenarios related to image file operations, including importing, storing, and deleting images.
  * */
 public class ImageHandlerTest {
 
     private ContentResolver contentResolver;
+    private File cacheDir;
     private File filesDir;
     private List<String> tempImagePaths;
+    private ImageVariants imageVariants;
     private ImageHandler imageHandler;
 
     @Rule
@@ -42,10 +50,13 @@ public class ImageHandlerTest {
     @Before
     public void setUp() throws Exception {
         contentResolver = mock(ContentResolver.class);
-        File cacheDir = tempFolder.newFolder("cache");
+        cacheDir = tempFolder.newFolder("cache");
         filesDir = tempFolder.newFolder("files");
         tempImagePaths = new ArrayList<>();
-        imageHandler = new ImageHandler(contentResolver, cacheDir, filesDir, tempImagePaths);
+        // Image variants are created by the Android framework, so their creation is mocked
+        imageVariants = mock(ImageVariants.class);
+        imageHandler = new ImageHandler(contentResolver, cacheDir, filesDir, tempImagePaths, imageVariants,
+                Runnable::run, Runnable::run);
     }
 
     @After
@@ -80,62 +91,61 @@ public class ImageHandlerTest {
     }
 
     @Test
-    public void testCopyImagesToTemporaryStorage() throws Exception {
+    public void testImportImagesToTemporaryStorage() throws Exception {
         // Set up image files
         File tempImageFile1 = imageSetUp(1);
         File tempImageFile2 = imageSetUp(2);
 
-        // Create mock Uris
         Uri uri1 = mock(Uri.class);
         Uri uri2 = mock(Uri.class);
-        List<Uri> uris = Arrays.asList(uri1, uri2);
-
-        // Mock ContentResolver to return InputStreams for the Uris
         when(contentResolver.openInputStream(uri1)).thenReturn(new FileInputStream(tempImageFile1));
         when(contentResolver.openInputStream(uri2)).thenReturn(new FileInputStream(tempImageFile2));
 
-        // Get result of method call
-        boolean result = imageHandler.copyImagesToTemporaryStorage(uris);
+        // The import and its callbacks run on the calling thread
+        ImageHandler.ImportCallback callback = mock(ImageHandler.ImportCallback.class);
 
-        // Assert that the method returned true
-        assertTrue("copyImagesToTemporaryStorage should return true", result);
+        ImageHandler.ImportTask task = imageHandler.importImages(Arrays.asList(uri1, uri2), callback);
 
-        // Assert that images have been added to the temporary list
+        // Verify that each image was reported and added to the temporary list
         assertEquals("Two images should be added to tempImagePaths", 2, tempImagePaths.size());
+        verify(callback).onImageImported(0, tempImagePaths.get(0));
+        verify(callback).onImageImported(1, tempImagePaths.get(1));
+        verify(callback).onImageProgress(0, tempImageFile1.length(), -1);
+        verify(callback).onImportFinished(2, 0);
+        verify(imageVariants).createVariants(new File(tempImagePaths.get(0)));
+        verify(imageVariants).createVariants(new File(tempImagePaths.get(1)));
+        assertFalse("The import should no longer be running", task.isRunning());
 
         // Verify that the content in the temp files matches the original files
-        for (String tempImagePath : tempImagePaths) {
-            File copiedImageFile = new File(tempImagePath);
-            String content = new String(Files.readAllBytes(copiedImageFile.toPath()));
-            assertTrue("Copied content should match original content",
-                    content.equals("Test Image 1") || content.equals("Test Image 2"));
+        for (int i = 0; i < tempImagePaths.size(); i++) {
+            String content = new String(Files.readAllBytes(new File(tempImagePaths.get(i)).toPath()));
+            assertEquals("Copied content should match original content", "Test Image " + (i + 1), content);
         }
     }
 
     @Test
-    public void testCopyExistingImagesToTemporaryStorage() throws Exception {
-        // Set up image files
-        File originalImage1 = imageSetUp(1);
-        File originalImage2 = imageSetUp(2);
-
-        // Create a list of image paths
-        List<String> existingImagePaths = new ArrayList<>();
-        existingImagePaths.add(originalImage1.getAbsolutePath());
-        existingImagePaths.add(originalImage2.getAbsolutePath());
-
-        imageHandler.copyExistingImagesToTemporaryStorage(existingImagePaths);
+    public void testCancelImportImages() throws Exception {
+        File tempImageFile1 = imageSetUp(1);
+        Uri uri1 = mock(Uri.class);
+        when(contentResolver.openInputStream(uri1)).thenReturn(new FileInputStream(tempImageFile1));
 
-        // Verify that the temp files exist
-        for (String tempImagePath : tempImagePaths) {
-            File tempImageFile = new File(tempImagePath);
-            assertTrue(tempImageFile.exists());
+        // Queue the import work so that the import can be cancelled before it runs
+        Queue<Runnable> importQueue = new ArrayDeque<>();
+        ImageHandler handler = new ImageHandler(contentResolver, cacheDir, filesDir, tempImagePaths,
+                imageVariants, importQueue::add, Runnable::run);
+        ImageHandler.ImportCallback callback = mock(ImageHandler.ImportCallback.class);
 
-            // Verify the content matches the original files
-            String content = new String(Files.readAllBytes(tempImageFile.toPath()));
-            assertTrue("Copied content should match original content",
-                    content.equals("Test Image 1") || content.equals("Test Image 2"));
+        ImageHandler.ImportTask task = handler.importImages(Arrays.asList(uri1), callback);
+        task.cancel();
+        while (!importQueue.isEmpty()) {
+            importQueue.poll().run();
         }
 
+        // Verify that nothing was imported or reported after cancellation
+        assertTrue("tempImagePaths should remain empty", tempImagePaths.isEmpty());
+        String[] cachedFiles = cacheDir.list();
+        assertTrue("No image should remain in cache storage", cachedFiles == null || cachedFiles.length == 0);
+        verifyNoInteractions(callback);
     }
 
     @Test
@@ -145,10 +155,8 @@ public class ImageHandlerTest {
         // Add the path of the temp image to tempImagePaths
         tempImagePaths.add(tempImageFile1.getAbsolutePath());
 
-        // Create an empty list to hold the paths of moved images
-        List<String> imagePaths = new ArrayList<>();
-
-        imageHandler.moveImagesToInternalStorage(imagePaths);
+        // Store the image, the handler runs its tasks on the calling thread
+        List<String> imagePaths = imageHandler.storeImages().join();
 
         // Verify that the temp image file has been deleted
         assertFalse("Temp image file should be deleted", tempImageFile1.exists());
@@ -161,95 +169,271 @@ public class ImageHandlerTest {
     }
 
     @Test
-    public void testDeleteTemporaryImages() throws Exception {
+    public void testMoveMultipleImagesToInternalStorage() throws Exception {
         // Set up image files
         File tempImageFile1 = imageSetUp(1);
         File tempImageFile2 = imageSetUp(2);
+        File tempImageFile3 = imageSetUp(3);
 
         // Add the paths of the temp images to tempImagePaths
         tempImagePaths.add(tempImageFile1.getAbsolutePath());
         tempImagePaths.add(tempImageFile2.getAbsolutePath());
+        tempImagePaths.add(tempImageFile3.getAbsolutePath());
+
+        List<String> imagePaths = imageHandler.storeImages().join();
+
+        // Verify that every image has been moved to its own file in filesDir
+        assertEquals("Three images should be moved", 3, imagePaths.size());
+        assertEquals("Moved images should have distinct paths", 3, new HashSet<>(imagePaths).size());
+        assertTrue("tempImagePaths should be empty after moving", tempImagePaths.isEmpty());
+        for (int i = 0; i < imagePaths.size(); i++) {
+            File movedImageFile = new File(imagePaths.get(i));
+            assertEquals("Moved image should be stored in filesDir", filesDir, movedImageFile.getParentFile());
+            String content = new String(Files.readAllBytes(movedImageFile.toPath()));
+            assertEquals("Moved content should match original content", "Test Image " + (i + 1), content);
+        }
 
-        imageHandler.deleteTemporaryImages();
-
-        // Verify that the temp image files have been deleted
+        // Verify that the temp image files have been removed
         assertFalse("Temp image file 1 should be deleted", tempImageFile1.exists());
         assertFalse("Temp image file 2 should be deleted", tempImageFile2.exists());
+        assertFalse("Temp image file 3 should be deleted", tempImageFile3.exists());
+    }
 
-        // Verify that tempImagePaths is now empty
-        assertEquals("tempImagePaths should be empty after deletion", 0, tempImagePaths.size());
+    @Test
+    public void testMoveDuplicateImagesToInternalStorage() throws Exception {
+        // Set up two images with the same content, as when a photo is attached to several entries
+        File tempImageFile1 = imageSetUp(1);
+        File tempImageFile2 = new File(tempFolder.getRoot(), "copy1.jpg");
+        Files.copy(tempImageFile1.toPath(), tempImageFile2.toPath());
+        tempImagePaths.add(tempImageFile1.getAbsolutePath());
+
+        List<String> imagePaths = imageHandler.storeImages().join();
+
+        // Save the second image as another entry would
+        tempImagePaths.add(tempImageFile2.getAbsolutePath());
+        List<String> duplicateImagePaths = imageHandler.storeImages().join();
+
+        // Verify that both entries reference a single stored file named by the content hash
+        assertEquals("Duplicate image should reference the stored image", imagePaths, duplicateImagePaths);
+        File storedImageFile = new File(imagePaths.get(0));
+        assertEquals("Stored image should be named by its content hash",
+                "image_" + ContentHasher.hash(storedImageFile) + ".jpg", storedImageFile.getName());
+        String[] storedFiles = filesDir.list();
+        assertEquals("Only one copy should be stored", 1, storedFiles == null ? 0 : storedFiles.length);
+        assertFalse("Duplicate temp image should be deleted", tempImageFile2.exists());
+        assertTrue("tempImagePaths should be empty after moving", tempImagePaths.isEmpty());
     }
 
     @Test
-    public void testDeleteImagesRemovedFromOriginal() throws Exception {
-        // Set up original image files
-        File originalFile1 = imageSetUp(1);
-        File originalFile2 = imageSetUp(2);
-        File originalFile3 = imageSetUp(3);
+    public void testEditSessionReferencesOriginalImages() throws Exception {
+        // Store the images of an existing entry
+        tempImagePaths.add(imageSetUp(1).getAbsolutePath());
+        tempImagePaths.add(imageSetUp(2).getAbsolutePath());
+        List<String> originalImagePaths = imageHandler.storeImages().join();
+
+        // Edit the entry, removing one stored image and adding a new one
+        imageHandler.startEditSession(originalImagePaths);
+        assertEquals("Stored images should be referenced in place", originalImagePaths, tempImagePaths);
+        String removedImagePath = tempImagePaths.remove(0);
+        imageHandler.discardImage(removedImagePath);
+        File newImageFile = imageSetUp(3);
+        tempImagePaths.add(newImageFile.getAbsolutePath());
+
+        // Verify that the removal does not delete the stored image
+        assertTrue("Removed stored image should be kept until the entry is updated",
+                new File(removedImagePath).exists());
+
+        List<String> imagePaths = imageHandler.storeImages().join();
+
+        // Verify that the kept image is referenced unchanged and only the new image is stored
+        assertEquals("Entry should reference two images", 2, imagePaths.size());
+        assertEquals("Kept image should be referenced unchanged", originalImagePaths.get(1), imagePaths.get(0));
+        assertFalse("New temp image should be moved", newImageFile.exists());
+        assertTrue("New image should be stored", new File(imagePaths.get(1)).exists());
+        assertTrue("tempImagePaths should be empty after moving", tempImagePaths.isEmpty());
+    }
 
-        // Create list for originalImagePaths
-        List<String> originalImagePaths = new ArrayList<>();
-        originalImagePaths.add(originalFile1.getAbsolutePath());
-        originalImagePaths.add(originalFile2.getAbsolutePath());
-        originalImagePaths.add(originalFile3.getAbsolutePath());
+    @Test
+    public void testDeleteTemporaryImagesKeepsOriginalImages() throws Exception {
+        tempImagePaths.add(imageSetUp(1).getAbsolutePath());
+        List<String> originalImagePaths = imageHandler.storeImages().join();
+
+        // Abandon an edit that added an image
+        imageHandler.startEditSession(originalImagePaths);
+        File newImageFile = imageSetUp(2);
+        tempImagePaths.add(newImageFile.getAbsolutePath());
+        imageHandler.deleteTemporaryImages();
 
-        // Create list for savedImagePaths containing only two of the original files
-        List<String> savedImagePaths = new ArrayList<>();
-        savedImagePaths.add(originalFile1.getAbsolutePath());
-        savedImagePaths.add(originalFile3.getAbsolutePath());
+        // Verify that only the added image is deleted
+        assertTrue("Stored image should be kept", new File(originalImagePaths.get(0)).exists());
+        assertFalse("Added temp image should be deleted", newImageFile.exists());
+        assertTrue("tempImagePaths should be empty after deletion", tempImagePaths.isEmpty());
+    }
 
-        imageHandler.deleteImagesRemovedFromOriginal(originalImagePaths, savedImagePaths);
+    @Test
+    public void testStoreImages() throws Exception {
+        tempImagePaths.add(imageSetUp(1).getAbsolutePath());
+        List<String> originalImagePaths = imageHandler.storeImages().join();
+        imageHandler.startEditSession(originalImagePaths);
+        File newImageFile = imageSetUp(2);
+        tempImagePaths.add(newImageFile.getAbsolutePath());
+
+        CompletableFuture<List<String>> future = imageHandler.storeImages();
+
+        // Verify that the stored image is referenced in place and the new image is stored
+        List<String> imagePaths = future.join();
+        assertEquals("Entry should reference two images", 2, imagePaths.size());
+        assertEquals("Stored image should be referenced unchanged", originalImagePaths.get(0), imagePaths.get(0));
+        assertFalse("New temp image should be moved", newImageFile.exists());
+        assertTrue("New image should be stored", new File(imagePaths.get(1)).exists());
+        assertTrue("tempImagePaths should be empty after storing", tempImagePaths.isEmpty());
+    }
 
-        // Verify that originalFile2 has been deleted
-        assertFalse("originalFile2 should be deleted", originalFile2.exists());
+    @Test
+    public void testStoreImagesFailsWhenRejected() throws Exception {
+        File tempImageFile = imageSetUp(1);
+        tempImagePaths.add(tempImageFile.getAbsolutePath());
+        imageHandler = new ImageHandler(contentResolver, cacheDir, filesDir, tempImagePaths, imageVariants,
+                command -> { throw new RejectedExecutionException("Shut down"); }, Runnable::run);
+
+        CompletableFuture<List<String>> future = imageHandler.storeImages();
+
+        // Verify that the future fails instead of never completing, leaving the image to retry
+        assertTrue("Future should fail", future.isCompletedExceptionally());
+        assertEquals("Image should be kept", Collections.singletonList(tempImageFile.getAbsolutePath()), tempImagePaths);
+        assertTrue("Temp image should be kept", tempImageFile.exists());
+    }
 
-        // Verify that originalFile1 and originalFile3 still exist
-        assertTrue("originalFile1 should still exist", originalFile1.exists());
-        assertTrue("originalFile3 should still exist", originalFile3.exists());
+    @Test
+    public void testStoreImagesFailureKeepsStoredImages() throws Exception {
+        File tempImageFile = imageSetUp(1);
+        tempImagePaths.add(tempImageFile.getAbsolutePath());
+        // An invalid path makes storing the second image throw
+        tempImagePaths.add(null);
+
+        CompletableFuture<List<String>> future = imageHandler.storeImages();
+
+        // Verify that the future fails and the image stored before the error replaces its temporary copy
+        assertTrue("Future should fail", future.isCompletedExceptionally());
+        assertFalse("Temp image should be moved", tempImageFile.exists());
+        String storedImagePath = tempImagePaths.get(0);
+        assertTrue("Stored image should be shown", new File(storedImagePath).exists());
+        assertEquals("Stored image should be released if the entry is not saved",
+                Collections.singletonList(storedImagePath), imageHandler.getUnsavedStoredImagePaths());
+
+        // Verify that a retry without the invalid image references the stored image in place
+        tempImagePaths.remove(1);
+        assertEquals("Retry should reference the stored image", Collections.singletonList(storedImagePath),
+                imageHandler.storeImages().join());
     }
 
-    /*
-    * Edge test case for moving images to internal storage when tempImagePaths is empty
-    * */
     @Test
-    public void testMoveImagesToInternalStorageWithEmptyTempPaths() throws Exception {
-        // Ensure tempImagePaths is empty
-        tempImagePaths.clear();
+    public void testStoreImagesFailsForImageNotStored() throws Exception {
+        File tempImageFile = imageSetUp(1);
+        tempImagePaths.add(tempImageFile.getAbsolutePath());
+        // A temporary image that no longer exists cannot be stored
+        String missingImagePath = new File(cacheDir, "missing.jpg").getAbsolutePath();
+        tempImagePaths.add(missingImagePath);
+
+        CompletableFuture<List<String>> future = imageHandler.storeImages();
+
+        // Verify that the future fails instead of saving the entry without the image
+        assertTrue("Future should fail", future.isCompletedExceptionally());
+        assertEquals("Image that was not stored should still be shown", missingImagePath, tempImagePaths.get(1));
+        String storedImagePath = tempImagePaths.get(0);
+        assertTrue("Stored image should be shown", new File(storedImagePath).exists());
+        assertEquals("Stored image should be released if the entry is not saved",
+                Collections.singletonList(storedImagePath), imageHandler.getUnsavedStoredImagePaths());
+
+        // Verify that a retry without the missing image references the stored image in place
+        tempImagePaths.remove(missingImagePath);
+        assertEquals("Retry should reference the stored image", Collections.singletonList(storedImagePath),
+                imageHandler.storeImages().join());
+    }
+
+    @Test
+    public void testRestoreStoredImagesOfFailedSave() throws Exception {
+        tempImagePaths.add(imageSetUp(1).getAbsolutePath());
+        List<String> originalImagePaths = imageHandler.storeImages().join();
+
+        // Edit the entry, add an image and store the images for a save that fails
+        imageHandler.startEditSession(originalImagePaths);
+        tempImagePaths.add(imageSetUp(2).getAbsolutePath());
+        List<String> failedImagePaths = imageHandler.storeImages().join();
+        imageHandler.restoreStoredImages(failedImagePaths);
+
+        // Verify that only the image stored by the failed save is to be released
+        assertEquals("Images should be shown again", failedImagePaths, tempImagePaths);
+        assertEquals("Image stored by the failed save should be released",
+                failedImagePaths.subList(1, 2), imageHandler.getUnsavedStoredImagePaths());
+
+        // Verify that a retry references the stored images in place
+        assertEquals("Retry should reference the stored images", failedImagePaths, imageHandler.storeImages().join());
+
+        // Verify that abandoning the edit keeps the stored images for the repository to release
+        imageHandler.restoreStoredImages(failedImagePaths);
+        imageHandler.deleteTemporaryImages();
+        for (String imagePath : failedImagePaths) {
+            assertTrue("Stored image should be kept", new File(imagePath).exists());
+        }
+    }
 
-        // Create an empty list for moved image paths
-        List<String> imagePaths = new ArrayList<>();
+    @Test
+    public void testMoveImageVariantsToInternalStorage() throws Exception {
+        File tempImageFile1 = imageSetUp(1);
+        tempImagePaths.add(tempImageFile1.getAbsolutePath());
 
-        imageHandler.moveImagesToInternalStorage(imagePaths);
+        // Create a thumbnail variant next to the temp image
+        File tempThumbnail = ImageVariants.getVariantFile(tempImageFile1, ImageVariants.Variant.THUMBNAIL);
+        try (FileOutputStream fos = new FileOutputStream(tempThumbnail)) {
+            fos.write("Thumbnail 1".getBytes());
+        }
 
-        // Verify that imagePaths remains empty
-        assertTrue("imagePaths should remain empty when tempImagePaths is empty", imagePaths.isEmpty());
+        List<String> imagePaths = imageHandler.storeImages().join();
+
+        // Verify that the variant has been moved along with the image
+        assertEquals("One image should be moved", 1, imagePaths.size());
+        File movedThumbnail = ImageVariants.getVariantFile(new File(imagePaths.get(0)), ImageVariants.Variant.THUMBNAIL);
+        assertFalse("Temp thumbnail should be moved", tempThumbnail.exists());
+        assertEquals("Moved thumbnail content should match", "Thumbnail 1",
+                new String(Files.readAllBytes(movedThumbnail.toPath())));
+        assertEquals("The thumbnail should be selected for small views", movedThumbnail.getAbsolutePath(),
+                ImageVariants.selectImagePath(imagePaths.get(0), 200));
+        assertEquals("The original should be selected for views larger than every variant", imagePaths.get(0),
+                ImageVariants.selectImagePath(imagePaths.get(0), 4000));
     }
 
-    /*
-    * Edge test case for deleting when all images have been removed
-    * */
     @Test
-    public void testDeleteImagesRemovedFromOriginalWithAllImagesToDelete() throws Exception {
-        // Set up original image files
-        File originalFile1 = imageSetUp(1);
-        File originalFile2 = imageSetUp(2);
+    public void testDeleteTemporaryImages() throws Exception {
+        // Set up image files
+        File tempImageFile1 = imageSetUp(1);
+        File tempImageFile2 = imageSetUp(2);
 
-        // Create list for originalImagePaths
-        List<String> originalImagePaths = new ArrayList<>();
-        originalImagePaths.add(originalFile1.getAbsolutePath());
-        originalImagePaths.add(originalFile2.getAbsolutePath());
+        // Add the paths of the temp images to tempImagePaths
+        tempImagePaths.add(tempImageFile1.getAbsolutePath());
+        tempImagePaths.add(tempImageFile2.getAbsolutePath());
 
-        // Set savedImagePaths list as empty, indicating all images have been removed
-        List<String> savedImagePaths = new ArrayList<>();
+        imageHandler.deleteTemporaryImages();
 
-        // Verify that original files exist before deletion
-        assertTrue("originalFile1 should exist", originalFile1.exists());
-        assertTrue("originalFile2 should exist", originalFile2.exists());
+        // Verify that the temp image files have been deleted
+        assertFalse("Temp image file 1 should be deleted", tempImageFile1.exists());
+        assertFalse("Temp image file 2 should be deleted", tempImageFile2.exists());
 
-        imageHandler.deleteImagesRemovedFromOriginal(originalImagePaths, savedImagePaths);
+        // Verify that tempImagePaths is now empty
+        assertEquals("tempImagePaths should be empty after deletion", 0, tempImagePaths.size());
+    }
 
-        // Verify that both original files have been deleted
-        assertFalse("originalFile1 should be deleted", originalFile1.exists());
-        assertFalse("originalFile2 should be deleted", originalFile2.exists());
+    /*
+    * Edge test case for moving images to internal storage when tempImagePaths is empty
+    * */
+    @Test
+    public void testMoveImagesToInternalStorageWithEmptyTempPaths() throws Exception {
+        // Ensure tempImagePaths is empty
+        tempImagePaths.clear();
+
+        List<String> imagePaths = imageHandler.storeImages().join();
+
+        // Verify that imagePaths remains empty
+        assertTrue("imagePaths should remain empty when tempImagePaths is empty", imagePaths.isEmpty());
     }
 }
@@ -0,0 +1,244 @@
+package com.example.myapplication;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The JournalEntryBatchWriterTest class provides unit tests for the {@link JournalEntryBatchWriter} class
+ * using Mockito for mocking the database.
+ * <br>
+ * These tests ensure that writes submitted together are applied in a single transaction with the list methods
+ * of the DAO, that each write completes with its outcome, and that a failing write does not fail the others.
+ */
+public class JournalEntryBatchWriterTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private AppDatabase database;
+    private JournalEntryDao journalEntryDao;
+    // Tasks submitted to the executor, run explicitly by the tests
+    private final List<Runnable> tasks = new ArrayList<>();
+    private JournalEntryBatchWriter batchWriter;
+
+    @Before
+    public void setUp() {
+        database = mock(AppDatabase.class);
+        journalEntryDao = mock(JournalEntryDao.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(database).runInTransaction(any(Runnable.class));
+        batchWriter = new JournalEntryBatchWriter(database, journalEntryDao, tasks::add, 0);
+    }
+
+    /**
+     * Runs the tasks submitted to the executor.
+     */
+    private void runTasks() {
+        List<Runnable> pendingTasks = new ArrayList<>(tasks);
+        tasks.clear();
+        pendingTasks.forEach(Runnable::run);
+    }
+
+    /**
+     * Creates a journal entry with the given ID and image paths.
+     */
+    private static JournalEntryEntity createEntry(int id, String... imagePaths) {
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setId(id);
+        entry.setTitle("Entry " + id);
+        entry.setImagePaths(new ArrayList<>(Arrays.asList(imagePaths)));
+        return entry;
+    }
+
+    @Test
+    public void testCoalesceWritesIntoOneTransaction() {
+        JournalEntryEntity first = createEntry(0, "image1.jpg");
+        JournalEntryEntity second = createEntry(0);
+        JournalEntryEntity updated = createEntry(5);
+        JournalEntryEntity missing = createEntry(9);
+        when(journalEntryDao.insertEntries(anyList(), anyBoolean())).thenReturn(Arrays.asList(11L, 12L));
+        when(database.isContentCompressionEnabled()).thenReturn(true);
+        when(journalEntryDao.getExistingEntryIds(Collections.singletonList(5)))
+                .thenReturn(Collections.singletonList(5));
+        when(journalEntryDao.getExistingEntryIds(Collections.singletonList(9))).thenReturn(Collections.emptyList());
+
+        List<CompletableFuture<JournalEntryBatchWriter.Outcome>> futures = Arrays.asList(
+                batchWriter.insert(first),
+                batchWriter.insert(second),
+                batchWriter.update(updated),
+                batchWriter.delete(missing));
+        assertFalse("Writes should not complete before they are applied", futures.get(0).isDone());
+        runTasks();
+
+        // Verify that the writes were applied in one transaction, with the insertions in one call, in the
+        // storage mode of the database
+        verify(database, times(1)).runInTransaction(any(Runnable.class));
+        verify(journalEntryDao).insertEntries(Arrays.asList(first, second), true);
+        verify(journalEntryDao).updateEntries(Collections.singletonList(updated), true);
+        verify(journalEntryDao, never()).deleteEntries(anyList());
+
+        // Verify the outcome of each write
+        List<JournalEntryBatchWriter.Outcome> outcomes = new ArrayList<>();
+        for (CompletableFuture<JournalEntryBatchWriter.Outcome> future : futures) {
+            outcomes.add(future.join());
+        }
+        assertEquals(JournalEntryBatchWriter.Status.INSERTED, outcomes.get(0).getStatus());
+        assertEquals(11L, outcomes.get(0).getId());
+        assertEquals(12L, outcomes.get(1).getId());
+        assertEquals(JournalEntryBatchWriter.Status.UPDATED, outcomes.get(2).getStatus());
+        assertEquals(JournalEntryBatchWriter.Status.NOT_FOUND, outcomes.get(3).getStatus());
+    }
+
+    @Test
+    public void testFailingWriteDoesNotFailOthers() {
+        JournalEntryEntity valid = createEntry(0);
+        JournalEntryEntity invalid = createEntry(0);
+        when(journalEntryDao.insertEntries(anyList(), anyBoolean())).thenAnswer(invocation -> {
+            List<JournalEntryEntity> entries = invocation.getArgument(0);
+            if (entries.contains(invalid)) {
+                throw new IllegalStateException("Constraint failed");
+            }
+            return Collections.singletonList(21L);
+        });
+
+        CompletableFuture<List<JournalEntryBatchWriter.Outcome>> future =
+                batchWriter.insertAll(Arrays.asList(valid, invalid));
+        runTasks();
+        List<JournalEntryBatchWriter.Outcome> outcomes = future.join();
+
+        // Verify that the batch was applied again one write at a time
+        verify(database, times(3)).runInTransaction(any(Runnable.class));
+        assertEquals(JournalEntryBatchWriter.Status.INSERTED, outcomes.get(0).getStatus());
+        assertEquals(21L, outcomes.get(0).getId());
+        assertEquals(JournalEntryBatchWriter.Status.FAILED, outcomes.get(1).getStatus());
+        assertNotNull(outcomes.get(1).getError());
+    }
+
+    @Test
+    public void testFailedWriteCompletesExceptionally() {
+        IllegalStateException error = new IllegalStateException("Disk full");
+        when(journalEntryDao.insertEntries(anyList(), anyBoolean())).thenThrow(error);
+
+        CompletableFuture<JournalEntryBatchWriter.Outcome> future = batchWriter.insert(createEntry(0));
+        runTasks();
+
+        // Verify that the error of the write is carried by the future
+        try {
+            future.join();
+            fail("Failed write should complete exceptionally");
+        } catch (CompletionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void testUpdateRewritesOnlyChangedImages() {
+        JournalEntryEntity unchanged = createEntry(1, "a.jpg");
+        JournalEntryEntity changed = createEntry(2, "b.jpg");
+        when(journalEntryDao.getExistingEntryIds(anyList())).thenReturn(Arrays.asList(1, 2));
+        when(journalEntryDao.getImagesForEntries(anyList())).thenReturn(Arrays.asList(
+                JournalEntryDao.toImageEntities(1, Collections.singletonList("a.jpg"), 0).get(0),
+                JournalEntryDao.toImageEntities(2, Arrays.asList("b.jpg", "c.jpg"), 0).get(0),
+                JournalEntryDao.toImageEntities(2, Arrays.asList("b.jpg", "c.jpg"), 0).get(1)));
+        when(journalEntryDao.countImageReferences(anyString())).thenReturn(1);
+
+        batchWriter.updateAll(Arrays.asList(unchanged, changed));
+        runTasks();
+
+        // Verify that only the images of the changed entry were replaced
+        verify(journalEntryDao).updateEntries(Arrays.asList(unchanged, changed), false);
+        verify(journalEntryDao).deleteImagesForEntries(Collections.singletonList(2));
+        verify(journalEntryDao).insertImages(anyList());
+        // Verify that only the removed image is released
+        verify(journalEntryDao).countImageReferences("c.jpg");
+        verify(journalEntryDao, times(1)).countImageReferences(anyString());
+    }
+
+    @Test
+    public void testRepeatedUpdatesReleaseImagesOfEachVersion() {
+        // The entry is stored with one image, then updated twice in the same batch
+        JournalEntryEntity firstUpdate = createEntry(1, "a.jpg", "b.jpg");
+        JournalEntryEntity secondUpdate = createEntry(1, "a.jpg");
+        when(journalEntryDao.getExistingEntryIds(anyList())).thenReturn(Collections.singletonList(1));
+        when(journalEntryDao.getImagesForEntries(anyList())).thenReturn(
+                JournalEntryDao.toImageEntities(1, Collections.singletonList("a.jpg"), 0));
+        when(journalEntryDao.countImageReferences(anyString())).thenReturn(1);
+
+        batchWriter.updateAll(Arrays.asList(firstUpdate, secondUpdate));
+        runTasks();
+
+        // Verify that the image added by the first update and removed by the second one is released
+        verify(journalEntryDao).countImageReferences("b.jpg");
+        verify(journalEntryDao, times(1)).countImageReferences(anyString());
+        // Verify that the images of the last update are stored
+        ArgumentCaptor<List<JournalImageEntity>> images = ArgumentCaptor.forClass(List.class);
+        verify(journalEntryDao).insertImages(images.capture());
+        assertEquals(1, images.getValue().size());
+        assertEquals("a.jpg", images.getValue().get(0).getPath());
+    }
+
+    @Test
+    public void testReleaseChecksImageReferences() {
+        when(journalEntryDao.countImageReferences("saved.jpg")).thenReturn(1);
+
+        batchWriter.release(Arrays.asList("saved.jpg", "unsaved.jpg"));
+        // Verify that the release runs on the executor
+        verify(journalEntryDao, never()).countImageReferences(anyString());
+        runTasks();
+
+        verify(journalEntryDao).countImageReferences("saved.jpg");
+        verify(journalEntryDao).countImageReferences("unsaved.jpg");
+    }
+
+    @Test
+    public void testReleaseKeepsRecentlyStoredImages() throws Exception {
+        File releasedImage = tempFolder.newFile("released.jpg");
+        File storedImage = tempFolder.newFile("stored.jpg");
+        File referencedImage = tempFolder.newFile("referenced.jpg");
+        long releasedTime = System.currentTimeMillis() - ImageHandler.RELEASE_GRACE_PERIOD_MS - 1000;
+        assertTrue(releasedImage.setLastModified(releasedTime));
+        assertTrue(referencedImage.setLastModified(releasedTime));
+        // The second image was just stored for an entry that is not saved yet
+        assertTrue(ImageHandler.reuseStoredImage(storedImage));
+        when(journalEntryDao.countImageReferences(referencedImage.getAbsolutePath())).thenReturn(1);
+
+        batchWriter.release(Arrays.asList(releasedImage.getAbsolutePath(), storedImage.getAbsolutePath(),
+                referencedImage.getAbsolutePath()));
+        runTasks();
+
+        // Verify that only the unreferenced image stored before the grace period is deleted
+        assertFalse("Released image should be deleted", releasedImage.exists());
+        assertTrue("Recently stored image should be kept", storedImage.exists());
+        assertTrue("Referenced image should be kept", referencedImage.exists());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The JournalEntryCacheTest class provides unit tests for the {@link JournalEntryCache} class.
+ * <br>
+ * These tests ensure that written entries are removed, that the least recently used entries are evicted once
+ * the cache is full, and that lookups are counted in the hit rate.
+ */
+public class JournalEntryCacheTest {
+
+    private static JournalEntryEntity entry(int id, String content) {
+        JournalEntryEntity entry = new JournalEntryEntity();
+        entry.setId(id);
+        entry.setTitle("Entry " + id);
+        entry.setContent(content);
+        entry.setImagePaths(Collections.singletonList("image" + id + ".jpg"));
+        return entry;
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        JournalEntryCache cache = new JournalEntryCache(10_000);
+        JournalEntryEntity first = entry(1, "First content");
+        cache.put(first);
+
+        assertSame(first, cache.get(1));
+        assertNull(cache.get(2));
+        assertSame(first, cache.get(1));
+        assertEquals(2, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2.0 / 3, cache.getHitRate(), 0.001);
+
+        // A reloaded entry replaces the cached version
+        JournalEntryEntity reloaded = entry(1, "Edited content");
+        cache.put(reloaded);
+        assertSame(reloaded, cache.get(1));
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void testRemoveWrittenEntries() {
+        JournalEntryCache cache = new JournalEntryCache(10_000);
+        JournalEntryEntity first = entry(1, "First content");
+        JournalEntryEntity second = entry(2, "Second content");
+        cache.put(first);
+        cache.put(second);
+        cache.put(entry(3, "Third content"));
+        int size = cache.getSize();
+
+        cache.remove(3);
+        assertNull(cache.get(3));
+        cache.removeAll(Arrays.asList(first, entry(4, "Not cached")));
+        assertNull(cache.get(1));
+        assertSame(second, cache.get(2));
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(size * 1.0 / 3, cache.getSize(), size / 10.0);
+
+        cache.clear();
+        assertNull(cache.get(2));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEvictLeastRecentlyUsed() {
+        String content = "x".repeat(1000);
+        JournalEntryCache cache = new JournalEntryCache(3500);
+        cache.put(entry(1, content));
+        cache.put(entry(2, content));
+        cache.put(entry(3, content));
+        // Entry 1 is used again, so entry 2 is evicted first
+        cache.get(1);
+        cache.put(entry(4, content));
+
+        assertNull(cache.get(2));
+        assertEquals(content, cache.get(1).getContent());
+        assertEquals(content, cache.get(3).getContent());
+        assertEquals(content, cache.get(4).getContent());
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(3, cache.getEntryCount());
+
+        // An entry larger than the cache is not cached and keeps the cached entries
+        cache.put(entry(5, "x".repeat(5000)));
+        assertNull(cache.get(5));
+        assertEquals(3, cache.getEntryCount());
+    }
+}
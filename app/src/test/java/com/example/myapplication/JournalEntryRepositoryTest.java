@@ -0,0 +1,30 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * The JournalEntryRepositoryTest class provides unit tests for the search queries built by the
+ * {@link JournalEntryRepository} class.
+ * <br>
+ * These tests ensure that each word entered by the user is matched as a prefix, and that characters with a
+ * special meaning in FTS queries are dropped.
+ */
+public class JournalEntryRepositoryTest {
+
+    @Test
+    public void testBuildMatchQueryFromWords() {
+        assertEquals("\"beach*\"", JournalEntryRepository.buildMatchQuery("beach"));
+        assertEquals("\"Summer*\" \"2024*\" \"beach*\"", JournalEntryRepository.buildMatchQuery("  Summer 2024, beach "));
+        assertEquals("\"café*\" \"日記*\"", JournalEntryRepository.buildMatchQuery("café 日記"));
+    }
+
+    @Test
+    public void testBuildMatchQueryDropsSpecialCharacters() {
+        assertEquals("\"beach*\" \"OR*\" \"sea*\"", JournalEntryRepository.buildMatchQuery("\"beach\" OR -sea*"));
+        assertEquals("\"title*\" \"day*\"", JournalEntryRepository.buildMatchQuery("title:day"));
+        assertEquals("", JournalEntryRepository.buildMatchQuery(""));
+        assertEquals("", JournalEntryRepository.buildMatchQuery(" \"*-: "));
+    }
+}
@@ -3,19 +3,31 @@ package com.example.myapplication;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import android.app.Application;
 
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.room.InvalidationTracker;
+
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
 /**
  * The JournalEntryViewModelTest class provides unit tests for the {@link JournalEntryViewModel} class
  * using Mockito for mocking dependencies.
@@ -26,6 +38,10 @@ import org.mockito.junit.MockitoJUnitRunner;
 
 @RunWith(MockitoJUnitRunner.class)
 public class JournalEntryViewModelTest {
+    // Executes LiveData updates synchronously
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
     @Mock
     private JournalEntryRepository mockRepository;
     @Mock
@@ -129,5 +145,33 @@ public class JournalEntryViewModelTest {
         JournalEntryEntity capturedEntry = argumentCaptor.getValue();
         assertNotEquals("Entry should not be updated", 9999, capturedEntry.getId());
     }
-}
 
+    @Test
+    public void testLoadNextPageAfterLastLoadedEntry() {
+        // Arrange
+        List<JournalEntrySummary> firstPage = new ArrayList<>();
+        for (int i = 0; i < JournalEntryViewModel.PAGE_SIZE; i++) {
+            JournalEntrySummary pageEntry = new JournalEntrySummary();
+            pageEntry.setId(JournalEntryViewModel.PAGE_SIZE - i);
+            pageEntry.setDate(1000L - i);
+            firstPage.add(pageEntry);
+        }
+        when(mockRepository.observeEntryChanges(any())).thenReturn(mock(InvalidationTracker.Observer.class));
+        // Return the first page synchronously when it is requested
+        doAnswer(invocation -> {
+            Consumer<List<JournalEntrySummary>> callback = invocation.getArgument(2);
+            callback.accept(firstPage);
+            return null;
+        }).when(mockRepository).loadEntriesPage(isNull(), eq(JournalEntryViewModel.PAGE_SIZE), any());
+
+        // Act
+        List<JournalEntrySummary> loadedEntries = viewModel.getPagedEntries().getValue();
+        viewModel.loadNextPage();
+
+        // Assert
+        assertEquals("First page should be loaded",
+                JournalEntryViewModel.PAGE_SIZE, loadedEntries == null ? 0 : loadedEntries.size());
+        JournalEntrySummary lastEntry = firstPage.get(firstPage.size() - 1);
+        verify(mockRepository).loadEntriesPage(eq(lastEntry), eq(JournalEntryViewModel.PAGE_SIZE), any());
+    }
+}
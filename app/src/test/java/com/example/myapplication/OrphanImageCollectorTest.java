@@ -0,0 +1,175 @@
+package com.example.myapplication;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The OrphanImageCollectorTest class provides unit tests for the {@link OrphanImageCollector} class.
+ * <br>
+ * These tests ensure that only unreferenced images older than the grace period are deleted,
+ * and that a stopped sweep resumes from its saved position without checking files again.
+ * */
+public class OrphanImageCollectorTest {
+
+    private File filesDir;
+    private File cacheDir;
+    private File stateFile;
+    private JournalEntryDao journalEntryDao;
+    // Paths of the images referenced by entries
+    private final Set<String> referencedPaths = new HashSet<>();
+    // Paths of the images checked against the database
+    private final List<String> checkedPaths = new ArrayList<>();
+    private long now;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        filesDir = tempFolder.newFolder("files");
+        cacheDir = tempFolder.newFolder("cache");
+        stateFile = new File(tempFolder.newFolder("state"), OrphanImageCollector.STATE_FILE);
+        now = System.currentTimeMillis();
+
+        journalEntryDao = mock(JournalEntryDao.class);
+        when(journalEntryDao.getReferencedImagePaths(anyList())).thenAnswer(invocation -> {
+            List<String> paths = invocation.getArgument(0);
+            checkedPaths.addAll(paths);
+            List<String> referenced = new ArrayList<>(paths);
+            referenced.retainAll(referencedPaths);
+            return referenced;
+        });
+    }
+
+    /**
+     * Creates a collector using the test directories and clock.
+     */
+    private OrphanImageCollector createCollector() {
+        return new OrphanImageCollector(journalEntryDao, filesDir, cacheDir, stateFile, () -> now);
+    }
+
+    /**
+     * Creates an image file older than the grace period.
+     *
+     * @param directory The directory of the file.
+     * @param name The name of the file.
+     * @param age The age of the file beyond the grace period, in milliseconds.
+     * @return The created file.
+     * @throws IOException If the file cannot be written.
+     */
+    private File createImage(File directory, String name, long age) throws IOException {
+        File file = new File(directory, name);
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(("Image " + name).getBytes());
+        }
+        assertTrue(file.setLastModified(now - OrphanImageCollector.GRACE_PERIOD_MS - age));
+        return file;
+    }
+
+    @Test
+    public void testCollectUnreferencedImages() throws Exception {
+        File referencedImage = createImage(filesDir, "image_a.jpg", 1000);
+        File referencedVariant = createImage(filesDir, "image_a_thumb.jpg", 1000);
+        File orphanImage = createImage(filesDir, "image_b.jpg", 1000);
+        File orphanVariant = createImage(filesDir, "image_b_thumb.jpg", 1000);
+        File tempImage = createImage(cacheDir, "temp_image_1.jpg", 1000);
+        File thumbnail = createImage(tempFolder.newFolder("cache", "thumbnails"), "thumb.jpg", 1000);
+        referencedPaths.add(referencedImage.getAbsolutePath());
+        long orphanBytes = orphanImage.length() + orphanVariant.length() + tempImage.length();
+
+        OrphanImageCollector.Result result = createCollector().collect();
+
+        // Verify that only unreferenced images are deleted, together with their variants
+        assertTrue("Sweep should be complete", result.isComplete());
+        assertEquals("Three files should be deleted", 3, result.getDeletedFileCount());
+        assertEquals("Reclaimed bytes should match the deleted files", orphanBytes, result.getReclaimedBytes());
+        assertTrue("Referenced image should be kept", referencedImage.exists());
+        assertTrue("Variant of a referenced image should be kept", referencedVariant.exists());
+        assertFalse("Orphan image should be deleted", orphanImage.exists());
+        assertFalse("Variant of an orphan image should be deleted", orphanVariant.exists());
+        assertFalse("Temp image should be deleted", tempImage.exists());
+        assertTrue("Files of other caches should be kept", thumbnail.exists());
+    }
+
+    @Test
+    public void testKeepImagesWithinGracePeriod() throws Exception {
+        File newImage = createImage(cacheDir, "temp_image_1.jpg", -1000);
+
+        assertEquals("New image should not be deleted", 0, createCollector().collect().getDeletedFileCount());
+        assertTrue("New image should be kept", newImage.exists());
+
+        // Collect the image once it is older than the grace period
+        now += 2000;
+        assertEquals("Old image should be deleted", 1, createCollector().collect().getDeletedFileCount());
+        assertFalse("Old image should be deleted", newImage.exists());
+    }
+
+    @Test
+    public void testResumeStoppedSweep() throws Exception {
+        int imageCount = OrphanImageCollector.BATCH_SIZE + 10;
+        for (int i = 0; i < imageCount; i++) {
+            createImage(filesDir, String.format("image_%03d.jpg", i), imageCount - i);
+        }
+
+        // Stop the sweep while its first batch is checked
+        OrphanImageCollector collector = createCollector();
+        when(journalEntryDao.getReferencedImagePaths(anyList())).thenAnswer(invocation -> {
+            collector.stop();
+            List<String> paths = invocation.getArgument(0);
+            checkedPaths.addAll(paths);
+            return Collections.emptyList();
+        });
+        OrphanImageCollector.Result result = collector.collect();
+
+        assertFalse("Stopped sweep should not be complete", result.isComplete());
+        assertEquals("First batch should be deleted", OrphanImageCollector.BATCH_SIZE, result.getDeletedFileCount());
+
+        // Resume the sweep with a new collector, as a rescheduled job would
+        result = createCollector().collect();
+
+        assertTrue("Resumed sweep should be complete", result.isComplete());
+        assertEquals("Remaining images should be deleted", 10, result.getDeletedFileCount());
+        assertEquals("Each image should be checked once", imageCount, checkedPaths.size());
+        assertEquals("Each image should be checked once", imageCount, new HashSet<>(checkedPaths).size());
+    }
+
+    @Test
+    public void testSkipCheckedImages() throws Exception {
+        File referencedImage = createImage(filesDir, "image_a.jpg", 1000);
+        referencedPaths.add(referencedImage.getAbsolutePath());
+        createCollector().collect();
+
+        // Verify that a second sweep does not check the images again
+        OrphanImageCollector.Result result = createCollector().collect();
+        assertTrue("Sweep should be complete", result.isComplete());
+        verify(journalEntryDao, times(1)).getReferencedImagePaths(anyList());
+
+        // Verify that only an image added since is checked
+        File addedImage = createImage(filesDir, "image_b.jpg", 0);
+        result = createCollector().collect();
+        assertEquals("Added image should be deleted", 1, result.getDeletedFileCount());
+        assertFalse("Added image should be deleted", addedImage.exists());
+        assertEquals("Only the added image should be checked again",
+                List.of(referencedImage.getAbsolutePath(), addedImage.getAbsolutePath()), checkedPaths);
+    }
+}
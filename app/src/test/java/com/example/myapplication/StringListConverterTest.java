@@ -0,0 +1,100 @@
+package com.example.myapplication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The StringListConverterTest class provides unit tests for the {@link StringListConverter} class.
+ * <br>
+ * These tests ensure that the converter produces the same JSON as the Gson-based converter used to
+ * store image paths in the version 3 schema, and that it reads back everything Gson wrote.
+ */
+public class StringListConverterTest {
+
+    private final Gson gson = new Gson();
+    private final Type listType = new TypeToken<List<String>>() {}.getType();
+
+    /**
+     * Creates lists of strings covering image paths and every character class escaped by Gson.
+     *
+     * @return List of test lists.
+     */
+    private List<List<String>> testLists() {
+        StringBuilder allChars = new StringBuilder();
+        for (char c = 0; c < 0x100; c++) {
+            allChars.append(c);
+        }
+        allChars.append("\u2028\u2029\u00e9\u4e2d\ud83d\ude00");
+
+        List<List<String>> lists = new ArrayList<>();
+        lists.add(new ArrayList<>());
+        lists.add(Collections.singletonList(""));
+        lists.add(Arrays.asList("/data/user/0/com.example.myapplication/files/image_1700000000000.jpg",
+                "/data/user/0/com.example.myapplication/files/image_1700000000001.jpg"));
+        lists.add(Arrays.asList("quote\"s", "back\\slash", "tab\tnew\nline", "<b>&amp;='x'</b>"));
+        lists.add(Arrays.asList("a", null, "b"));
+        lists.add(Collections.singletonList(allChars.toString()));
+        return lists;
+    }
+
+    @Test
+    public void testFromStringListMatchesGson() {
+        for (List<String> list : testLists()) {
+            assertEquals("Encoded JSON should be identical to Gson output",
+                    gson.toJson(list), StringListConverter.fromStringList(list));
+        }
+    }
+
+    @Test
+    public void testToStringListReadsGsonOutput() {
+        for (List<String> list : testLists()) {
+            assertEquals("Gson output should be decoded to the original list",
+                    list, StringListConverter.toStringList(gson.toJson(list)));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        for (List<String> list : testLists()) {
+            String json = StringListConverter.fromStringList(list);
+            assertEquals("Converted list should round-trip", list, StringListConverter.toStringList(json));
+            assertEquals("Gson should read the converted JSON", list, gson.fromJson(json, listType));
+        }
+    }
+
+    @Test
+    public void testToStringListWithWhitespaceAndEscapes() {
+        List<String> list = StringListConverter.toStringList(" [ \"a\\/b\" , \"\\u00e9\" ] ");
+        assertEquals(Arrays.asList("a/b", "\u00e9"), list);
+    }
+
+    /*
+     * Edge test case for null and empty values, which Gson converts to a null list
+     */
+    @Test
+    public void testNullValues() {
+        assertNull(StringListConverter.fromStringList(null));
+        assertNull(StringListConverter.toStringList(null));
+        assertNull(StringListConverter.toStringList(""));
+        assertNull(StringListConverter.toStringList("null"));
+    }
+
+    /*
+     * Edge test case for malformed JSON
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testToStringListWithMalformedJson() {
+        StringListConverter.toStringList("[\"unterminated");
+    }
+}
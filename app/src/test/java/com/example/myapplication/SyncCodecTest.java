@@ -0,0 +1,100 @@
+package com.example.myapplication;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The SyncCodecTest class provides unit tests for the {@link SyncCodec} class.
+ * <br>
+ * These tests ensure that every kind of change is decoded as it was encoded, that batches are compressed,
+ * and that corrupted input is rejected.
+ */
+public class SyncCodecTest {
+
+    private static SyncChange change(String uuid, String content) {
+        SyncChange change = new SyncChange();
+        change.setUuid(uuid);
+        change.setRevision(42);
+        change.setUpdatedAt(1_700_000_000_000L);
+        change.setTitle("Title é😀");
+        change.setContent(content);
+        change.setDate(1_690_000_000_000L);
+        change.setImageNames(Arrays.asList("image_a.jpg", "image_b.jpg"));
+        return change;
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        SyncChange updated = change("first", null);
+        SyncChange deleted = new SyncChange();
+        deleted.setUuid("second");
+        deleted.setRevision(7);
+        deleted.setDeleted(true);
+        deleted.setUpdatedAt(123);
+        SyncChange accepted = new SyncChange();
+        accepted.setStatus(SyncChange.Status.ACCEPTED);
+        accepted.setUuid("third");
+        accepted.setRevision(8);
+        SyncChange conflict = change("fourth", "Remote content");
+        conflict.setStatus(SyncChange.Status.CONFLICT);
+
+        SyncCodec.Batch batch = SyncCodec.decode(SyncCodec.encode(
+                new SyncCodec.Batch(Arrays.asList(updated, deleted, accepted, conflict), 99, true)));
+
+        assertEquals(99, batch.getCursor());
+        assertTrue(batch.hasMore());
+        List<SyncChange> changes = batch.getChanges();
+        assertEquals(4, changes.size());
+        SyncChange first = changes.get(0);
+        assertEquals(SyncChange.Status.CHANGE, first.getStatus());
+        assertEquals("first", first.getUuid());
+        assertEquals(42, first.getRevision());
+        assertEquals(1_700_000_000_000L, first.getUpdatedAt());
+        assertEquals("Title é😀", first.getTitle());
+        assertNull(first.getContent());
+        assertEquals(1_690_000_000_000L, first.getDate());
+        assertEquals(Arrays.asList("image_a.jpg", "image_b.jpg"), first.getImageNames());
+        assertTrue(changes.get(1).isDeleted());
+        assertEquals(123, changes.get(1).getUpdatedAt());
+        assertEquals(SyncChange.Status.ACCEPTED, changes.get(2).getStatus());
+        assertEquals(8, changes.get(2).getRevision());
+        assertEquals(SyncChange.Status.CONFLICT, changes.get(3).getStatus());
+        assertEquals("Remote content", changes.get(3).getContent());
+    }
+
+    @Test
+    public void testCompressLongContent() throws IOException {
+        // Content longer than the 64 KB limit of modified UTF-8 strings, with repetitive text
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 200_000) {
+            content.append("Today I wrote in my journal. ");
+        }
+        List<SyncChange> changes = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            changes.add(change("entry-" + i, content.toString()));
+        }
+        byte[] encoded = SyncCodec.encode(new SyncCodec.Batch(changes, 0, false));
+
+        assertTrue(encoded.length < content.length() / 10);
+        SyncCodec.Batch batch = SyncCodec.decode(encoded);
+        assertFalse(batch.hasMore());
+        assertEquals(content.toString(), batch.getChanges().get(9).getContent());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectCorruptedBatch() throws IOException {
+        byte[] encoded = SyncCodec.encode(new SyncCodec.Batch(
+                Collections.singletonList(change("entry", "content")), 0, false));
+        SyncCodec.decode(Arrays.copyOf(encoded, encoded.length / 2));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.myapplication;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The ThumbnailDiskCacheTest class provides unit tests for the {@link ThumbnailDiskCache} class.
+ * <br>
+ * These tests ensure that thumbnails are keyed by content, evicted in least recently used order,
+ * and restored from the journal when the cache is opened again.
+ * */
+public class ThumbnailDiskCacheTest {
+
+    // Size of each thumbnail written in the tests
+    private static final int THUMBNAIL_SIZE = 40;
+
+    private File cacheDir;
+    private ThumbnailDiskCache cache;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = new File(tempFolder.getRoot(), "thumbnails");
+        // Allow two thumbnails in the cache
+        cache = new ThumbnailDiskCache(cacheDir, 2 * THUMBNAIL_SIZE);
+    }
+
+    /**
+     * Adds a thumbnail with dummy content to a cache.
+     *
+     * @param cache The cache to add the thumbnail to.
+     * @param key The key of the thumbnail.
+     * @throws IOException If the thumbnail cannot be written.
+     */
+    private void putThumbnail(ThumbnailDiskCache cache, String key) throws IOException {
+        File tempFile = cache.createTempFile();
+        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+            fos.write(new byte[THUMBNAIL_SIZE]);
+        }
+        cache.put(key, tempFile);
+    }
+
+    @Test
+    public void testKeyDependsOnContentAndSize() throws Exception {
+        File image1 = tempFolder.newFile("image1.jpg");
+        File image2 = tempFolder.newFile("image2.jpg");
+        Files.write(image1.toPath(), "Test Image".getBytes());
+        Files.write(image2.toPath(), "Test Image".getBytes());
+
+        // Images with the same content share their thumbnails
+        assertEquals(cache.getKey(image1, 256), cache.getKey(image2, 256));
+        assertNotEquals(cache.getKey(image1, 256), cache.getKey(image1, 512));
+
+        // The key changes with the content of the image
+        Files.write(image2.toPath(), "Other Image".getBytes());
+        assertTrue(image2.setLastModified(image2.lastModified() + 1000));
+        assertNotEquals(cache.getKey(image1, 256), cache.getKey(image2, 256));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedThumbnailIsEvicted() throws Exception {
+        putThumbnail(cache, "a_256");
+        putThumbnail(cache, "b_256");
+
+        // Reading the first thumbnail makes the second one the least recently used
+        assertNotNull(cache.get("a_256"));
+        putThumbnail(cache, "c_256");
+
+        assertNotNull("Recently read thumbnail should be kept", cache.get("a_256"));
+        assertNull("Least recently used thumbnail should be evicted", cache.get("b_256"));
+        assertNotNull("New thumbnail should be cached", cache.get("c_256"));
+        assertFalse("Evicted thumbnail file should be deleted", new File(cacheDir, "b_256.jpg").exists());
+        assertEquals(2 * THUMBNAIL_SIZE, cache.size());
+    }
+
+    @Test
+    public void testThumbnailsAreRestoredFromJournal() throws Exception {
+        putThumbnail(cache, "a_256");
+        putThumbnail(cache, "b_256");
+        assertNotNull(cache.get("a_256"));
+        // Leave a partially written thumbnail, as after a crash
+        File tempFile = cache.createTempFile();
+        Files.write(tempFile.toPath(), new byte[10]);
+
+        // Open the cache again, as in a new process
+        ThumbnailDiskCache reopened = new ThumbnailDiskCache(cacheDir, 2 * THUMBNAIL_SIZE);
+        assertEquals(2 * THUMBNAIL_SIZE, reopened.size());
+        assertFalse("Partially written thumbnail should be deleted", tempFile.exists());
+
+        // The access order is restored, so the thumbnail not read since it was added is evicted first
+        putThumbnail(reopened, "c_256");
+        assertNotNull(reopened.get("a_256"));
+        assertNull(reopened.get("b_256"));
+    }
+
+    @Test
+    public void testMissingThumbnailFileIsDropped() throws Exception {
+        putThumbnail(cache, "a_256");
+        assertTrue(new File(cacheDir, "a_256.jpg").delete());
+
+        assertNull("Thumbnail without a file should not be returned", cache.get("a_256"));
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.ImageHandler;
+import com.example.myapplication.ImageVariants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for the file operations of {@link ImageHandler} on real temporary directories.
+ * <br>
+ * Each operation handles the maximum of 5 images per entry, with image files from 100 KB to 20 MB.
+ * Images are stored when they are new, when their content is already stored, and when an edited entry
+ * is saved with its stored images.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ImageHandlerBenchmark {
+
+    // Number of images handled per operation
+    private static final int IMAGE_COUNT = 5;
+
+    // Size of each image file in bytes
+    @Param({"102400", "2097152", "20971520"})
+    public int fileSize;
+
+    private File rootDir;
+    private File sourceDir;
+    private File cacheDir;
+    private File filesDir;
+    private List<String> sourceImagePaths;
+
+    /**
+     * Images newly selected for an entry, staged in the cache directory.
+     */
+    @State(Scope.Thread)
+    public static class NewImages {
+        private ImageHandler imageHandler;
+
+        @Setup(Level.Invocation)
+        public void setUp(ImageHandlerBenchmark benchmark) throws IOException {
+            imageHandler = benchmark.createImageHandler(benchmark.stageImages());
+        }
+    }
+
+    /**
+     * Images selected for an entry whose content is already stored, as when the same photos are attached
+     * to another entry.
+     */
+    @State(Scope.Thread)
+    public static class DuplicateImages {
+        private ImageHandler imageHandler;
+
+        @Setup(Level.Invocation)
+        public void setUp(ImageHandlerBenchmark benchmark) throws IOException {
+            benchmark.createImageHandler(benchmark.stageImages()).storeImages().join();
+            imageHandler = benchmark.createImageHandler(benchmark.stageImages());
+        }
+    }
+
+    /**
+     * An edit session of an entry whose stored images are saved again without changes.
+     */
+    @State(Scope.Thread)
+    public static class EditSession {
+        private ImageHandler imageHandler;
+
+        @Setup(Level.Invocation)
+        public void setUp(ImageHandlerBenchmark benchmark) throws IOException {
+            List<String> storedImagePaths = benchmark.createImageHandler(benchmark.stageImages())
+                    .storeImages().join();
+            imageHandler = benchmark.createImageHandler(new ArrayList<>());
+            imageHandler.startEditSession(storedImagePaths);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUpTrial() throws IOException {
+        rootDir = Files.createTempDirectory("image-handler-benchmark").toFile();
+        sourceDir = createDirectory("source");
+        cacheDir = createDirectory("cache");
+        filesDir = createDirectory("files");
+
+        // Create image files with random content
+        Random random = new Random(42);
+        byte[] content = new byte[fileSize];
+        sourceImagePaths = new ArrayList<>();
+        for (int i = 0; i < IMAGE_COUNT; i++) {
+            random.nextBytes(content);
+            File image = new File(sourceDir, "image_" + i + ".jpg");
+            try (OutputStream out = new FileOutputStream(image)) {
+                out.write(content);
+            }
+            sourceImagePaths.add(image.getAbsolutePath());
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        deleteContents(cacheDir);
+        deleteContents(filesDir);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDownTrial() {
+        deleteContents(sourceDir);
+        deleteContents(rootDir);
+        rootDir.delete();
+    }
+
+    @Benchmark
+    public List<String> storeImages(NewImages state) {
+        return state.imageHandler.storeImages().join();
+    }
+
+    @Benchmark
+    public List<String> storeDuplicateImages(DuplicateImages state) {
+        return state.imageHandler.storeImages().join();
+    }
+
+    @Benchmark
+    public List<String> storeEditedImages(EditSession state) {
+        return state.imageHandler.storeImages().join();
+    }
+
+    /**
+     * Stages copies of the images in the cache directory, as after selecting them for an entry.
+     *
+     * @return The list of the paths of the staged images.
+     */
+    private List<String> stageImages() throws IOException {
+        List<String> stagedImagePaths = new ArrayList<>();
+        for (String sourceImagePath : sourceImagePaths) {
+            File stagedImage = File.createTempFile("staged_image_", ".jpg", cacheDir);
+            Files.copy(new File(sourceImagePath).toPath(), stagedImage.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            stagedImagePaths.add(stagedImage.getAbsolutePath());
+        }
+        return stagedImagePaths;
+    }
+
+    private ImageHandler createImageHandler(List<String> tempImagePaths) {
+        // Tasks run on the benchmark thread rather than on the thread pools of the app
+        return new ImageHandler(null, cacheDir, filesDir, tempImagePaths, new ImageVariants(),
+                Runnable::run, Runnable::run);
+    }
+
+    private File createDirectory(String name) throws IOException {
+        File directory = new File(rootDir, name);
+        if (!directory.mkdirs()) {
+            throw new IOException("Failed to create directory: " + directory);
+        }
+        return directory;
+    }
+
+    private static void deleteContents(File directory) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.isDirectory()) {
+                deleteContents(file);
+            }
+            file.delete();
+        }
+    }
+}
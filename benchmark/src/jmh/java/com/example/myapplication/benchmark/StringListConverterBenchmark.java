@@ -0,0 +1,51 @@
+package com.example.myapplication.benchmark;
+
+import com.example.myapplication.StringListConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks for converting lists of image paths to and from JSON with {@link StringListConverter}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StringListConverterBenchmark {
+
+    // Number of paths in the converted list
+    @Param({"0", "1", "5", "100"})
+    public int listSize;
+
+    private List<String> imagePaths;
+    private String json;
+
+    @Setup
+    public void setUp() {
+        imagePaths = new ArrayList<>();
+        for (int i = 0; i < listSize; i++) {
+            imagePaths.add("/data/user/0/com.example.myapplication/files/image_" + (1700000000000L + i) + ".jpg");
+        }
+        json = StringListConverter.fromStringList(imagePaths);
+    }
+
+    @Benchmark
+    public String encode() {
+        return StringListConverter.fromStringList(imagePaths);
+    }
+
+    @Benchmark
+    public List<String> decode() {
+        return StringListConverter.toStringList(json);
+    }
+}
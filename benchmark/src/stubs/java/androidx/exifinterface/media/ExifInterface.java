@@ -0,0 +1,30 @@
+package androidx.exifinterface.media;
+
+import java.io.IOException;
+
+/**
+ * Stub of the AndroidX ExifInterface class, with the members referenced by the benchmarked sources.
+ * <br>
+ * The library is only published as an Android archive, which cannot be used on the JVM.
+ * Reading attributes is not supported, as for the other stubbed Android classes.
+ */
+public class ExifInterface {
+    public static final String TAG_ORIENTATION = "Orientation";
+    public static final int ORIENTATION_UNDEFINED = 0;
+    public static final int ORIENTATION_NORMAL = 1;
+    public static final int ORIENTATION_FLIP_HORIZONTAL = 2;
+    public static final int ORIENTATION_ROTATE_180 = 3;
+    public static final int ORIENTATION_FLIP_VERTICAL = 4;
+    public static final int ORIENTATION_TRANSPOSE = 5;
+    public static final int ORIENTATION_ROTATE_90 = 6;
+    public static final int ORIENTATION_TRANSVERSE = 7;
+    public static final int ORIENTATION_ROTATE_270 = 8;
+
+    public ExifInterface(String filename) throws IOException {
+        throw new RuntimeException("Stub!");
+    }
+
+    public int getAttributeInt(String tag, int defaultValue) {
+        throw new RuntimeException("Stub!");
+    }
+}